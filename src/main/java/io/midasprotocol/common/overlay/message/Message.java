@@ -8,7 +8,6 @@ import io.midasprotocol.core.net.message.MessageTypes;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import lombok.Setter;
-import org.apache.commons.lang3.ArrayUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.ReflectionUtils;
@@ -40,7 +39,8 @@ public abstract class Message {
 	}
 
 	public ByteBuf getSendData() {
-		return Unpooled.wrappedBuffer(ArrayUtils.add(this.getData(), 0, type));
+		// no copy of the data, large blocks are written as they are
+		return Unpooled.wrappedBuffer(new byte[]{type}, this.getData());
 	}
 
 	public Sha256Hash getMessageId() {
@@ -9,29 +9,53 @@ import io.midasprotocol.protos.Protocol.Inventory.InventoryType;
 import io.midasprotocol.protos.Protocol.ReasonCode;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.WriteBufferWaterMark;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import java.util.Queue;
-import java.util.concurrent.*;
-
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Outgoing messages of a peer. Everything is written on the event loop of the channel: queued
+ * messages are drained into a single flush, and draining stops while the channel is over its high
+ * write buffer water mark until it becomes writable again.
+ */
 @Slf4j(topic = "net")
 @Component
 @Scope("prototype")
 public class MessageQueue {
 
-	private static ScheduledExecutorService sendTimer = Executors.
-		newSingleThreadScheduledExecutor(r -> new Thread(r, "sendTimer"));
+	private static final int WRITE_BUFFER_LOW_WATER_MARK = 1 << 20;
+	private static final int WRITE_BUFFER_HIGH_WATER_MARK = 4 << 20;
+
 	private volatile boolean sendMsgFlag = false;
 	private volatile long sendTime;
-	private Thread sendMsgThread;
 	private Channel channel;
 	private ChannelHandlerContext ctx = null;
 	private Queue<MessageRoundtrip> requestQueue = new ConcurrentLinkedQueue<>();
-	private BlockingQueue<Message> msgQueue = new LinkedBlockingQueue<>();
+	private Queue<QueuedMessage> msgQueue = new ConcurrentLinkedQueue<>();
+	private AtomicInteger msgQueueSize = new AtomicInteger();
+	private AtomicBoolean flushScheduled = new AtomicBoolean();
 	private ScheduledFuture<?> sendTask;
 
+	// written by the event loop only, in milliseconds
+	@Getter
+	private volatile long lastFlushLatency;
+	@Getter
+	private volatile long maxFlushLatency;
+	@Getter
+	private volatile long flushCount;
+	@Getter
+	private volatile long flushedMessageCount;
 
 	public void activate(ChannelHandlerContext ctx) {
 
@@ -39,7 +63,20 @@ public class MessageQueue {
 
 		sendMsgFlag = true;
 
-		sendTask = sendTimer.scheduleAtFixedRate(() -> {
+		ctx.channel().config().setWriteBufferWaterMark(
+			new WriteBufferWaterMark(WRITE_BUFFER_LOW_WATER_MARK, WRITE_BUFFER_HIGH_WATER_MARK));
+		ctx.pipeline().addLast("writability", new ChannelInboundHandlerAdapter() {
+			@Override
+			public void channelWritabilityChanged(ChannelHandlerContext context) {
+				if (context.channel().isWritable()) {
+					scheduleFlush();
+				}
+				context.fireChannelWritabilityChanged();
+			}
+		});
+
+		// retries and timeouts of the request messages
+		sendTask = ctx.executor().scheduleAtFixedRate(() -> {
 			try {
 				if (sendMsgFlag) {
 					send();
@@ -48,28 +85,6 @@ public class MessageQueue {
 				logger.error("Unhandled exception", e);
 			}
 		}, 10, 10, TimeUnit.MILLISECONDS);
-
-		sendMsgThread = new Thread(() -> {
-			while (sendMsgFlag) {
-				try {
-					if (msgQueue.isEmpty()) {
-						Thread.sleep(10);
-						continue;
-					}
-					Message msg = msgQueue.take();
-					ctx.writeAndFlush(msg.getSendData()).addListener((ChannelFutureListener) future -> {
-						if (!future.isSuccess() && !channel.isDisconnect()) {
-							logger.error("Fail send to {}, {}", ctx.channel().remoteAddress(), msg);
-						}
-					});
-				} catch (Exception e) {
-					logger.error("Fail send to {}, error info: {}", ctx.channel().remoteAddress(),
-						e.getMessage());
-				}
-			}
-		});
-		sendMsgThread.setName("sendMsgThread-" + ctx.channel().remoteAddress());
-		sendMsgThread.start();
 	}
 
 	public void setChannel(Channel channel) {
@@ -87,12 +102,59 @@ public class MessageQueue {
 		sendTime = System.currentTimeMillis();
 		if (msg.getAnswerMessage() != null) {
 			requestQueue.add(new MessageRoundtrip(msg));
+			ctx.executor().execute(this::send);
 		} else {
-			msgQueue.offer(msg);
+			msgQueue.offer(new QueuedMessage(msg, System.nanoTime()));
+			msgQueueSize.incrementAndGet();
+			scheduleFlush();
 		}
 		return true;
 	}
 
+	public int getQueueSize() {
+		return msgQueueSize.get();
+	}
+
+	private void scheduleFlush() {
+		if (flushScheduled.compareAndSet(false, true)) {
+			ctx.executor().execute(this::flush);
+		}
+	}
+
+	private void flush() {
+		flushScheduled.set(false);
+		if (!sendMsgFlag) {
+			return;
+		}
+
+		int count = 0;
+		long oldestTime = 0;
+		QueuedMessage queued;
+		// isWritable turns false as soon as the written bytes pass the high water mark
+		while (ctx.channel().isWritable() && (queued = msgQueue.poll()) != null) {
+			msgQueueSize.decrementAndGet();
+			if (count++ == 0) {
+				oldestTime = queued.enqueueTime;
+			}
+			Message msg = queued.msg;
+			ctx.write(msg.getSendData()).addListener((ChannelFutureListener) future -> {
+				if (!future.isSuccess() && !channel.isDisconnect()) {
+					logger.error("Fail send to {}, {}", ctx.channel().remoteAddress(), msg);
+				}
+			});
+		}
+		if (count == 0) {
+			return;
+		}
+		ctx.flush();
+
+		long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldestTime);
+		lastFlushLatency = latency;
+		maxFlushLatency = Math.max(maxFlushLatency, latency);
+		flushCount++;
+		flushedMessageCount += count;
+	}
+
 	public void receivedMessage(Message msg) {
 		if (needToLog(msg)) {
 			logger.info("Receive from {}, {}", ctx.channel().remoteAddress(), msg);
@@ -111,14 +173,8 @@ public class MessageQueue {
 			sendTask.cancel(false);
 			sendTask = null;
 		}
-		if (sendMsgThread != null) {
-			try {
-				sendMsgThread.join(20);
-				sendMsgThread = null;
-			} catch (Exception e) {
-				logger.warn("Join send thread failed, peer {}", ctx.channel().remoteAddress());
-			}
-		}
+		msgQueue.clear();
+		msgQueueSize.set(0);
 	}
 
 	private boolean needToLog(Message msg) {
@@ -165,4 +221,10 @@ public class MessageQueue {
 		messageRoundtrip.saveTime();
 	}
 
+	@AllArgsConstructor
+	private static class QueuedMessage {
+
+		private Message msg;
+		private long enqueueTime;
+	}
 }
@@ -561,6 +561,7 @@ public class RuntimeImpl implements Runtime {
 				this.blockCap);
 			byte[] txId = new TransactionCapsule(trx).getTransactionId().getBytes();
 			this.program.setRootTransactionId(txId);
+			this.program.setCodeAddress(contractAddress);
 
 			if (enableEventListener &&
 				(EventPluginLoader.getInstance().isContractEventTriggerEnable()
@@ -46,6 +46,8 @@ public class VMConfig {
 //  private static boolean VERSION_3_5_HARD_FORK = false;
 	private boolean vmTraceCompressed = false;
 	private boolean vmTrace = Args.getInstance().isVmTrace();
+	@Setter
+	private boolean vmPreDecoded = Args.getInstance().isVmPreDecoded();
 
 	private VMConfig() {
 	}
@@ -91,6 +93,10 @@ public class VMConfig {
 		return vmTraceCompressed;
 	}
 
+	public boolean vmPreDecoded() {
+		return vmPreDecoded;
+	}
+
 	private static class SystemPropertiesInstance {
 
 		private static final VMConfig INSTANCE = new VMConfig();
@@ -26,7 +26,6 @@ import org.spongycastle.util.Arrays;
 import org.spongycastle.util.encoders.Hex;
 
 import java.math.BigInteger;
-import java.nio.ByteBuffer;
 
 /**
  * DataWord is the 32-byte array representation of a 256-bit number Calculations can be done on this
@@ -51,24 +50,23 @@ public class DataWord implements Comparable<DataWord> {
 		return new DataWord(new byte[DATAWORD_UNIT_SIZE]);
 	}
 
-	private byte[] data = new byte[DATAWORD_UNIT_SIZE];
+	// every constructor allocates it, a program creates a word for each value it pushes
+	private byte[] data;
 
 	public DataWord() {
+		this.data = new byte[DATAWORD_UNIT_SIZE];
 	}
 
 	public DataWord(int num) {
-		this(ByteBuffer.allocate(4).putInt(num));
+		this((long) num & 0xFFFFFFFFL);
 	}
 
 	public DataWord(long num) {
-		this(ByteBuffer.allocate(8).putLong(num));
-	}
-
-	private DataWord(ByteBuffer buffer) {
-		final ByteBuffer targetByteBuffer = ByteBuffer.allocate(DATAWORD_UNIT_SIZE);
-		final byte[] array = buffer.array();
-		System.arraycopy(array, 0, targetByteBuffer.array(), DATAWORD_UNIT_SIZE - array.length, array.length);
-		this.data = targetByteBuffer.array();
+		this.data = new byte[DATAWORD_UNIT_SIZE];
+		for (int i = DATAWORD_UNIT_SIZE - 1; i >= DATAWORD_UNIT_SIZE - 8; i--) {
+			this.data[i] = (byte) num;
+			num >>>= 8;
+		}
 	}
 
 	public static DataWord of(byte num) {
@@ -93,6 +91,7 @@ public class DataWord implements Comparable<DataWord> {
 		} else if (data.length == DATAWORD_UNIT_SIZE) {
 			this.data = data;
 		} else if (data.length < DATAWORD_UNIT_SIZE) {
+			this.data = new byte[DATAWORD_UNIT_SIZE];
 			System.arraycopy(data, 0, this.data, DATAWORD_UNIT_SIZE - data.length, data.length);
 		} else {
 			throw new RuntimeException("Data word can't exceed 32 bytes: " + ByteUtil.toHexString(data));
@@ -273,23 +272,21 @@ public class DataWord implements Comparable<DataWord> {
 	}
 
 	public void bnot() {
-		if (this.isZero()) {
-			this.data = ByteUtil.copyToArray(MAX_VALUE);
-			return;
-		}
-		this.data = ByteUtil.copyToArray(MAX_VALUE.subtract(this.value()));
+		this.data = UInt256.toBytes(UInt256.not(limbs()));
+	}
+
+	/**
+	 * The arithmetic below works on the limbs of {@link UInt256} and stores the result in a new
+	 * array, the old one may be shared with whoever created this word.
+	 */
+	private long[] limbs() {
+		return UInt256.load(data);
 	}
 
-	// By   : Holger
-	// From : http://stackoverflow.com/a/24023466/459349
 	public void add(DataWord word) {
-		byte[] result = new byte[32];
-		for (int i = 31, overflow = 0; i >= 0; i--) {
-			int v = (this.data[i] & 0xff) + (word.data[i] & 0xff) + overflow;
-			result[i] = (byte) v;
-			overflow = v >>> 8;
-		}
-		this.data = result;
+		long[] result = limbs();
+		UInt256.add(result, word.limbs());
+		this.data = UInt256.toBytes(result);
 	}
 
 	// old add-method with BigInteger quick hack
@@ -298,15 +295,10 @@ public class DataWord implements Comparable<DataWord> {
 		this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
 	}
 
-	// TODO: mul can be done in more efficient way
-	// TODO:     with shift left shift right trick
-	// TODO      without BigInteger quick hack
 	public void mul(DataWord word) {
-		BigInteger result = value().multiply(word.value());
-		this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+		this.data = UInt256.toBytes(UInt256.mul(limbs(), word.limbs()));
 	}
 
-	// TODO: improve with no BigInteger
 	public void div(DataWord word) {
 
 		if (word.isZero()) {
@@ -314,11 +306,9 @@ public class DataWord implements Comparable<DataWord> {
 			return;
 		}
 
-		BigInteger result = value().divide(word.value());
-		this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+		this.data = UInt256.toBytes(UInt256.divide(limbs(), word.limbs()));
 	}
 
-	// TODO: improve with no BigInteger
 	public void sDiv(DataWord word) {
 
 		if (word.isZero()) {
@@ -326,23 +316,19 @@ public class DataWord implements Comparable<DataWord> {
 			return;
 		}
 
-		BigInteger result = sValue().divide(word.sValue());
-		this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+		this.data = UInt256.toBytes(UInt256.sDivide(limbs(), word.limbs()));
 	}
 
-	// TODO: improve with no BigInteger
 	public void sub(DataWord word) {
-		BigInteger result = value().subtract(word.value());
-		this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+		long[] result = limbs();
+		UInt256.sub(result, word.limbs());
+		this.data = UInt256.toBytes(result);
 	}
 
-	// TODO: improve with no BigInteger
 	public void exp(DataWord word) {
-		BigInteger result = value().modPow(word.value(), _2_256);
-		this.data = ByteUtil.copyToArray(result);
+		this.data = UInt256.toBytes(UInt256.exp(limbs(), word.limbs()));
 	}
 
-	// TODO: improve with no BigInteger
 	public void mod(DataWord word) {
 
 		if (word.isZero()) {
@@ -350,8 +336,7 @@ public class DataWord implements Comparable<DataWord> {
 			return;
 		}
 
-		BigInteger result = value().mod(word.value());
-		this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+		this.data = UInt256.toBytes(UInt256.mod(limbs(), word.limbs()));
 	}
 
 	public void sMod(DataWord word) {
@@ -361,10 +346,7 @@ public class DataWord implements Comparable<DataWord> {
 			return;
 		}
 
-		BigInteger result = sValue().abs().mod(word.sValue().abs());
-		result = (sValue().signum() == -1) ? result.negate() : result;
-
-		this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+		this.data = UInt256.toBytes(UInt256.sMod(limbs(), word.limbs()));
 	}
 
 	public void addmod(DataWord word1, DataWord word2) {
@@ -373,8 +355,7 @@ public class DataWord implements Comparable<DataWord> {
 			return;
 		}
 
-		BigInteger result = value().add(word1.value()).mod(word2.value());
-		this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+		this.data = UInt256.toBytes(UInt256.addMod(limbs(), word1.limbs(), word2.limbs()));
 	}
 
 	public void mulmod(DataWord word1, DataWord word2) {
@@ -384,8 +365,7 @@ public class DataWord implements Comparable<DataWord> {
 			return;
 		}
 
-		BigInteger result = value().multiply(word1.value()).mod(word2.value());
-		this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+		this.data = UInt256.toBytes(UInt256.mulMod(limbs(), word1.limbs(), word2.limbs()));
 	}
 
 	@JsonValue
@@ -450,11 +430,23 @@ public class DataWord implements Comparable<DataWord> {
 		return (int) Math.signum(result);
 	}
 
+	/**
+	 * Compares both words as signed numbers.
+	 *
+	 * @return -1, 0 or 1
+	 */
+	public int sCompareTo(DataWord o) {
+		if (isNegative() != o.isNegative()) {
+			return isNegative() ? -1 : 1;
+		}
+		return compareTo(o);
+	}
+
 	public void signExtend(byte k) {
 		if (0 > k || k > 31) {
 			throw new IndexOutOfBoundsException();
 		}
-		byte mask = this.sValue().testBit((k * 8) + 7) ? (byte) 0xff : 0;
+		byte mask = (this.data[31 - k] & 0x80) != 0 ? (byte) 0xff : 0;
 		for (int i = 31; i > k; i--) {
 			this.data[31 - i] = mask;
 		}
@@ -486,12 +478,11 @@ public class DataWord implements Comparable<DataWord> {
 	 * @return this << arg
 	 */
 	public DataWord shiftLeft(DataWord arg) {
-		if (arg.value().compareTo(BigInteger.valueOf(MAX_POW)) >= 0) {
+		if (arg.intValueSafe() >= MAX_POW) {
 			return DataWord.ZERO();
 		}
 
-		BigInteger result = value().shiftLeft(arg.intValueSafe());
-		return new DataWord(ByteUtil.copyToArray(result.and(MAX_VALUE)));
+		return new DataWord(UInt256.toBytes(UInt256.shiftLeft(limbs(), arg.intValueSafe())));
 	}
 
 	/**
@@ -500,12 +491,11 @@ public class DataWord implements Comparable<DataWord> {
 	 * @return this >> arg
 	 */
 	public DataWord shiftRight(DataWord arg) {
-		if (arg.value().compareTo(BigInteger.valueOf(MAX_POW)) >= 0) {
+		if (arg.intValueSafe() >= MAX_POW) {
 			return DataWord.ZERO();
 		}
 
-		BigInteger result = value().shiftRight(arg.intValueSafe());
-		return new DataWord(ByteUtil.copyToArray(result.and(MAX_VALUE)));
+		return new DataWord(UInt256.toBytes(UInt256.shiftRight(limbs(), arg.intValueSafe())));
 	}
 
 	/**
@@ -514,7 +504,7 @@ public class DataWord implements Comparable<DataWord> {
 	 * @return this >> arg
 	 */
 	public DataWord shiftRightSigned(DataWord arg) {
-		if (arg.value().compareTo(BigInteger.valueOf(MAX_POW)) >= 0) {
+		if (arg.intValueSafe() >= MAX_POW) {
 			if (this.isNegative()) {
 				DataWord result = ONE();
 				result.negate();
@@ -524,8 +514,7 @@ public class DataWord implements Comparable<DataWord> {
 			}
 		}
 
-		BigInteger result = sValue().shiftRight(arg.intValueSafe());
-		return new DataWord(ByteUtil.copyToArray(result.and(MAX_VALUE)));
+		return new DataWord(UInt256.toBytes(UInt256.shiftRightSigned(limbs(), arg.intValueSafe())));
 	}
 
 	public static long sizeInWords(long bytesSize) {
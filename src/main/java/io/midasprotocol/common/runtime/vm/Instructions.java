@@ -0,0 +1,138 @@
+package io.midasprotocol.common.runtime.vm;
+
+import io.midasprotocol.common.runtime.config.VMConfig;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static io.midasprotocol.common.runtime.vm.OpCode.*;
+
+/**
+ * Code decoded once for the pre-decoded interpreter of {@link VM}: the opcode at every position,
+ * null where the byte isn't an opcode of the active fork configuration, the immediate of every
+ * reachable PUSH as a full word, and the energy of the opcodes whose cost doesn't depend on the
+ * stack or the state. Immutable, built for the fork flags it was decoded with.
+ */
+public final class Instructions {
+
+	static final int DYNAMIC_ENERGY = -1;
+
+	// the opcodes VM prices in its energy switch, everything else costs its tier
+	private static final Set<OpCode> DYNAMIC_ENERGY_OPS = EnumSet.of(STOP, SUICIDE, SSTORE, SLOAD,
+		TOKENBALANCE, BALANCE, MSTORE, MSTORE8, MLOAD, RETURN, REVERT, SHA3, CALLDATACOPY,
+		RETURNDATACOPY, CODECOPY, EXTCODESIZE, EXTCODECOPY, EXTCODEHASH, CALL, CALLCODE,
+		DELEGATECALL, STATICCALL, CALLTOKEN, CREATE, CREATE2, LOG0, LOG1, LOG2, LOG3, LOG4, EXP);
+
+	private static final Set<OpCode> TRANSFER_M1_OPS = EnumSet.of(CALLTOKEN, TOKENBALANCE,
+		CALLTOKENVALUE, CALLTOKENID);
+
+	private static final Set<OpCode> CONSTANTINOPLE_OPS = EnumSet.of(SHL, SHR, SAR, CREATE2,
+		EXTCODEHASH);
+
+	// references taken as 8 bytes, an overestimate with compressed oops
+	private static final int REFERENCE_BYTES = 8;
+	private static final int ARRAY_HEADER_BYTES = 16;
+	// the opcode, energy and immediate slots of every position
+	private static final int BYTES_PER_POSITION = REFERENCE_BYTES + Integer.BYTES + REFERENCE_BYTES;
+	private static final int BYTES_PER_IMMEDIATE = ARRAY_HEADER_BYTES + DataWord.DATAWORD_UNIT_SIZE;
+
+	private final OpCode[] ops;
+	private final int[] energy;
+	private final byte[][] immediates;
+	private final boolean allowTransferM1;
+	private final boolean allowConstantinople;
+	private int weight;
+
+	private Instructions(int length, boolean allowTransferM1, boolean allowConstantinople) {
+		this.ops = new OpCode[length];
+		this.energy = new int[length];
+		this.immediates = new byte[length][];
+		this.allowTransferM1 = allowTransferM1;
+		this.allowConstantinople = allowConstantinople;
+	}
+
+	/**
+	 * Decodes code for the fork flags currently set in {@link VMConfig}. Empty code decodes to a
+	 * single STOP, which is what {@link io.midasprotocol.common.runtime.vm.program.Program} reads
+	 * from it.
+	 */
+	public static Instructions decode(byte[] code) {
+		boolean allowTransferM1 = VMConfig.allowTvmTransferM1();
+		boolean allowConstantinople = VMConfig.allowVmConstantinople();
+		if (code.length == 0) {
+			code = new byte[]{STOP.val()};
+		}
+		Instructions instructions = new Instructions(code.length, allowTransferM1,
+			allowConstantinople);
+
+		for (int pc = 0; pc < code.length; pc++) {
+			OpCode op = OpCode.code(code[pc]);
+			if (op == null
+				|| !allowTransferM1 && TRANSFER_M1_OPS.contains(op)
+				|| !allowConstantinople && CONSTANTINOPLE_OPS.contains(op)) {
+				continue;
+			}
+			instructions.ops[pc] = op;
+			instructions.energy[pc] =
+				DYNAMIC_ENERGY_OPS.contains(op) ? DYNAMIC_ENERGY : op.getTier().asInt();
+		}
+
+		// only the PUSHes execution can reach get their immediate, not the bytes of push data
+		int pushCount = 0;
+		for (int pc = 0; pc < code.length; pc++) {
+			OpCode op = OpCode.code(code[pc]);
+			if (op != null && op.val() >= PUSH1.val() && op.val() <= PUSH32.val()) {
+				int nPush = op.val() - PUSH1.val() + 1;
+				// zero padded past the end of the code, like Program.sweep
+				byte[] data = Arrays.copyOfRange(code, pc + 1, pc + 1 + nPush);
+				instructions.immediates[pc] = new DataWord(data).getData();
+				pushCount++;
+				pc += nPush;
+			}
+		}
+		instructions.weight = 3 * ARRAY_HEADER_BYTES + code.length * BYTES_PER_POSITION
+			+ pushCount * BYTES_PER_IMMEDIATE;
+		return instructions;
+	}
+
+	/**
+	 * @return whether this was decoded with the fork flags currently set in {@link VMConfig}
+	 */
+	public boolean isCurrent() {
+		return allowTransferM1 == VMConfig.allowTvmTransferM1()
+			&& allowConstantinople == VMConfig.allowVmConstantinople();
+	}
+
+	/**
+	 * @return the opcode at pc, null if it isn't valid
+	 */
+	OpCode getOp(int pc) {
+		return ops[pc];
+	}
+
+	/**
+	 * @return the energy of the opcode at pc, {@link #DYNAMIC_ENERGY} if VM has to compute it
+	 */
+	int getEnergy(int pc) {
+		return energy[pc];
+	}
+
+	/**
+	 * @return the immediate of the PUSH at pc as a word, not to be modified
+	 */
+	byte[] getImmediate(int pc) {
+		return immediates[pc];
+	}
+
+	public int size() {
+		return ops.length;
+	}
+
+	/**
+	 * @return the estimated bytes held by the decoded code
+	 */
+	public int getWeight() {
+		return weight;
+	}
+}
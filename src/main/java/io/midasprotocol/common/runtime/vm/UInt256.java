@@ -0,0 +1,397 @@
+package io.midasprotocol.common.runtime.vm;
+
+import java.util.Arrays;
+
+/**
+ * 256-bit arithmetic on four 64-bit limbs, least significant limb first, so the opcodes of {@link
+ * DataWord} don't go through BigInteger. Everything is modulo 2^256 and unsigned unless the name
+ * says otherwise. Multiplication and division work on the 32-bit halves of the limbs, which keeps
+ * the partial products in a long.
+ */
+final class UInt256 {
+
+	static final int LIMBS = 4;
+	private static final int DIGITS = LIMBS * 2;
+	private static final long MASK = 0xFFFFFFFFL;
+
+	private UInt256() {
+	}
+
+	/**
+	 * @param data big endian, right aligned if shorter than 32 bytes
+	 */
+	static long[] load(byte[] data) {
+		long[] w = new long[LIMBS];
+		int length = Math.min(data.length, DataWord.DATAWORD_UNIT_SIZE);
+		for (int i = 0; i < length; i++) {
+			w[i >>> 3] |= (data[data.length - 1 - i] & 0xFFL) << ((i & 7) << 3);
+		}
+		return w;
+	}
+
+	static byte[] toBytes(long[] w) {
+		byte[] data = new byte[DataWord.DATAWORD_UNIT_SIZE];
+		for (int i = 0; i < LIMBS; i++) {
+			long limb = w[i];
+			int end = DataWord.DATAWORD_UNIT_SIZE - 1 - (i << 3);
+			for (int j = 0; j < 8; j++) {
+				data[end - j] = (byte) limb;
+				limb >>>= 8;
+			}
+		}
+		return data;
+	}
+
+	static boolean isZero(long[] a) {
+		return (a[0] | a[1] | a[2] | a[3]) == 0;
+	}
+
+	static boolean isNegative(long[] a) {
+		return a[LIMBS - 1] < 0;
+	}
+
+	/**
+	 * a += b
+	 *
+	 * @return the carry out of the top limb
+	 */
+	static long add(long[] a, long[] b) {
+		long carry = 0;
+		for (int i = 0; i < LIMBS; i++) {
+			long sum = a[i] + b[i];
+			long carryOut = Long.compareUnsigned(sum, a[i]) < 0 ? 1 : 0;
+			long total = sum + carry;
+			carryOut += Long.compareUnsigned(total, sum) < 0 ? 1 : 0;
+			a[i] = total;
+			carry = carryOut;
+		}
+		return carry;
+	}
+
+	/**
+	 * a -= b
+	 */
+	static void sub(long[] a, long[] b) {
+		long borrow = 0;
+		for (int i = 0; i < LIMBS; i++) {
+			long diff = a[i] - b[i];
+			long borrowOut = Long.compareUnsigned(a[i], b[i]) < 0 ? 1 : 0;
+			long total = diff - borrow;
+			borrowOut += Long.compareUnsigned(diff, borrow) < 0 ? 1 : 0;
+			a[i] = total;
+			borrow = borrowOut;
+		}
+	}
+
+	/**
+	 * a = -a, two's complement
+	 */
+	static void negate(long[] a) {
+		long carry = 1;
+		for (int i = 0; i < LIMBS; i++) {
+			long limb = ~a[i] + carry;
+			carry = carry != 0 && limb == 0 ? 1 : 0;
+			a[i] = limb;
+		}
+	}
+
+	static long[] not(long[] a) {
+		for (int i = 0; i < LIMBS; i++) {
+			a[i] = ~a[i];
+		}
+		return a;
+	}
+
+	static long[] mul(long[] a, long[] b) {
+		return fromDigits(multiply(toDigits(a), toDigits(b), new int[DIGITS]));
+	}
+
+	/**
+	 * @return a / b, b must not be 0
+	 */
+	static long[] divide(long[] a, long[] b) {
+		int[] q = new int[DIGITS];
+		divide(toDigits(a), toDigits(b), q);
+		return fromDigits(q);
+	}
+
+	/**
+	 * @return a mod b, b must not be 0
+	 */
+	static long[] mod(long[] a, long[] b) {
+		return fromDigits(divide(toDigits(a), toDigits(b), null));
+	}
+
+	/**
+	 * @return a / b rounded towards zero, both signed, b must not be 0
+	 */
+	static long[] sDivide(long[] a, long[] b) {
+		boolean negative = isNegative(a) != isNegative(b);
+		long[] q = divide(abs(a), abs(b));
+		if (negative) {
+			negate(q);
+		}
+		return q;
+	}
+
+	/**
+	 * @return |a| mod |b| with the sign of a, b must not be 0
+	 */
+	static long[] sMod(long[] a, long[] b) {
+		boolean negative = isNegative(a);
+		long[] r = mod(abs(a), abs(b));
+		if (negative) {
+			negate(r);
+		}
+		return r;
+	}
+
+	/**
+	 * @return (a + b) mod m on the 257-bit sum, m must not be 0
+	 */
+	static long[] addMod(long[] a, long[] b, long[] m) {
+		long[] sum = a.clone();
+		long carry = add(sum, b);
+		int[] u = new int[DIGITS + 1];
+		System.arraycopy(toDigits(sum), 0, u, 0, DIGITS);
+		u[DIGITS] = (int) carry;
+		return fromDigits(divide(u, toDigits(m), null));
+	}
+
+	/**
+	 * @return (a * b) mod m on the 512-bit product, m must not be 0
+	 */
+	static long[] mulMod(long[] a, long[] b, long[] m) {
+		int[] product = multiply(toDigits(a), toDigits(b), new int[DIGITS * 2]);
+		return fromDigits(divide(product, toDigits(m), null));
+	}
+
+	/**
+	 * @return base ** exponent mod 2^256, 0 ** 0 is 1
+	 */
+	static long[] exp(long[] base, long[] exponent) {
+		int bits = bitLength(exponent);
+		if (bits == 0) {
+			return new long[]{1, 0, 0, 0};
+		}
+		int[] b = toDigits(base);
+		int[] result = b.clone();
+		int[] product = new int[DIGITS];
+		for (int i = bits - 2; i >= 0; i--) {
+			multiply(result, result, product);
+			int[] swap = result;
+			result = product;
+			product = swap;
+			if ((exponent[i >>> 6] >>> (i & 63) & 1) != 0) {
+				multiply(result, b, product);
+				swap = result;
+				result = product;
+				product = swap;
+			}
+		}
+		return fromDigits(result);
+	}
+
+	static long[] shiftLeft(long[] a, int n) {
+		int limbShift = n >>> 6;
+		int bitShift = n & 63;
+		long[] r = new long[LIMBS];
+		for (int i = LIMBS - 1; i >= limbShift; i--) {
+			long limb = a[i - limbShift] << bitShift;
+			if (bitShift != 0 && i - limbShift - 1 >= 0) {
+				limb |= a[i - limbShift - 1] >>> (64 - bitShift);
+			}
+			r[i] = limb;
+		}
+		return r;
+	}
+
+	static long[] shiftRight(long[] a, int n) {
+		return shiftRight(a, n, 0);
+	}
+
+	static long[] shiftRightSigned(long[] a, int n) {
+		return shiftRight(a, n, isNegative(a) ? -1L : 0);
+	}
+
+	/**
+	 * @param fill the limb shifted in from above, 0 or all ones
+	 */
+	private static long[] shiftRight(long[] a, int n, long fill) {
+		int limbShift = n >>> 6;
+		int bitShift = n & 63;
+		long[] r = new long[LIMBS];
+		for (int i = 0; i < LIMBS; i++) {
+			long low = limb(a, i + limbShift, fill);
+			r[i] = bitShift == 0 ? low
+				: low >>> bitShift | limb(a, i + limbShift + 1, fill) << (64 - bitShift);
+		}
+		return r;
+	}
+
+	private static long limb(long[] a, int i, long fill) {
+		return i < LIMBS ? a[i] : fill;
+	}
+
+	static int bitLength(long[] a) {
+		for (int i = LIMBS - 1; i >= 0; i--) {
+			if (a[i] != 0) {
+				return (i << 6) + 64 - Long.numberOfLeadingZeros(a[i]);
+			}
+		}
+		return 0;
+	}
+
+	private static long[] abs(long[] a) {
+		long[] r = a.clone();
+		if (isNegative(r)) {
+			negate(r);
+		}
+		return r;
+	}
+
+	private static int[] toDigits(long[] a) {
+		int[] digits = new int[DIGITS];
+		for (int i = 0; i < LIMBS; i++) {
+			digits[i << 1] = (int) a[i];
+			digits[(i << 1) + 1] = (int) (a[i] >>> 32);
+		}
+		return digits;
+	}
+
+	private static long[] fromDigits(int[] digits) {
+		long[] a = new long[LIMBS];
+		for (int i = 0; i < LIMBS; i++) {
+			a[i] = (digits[(i << 1) + 1] & MASK) << 32 | (digits[i << 1] & MASK);
+		}
+		return a;
+	}
+
+	/**
+	 * Overwrites r with as many of the lowest digits of x * y as it holds, r must be neither x nor y.
+	 *
+	 * @return r
+	 */
+	private static int[] multiply(int[] x, int[] y, int[] r) {
+		int length = r.length;
+		Arrays.fill(r, 0);
+		for (int i = 0; i < DIGITS && i < length; i++) {
+			long xi = x[i] & MASK;
+			if (xi == 0) {
+				continue;
+			}
+			long carry = 0;
+			int j = 0;
+			for (; j < DIGITS && i + j < length; j++) {
+				// at most 2^64 - 1, read as unsigned
+				long t = xi * (y[j] & MASK) + (r[i + j] & MASK) + carry;
+				r[i + j] = (int) t;
+				carry = t >>> 32;
+			}
+			if (i + j < length) {
+				r[i + j] = (int) carry;
+			}
+		}
+		return r;
+	}
+
+	private static int significant(int[] digits) {
+		int n = digits.length;
+		while (n > 0 && digits[n - 1] == 0) {
+			n--;
+		}
+		return n;
+	}
+
+	/**
+	 * Long division of u by v, Knuth's algorithm D on 32-bit digits, least significant first.
+	 *
+	 * @param q receives the quotient if not null, at least as long as u
+	 * @return the remainder, {@link #DIGITS} long
+	 */
+	private static int[] divide(int[] u, int[] v, int[] q) {
+		int m = significant(u);
+		int n = significant(v);
+		int[] r = new int[DIGITS];
+		if (m < n) {
+			System.arraycopy(u, 0, r, 0, m);
+			return r;
+		}
+
+		if (n == 1) {
+			long d = v[0] & MASK;
+			long k = 0;
+			for (int j = m - 1; j >= 0; j--) {
+				long cur = k << 32 | (u[j] & MASK);
+				if (q != null) {
+					q[j] = (int) Long.divideUnsigned(cur, d);
+				}
+				k = Long.remainderUnsigned(cur, d);
+			}
+			r[0] = (int) k;
+			return r;
+		}
+
+		// normalize so the top digit of the divisor has its high bit set
+		int s = Integer.numberOfLeadingZeros(v[n - 1]);
+		int[] vn = new int[n];
+		for (int i = n - 1; i > 0; i--) {
+			vn[i] = v[i] << s | (s == 0 ? 0 : v[i - 1] >>> (32 - s));
+		}
+		vn[0] = v[0] << s;
+		int[] un = new int[m + 1];
+		un[m] = s == 0 ? 0 : u[m - 1] >>> (32 - s);
+		for (int i = m - 1; i > 0; i--) {
+			un[i] = u[i] << s | (s == 0 ? 0 : u[i - 1] >>> (32 - s));
+		}
+		un[0] = u[0] << s;
+
+		long vTop = vn[n - 1] & MASK;
+		long vNext = vn[n - 2] & MASK;
+		for (int j = m - n; j >= 0; j--) {
+			long num = (un[j + n] & MASK) << 32 | (un[j + n - 1] & MASK);
+			long qhat = Long.divideUnsigned(num, vTop);
+			long rhat = Long.remainderUnsigned(num, vTop);
+			while (qhat > MASK
+				|| Long.compareUnsigned(qhat * vNext, rhat << 32 | (un[j + n - 2] & MASK)) > 0) {
+				qhat--;
+				rhat += vTop;
+				if (rhat > MASK) {
+					break;
+				}
+			}
+
+			// multiply and subtract
+			long borrow = 0;
+			long t;
+			for (int i = 0; i < n; i++) {
+				long p = qhat * (vn[i] & MASK);
+				t = (un[i + j] & MASK) - borrow - (p & MASK);
+				un[i + j] = (int) t;
+				borrow = (p >>> 32) - (t >> 32);
+			}
+			t = (un[j + n] & MASK) - borrow;
+			un[j + n] = (int) t;
+
+			if (t < 0) {
+				// qhat was one too large, add the divisor back
+				qhat--;
+				long carry = 0;
+				for (int i = 0; i < n; i++) {
+					t = (un[i + j] & MASK) + (vn[i] & MASK) + carry;
+					un[i + j] = (int) t;
+					carry = t >>> 32;
+				}
+				un[j + n] += (int) carry;
+			}
+			if (q != null) {
+				q[j] = (int) qhat;
+			}
+		}
+
+		for (int i = 0; i < n; i++) {
+			r[i] = s == 0 ? un[i] : un[i] >>> s | un[i + 1] << (32 - s);
+		}
+		return r;
+	}
+}
@@ -14,7 +14,6 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 
-import static io.midasprotocol.common.crypto.Hash.sha3;
 import static io.midasprotocol.common.runtime.utils.MUtil.convertToTronAddress;
 import static io.midasprotocol.common.runtime.vm.OpCode.*;
 import static io.midasprotocol.common.utils.ByteUtil.EMPTY_BYTE_ARRAY;
@@ -23,7 +22,6 @@ import static io.midasprotocol.common.utils.ByteUtil.EMPTY_BYTE_ARRAY;
 public class VM {
 
 	public static final String ADDRESS_LOG = "address: ";
-	private static final BigInteger _32_ = BigInteger.valueOf(32);
 	private static final String ENERGY_LOG_FORMATE = "{}    Op: [{}]  Energy: [{}] Deep: [{}]  Hint: [{}]";
 	// 3MB
 	private static final BigInteger MEM_LIMIT = BigInteger.valueOf(3L * 1024 * 1024);
@@ -80,27 +78,44 @@ public class VM {
 	}
 
 	public void step(Program program) {
+		step(program, config.vmPreDecoded() ? program.getInstructions() : null);
+	}
+
+	/**
+	 * @param instructions the decoded code of the program, which gives the opcode, its validity, its
+	 *                     energy if static and PUSH immediates. Null to read them from the code.
+	 */
+	private void step(Program program, Instructions instructions) {
 		if (config.vmTrace()) {
 			program.saveOpTrace();
 		}
 
 		try {
-			OpCode op = OpCode.code(program.getCurrentOp());
-			if (op == null) {
-				throw Program.Exception.invalidOpCode(program.getCurrentOp());
-			}
-
-			// hard fork for 3.2
-			if (!VMConfig.allowTvmTransferM1()) {
-				if (op == CALLTOKEN || op == TOKENBALANCE || op == CALLTOKENVALUE || op == CALLTOKENID) {
+			int pc = program.getPC();
+			OpCode op;
+			if (instructions != null) {
+				op = instructions.getOp(pc);
+				if (op == null) {
 					throw Program.Exception.invalidOpCode(program.getCurrentOp());
 				}
-			}
-
-			if (!VMConfig.allowVmConstantinople()) {
-				if (op == SHL || op == SHR || op == SAR || op == CREATE2 || op == EXTCODEHASH) {
+			} else {
+				op = OpCode.code(program.getCurrentOp());
+				if (op == null) {
 					throw Program.Exception.invalidOpCode(program.getCurrentOp());
 				}
+
+				// hard fork for 3.2
+				if (!VMConfig.allowTvmTransferM1()) {
+					if (op == CALLTOKEN || op == TOKENBALANCE || op == CALLTOKENVALUE || op == CALLTOKENID) {
+						throw Program.Exception.invalidOpCode(program.getCurrentOp());
+					}
+				}
+
+				if (!VMConfig.allowVmConstantinople()) {
+					if (op == SHL || op == SHR || op == SAR || op == CREATE2 || op == EXTCODEHASH) {
+						throw Program.Exception.invalidOpCode(program.getCurrentOp());
+					}
+				}
 			}
 
 			program.setLastOp(op.val());
@@ -111,188 +126,192 @@ public class VM {
 			Stack stack = program.getStack();
 
 			String hint = "";
-			long energyCost = op.getTier().asInt();
+			long energyCost =
+				instructions == null ? Instructions.DYNAMIC_ENERGY : instructions.getEnergy(pc);
 			EnergyCost energyCosts = EnergyCost.getInstance();
 			DataWord adjustedCallEnergy = null;
 
 			// Calculate fees and spend energy
-			switch (op) {
-				case STOP:
-					energyCost = energyCosts.getSTOP();
-					break;
-				case SUICIDE:
-					energyCost = energyCosts.getSUICIDE();
-					DataWord suicideAddressWord = stack.get(stack.size() - 1);
-					if (isDeadAccount(program, suicideAddressWord) &&
-						!program.getBalance(program.getContractAddress()).isZero()) {
-						energyCost += energyCosts.getNEW_ACCT_SUICIDE();
-					}
-					break;
-				case SSTORE:
-					// todo: check the reset to 0, refund or not
-					DataWord newValue = stack.get(stack.size() - 2);
-					DataWord oldValue = program.storageLoad(stack.peek());
-					if (oldValue == null && !newValue.isZero()) {
-						// set a new not-zero value
-						energyCost = energyCosts.getSET_SSTORE();
-					} else if (oldValue != null && newValue.isZero()) {
-						// set zero to an old value
-						program.futureRefundEnergy(energyCosts.getREFUND_SSTORE());
-						energyCost = energyCosts.getCLEAR_SSTORE();
-					} else {
-						// include:
-						// [1] oldValue == null && newValue == 0
-						// [2] oldValue != null && newValue != 0
-						energyCost = energyCosts.getRESET_SSTORE();
-					}
-					break;
-				case SLOAD:
-					energyCost = energyCosts.getSLOAD();
-					break;
-				case TOKENBALANCE:
-				case BALANCE:
-					energyCost = energyCosts.getBALANCE();
-					break;
-
-				// These all operate on memory and therefore potentially expand it:
-				case MSTORE:
-					energyCost = calcMemEnergy(energyCosts, oldMemSize,
-						memNeeded(stack.peek(), new DataWord(32)),
-						0, op);
-					break;
-				case MSTORE8:
-					energyCost = calcMemEnergy(energyCosts, oldMemSize,
-						memNeeded(stack.peek(), new DataWord(1)),
-						0, op);
-					break;
-				case MLOAD:
-					energyCost = calcMemEnergy(energyCosts, oldMemSize,
-						memNeeded(stack.peek(), new DataWord(32)),
-						0, op);
-					break;
-				case RETURN:
-				case REVERT:
-					energyCost = energyCosts.getSTOP() + calcMemEnergy(energyCosts, oldMemSize,
-						memNeeded(stack.peek(), stack.get(stack.size() - 2)), 0, op);
-					break;
-				case SHA3:
-					energyCost = energyCosts.getSHA3() + calcMemEnergy(energyCosts, oldMemSize,
-						memNeeded(stack.peek(), stack.get(stack.size() - 2)), 0, op);
-					DataWord size = stack.get(stack.size() - 2);
-					long chunkUsed = (size.longValueSafe() + 31) / 32;
-					energyCost += chunkUsed * energyCosts.getSHA3_WORD();
-					break;
-				case CALLDATACOPY:
-				case RETURNDATACOPY:
-					energyCost = calcMemEnergy(energyCosts, oldMemSize,
-						memNeeded(stack.peek(), stack.get(stack.size() - 3)),
-						stack.get(stack.size() - 3).longValueSafe(), op);
-					break;
-				case CODECOPY:
-					energyCost = calcMemEnergy(energyCosts, oldMemSize,
-						memNeeded(stack.peek(), stack.get(stack.size() - 3)),
-						stack.get(stack.size() - 3).longValueSafe(), op);
-					break;
-				case EXTCODESIZE:
-					energyCost = energyCosts.getEXT_CODE_SIZE();
-					break;
-				case EXTCODECOPY:
-					energyCost = energyCosts.getEXT_CODE_COPY() + calcMemEnergy(energyCosts, oldMemSize,
-						memNeeded(stack.get(stack.size() - 2), stack.get(stack.size() - 4)),
-						stack.get(stack.size() - 4).longValueSafe(), op);
-					break;
-				case EXTCODEHASH:
-					energyCost = energyCosts.getEXT_CODE_HASH();
-					break;
-				case CALL:
-				case CALLCODE:
-				case DELEGATECALL:
-				case STATICCALL:
-				case CALLTOKEN:
-					// here, contract call an other contract, or a library, and so on
-					energyCost = energyCosts.getCALL();
-					DataWord callEnergyWord = stack.get(stack.size() - 1);
-					DataWord callAddressWord = stack.get(stack.size() - 2);
-					DataWord value = op.callHasValue() ? stack.get(stack.size() - 3) : DataWord.ZERO;
-
-					//check to see if account does not exist and is not a precompiled contract
-					if (op == CALL || op == CALLTOKEN) {
-						if (isDeadAccount(program, callAddressWord) && !value.isZero()) {
-							energyCost += energyCosts.getNEW_ACCT_CALL();
+			if (energyCost == Instructions.DYNAMIC_ENERGY) {
+				energyCost = op.getTier().asInt();
+				switch (op) {
+					case STOP:
+						energyCost = energyCosts.getSTOP();
+						break;
+					case SUICIDE:
+						energyCost = energyCosts.getSUICIDE();
+						DataWord suicideAddressWord = stack.get(stack.size() - 1);
+						if (isDeadAccount(program, suicideAddressWord) &&
+							!program.getBalance(program.getContractAddress()).isZero()) {
+							energyCost += energyCosts.getNEW_ACCT_SUICIDE();
+						}
+						break;
+					case SSTORE:
+						// todo: check the reset to 0, refund or not
+						DataWord newValue = stack.get(stack.size() - 2);
+						DataWord oldValue = program.storageLoad(stack.peek());
+						if (oldValue == null && !newValue.isZero()) {
+							// set a new not-zero value
+							energyCost = energyCosts.getSET_SSTORE();
+						} else if (oldValue != null && newValue.isZero()) {
+							// set zero to an old value
+							program.futureRefundEnergy(energyCosts.getREFUND_SSTORE());
+							energyCost = energyCosts.getCLEAR_SSTORE();
+						} else {
+							// include:
+							// [1] oldValue == null && newValue == 0
+							// [2] oldValue != null && newValue != 0
+							energyCost = energyCosts.getRESET_SSTORE();
+						}
+						break;
+					case SLOAD:
+						energyCost = energyCosts.getSLOAD();
+						break;
+					case TOKENBALANCE:
+					case BALANCE:
+						energyCost = energyCosts.getBALANCE();
+						break;
+
+					// These all operate on memory and therefore potentially expand it:
+					case MSTORE:
+						energyCost = calcMemEnergy(energyCosts, oldMemSize,
+							memNeeded(stack.peek(), new DataWord(32)),
+							0, op);
+						break;
+					case MSTORE8:
+						energyCost = calcMemEnergy(energyCosts, oldMemSize,
+							memNeeded(stack.peek(), new DataWord(1)),
+							0, op);
+						break;
+					case MLOAD:
+						energyCost = calcMemEnergy(energyCosts, oldMemSize,
+							memNeeded(stack.peek(), new DataWord(32)),
+							0, op);
+						break;
+					case RETURN:
+					case REVERT:
+						energyCost = energyCosts.getSTOP() + calcMemEnergy(energyCosts, oldMemSize,
+							memNeeded(stack.peek(), stack.get(stack.size() - 2)), 0, op);
+						break;
+					case SHA3:
+						energyCost = energyCosts.getSHA3() + calcMemEnergy(energyCosts, oldMemSize,
+							memNeeded(stack.peek(), stack.get(stack.size() - 2)), 0, op);
+						DataWord size = stack.get(stack.size() - 2);
+						long chunkUsed = (size.longValueSafe() + 31) / 32;
+						energyCost += chunkUsed * energyCosts.getSHA3_WORD();
+						break;
+					case CALLDATACOPY:
+					case RETURNDATACOPY:
+						energyCost = calcMemEnergy(energyCosts, oldMemSize,
+							memNeeded(stack.peek(), stack.get(stack.size() - 3)),
+							stack.get(stack.size() - 3).longValueSafe(), op);
+						break;
+					case CODECOPY:
+						energyCost = calcMemEnergy(energyCosts, oldMemSize,
+							memNeeded(stack.peek(), stack.get(stack.size() - 3)),
+							stack.get(stack.size() - 3).longValueSafe(), op);
+						break;
+					case EXTCODESIZE:
+						energyCost = energyCosts.getEXT_CODE_SIZE();
+						break;
+					case EXTCODECOPY:
+						energyCost = energyCosts.getEXT_CODE_COPY() + calcMemEnergy(energyCosts, oldMemSize,
+							memNeeded(stack.get(stack.size() - 2), stack.get(stack.size() - 4)),
+							stack.get(stack.size() - 4).longValueSafe(), op);
+						break;
+					case EXTCODEHASH:
+						energyCost = energyCosts.getEXT_CODE_HASH();
+						break;
+					case CALL:
+					case CALLCODE:
+					case DELEGATECALL:
+					case STATICCALL:
+					case CALLTOKEN:
+						// here, contract call an other contract, or a library, and so on
+						energyCost = energyCosts.getCALL();
+						DataWord callEnergyWord = stack.get(stack.size() - 1);
+						DataWord callAddressWord = stack.get(stack.size() - 2);
+						DataWord value = op.callHasValue() ? stack.get(stack.size() - 3) : DataWord.ZERO;
+
+						//check to see if account does not exist and is not a precompiled contract
+						if (op == CALL || op == CALLTOKEN) {
+							if (isDeadAccount(program, callAddressWord) && !value.isZero()) {
+								energyCost += energyCosts.getNEW_ACCT_CALL();
+							}
 						}
-					}
-
-					// TODO #POC9 Make sure this is converted to BigInteger (256num support)
-					if (!value.isZero()) {
-						energyCost += energyCosts.getVT_CALL();
-					}
 
-					int opOff = op.callHasValue() ? 4 : 3;
-					if (op == CALLTOKEN) {
-						opOff++;
-					}
-					BigInteger in = memNeeded(stack.get(stack.size() - opOff),
-						stack.get(stack.size() - opOff - 1)); // in offset+size
-					BigInteger out = memNeeded(stack.get(stack.size() - opOff - 2),
-						stack.get(stack.size() - opOff - 3)); // out offset+size
-					energyCost += calcMemEnergy(energyCosts, oldMemSize, in.max(out), 0, op);
-					checkMemorySize(op, in.max(out));
-
-					if (energyCost > program.getEnergyLimitLeft().longValueSafe()) {
-						throw new OutOfEnergyException(
-							"Not enough energy for '%s' operation executing: opEnergy[%d], programEnergy[%d]",
-							op.name(),
-							energyCost, program.getEnergyLimitLeft().longValueSafe());
-					}
-					DataWord getEnergyLimitLeft = program.getEnergyLimitLeft().clone();
-					getEnergyLimitLeft.sub(new DataWord(energyCost));
-
-					adjustedCallEnergy = program.getCallEnergy(op, callEnergyWord, getEnergyLimitLeft);
-					energyCost += adjustedCallEnergy.longValueSafe();
-					break;
-				case CREATE:
-					energyCost = energyCosts.getCREATE() + calcMemEnergy(energyCosts, oldMemSize,
-						memNeeded(stack.get(stack.size() - 2), stack.get(stack.size() - 3)), 0, op);
-					break;
-				case CREATE2:
-					DataWord codeSize = stack.get(stack.size() - 3);
-					energyCost = energyCosts.getCREATE();
-					energyCost += calcMemEnergy(energyCosts, oldMemSize,
-						memNeeded(stack.get(stack.size() - 2), stack.get(stack.size() - 3)), 0, op);
-					energyCost += DataWord.sizeInWords(codeSize.intValueSafe()) * energyCosts.getSHA3_WORD();
-					break;
-				case LOG0:
-				case LOG1:
-				case LOG2:
-				case LOG3:
-				case LOG4:
-					int nTopics = op.val() - OpCode.LOG0.val();
-					BigInteger dataSize = stack.get(stack.size() - 2).value();
-					BigInteger dataCost = dataSize
-						.multiply(BigInteger.valueOf(energyCosts.getLOG_DATA_ENERGY()));
-					if (program.getEnergyLimitLeft().value().compareTo(dataCost) < 0) {
-						throw new OutOfEnergyException(
-							"Not enough energy for '%s' operation executing: opEnergy[%d], programEnergy[%d]",
-							op.name(),
-							dataCost.longValueExact(), program.getEnergyLimitLeft().longValueSafe());
-					}
-					energyCost = energyCosts.getLOG_ENERGY()
-						+ energyCosts.getLOG_TOPIC_ENERGY() * nTopics
-						+ energyCosts.getLOG_DATA_ENERGY() * stack.get(stack.size() - 2).longValue()
-						+ calcMemEnergy(energyCosts, oldMemSize,
-						memNeeded(stack.peek(), stack.get(stack.size() - 2)), 0, op);
-
-					checkMemorySize(op, memNeeded(stack.peek(), stack.get(stack.size() - 2)));
-					break;
-				case EXP:
+						// TODO #POC9 Make sure this is converted to BigInteger (256num support)
+						if (!value.isZero()) {
+							energyCost += energyCosts.getVT_CALL();
+						}
 
-					DataWord exp = stack.get(stack.size() - 2);
-					int bytesOccupied = exp.bytesOccupied();
-					energyCost =
-						(long) energyCosts.getEXP_ENERGY() + energyCosts.getEXP_BYTE_ENERGY() * bytesOccupied;
-					break;
-				default:
-					break;
+						int opOff = op.callHasValue() ? 4 : 3;
+						if (op == CALLTOKEN) {
+							opOff++;
+						}
+						BigInteger in = memNeeded(stack.get(stack.size() - opOff),
+							stack.get(stack.size() - opOff - 1)); // in offset+size
+						BigInteger out = memNeeded(stack.get(stack.size() - opOff - 2),
+							stack.get(stack.size() - opOff - 3)); // out offset+size
+						energyCost += calcMemEnergy(energyCosts, oldMemSize, in.max(out), 0, op);
+						checkMemorySize(op, in.max(out));
+
+						if (energyCost > program.getEnergyLimitLeft().longValueSafe()) {
+							throw new OutOfEnergyException(
+								"Not enough energy for '%s' operation executing: opEnergy[%d], programEnergy[%d]",
+								op.name(),
+								energyCost, program.getEnergyLimitLeft().longValueSafe());
+						}
+						DataWord getEnergyLimitLeft = program.getEnergyLimitLeft().clone();
+						getEnergyLimitLeft.sub(new DataWord(energyCost));
+
+						adjustedCallEnergy = program.getCallEnergy(op, callEnergyWord, getEnergyLimitLeft);
+						energyCost += adjustedCallEnergy.longValueSafe();
+						break;
+					case CREATE:
+						energyCost = energyCosts.getCREATE() + calcMemEnergy(energyCosts, oldMemSize,
+							memNeeded(stack.get(stack.size() - 2), stack.get(stack.size() - 3)), 0, op);
+						break;
+					case CREATE2:
+						DataWord codeSize = stack.get(stack.size() - 3);
+						energyCost = energyCosts.getCREATE();
+						energyCost += calcMemEnergy(energyCosts, oldMemSize,
+							memNeeded(stack.get(stack.size() - 2), stack.get(stack.size() - 3)), 0, op);
+						energyCost += DataWord.sizeInWords(codeSize.intValueSafe()) * energyCosts.getSHA3_WORD();
+						break;
+					case LOG0:
+					case LOG1:
+					case LOG2:
+					case LOG3:
+					case LOG4:
+						int nTopics = op.val() - OpCode.LOG0.val();
+						BigInteger dataSize = stack.get(stack.size() - 2).value();
+						BigInteger dataCost = dataSize
+							.multiply(BigInteger.valueOf(energyCosts.getLOG_DATA_ENERGY()));
+						if (program.getEnergyLimitLeft().value().compareTo(dataCost) < 0) {
+							throw new OutOfEnergyException(
+								"Not enough energy for '%s' operation executing: opEnergy[%d], programEnergy[%d]",
+								op.name(),
+								dataCost.longValueExact(), program.getEnergyLimitLeft().longValueSafe());
+						}
+						energyCost = energyCosts.getLOG_ENERGY()
+							+ energyCosts.getLOG_TOPIC_ENERGY() * nTopics
+							+ energyCosts.getLOG_DATA_ENERGY() * stack.get(stack.size() - 2).longValue()
+							+ calcMemEnergy(energyCosts, oldMemSize,
+							memNeeded(stack.peek(), stack.get(stack.size() - 2)), 0, op);
+
+						checkMemorySize(op, memNeeded(stack.peek(), stack.get(stack.size() - 2)));
+						break;
+					case EXP:
+
+						DataWord exp = stack.get(stack.size() - 2);
+						int bytesOccupied = exp.bytesOccupied();
+						energyCost =
+							(long) energyCosts.getEXP_ENERGY() + energyCosts.getEXP_BYTE_ENERGY() * bytesOccupied;
+						break;
+					default:
+						break;
+				}
 			}
 
 			program.spendEnergy(energyCost, op.name());
@@ -415,14 +434,14 @@ public class VM {
 				break;
 				case SIGNEXTEND: {
 					DataWord word1 = program.stackPop();
-					BigInteger k = word1.value();
+					int k = word1.intValueSafe();
 
-					if (k.compareTo(_32_) < 0) {
+					if (k < 32) {
 						DataWord word2 = program.stackPop();
 						if (logger.isDebugEnabled()) {
 							hint = word1 + "  " + word2.value();
 						}
-						word2.signExtend(k.byteValue());
+						word2.signExtend((byte) k);
 						program.stackPush(word2);
 					}
 					program.step();
@@ -441,7 +460,6 @@ public class VM {
 				}
 				break;
 				case LT: {
-					// TODO: can be improved by not using BigInteger
 					DataWord word1 = program.stackPop();
 					DataWord word2 = program.stackPop();
 
@@ -449,7 +467,7 @@ public class VM {
 						hint = word1.value() + " < " + word2.value();
 					}
 
-					if (word1.value().compareTo(word2.value()) < 0) {
+					if (word1.compareTo(word2) < 0) {
 						word1.and(DataWord.ZERO);
 						word1.getData()[31] = 1;
 					} else {
@@ -460,7 +478,6 @@ public class VM {
 				}
 				break;
 				case SLT: {
-					// TODO: can be improved by not using BigInteger
 					DataWord word1 = program.stackPop();
 					DataWord word2 = program.stackPop();
 
@@ -468,7 +485,7 @@ public class VM {
 						hint = word1.sValue() + " < " + word2.sValue();
 					}
 
-					if (word1.sValue().compareTo(word2.sValue()) < 0) {
+					if (word1.sCompareTo(word2) < 0) {
 						word1.and(DataWord.ZERO);
 						word1.getData()[31] = 1;
 					} else {
@@ -479,7 +496,6 @@ public class VM {
 				}
 				break;
 				case SGT: {
-					// TODO: can be improved by not using BigInteger
 					DataWord word1 = program.stackPop();
 					DataWord word2 = program.stackPop();
 
@@ -487,7 +503,7 @@ public class VM {
 						hint = word1.sValue() + " > " + word2.sValue();
 					}
 
-					if (word1.sValue().compareTo(word2.sValue()) > 0) {
+					if (word1.sCompareTo(word2) > 0) {
 						word1.and(DataWord.ZERO);
 						word1.getData()[31] = 1;
 					} else {
@@ -498,7 +514,6 @@ public class VM {
 				}
 				break;
 				case GT: {
-					// TODO: can be improved by not using BigInteger
 					DataWord word1 = program.stackPop();
 					DataWord word2 = program.stackPop();
 
@@ -506,7 +521,7 @@ public class VM {
 						hint = word1.value() + " > " + word2.value();
 					}
 
-					if (word1.value().compareTo(word2.value()) > 0) {
+					if (word1.compareTo(word2) > 0) {
 						word1.and(DataWord.ZERO);
 						word1.getData()[31] = 1;
 					} else {
@@ -597,7 +612,7 @@ public class VM {
 					DataWord word1 = program.stackPop();
 					DataWord word2 = program.stackPop();
 					final DataWord result;
-					if (word1.value().compareTo(_32_) < 0) {
+					if (word1.intValueSafe() < 32) {
 						byte tmp = word2.getData()[word1.intValue()];
 						word2.and(DataWord.ZERO);
 						word2.getData()[31] = tmp;
@@ -678,10 +693,8 @@ public class VM {
 				case SHA3: {
 					DataWord memOffsetData = program.stackPop();
 					DataWord lengthData = program.stackPop();
-					byte[] buffer = program
-						.memoryChunk(memOffsetData.intValueSafe(), lengthData.intValueSafe());
-
-					byte[] encoded = sha3(buffer);
+					byte[] encoded = program
+						.memorySha3(memOffsetData.intValueSafe(), lengthData.intValueSafe());
 					DataWord word = new DataWord(encoded);
 
 					if (logger.isDebugEnabled()) {
@@ -1185,7 +1198,6 @@ public class VM {
 				}
 				break;
 				case PC: {
-					int pc = program.getPC();
 					DataWord pcWord = new DataWord(pc);
 
 					if (logger.isDebugEnabled()) {
@@ -1251,13 +1263,20 @@ public class VM {
 				case PUSH30:
 				case PUSH31:
 				case PUSH32: {
-					program.step();
 					int nPush = op.val() - PUSH1.val() + 1;
 
-					byte[] data = program.sweep(nPush);
+					byte[] data;
+					byte[] immediate = instructions == null ? null : instructions.getImmediate(pc);
+					if (immediate != null) {
+						data = immediate.clone();
+						program.setPC(pc + 1 + nPush);
+					} else {
+						program.step();
+						data = program.sweep(nPush);
+					}
 
 					if (logger.isDebugEnabled()) {
-						hint = "" + Hex.toHexString(data);
+						hint = "" + Hex.toHexString(data, data.length - nPush, nPush);
 					}
 
 					program.stackPush(data);
@@ -1433,8 +1452,10 @@ public class VM {
 				return;
 			}
 
+			// the pre-decoded interpreter decodes once for the whole run
+			Instructions instructions = config.vmPreDecoded() ? program.getInstructions() : null;
 			while (!program.isStopped()) {
-				this.step(program);
+				this.step(program, instructions);
 			}
 
 		} catch (JVMStackOverFlowException | OutOfTimeException e) {
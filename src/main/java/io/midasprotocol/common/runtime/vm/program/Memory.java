@@ -17,25 +17,33 @@
  */
 package io.midasprotocol.common.runtime.vm.program;
 
+import io.midasprotocol.common.crypto.Hash;
 import io.midasprotocol.common.runtime.vm.DataWord;
 import io.midasprotocol.common.runtime.vm.program.listener.ProgramListener;
 import io.midasprotocol.common.runtime.vm.program.listener.ProgramListenerAware;
 
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static io.midasprotocol.common.utils.ByteUtil.EMPTY_BYTE_ARRAY;
 import static io.midasprotocol.common.utils.ByteUtil.oneByteToHexString;
 import static java.lang.Math.ceil;
-import static java.lang.Math.min;
 import static java.lang.String.format;
 
+/**
+ * The memory of a program in one contiguous array, grown by doubling. The memory is extended in
+ * chunks of {@link #CHUNK_SIZE} bytes, which is what {@link #internalSize()} reports, the array may
+ * be larger.
+ */
 public class Memory implements ProgramListenerAware {
 
 	private static final int CHUNK_SIZE = 1024;
 	private static final int WORD_SIZE = 32;
 
-	private List<byte[]> chunks = new LinkedList<>();
+	private byte[] buffer = EMPTY_BYTE_ARRAY;
+	private int allocatedSize;
 	private int softSize;
 	private ProgramListener programListener;
 
@@ -50,27 +58,33 @@ public class Memory implements ProgramListenerAware {
 		}
 
 		extend(address, size);
-		byte[] data = new byte[size];
-
-		int chunkIndex = address / CHUNK_SIZE;
-		int chunkOffset = address % CHUNK_SIZE;
-
-		int toGrab = data.length;
-		int start = 0;
+		return Arrays.copyOfRange(buffer, address, address + size);
+	}
 
-		while (toGrab > 0) {
-			int copied = grabMax(chunkIndex, chunkOffset, toGrab, data, start);
+	/**
+	 * A read only view of the memory, valid until the memory is written or extended again. The
+	 * memory is extended as by {@link #read(int, int)}.
+	 */
+	public ByteBuffer slice(int address, int size) {
+		if (size <= 0) {
+			return ByteBuffer.wrap(EMPTY_BYTE_ARRAY).asReadOnlyBuffer();
+		}
 
-			// read next chunk from the start
-			++chunkIndex;
-			chunkOffset = 0;
+		extend(address, size);
+		return ByteBuffer.wrap(buffer, address, size).slice().asReadOnlyBuffer();
+	}
 
-			// mark remind
-			toGrab -= copied;
-			start += copied;
+	/**
+	 * Hashes memory straight out of the backing array. The memory is extended as by
+	 * {@link #read(int, int)}.
+	 */
+	public byte[] sha3(int address, int size) {
+		if (size <= 0) {
+			return Hash.sha3(EMPTY_BYTE_ARRAY);
 		}
 
-		return data;
+		extend(address, size);
+		return Hash.sha3(buffer, address, size);
 	}
 
 	public void write(int address, byte[] data, int dataSize, boolean limited) {
@@ -83,9 +97,6 @@ public class Memory implements ProgramListenerAware {
 			extend(address, dataSize);
 		}
 
-		int chunkIndex = address / CHUNK_SIZE;
-		int chunkOffset = address % CHUNK_SIZE;
-
 		int toCapture = 0;
 		if (limited) {
 			toCapture = (address + dataSize > softSize) ? softSize - address : dataSize;
@@ -93,17 +104,8 @@ public class Memory implements ProgramListenerAware {
 			toCapture = dataSize;
 		}
 
-		int start = 0;
-		while (toCapture > 0) {
-			int captured = captureMax(chunkIndex, chunkOffset, toCapture, data, start);
-
-			// capture next chunk
-			++chunkIndex;
-			chunkOffset = 0;
-
-			// mark remind
-			toCapture -= captured;
-			start += captured;
+		if (toCapture > 0) {
+			System.arraycopy(data, 0, buffer, address, toCapture);
 		}
 
 		if (programListener != null) {
@@ -125,7 +127,9 @@ public class Memory implements ProgramListenerAware {
 		final int newSize = Math.addExact(address, size);
 		int toAllocate = newSize - internalSize();
 		if (toAllocate > 0) {
-			addChunks((int) ceil((double) toAllocate / CHUNK_SIZE));
+			allocatedSize = Math.addExact(allocatedSize,
+				(int) ceil((double) toAllocate / CHUNK_SIZE) * CHUNK_SIZE);
+			ensureCapacity(allocatedSize);
 		}
 
 		toAllocate = newSize - softSize;
@@ -139,21 +143,32 @@ public class Memory implements ProgramListenerAware {
 		}
 	}
 
-	public DataWord readWord(int address) {
-		return new DataWord(read(address, 32));
+	private void ensureCapacity(int capacity) {
+		if (capacity > buffer.length) {
+			int doubled = buffer.length > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : buffer.length * 2;
+			buffer = Arrays.copyOf(buffer, Math.max(capacity, doubled));
+		}
 	}
 
-	// just access expecting all data valid
-	public byte readByte(int address) {
-
-		int chunkIndex = address / CHUNK_SIZE;
-		int chunkOffset = address % CHUNK_SIZE;
+	public DataWord readWord(int address) {
+		extend(address, WORD_SIZE);
+		return new DataWord(Arrays.copyOfRange(buffer, address, address + WORD_SIZE));
+	}
 
-		byte[] chunk = chunks.get(chunkIndex);
+	public void writeWord(int address, DataWord word) {
+		byte[] data = word.getData();
+		extend(address, WORD_SIZE);
+		System.arraycopy(data, 0, buffer, address, WORD_SIZE);
 
-		return chunk[chunkOffset];
+		if (programListener != null) {
+			programListener.onMemoryWrite(address, data, WORD_SIZE);
+		}
 	}
 
+	// just access expecting all data valid
+	public byte readByte(int address) {
+		return buffer[address];
+	}
 	@Override
 	public String toString() {
 
@@ -192,35 +207,17 @@ public class Memory implements ProgramListenerAware {
 	}
 
 	public int internalSize() {
-		return chunks.size() * CHUNK_SIZE;
+		return allocatedSize;
 	}
 
+	/**
+	 * @return copies of the allocated memory in chunks of {@link #CHUNK_SIZE} bytes
+	 */
 	public List<byte[]> getChunks() {
-		return new LinkedList<>(chunks);
-	}
-
-	private int captureMax(int chunkIndex, int chunkOffset, int size, byte[] src, int srcPos) {
-
-		byte[] chunk = chunks.get(chunkIndex);
-		int toCapture = min(size, chunk.length - chunkOffset);
-
-		System.arraycopy(src, srcPos, chunk, chunkOffset, toCapture);
-		return toCapture;
-	}
-
-	private int grabMax(int chunkIndex, int chunkOffset, int size, byte[] dest, int destPos) {
-
-		byte[] chunk = chunks.get(chunkIndex);
-		int toGrab = min(size, chunk.length - chunkOffset);
-
-		System.arraycopy(chunk, chunkOffset, dest, destPos, toGrab);
-
-		return toGrab;
-	}
-
-	private void addChunks(int num) {
-		for (int i = 0; i < num; ++i) {
-			chunks.add(new byte[CHUNK_SIZE]);
+		List<byte[]> chunks = new ArrayList<>();
+		for (int offset = 0; offset < allocatedSize; offset += CHUNK_SIZE) {
+			chunks.add(Arrays.copyOfRange(buffer, offset, offset + CHUNK_SIZE));
 		}
+		return chunks;
 	}
 }
@@ -71,7 +71,7 @@ public class Program {
 	public static final String VALIDATE_FOR_SMART_CONTRACT_FAILURE = "validateForSmartContract failure";
 	private static final int MAX_DEPTH = 64;
 	//Max size for stack checks
-	private static final int MAX_STACK_SIZE = 1024;
+	private static final int MAX_STACK_SIZE = Stack.MAX_SIZE;
 	private final VMConfig config;
 	private BlockCapsule blockCap;
 	private long nonce;
@@ -95,6 +95,7 @@ public class Program {
 	private byte previouslyExecutedOp;
 	private boolean stopped;
 	private ProgramPrecompile programPrecompile;
+	private byte[] codeAddress;
 
 	public Program(byte[] ops, ProgramInvoke programInvoke) {
 		this(ops, programInvoke, null);
@@ -114,7 +115,8 @@ public class Program {
 
 		traceListener = new ProgramTraceListener(config.vmTrace());
 		this.memory = setupProgramListener(new Memory());
-		this.stack = setupProgramListener(new Stack());
+		// only the trace listens to the stack
+		this.stack = config.vmTrace() ? setupProgramListener(new Stack()) : new Stack();
 		this.contractState = setupProgramListener(new ContractState(programInvoke));
 		this.trace = new ProgramTrace(config, programInvoke);
 		this.nonce = internalTransaction.getNonce();
@@ -274,13 +276,26 @@ public class Program {
 		nonce = nonceValue;
 	}
 
+	/**
+	 * Lets the analysis of the code come from {@link ProgramPrecompileCache}, for code deployed at
+	 * codeAddress. Init code has no address and is analyzed on every run.
+	 */
+	public void setCodeAddress(byte[] codeAddress) {
+		this.codeAddress = codeAddress;
+	}
+
 	public ProgramPrecompile getProgramPrecompile() {
 		if (programPrecompile == null) {
-			programPrecompile = ProgramPrecompile.compile(ops);
+			programPrecompile = codeAddress == null ? ProgramPrecompile.compile(ops)
+				: ProgramPrecompileCache.getInstance().get(codeAddress, ops);
 		}
 		return programPrecompile;
 	}
 
+	public Instructions getInstructions() {
+		return getProgramPrecompile().getInstructions(ops);
+	}
+
 	public int getCallDeep() {
 		return invoke.getCallDeep();
 	}
@@ -444,7 +459,7 @@ public class Program {
 	}
 
 	public void memorySave(DataWord addrB, DataWord value) {
-		memory.write(addrB.intValue(), value.getData(), value.getData().length, false);
+		memory.writeWord(addrB.intValue(), value);
 	}
 
 	public void memorySaveLimited(int addr, byte[] data, int dataSize) {
@@ -484,6 +499,13 @@ public class Program {
 		return memory.read(offset, size);
 	}
 
+	/**
+	 * Hashes a piece of memory in place, extending the memory like {@link #memoryChunk(int, int)}
+	 */
+	public byte[] memorySha3(int offset, int size) {
+		return memory.sha3(offset, size);
+	}
+
 	/**
 	 * Allocates extra memory in the program for a specified size, calculated from a given offset
 	 *
@@ -822,6 +844,7 @@ public class Program {
 			Program program = new Program(programCode, programInvoke, internalTx, config,
 				this.blockCap);
 			program.setRootTransactionId(this.rootTransactionId);
+			program.setCodeAddress(codeAddress);
 			vm.play(program);
 			callResult = program.getResult();
 
@@ -18,11 +18,11 @@
 package io.midasprotocol.common.runtime.vm.program;
 
 import io.midasprotocol.common.runtime.vm.DataWord;
+import io.midasprotocol.common.runtime.vm.Instructions;
 import io.midasprotocol.common.runtime.vm.OpCode;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.BitSet;
 
 
 @Slf4j(topic = "VM")
@@ -31,7 +31,8 @@ import java.util.Set;
  */
 public class ProgramPrecompile {
 
-	private Set<Integer> jumpdest = new HashSet<>();
+	private BitSet jumpdest = new BitSet();
+	private volatile Instructions instructions;
 
 	public static ProgramPrecompile compile(byte[] ops) {
 		ProgramPrecompile ret = new ProgramPrecompile();
@@ -43,8 +44,8 @@ public class ProgramPrecompile {
 			}
 
 			if (op.equals(OpCode.JUMPDEST)) {
-				logger.debug("JUMPDEST:" + i);
-				ret.jumpdest.add(i);
+				logger.debug("JUMPDEST: {}", i);
+				ret.jumpdest.set(i);
 			}
 
 			if (op.asInt() >= OpCode.PUSH1.asInt() && op.asInt() <= OpCode.PUSH32.asInt()) {
@@ -84,6 +85,26 @@ public class ProgramPrecompile {
 	}
 
 	public boolean hasJumpDest(int pc) {
-		return jumpdest.contains(pc);
+		return pc >= 0 && jumpdest.get(pc);
+	}
+
+	/**
+	 * @param ops the code this was compiled from
+	 * @return ops decoded for the active fork configuration, kept until the configuration changes
+	 */
+	public Instructions getInstructions(byte[] ops) {
+		Instructions decoded = instructions;
+		if (decoded == null || !decoded.isCurrent()) {
+			decoded = Instructions.decode(ops);
+			instructions = decoded;
+		}
+		return decoded;
+	}
+
+	/**
+	 * @return the size of the JUMPDEST bitmap in bytes
+	 */
+	public int getJumpDestBytes() {
+		return jumpdest.size() / 8;
 	}
 }
@@ -0,0 +1,108 @@
+package io.midasprotocol.common.runtime.vm.program;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.midasprotocol.common.runtime.config.VMConfig;
+import io.midasprotocol.common.runtime.vm.Instructions;
+import io.midasprotocol.core.db.common.WrappedByteArray;
+import lombok.AllArgsConstructor;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The analyzed code of contracts, shared by all transactions. An entry is keyed by the address
+ * of the code and holds the code it was analyzed from, a hit requires the code now in the
+ * deposit to be byte-equal to it. Comparing is cheaper than hashing the code to key by hash, and
+ * code deployed, destroyed or revoked at an address is simply a miss. Deploy and suicide
+ * invalidate the address anyway to free the memory early.
+ */
+public class ProgramPrecompileCache {
+
+	private static final long MAX_WEIGHT = 64L * 1024 * 1024;
+	// roughly what an entry costs besides the code and the bitmap
+	private static final int ENTRY_OVERHEAD = 128;
+
+	private static final ProgramPrecompileCache INSTANCE = new ProgramPrecompileCache(MAX_WEIGHT);
+
+	private Cache<WrappedByteArray, Entry> cache;
+	private LongAdder hitCount = new LongAdder();
+	private LongAdder missCount = new LongAdder();
+	private LongAdder weight = new LongAdder();
+
+	public ProgramPrecompileCache(long maxWeight) {
+		this.cache = CacheBuilder.newBuilder()
+			.maximumWeight(maxWeight)
+			.weigher((WrappedByteArray key, Entry entry) -> entry.weight)
+			.removalListener(notification -> weight.add(-notification.getValue().weight))
+			.build();
+	}
+
+	public static ProgramPrecompileCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @param code the code at address as currently visible in the deposit
+	 * @return the analysis of code, from the cache if it holds the same code for address
+	 */
+	public ProgramPrecompile get(byte[] address, byte[] code) {
+		Entry entry = cache.getIfPresent(WrappedByteArray.of(address));
+		if (entry != null && Arrays.equals(entry.code, code)) {
+			hitCount.increment();
+			return entry.precompile;
+		}
+		missCount.increment();
+		ProgramPrecompile precompile = ProgramPrecompile.compile(code);
+		int entryWeight = ENTRY_OVERHEAD + code.length + precompile.getJumpDestBytes();
+		if (VMConfig.getInstance().vmPreDecoded()) {
+			// decoded now rather than on the first step, to be weighed as decoded
+			entryWeight += precompile.getInstructions(code).getWeight();
+		}
+		entry = new Entry(code.clone(), precompile, entryWeight);
+		weight.add(entry.weight);
+		cache.put(WrappedByteArray.copyOf(address), entry);
+		return precompile;
+	}
+
+	public void invalidate(byte[] address) {
+		cache.invalidate(WrappedByteArray.of(address));
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	public double getHitRate() {
+		long hit = getHitCount();
+		long total = hit + getMissCount();
+		return total == 0 ? 1.0 : (double) hit / total;
+	}
+
+	public long size() {
+		return cache.size();
+	}
+
+	/**
+	 * @return the estimated bytes held by the cached entries
+	 */
+	public long getWeight() {
+		return weight.sum();
+	}
+
+	@AllArgsConstructor
+	private static class Entry {
+
+		private byte[] code;
+		private ProgramPrecompile precompile;
+		private int weight;
+	}
+}
@@ -21,33 +21,72 @@ import io.midasprotocol.common.runtime.vm.DataWord;
 import io.midasprotocol.common.runtime.vm.program.listener.ProgramListener;
 import io.midasprotocol.common.runtime.vm.program.listener.ProgramListenerAware;
 
+import java.util.Arrays;
+import java.util.EmptyStackException;
 import java.util.Objects;
 
-public class Stack extends java.util.Stack<DataWord> implements ProgramListenerAware {
+/**
+ * The operand stack of a program, a fixed array of {@link #MAX_SIZE} slots. A program runs on a
+ * single thread, so nothing here is synchronized. Pushing onto a full stack fails with an
+ * ArrayIndexOutOfBoundsException, the program checks the limit before every push.
+ */
+public class Stack implements ProgramListenerAware {
+
+	public static final int MAX_SIZE = 1024;
 
-	private static final long serialVersionUID = 1;
+	private final DataWord[] words = new DataWord[MAX_SIZE];
+	private int size;
 
-	private transient ProgramListener programListener;
+	private ProgramListener programListener;
 
 	@Override
 	public void setProgramListener(ProgramListener listener) {
 		this.programListener = listener;
 	}
 
-	@Override
-	public synchronized DataWord pop() {
+	public DataWord pop() {
+		if (size == 0) {
+			throw new EmptyStackException();
+		}
 		if (programListener != null) {
 			programListener.onStackPop();
 		}
-		return super.pop();
+		DataWord item = words[--size];
+		words[size] = null;
+		return item;
 	}
 
-	@Override
 	public DataWord push(DataWord item) {
 		if (programListener != null) {
 			programListener.onStackPush(item);
 		}
-		return super.push(item);
+		words[size++] = item;
+		return item;
+	}
+
+	public DataWord peek() {
+		if (size == 0) {
+			throw new EmptyStackException();
+		}
+		return words[size - 1];
+	}
+
+	/**
+	 * @param index from the bottom of the stack
+	 */
+	public DataWord get(int index) {
+		checkIndex(index);
+		return words[index];
+	}
+
+	/**
+	 * @return the word that was at the index
+	 */
+	public DataWord set(int index, DataWord item) {
+		checkIndex(index);
+		DataWord old = words[index];
+		words[index] = item;
+		return old;
 	}
 
 	public void swap(int from, int to) {
@@ -55,8 +94,23 @@ public class Stack extends java.util.Stack<DataWord> implements ProgramListenerA
 			if (programListener != null) {
 				programListener.onStackSwap(from, to);
 			}
-			DataWord tmp = get(from);
-			set(from, set(to, tmp));
+			DataWord tmp = words[from];
+			words[from] = words[to];
+			words[to] = tmp;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	private void checkIndex(int index) {
+		if (!isAccessible(index)) {
+			throw new ArrayIndexOutOfBoundsException(index);
 		}
 	}
 
@@ -75,16 +129,26 @@ public class Stack extends java.util.Stack<DataWord> implements ProgramListenerA
 		if (o.getClass() != this.getClass()) {
 			return false;
 		}
-		if (!super.equals(o)) {
+		Stack dataWords = (Stack) o;
+		if (size != dataWords.size) {
 			return false;
 		}
-		Stack dataWords = (Stack) o;
+		for (int i = 0; i < size; i++) {
+			if (!Objects.equals(words[i], dataWords.words[i])) {
+				return false;
+			}
+		}
 		return Objects.equals(programListener, dataWords.programListener);
 	}
 
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(super.hashCode(), programListener);
+		return Objects.hash(Arrays.hashCode(Arrays.copyOf(words, size)), programListener);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(Arrays.copyOf(words, size));
 	}
 }
@@ -3,6 +3,7 @@ package io.midasprotocol.common.storage;
 import com.google.common.primitives.Longs;
 import com.google.protobuf.ByteString;
 import io.midasprotocol.common.runtime.vm.DataWord;
+import io.midasprotocol.common.runtime.vm.program.ProgramPrecompileCache;
 import io.midasprotocol.common.runtime.vm.program.Storage;
 import io.midasprotocol.common.utils.ByteArray;
 import io.midasprotocol.common.utils.StringUtil;
@@ -232,6 +233,7 @@ public class DepositImpl implements Deposit {
 	// just for depositRoot
 	@Override
 	public void deleteContract(byte[] address) {
+		ProgramPrecompileCache.getInstance().invalidate(address);
 		getCodeStore().delete(address);
 		getAccountStore().delete(address);
 		getContractStore().delete(address);
@@ -269,6 +271,7 @@ public class DepositImpl implements Deposit {
 		Key key = Key.create(codeHash);
 		Value value = Value.create(code, Type.VALUE_TYPE_CREATE);
 		codeCache.put(key, value);
+		ProgramPrecompileCache.getInstance().invalidate(codeHash);
 	}
 
 	@Override
@@ -282,11 +285,8 @@ public class DepositImpl implements Deposit {
 		if (parent != null) {
 			code = parent.getCode(addr);
 		} else {
-			if (null == getCodeStore().get(addr)) {
-				code = null;
-			} else {
-				code = getCodeStore().get(addr).getData();
-			}
+			CodeCapsule codeCapsule = getCodeStore().get(addr);
+			code = codeCapsule == null ? null : codeCapsule.getData();
 		}
 		if (code != null) {
 			codeCache.put(key, Value.create(code));
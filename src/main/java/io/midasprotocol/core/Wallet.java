@@ -617,8 +617,8 @@ public class Wallet {
 						throw new SignatureFormatException(
 							"Signature size is " + sig.size());
 					}
-					String base64 = TransactionCapsule.getBase64FromByteString(sig);
-					byte[] address = ECKey.signatureToAddress(hash, base64);
+					byte[] address = TransactionCapsule
+						.recoverAddress(hash, TransactionCapsule.toRawSignature(sig));
 					approveList.add(ByteString.copyFrom(address)); //out put approve list.
 				}
 				tswBuilder.addAllApprovedList(approveList);
@@ -1275,11 +1275,10 @@ public class Wallet {
 
 	public BlockRewardList getBlockReward(long blockNumber) {
 		BlockRewardStore blockRewardStore = dbManager.getBlockRewardStore();
-		byte[] key = ByteArray.fromLong(blockNumber);
-		if (!blockRewardStore.has(key)) {
+		List<BlockReward.Reward> rewards = blockRewardStore.getRewards(blockNumber);
+		if (rewards == null) {
 			return null;
 		}
-		List<BlockReward.Reward> rewards = new ArrayList<>(blockRewardStore.get(key).getRewardsList());
 		BlockRewardList.Builder builder = BlockRewardList.newBuilder();
 		builder.addAllRewards(rewards);
 		return builder.build();
@@ -18,6 +18,7 @@ package io.midasprotocol.core.capsule;
 import com.google.common.primitives.Longs;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 import io.midasprotocol.common.crypto.ECKey;
 import io.midasprotocol.common.crypto.ECKey.ECDSASignature;
@@ -40,12 +41,14 @@ import java.security.SignatureException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Vector;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Slf4j(topic = "capsule")
 public class BlockCapsule implements ProtoCapsule<Block> {
 
+	private static final int PARALLEL_HASH_THRESHOLD = 256;
+
 	public boolean generatedByMyself = false;
 	private BlockId blockId = new BlockId(Sha256Hash.ZERO_HASH, 0);
 
@@ -53,6 +56,16 @@ public class BlockCapsule implements ProtoCapsule<Block> {
 	private List<TransactionCapsule> transactions = new ArrayList<>();
 	private StringBuffer toStringBuff = new StringBuffer();
 
+	/**
+	 * transactions appended by addTransaction but not yet packed into the block proto, so that
+	 * filling a block does not copy the whole block once per transaction.
+	 */
+	private List<Transaction> unpackedTransactions = new ArrayList<>();
+	private long serializedSize = -1;
+	// stateless check results, may be computed ahead by another thread, see Manager.precheckBlock
+	private volatile Sha256Hash merkleRoot;
+	private volatile byte[] witnessSignatureAddress;
+
 	public BlockCapsule(long number, Sha256Hash hash, long when, ByteString witnessAddress) {
 		// blockheader raw
 		BlockHeader.Raw.Builder blockHeaderRawBuild = BlockHeader.Raw.newBuilder();
@@ -120,10 +133,38 @@ public class BlockCapsule implements ProtoCapsule<Block> {
 	}
 
 	public void addTransaction(TransactionCapsule pendingTrx) {
-		this.block = this.block.toBuilder().addTransactions(pendingTrx.getInstance()).build();
+		long size = getSerializedSize();
+		unpackedTransactions.add(pendingTrx.getInstance());
+		serializedSize = size + CodedOutputStream.computeMessageSize(
+			Block.TRANSACTIONS_FIELD_NUMBER, pendingTrx.getInstance());
+		merkleRoot = null;
 		getTransactions().add(pendingTrx);
 	}
 
+	/**
+	 * serialized size of the block including transactions that are not packed yet.
+	 */
+	public long getSerializedSize() {
+		if (serializedSize < 0) {
+			serializedSize = this.block.getSerializedSize();
+		}
+		return serializedSize;
+	}
+
+	private void packTransactions() {
+		if (!unpackedTransactions.isEmpty()) {
+			this.block = this.block.toBuilder().addAllTransactions(unpackedTransactions).build();
+			unpackedTransactions.clear();
+		}
+	}
+
+	private void setBlock(Block block) {
+		this.block = block;
+		this.serializedSize = -1;
+		this.merkleRoot = null;
+		this.witnessSignatureAddress = null;
+	}
+
 	public List<TransactionCapsule> getTransactions() {
 		return transactions;
 	}
@@ -143,17 +184,30 @@ public class BlockCapsule implements ProtoCapsule<Block> {
 		BlockHeader blockHeader = this.block.getBlockHeader().toBuilder().setWitnessSignature(sig)
 			.build();
 
-		this.block = this.block.toBuilder().setBlockHeader(blockHeader).build();
+		packTransactions();
+		setBlock(this.block.toBuilder().setBlockHeader(blockHeader).build());
 	}
 
 	private Sha256Hash getRawHash() {
 		return Sha256Hash.of(this.block.getBlockHeader().getRawData().toByteArray());
 	}
 
+	/**
+	 * @return the address recovered from the witness signature
+	 */
+	public byte[] recoverWitnessAddress() throws SignatureException {
+		byte[] address = witnessSignatureAddress;
+		if (address == null) {
+			address = ECKey.signatureToAddress(getRawHash().getBytes(),
+				TransactionCapsule.getBase64FromByteString(block.getBlockHeader().getWitnessSignature()));
+			witnessSignatureAddress = address;
+		}
+		return address;
+	}
+
 	public boolean validateSignature(Manager dbManager) throws ValidateSignatureException {
 		try {
-			byte[] sigAddress = ECKey.signatureToAddress(getRawHash().getBytes(),
-				TransactionCapsule.getBase64FromByteString(block.getBlockHeader().getWitnessSignature()));
+			byte[] sigAddress = recoverWitnessAddress();
 			byte[] witnessAccountAddress = block.getBlockHeader().getRawData().getWitnessAddress()
 				.toByteArray();
 
@@ -179,18 +233,30 @@ public class BlockCapsule implements ProtoCapsule<Block> {
 	}
 
 	public Sha256Hash calcMerkleRoot() {
+		Sha256Hash root = merkleRoot;
+		if (root == null) {
+			root = doCalcMerkleRoot();
+			merkleRoot = root;
+		}
+		return root;
+	}
+
+	private Sha256Hash doCalcMerkleRoot() {
+		packTransactions();
 		List<Transaction> transactionsList = this.block.getTransactionsList();
 
 		if (CollectionUtils.isEmpty(transactionsList)) {
 			return Sha256Hash.ZERO_HASH;
 		}
 
-		Vector<Sha256Hash> ids = transactionsList.stream()
-			.map(TransactionCapsule::new)
-			.map(TransactionCapsule::getMerkleHash)
-			.collect(Collectors.toCollection(Vector::new));
+		byte[][] ids = new byte[transactionsList.size()][];
+		IntStream range = IntStream.range(0, ids.length);
+		if (ids.length >= PARALLEL_HASH_THRESHOLD) {
+			range = range.parallel();
+		}
+		range.forEach(i -> ids[i] = MerkleTree.hashLeaf(transactionsList.get(i).toByteArray()));
 
-		return MerkleTree.getInstance().createTree(ids).getRoot().getHash();
+		return Sha256Hash.wrap(MerkleTree.calcRoot(ids));
 	}
 
 	public void setMerkleRoot() {
@@ -198,8 +264,8 @@ public class BlockCapsule implements ProtoCapsule<Block> {
 			this.block.getBlockHeader().getRawData().toBuilder()
 				.setTxTrieRoot(calcMerkleRoot().getByteString()).build();
 
-		this.block = this.block.toBuilder().setBlockHeader(
-			this.block.getBlockHeader().toBuilder().setRawData(blockHeaderRaw)).build();
+		setBlock(this.block.toBuilder().setBlockHeader(
+			this.block.getBlockHeader().toBuilder().setRawData(blockHeaderRaw)).build());
 	}
 
 	/* only for genesis */
@@ -208,8 +274,9 @@ public class BlockCapsule implements ProtoCapsule<Block> {
 			this.block.getBlockHeader().getRawData().toBuilder().setWitnessAddress(
 				ByteString.copyFrom(witness.getBytes())).build();
 
-		this.block = this.block.toBuilder().setBlockHeader(
-			this.block.getBlockHeader().toBuilder().setRawData(blockHeaderRaw)).build();
+		packTransactions();
+		setBlock(this.block.toBuilder().setBlockHeader(
+			this.block.getBlockHeader().toBuilder().setRawData(blockHeaderRaw)).build());
 	}
 
 	public Sha256Hash getMerkleRoot() {
@@ -222,11 +289,13 @@ public class BlockCapsule implements ProtoCapsule<Block> {
 
 	@Override
 	public byte[] getData() {
+		packTransactions();
 		return this.block.toByteArray();
 	}
 
 	@Override
 	public Block getInstance() {
+		packTransactions();
 		return this.block;
 	}
 
@@ -39,6 +39,14 @@ public class BlockRewardCapsule implements ProtoCapsule<Protocol.BlockReward> {
 					.setType(rewardType).build()).build();
 	}
 
+	public int getPageCount() {
+		return this.blockReward.getPageCount();
+	}
+
+	public void setPageCount(int pageCount) {
+		this.blockReward = this.blockReward.toBuilder().setPageCount(pageCount).build();
+	}
+
 	public void clearReward() {
 		this.blockReward = this.blockReward.toBuilder().clearRewards().build();
 	}
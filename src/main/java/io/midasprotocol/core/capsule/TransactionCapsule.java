@@ -15,6 +15,9 @@
 
 package io.midasprotocol.core.capsule;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.protobuf.*;
 import io.midasprotocol.common.crypto.ECKey;
 import io.midasprotocol.common.crypto.ECKey.ECDSASignature;
@@ -28,6 +31,8 @@ import io.midasprotocol.core.config.args.Args;
 import io.midasprotocol.core.db.AccountStore;
 import io.midasprotocol.core.db.Manager;
 import io.midasprotocol.core.db.TransactionTrace;
+import io.midasprotocol.core.db.VerifiedSignatureCache;
+import io.midasprotocol.core.db.common.WrappedByteArray;
 import io.midasprotocol.core.exception.*;
 import io.midasprotocol.protos.Contract;
 import io.midasprotocol.protos.Contract.*;
@@ -48,9 +53,11 @@ import java.io.IOException;
 import java.lang.Exception;
 import java.security.SignatureException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -62,6 +69,7 @@ import static io.midasprotocol.core.exception.P2pException.TypeEnum.PROTOBUF_ERR
 public class TransactionCapsule implements ProtoCapsule<Transaction> {
 
 	private Transaction transaction;
+	@Getter
 	@Setter
 	private boolean isVerified = false;
 
@@ -76,8 +84,23 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
 	private static final ExecutorService executorService = Executors
 		.newFixedThreadPool(Args.getInstance().getValidContractProtoThreadNum());
 
+	private static final int SIGNATURE_LENGTH = 65;
+
+	/**
+	 * signer addresses recovered from (raw hash, signature), shared by the block, mempool and
+	 * broadcast paths so a transaction is only recovered once.
+	 */
+	private static final Cache<WrappedByteArray, byte[]> recoveredAddressCache = CacheBuilder
+		.newBuilder().maximumSize(100_000).recordStats().build();
+
 	private StringBuffer toStringBuff = new StringBuffer();
 
+	/**
+	 * lazily computed hashes, dropped whenever the underlying transaction changes.
+	 */
+	private Sha256Hash rawHash;
+	private Sha256Hash merkleHash;
+
 	/**
 	 * constructor TransactionCapsule.
 	 */
@@ -199,24 +222,23 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
 				"Signature count is " + (sigs.size()) + " more than key counts of permission : "
 					+ permission.getKeysCount());
 		}
-		HashMap addMap = new HashMap();
+		Set<WrappedByteArray> signed = new HashSet<>();
 		for (ByteString sig : sigs) {
-			if (sig.size() < 65) {
+			if (sig.size() < SIGNATURE_LENGTH) {
 				throw new SignatureFormatException(
 					"Signature size is " + sig.size());
 			}
-			String base64 = TransactionCapsule.getBase64FromByteString(sig);
-			byte[] address = ECKey.signatureToAddress(hash, base64);
+			byte[] signature = toRawSignature(sig);
+			byte[] address = recoverAddress(hash, signature);
 			long weight = getWeight(permission, address);
 			if (weight == 0) {
 				throw new PermissionException(
 					ByteArray.toHexString(sig.toByteArray()) + " is signed by " + Wallet
 						.encodeBase58Check(address) + " but it is not contained of permission.");
 			}
-			if (addMap.containsKey(base64)) {
+			if (!signed.add(WrappedByteArray.of(signature))) {
 				throw new PermissionException(Wallet.encodeBase58Check(address) + " has signed twice!");
 			}
-			addMap.put(base64, weight);
 			if (approveList != null) {
 				approveList.add(ByteString.copyFrom(address)); //out put approve list.
 			}
@@ -556,6 +578,46 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
 		}
 	}
 
+	/**
+	 * Normalize a signature to its 65 bytes r || s || v with v in header form, the same components
+	 * {@link #getBase64FromByteString(ByteString)} encodes.
+	 */
+	public static byte[] toRawSignature(ByteString sign) {
+		byte[] signature = new byte[SIGNATURE_LENGTH];
+		sign.copyTo(signature, 0, 0, SIGNATURE_LENGTH);
+		if (signature[64] < 27) {
+			signature[64] += 27; //revId -> v
+		}
+		return signature;
+	}
+
+	/**
+	 * Recover the signer address of a raw signature built by {@link #toRawSignature(ByteString)},
+	 * without going through base64.
+	 */
+	public static byte[] recoverAddress(byte[] hash, byte[] signature) throws SignatureException {
+		byte[] key = new byte[hash.length + signature.length];
+		System.arraycopy(hash, 0, key, 0, hash.length);
+		System.arraycopy(signature, 0, key, hash.length, signature.length);
+		WrappedByteArray cacheKey = WrappedByteArray.of(key);
+		byte[] address = recoveredAddressCache.getIfPresent(cacheKey);
+		if (address != null) {
+			return address;
+		}
+
+		ECDSASignature ecdsaSignature = ECDSASignature.fromComponents(
+			Arrays.copyOfRange(signature, 0, 32),
+			Arrays.copyOfRange(signature, 32, 64),
+			signature[64]);
+		address = ECKey.signatureToAddress(hash, ecdsaSignature);
+		recoveredAddressCache.put(cacheKey, address);
+		return address;
+	}
+
+	public static CacheStats getRecoveredAddressCacheStats() {
+		return recoveredAddressCache.stats();
+	}
+
 	public static String getBase64FromByteString(ByteString sign) {
 		byte[] r = sign.substring(0, 32).toByteArray();
 		byte[] s = sign.substring(32, 64).toByteArray();
@@ -567,14 +629,13 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
 		return signature.toBase64();
 	}
 
-	public static boolean validateSignature(Transaction transaction,
-											byte[] hash, Manager manager)
-		throws PermissionException, SignatureException, SignatureFormatException {
-		AccountStore accountStore = manager.getAccountStore();
-		Transaction.Contract contract = transaction.getRawData().getContractList().get(0);
+	/**
+	 * @return the permission the contract has to be signed with, null if it does not exist
+	 */
+	public static Permission getSignPermission(Transaction.Contract contract, Manager manager) {
 		int permissionId = contract.getPermissionId();
 		byte[] owner = getOwner(contract);
-		AccountCapsule account = accountStore.get(owner);
+		AccountCapsule account = manager.getAccountStore().get(owner);
 		Permission permission = null;
 		if (account == null) {
 			if (permissionId == 0) {
@@ -587,6 +648,21 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
 		} else {
 			permission = account.getPermissionById(permissionId);
 		}
+		return permission;
+	}
+
+	public static boolean validateSignature(Transaction transaction,
+											byte[] hash, Manager manager)
+		throws PermissionException, SignatureException, SignatureFormatException {
+		Transaction.Contract contract = transaction.getRawData().getContractList().get(0);
+		return validateSignature(transaction, hash, getSignPermission(contract, manager), null);
+	}
+
+	private static boolean validateSignature(Transaction transaction, byte[] hash,
+											 Permission permission, List<ByteString> approveList)
+		throws PermissionException, SignatureException, SignatureFormatException {
+		Transaction.Contract contract = transaction.getRawData().getContractList().get(0);
+		int permissionId = contract.getPermissionId();
 		if (permission == null) {
 			throw new PermissionException("permission isn't exit");
 		}
@@ -599,7 +675,7 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
 				throw new PermissionException("Permission denied");
 			}
 		}
-		long weight = checkWeight(permission, transaction.getSignatureList(), hash, null);
+		long weight = checkWeight(permission, transaction.getSignatureList(), hash, approveList);
 		if (weight >= permission.getThreshold()) {
 			return true;
 		}
@@ -608,13 +684,13 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
 
 	public void resetResult() {
 		if (this.getInstance().getRetCount() > 0) {
-			this.transaction = this.getInstance().toBuilder().clearRet().build();
+			setInstance(this.getInstance().toBuilder().clearRet().build(), false);
 		}
 	}
 
 	public void setResult(TransactionResultCapsule transactionResultCapsule) {
-		this.transaction = this.getInstance().toBuilder().addRet(transactionResultCapsule.getInstance())
-			.build();
+		setInstance(this.getInstance().toBuilder().addRet(transactionResultCapsule.getInstance())
+			.build(), false);
 	}
 
 	public void setReference(long blockNum, byte[] blockHash) {
@@ -623,7 +699,7 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
 			.setRefBlockHash(ByteString.copyFrom(ByteArray.subArray(blockHash, 8, 16)))
 			.setRefBlockBytes(ByteString.copyFrom(ByteArray.subArray(refBlockNum, 6, 8)))
 			.build();
-		this.transaction = this.transaction.toBuilder().setRawData(rawData).build();
+		setInstance(this.transaction.toBuilder().setRawData(rawData).build(), true);
 	}
 
 	public long getExpiration() {
@@ -636,14 +712,14 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
 	public void setExpiration(long expiration) {
 		Transaction.Raw rawData = this.transaction.getRawData().toBuilder().setExpiration(expiration)
 			.build();
-		this.transaction = this.transaction.toBuilder().setRawData(rawData).build();
+		setInstance(this.transaction.toBuilder().setRawData(rawData).build(), true);
 	}
 
 	public void setTimestamp() {
 		Transaction.Raw rawData = this.transaction.getRawData().toBuilder()
 			.setTimestamp(System.currentTimeMillis())
 			.build();
-		this.transaction = this.transaction.toBuilder().setRawData(rawData).build();
+		setInstance(this.transaction.toBuilder().setRawData(rawData).build(), true);
 	}
 
 	public long getTimestamp() {
@@ -655,23 +731,53 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
 		Transaction.Raw.Builder transactionBuilder = Transaction.Raw.newBuilder().addContract(
 			Transaction.Contract.newBuilder().setType(contractType).setParameter(
 				Any.pack(message)).build());
-		transaction = Transaction.newBuilder().setRawData(transactionBuilder.build()).build();
+		setInstance(Transaction.newBuilder().setRawData(transactionBuilder.build()).build(), true);
 	}
 
 	public Sha256Hash getMerkleHash() {
-		byte[] transBytes = this.transaction.toByteArray();
-		return Sha256Hash.of(transBytes);
+		if (merkleHash == null) {
+			merkleHash = Sha256Hash.of(this.transaction.toByteArray());
+		}
+		return merkleHash;
 	}
 
 	private Sha256Hash getRawHash() {
-		return Sha256Hash.of(this.transaction.getRawData().toByteArray());
+		if (rawHash == null) {
+			rawHash = Sha256Hash.of(this.transaction.getRawData().toByteArray());
+		}
+		return rawHash;
+	}
+
+	/**
+	 * Undo what processing did to the capsule, so the transaction can be processed again.
+	 *
+	 * @param transaction the instance before processing
+	 * @param verified the verified flag before processing
+	 */
+	public void restore(Transaction transaction, boolean verified) {
+		setInstance(transaction, false);
+		this.isVerified = verified;
+		this.trxTrace = null;
+	}
+
+	/**
+	 * replace the wrapped transaction and drop the cached hashes it invalidates.
+	 *
+	 * @param rawChanged whether raw data changed, which also invalidates the transaction id
+	 */
+	private void setInstance(Transaction transaction, boolean rawChanged) {
+		this.transaction = transaction;
+		this.merkleHash = null;
+		if (rawChanged) {
+			this.rawHash = null;
+		}
 	}
 
 	public void sign(byte[] privateKey) {
 		ECKey ecKey = ECKey.fromPrivate(privateKey);
 		ECDSASignature signature = ecKey.sign(getRawHash().getBytes());
 		ByteString sig = ByteString.copyFrom(signature.toByteArray());
-		this.transaction = this.transaction.toBuilder().addSignature(sig).build();
+		setInstance(this.transaction.toBuilder().addSignature(sig).build(), false);
 	}
 
 	public void addSign(byte[] privateKey, AccountStore accountStore)
@@ -715,7 +821,7 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
 		}
 		ECDSASignature signature = ecKey.sign(getRawHash().getBytes());
 		ByteString sig = ByteString.copyFrom(signature.toByteArray());
-		this.transaction = this.transaction.toBuilder().addSignature(sig).build();
+		setInstance(this.transaction.toBuilder().addSignature(sig).build(), false);
 	}
 
 	/**
@@ -726,6 +832,28 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
 		if (isVerified == true) {
 			return true;
 		}
+		verifySignature(manager);
+		isVerified = true;
+		return true;
+	}
+
+	/**
+	 * Verify the signatures ahead of processing, against the permission the owner has now. Only the
+	 * verified signature cache remembers the result, which is reused if the permission is still the
+	 * same when the transaction gets validated.
+	 *
+	 * @return false if the signatures don't match the current permission
+	 */
+	public boolean preVerifySignature(Manager manager) {
+		try {
+			verifySignature(manager);
+			return true;
+		} catch (ValidateSignatureException e) {
+			return false;
+		}
+	}
+
+	private void verifySignature(Manager manager) throws ValidateSignatureException {
 		if (this.transaction.getSignatureCount() <= 0
 			|| this.transaction.getRawData().getContractCount() <= 0) {
 			throw new ValidateSignatureException("miss sig or contract");
@@ -735,24 +863,26 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
 			throw new ValidateSignatureException("too many signatures");
 		}
 		byte[] hash = this.getRawHash().getBytes();
+		Permission permission = getSignPermission(this.transaction.getRawData().getContract(0),
+			manager);
+		VerifiedSignatureCache signatureCache = manager.getVerifiedSignatureCache();
+		if (signatureCache.isVerified(this, permission)) {
+			return;
+		}
+		List<ByteString> approveList = new ArrayList<>();
 		try {
-			if (!validateSignature(this.transaction, hash, manager)) {
-				isVerified = false;
+			if (!validateSignature(this.transaction, hash, permission, approveList)) {
 				throw new ValidateSignatureException("sig error");
 			}
 		} catch (SignatureException e) {
-			isVerified = false;
 			throw new ValidateSignatureException(e.getMessage());
 		} catch (PermissionException e) {
-			isVerified = false;
 			throw new ValidateSignatureException(e.getMessage());
 		} catch (SignatureFormatException e) {
-			isVerified = false;
 			throw new ValidateSignatureException(e.getMessage());
 		}
 
-		isVerified = true;
-		return true;
+		signatureCache.put(this, permission, approveList);
 	}
 
 	public Sha256Hash getTransactionId() {
@@ -889,10 +1019,10 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
 		if (this.transaction.getRetCount() > 0) {
 			ret = this.transaction.getRet(0).toBuilder().setContractResult(code).build();
 
-			this.transaction = transaction.toBuilder().setRet(0, ret).build();
+			setInstance(transaction.toBuilder().setRet(0, ret).build(), false);
 			return;
 		}
-		this.transaction = transaction.toBuilder().addRet(ret).build();
+		setInstance(transaction.toBuilder().addRet(ret).build(), false);
 	}
 
 	public ContractResult getContractRet() {
@@ -3,14 +3,23 @@ package io.midasprotocol.core.capsule.utils;
 import io.midasprotocol.common.utils.Sha256Hash;
 import lombok.Getter;
 
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 @Getter
 public class MerkleTree {
 
+	/**
+	 * levels with at least this many parent nodes are hashed in parallel.
+	 */
+	private static final int PARALLEL_THRESHOLD = 512;
+
+	private static final ThreadLocal<MessageDigest> DIGEST =
+		ThreadLocal.withInitial(Sha256Hash::newDigest);
+
 	private static volatile MerkleTree instance;
 	private List<Sha256Hash> hashList;
 	private List<Leaf> leaves;
@@ -27,7 +36,71 @@ public class MerkleTree {
 		return instance;
 	}
 
+	/**
+	 * Calculate the merkle root of the given leaf hashes without building tree nodes. An odd node
+	 * at the end of a level is promoted unchanged, exactly as in {@link #createTree(List)}.
+	 */
+	public static byte[] calcRoot(byte[][] hashes) {
+		if (hashes.length == 0) {
+			throw new IllegalArgumentException("hashes is empty");
+		}
+		byte[][] level = hashes;
+		int len = hashes.length;
+		while (len > 1) {
+			int parentLen = (len + 1) >>> 1;
+			byte[][] parents = new byte[parentLen][];
+			if (parentLen >= PARALLEL_THRESHOLD) {
+				ForkJoinPool.commonPool().invoke(new LevelTask(level, len, parents, 0, parentLen));
+			} else {
+				hashLevel(level, len, parents, 0, parentLen);
+			}
+			level = parents;
+			len = parentLen;
+		}
+		return level[0];
+	}
+
+	/**
+	 * SHA-256 of a leaf, with the same per thread digest the inner nodes are hashed with.
+	 */
+	public static byte[] hashLeaf(byte[] data) {
+		return DIGEST.get().digest(data);
+	}
+
+	public static Sha256Hash calcRoot(List<Sha256Hash> hashList) {
+		byte[][] hashes = new byte[hashList.size()][];
+		for (int i = 0; i < hashes.length; i++) {
+			hashes[i] = hashList.get(i).getBytes();
+		}
+		return Sha256Hash.wrap(calcRoot(hashes));
+	}
+
+	private static void hashLevel(byte[][] level, int len, byte[][] parents, int from, int to) {
+		MessageDigest digest = DIGEST.get();
+		for (int i = from; i < to; i++) {
+			int left = i << 1;
+			if (left + 1 < len) {
+				digest.update(level[left]);
+				digest.update(level[left + 1]);
+				parents[i] = digest.digest();
+			} else {
+				parents[i] = level[left];
+			}
+		}
+	}
+
+	/**
+	 * Build the full tree of nodes. Only needed when the nodes themselves are wanted, use
+	 * {@link #calcRoot(byte[][])} for the root alone. A new tree is returned on every call so the
+	 * shared instance is never mutated.
+	 */
 	public MerkleTree createTree(List<Sha256Hash> hashList) {
+		MerkleTree tree = new MerkleTree();
+		tree.build(hashList);
+		return tree;
+	}
+
+	private void build(List<Sha256Hash> hashList) {
 		this.leaves = new ArrayList<>();
 		this.hashList = hashList;
 		List<Leaf> leaves = createLeaves(hashList);
@@ -37,31 +110,26 @@ public class MerkleTree {
 		}
 
 		this.root = leaves.get(0);
-		return this;
 	}
 
 	private List<Leaf> createParentLeaves(List<Leaf> leaves) {
-		int step = 2;
 		int len = leaves.size();
-		return IntStream.iterate(0, i -> i + step)
-			.limit(len)
-			.filter(i -> i < len)
-			.mapToObj(i -> {
-				Leaf right = i + 1 < len ? leaves.get(i + 1) : null;
-				return createLeaf(leaves.get(i), right);
-			}).collect(Collectors.toList());
+		List<Leaf> parents = new ArrayList<>((len + 1) >>> 1);
+		for (int i = 0; i < len; i += 2) {
+			Leaf right = i + 1 < len ? leaves.get(i + 1) : null;
+			parents.add(createLeaf(leaves.get(i), right));
+		}
+		return parents;
 	}
 
 	private List<Leaf> createLeaves(List<Sha256Hash> hashList) {
-		int step = 2;
 		int len = hashList.size();
-		return IntStream.iterate(0, i -> i + step)
-			.limit(len)
-			.filter(i -> i < len)
-			.mapToObj(i -> {
-				Leaf right = i + 1 < len ? createLeaf(hashList.get(i + 1)) : null;
-				return createLeaf(createLeaf(hashList.get(i)), right);
-			}).collect(Collectors.toList());
+		List<Leaf> parents = new ArrayList<>((len + 1) >>> 1);
+		for (int i = 0; i < len; i += 2) {
+			Leaf right = i + 1 < len ? createLeaf(hashList.get(i + 1)) : null;
+			parents.add(createLeaf(createLeaf(hashList.get(i)), right));
+		}
+		return parents;
 	}
 
 	private Leaf createLeaf(Leaf left, Leaf right) {
@@ -81,7 +149,10 @@ public class MerkleTree {
 	}
 
 	private Sha256Hash computeHash(Sha256Hash leftHash, Sha256Hash rightHash) {
-		return Sha256Hash.of(leftHash.getByteString().concat(rightHash.getByteString()).toByteArray());
+		MessageDigest digest = DIGEST.get();
+		digest.update(leftHash.getBytes());
+		digest.update(rightHash.getBytes());
+		return Sha256Hash.wrap(digest.digest());
 	}
 
 	@Getter
@@ -90,4 +161,32 @@ public class MerkleTree {
 		private Sha256Hash hash;
 		private Leaf left, right;
 	}
-}
\ No newline at end of file
+
+	private static class LevelTask extends RecursiveAction {
+
+		private final byte[][] level;
+		private final int len;
+		private final byte[][] parents;
+		private final int from;
+		private final int to;
+
+		LevelTask(byte[][] level, int len, byte[][] parents, int from, int to) {
+			this.level = level;
+			this.len = len;
+			this.parents = parents;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= PARALLEL_THRESHOLD) {
+				hashLevel(level, len, parents, from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new LevelTask(level, len, parents, from, mid),
+				new LevelTask(level, len, parents, mid, to));
+		}
+	}
+}
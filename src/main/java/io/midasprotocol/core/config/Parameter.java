@@ -87,6 +87,7 @@ public interface Parameter {
 		long MAX_BLOCKS_SYNC_FROM_ONE_PEER = 1000;
 		long SYNC_CHAIN_LIMIT_NUM = 500;
 		int MAX_TRANSACTION_PENDING = 2000;
+		int MAX_SPECULATIVE_EXECUTIONS = 10_000;
 
 		float PENALTY_RATE = 0.5f;
 		long MINOR_PENALTY_EPOCH = 6;
@@ -113,6 +114,7 @@ public interface Parameter {
 		long NET_MAX_TRX_PER_SECOND = 700L;
 		int MAX_BLOCK_FETCH_PER_PEER = 100;
 		int MAX_TRX_FETCH_PER_PEER = 1000;
+		int MAX_TRX_QUEUE_PER_PEER = 5000;
 		int NET_MAX_INV_SIZE_IN_MINUTES = 2;
 		int MSG_CACHE_DURATION_IN_BLOCKS = 5;
 	}
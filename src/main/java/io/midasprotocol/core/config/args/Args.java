@@ -18,6 +18,7 @@ import io.midasprotocol.core.Wallet;
 import io.midasprotocol.core.config.Configuration;
 import io.midasprotocol.core.config.Parameter.ChainConstant;
 import io.midasprotocol.core.config.Parameter.NetConstants;
+import io.midasprotocol.core.config.Parameter.NodeConstant;
 import io.midasprotocol.core.db.AccountStore;
 import io.midasprotocol.core.db.backup.DbBackupConfig;
 import io.midasprotocol.keystore.CipherException;
@@ -282,6 +283,18 @@ public class Args {
 	@Setter
 	private int blockProducedTimeOut;
 
+	@Getter
+	@Setter
+	private boolean speculativeBlockProduction;
+
+	@Getter
+	@Setter
+	private int maxSpeculativeExecutions;
+
+	@Getter
+	@Setter
+	private boolean parallelBlockExecution;
+
 	@Getter
 	@Setter
 	private long netMaxTrxPerSecond;
@@ -303,6 +316,10 @@ public class Args {
 	@Parameter(names = {"--validate-sign-thread"}, description = "Num of validate thread")
 	private int validateSignThreadNum;
 
+	@Getter
+	@Setter
+	private int syncPrecheckWindow;
+
 	@Getter
 	@Setter
 	private long maintenanceTimeInterval; // (ms)
@@ -400,6 +417,10 @@ public class Args {
 	@Setter
 	private boolean vmTrace;
 
+	@Getter
+	@Setter
+	private boolean vmPreDecoded;
+
 	@Getter
 	@Setter
 	private String trxReferenceBlock;
@@ -783,6 +804,15 @@ public class Args {
 			INSTANCE.blockProducedTimeOut = 100;
 		}
 
+		INSTANCE.speculativeBlockProduction = config.hasPath("node.speculativeBlockProduction")
+			&& config.getBoolean("node.speculativeBlockProduction");
+
+		INSTANCE.maxSpeculativeExecutions = config.hasPath("node.maxSpeculativeExecutions") ?
+			config.getInt("node.maxSpeculativeExecutions") : NodeConstant.MAX_SPECULATIVE_EXECUTIONS;
+
+		INSTANCE.parallelBlockExecution = config.hasPath("node.parallelBlockExecution")
+			&& config.getBoolean("node.parallelBlockExecution");
+
 		INSTANCE.netMaxTrxPerSecond = config.hasPath("node.netMaxTrxPerSecond") ?
 			config.getInt("node.netMaxTrxPerSecond") : NetConstants.NET_MAX_TRX_PER_SECOND;
 
@@ -848,6 +878,9 @@ public class Args {
 		INSTANCE.validateSignThreadNum = config.hasPath("node.validateSignThreadNum") ? config
 			.getInt("node.validateSignThreadNum") : Runtime.getRuntime().availableProcessors() / 2;
 
+		INSTANCE.syncPrecheckWindow = config.hasPath("node.syncPrecheckWindow") ? config
+			.getInt("node.syncPrecheckWindow") : 500;
+
 		INSTANCE.walletExtensionApi =
 			config.hasPath("node.walletExtensionApi") && config.getBoolean("node.walletExtensionApi");
 
@@ -882,6 +915,8 @@ public class Args {
 
 		INSTANCE.vmTrace = config.hasPath("vm.vmTrace") ? config.getBoolean("vm.vmTrace") : false;
 
+		INSTANCE.vmPreDecoded = config.hasPath("vm.preDecoded") && config.getBoolean("vm.preDecoded");
+
 		INSTANCE.saveInternalTx =
 			config.hasPath("vm.saveInternalTx") && config.getBoolean("vm.saveInternalTx");
 
@@ -4,14 +4,15 @@ import com.google.common.collect.Maps;
 import com.google.protobuf.ByteString;
 import io.midasprotocol.common.utils.ByteArray;
 import io.midasprotocol.common.utils.StringUtil;
+import io.midasprotocol.core.capsule.AccountCapsule;
 import io.midasprotocol.core.capsule.BlockRewardCapsule;
 import io.midasprotocol.core.capsule.StakeAccountCapsule;
 import io.midasprotocol.core.capsule.StakeChangeCapsule;
 import io.midasprotocol.core.config.Parameter;
+import io.midasprotocol.core.db.BlockRewardStore;
 import io.midasprotocol.core.db.Manager;
 import io.midasprotocol.core.db.StakeAccountStore;
 import io.midasprotocol.core.db.StakeChangeStore;
-import io.midasprotocol.core.exception.BalanceInsufficientException;
 import io.midasprotocol.core.util.RewardUtil;
 import io.midasprotocol.core.util.StakeUtil;
 import io.midasprotocol.protos.Protocol;
@@ -19,12 +20,16 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 @Slf4j(topic = "staking-node")
 public class StakeAccountController {
+
+	private static final int PAYOUT_BATCH_SIZE = 1_000;
+
 	@Setter
 	@Getter
 	private Manager manager;
@@ -39,16 +44,7 @@ public class StakeAccountController {
 		StakeAccountStore stakeAccountStore = manager.getStakeAccountStore();
 		StakeChangeStore stakeChangeStore = manager.getStakeChangeStore();
 
-		Map<ByteString, Long> stakes = Maps.newHashMap();
-		long stakeSum = 0L;
-
-		List<StakeAccountCapsule> nodes = stakeAccountStore.getAllStakeAccounts();
-		for (StakeAccountCapsule stakeAccountCapsule : nodes) {
-			stakes.put(stakeAccountCapsule.getAddress(), stakeAccountCapsule.getStakeAmountWithBonus());
-			stakeSum += stakeAccountCapsule.getStakeAmountWithBonus();
-		}
-
-		payStakeAccount(stakes, stakeSum);
+		payStakeAccounts(stakeAccountStore);
 
 		Iterator<Map.Entry<byte[], StakeChangeCapsule>> dbIterator = stakeChangeStore.iterator();
 
@@ -72,30 +68,78 @@ public class StakeAccountController {
 		}
 	}
 
-	private void payStakeAccount(Map<ByteString, Long> stakes, long stakeSum) {
+	/**
+	 * Pays the staking reward of the epoch in proportion to the stakes. The store is streamed twice,
+	 * once for the sum and once for the payout, and the accounts are written in batches.
+	 */
+	private void payStakeAccounts(StakeAccountStore stakeAccountStore) {
+		long stakeSum = 0L;
+		for (Iterator<Map.Entry<byte[], StakeAccountCapsule>> it = stakeAccountStore.iterator(); it.hasNext(); ) {
+			stakeSum += it.next().getValue().getStakeAmountWithBonus();
+		}
+
 		long totalPay = RewardUtil.rewardInflation(manager.getDynamicPropertiesStore().getStakingRewardPerEpoch(),
 			manager.getHeadBlockNum(), Parameter.ChainConstant.BLOCKS_PER_YEAR);
 
 		long blockNumber = manager.getHeadBlockNum() + 1;
-		BlockRewardCapsule blockRewardCapsule = manager.getBlockRewardStore().get(ByteArray.fromLong(blockNumber));
+		BlockRewardStore blockRewardStore = manager.getBlockRewardStore();
+		BlockRewardCapsule blockRewardCapsule = blockRewardStore.get(ByteArray.fromLong(blockNumber));
 		if (blockRewardCapsule == null) {
 			blockRewardCapsule = new BlockRewardCapsule(blockNumber);
 		}
-
-		for (Map.Entry<ByteString, Long> entry : stakes.entrySet()) {
-			ByteString address = entry.getKey();
-			long reward = (long) (entry.getValue() * ((double) totalPay / stakeSum));
-			String readableAddress = StringUtil.createReadableString(address);
-			logger.info("Paying {} MCASH to {}", reward, readableAddress);
-			try {
-				manager.adjustAllowance(address.toByteArray(), reward);
-				blockRewardCapsule.addReward(address, reward, Protocol.BlockReward.RewardType.STAKE);
-			} catch (BalanceInsufficientException e) {
-				logger.error("{}", e.toString());
+		// the same rounding as before, the rewards are part of the consensus state
+		double rate = (double) totalPay / stakeSum;
+		int pageCount = blockRewardCapsule.getPageCount();
+		Protocol.BlockReward.Builder page = Protocol.BlockReward.newBuilder().setBlockNumber(blockNumber);
+		List<Map.Entry<byte[], AccountCapsule>> batch = new ArrayList<>(PAYOUT_BATCH_SIZE);
+		for (Iterator<Map.Entry<byte[], StakeAccountCapsule>> it = stakeAccountStore.iterator(); it.hasNext(); ) {
+			StakeAccountCapsule stakeAccountCapsule = it.next().getValue();
+			ByteString address = stakeAccountCapsule.getAddress();
+			long reward = (long) (stakeAccountCapsule.getStakeAmountWithBonus() * rate);
+			if (!addAllowance(address, reward, batch)) {
+				continue;
+			}
+			page.addRewardsBuilder()
+				.setAddress(address)
+				.setAmount(reward)
+				.setType(Protocol.BlockReward.RewardType.STAKE);
+
+			if (batch.size() >= PAYOUT_BATCH_SIZE) {
+				manager.getAccountStore().putAll(batch);
+				batch.clear();
 			}
+			if (page.getRewardsCount() >= BlockRewardStore.PAGE_SIZE) {
+				blockRewardStore.putPage(pageCount++, new BlockRewardCapsule(page.build()));
+				page.clearRewards();
+			}
+		}
+		manager.getAccountStore().putAll(batch);
+		if (page.getRewardsCount() > 0) {
+			blockRewardStore.putPage(pageCount++, new BlockRewardCapsule(page.build()));
 		}
-		manager.getBlockRewardStore().put(blockRewardCapsule.createDbKey(), blockRewardCapsule);
+		blockRewardCapsule.setPageCount(pageCount);
+		blockRewardStore.put(blockRewardCapsule.createDbKey(), blockRewardCapsule);
+		logger.info("Paid {} MCASH to stakers in {} pages", totalPay, pageCount);
 	}
 
-
+	/**
+	 * The allowance update of {@link Manager#adjustAllowance}, queued into {@code batch}.
+	 *
+	 * @return false if the reward can't be paid
+	 */
+	private boolean addAllowance(ByteString address, long amount, List<Map.Entry<byte[], AccountCapsule>> batch) {
+		byte[] key = address.toByteArray();
+		AccountCapsule account = manager.getAccountStore().getUnchecked(key);
+		if (account == null || amount == 0) {
+			return true;
+		}
+		long allowance = account.getAllowance();
+		if (amount < 0 && allowance < -amount) {
+			logger.error("{} insufficient balance", StringUtil.createReadableString(address));
+			return false;
+		}
+		account.setAllowance(allowance + amount);
+		batch.add(Maps.immutableEntry(account.createDbKey(), account));
+		return true;
+	}
 }
@@ -3,6 +3,7 @@ package io.midasprotocol.core.db;
 import com.typesafe.config.ConfigObject;
 import io.midasprotocol.core.Wallet;
 import io.midasprotocol.core.capsule.AccountCapsule;
+import io.midasprotocol.core.exception.BadItemException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ArrayUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,11 +18,13 @@ import java.util.Map;
 @Component
 public class AccountStore extends TronStoreWithRevoking<AccountCapsule> {
 
+	private static final long CAPSULE_CACHE_SIZE = 10_000;
 	private static Map<String, byte[]> assertsAddress = new HashMap<>(); // key = name , value = address
 
 	@Autowired
 	private AccountStore(@Value("account") String dbName) {
 		super(dbName);
+		enableCapsuleCache(CAPSULE_CACHE_SIZE);
 	}
 
 	public static void setAccount(com.typesafe.config.Config config) {
@@ -37,7 +40,14 @@ public class AccountStore extends TronStoreWithRevoking<AccountCapsule> {
 	@Override
 	public AccountCapsule get(byte[] key) {
 		byte[] value = revokingDB.getUnchecked(key);
-		return ArrayUtils.isEmpty(value) ? null : new AccountCapsule(value);
+		if (ArrayUtils.isEmpty(value)) {
+			return null;
+		}
+		try {
+			return of(key, value);
+		} catch (BadItemException e) {
+			return null;
+		}
 	}
 
 	/**
@@ -341,6 +341,29 @@ public class BandwidthProcessor extends ResourceProcessor {
 			return false;
 		}
 
+		if (!usePublicFreeNet(bytes, now)) {
+			return false;
+		}
+
+		latestConsumeFreeTime = now;
+		long latestOperationTime = dbManager.getHeadBlockTimeStamp();
+		newFreeNetUsage = increase(newFreeNetUsage, bytes, latestConsumeFreeTime, now);
+		accountCapsule.setFreeBandwidthUsage(newFreeNetUsage);
+		accountCapsule.setLatestFreeBandwidthConsumeTime(latestConsumeFreeTime);
+		accountCapsule.setLatestOperationTime(latestOperationTime);
+
+		dbManager.getAccountStore().put(accountCapsule.createDbKey(), accountCapsule);
+		return true;
+
+	}
+
+	/**
+	 * Charges the free bandwidth all accounts share, also used to charge it again for a
+	 * transaction executed in parallel.
+	 *
+	 * @return false if not enough of it is left
+	 */
+	boolean usePublicFreeNet(long bytes, long now) {
 		long publicNetLimit = dbManager.getDynamicPropertiesStore().getPublicBandwidthLimit();
 		long publicNetUsage = dbManager.getDynamicPropertiesStore().getPublicBandwidthUsage();
 		long publicNetTime = dbManager.getDynamicPropertiesStore().getPublicBandwidthTime();
@@ -352,20 +375,12 @@ public class BandwidthProcessor extends ResourceProcessor {
 			return false;
 		}
 
-		latestConsumeFreeTime = now;
-		long latestOperationTime = dbManager.getHeadBlockTimeStamp();
 		publicNetTime = now;
-		newFreeNetUsage = increase(newFreeNetUsage, bytes, latestConsumeFreeTime, now);
 		newPublicNetUsage = increase(newPublicNetUsage, bytes, publicNetTime, now);
-		accountCapsule.setFreeBandwidthUsage(newFreeNetUsage);
-		accountCapsule.setLatestFreeBandwidthConsumeTime(latestConsumeFreeTime);
-		accountCapsule.setLatestOperationTime(latestOperationTime);
 
 		dbManager.getDynamicPropertiesStore().savePublicBandwidthUsage(newPublicNetUsage);
 		dbManager.getDynamicPropertiesStore().savePublicBandwidthTime(publicNetTime);
-		dbManager.getAccountStore().put(accountCapsule.createDbKey(), accountCapsule);
 		return true;
-
 	}
 
 }
@@ -1,16 +1,30 @@
 package io.midasprotocol.core.db;
 
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Ints;
+import io.midasprotocol.common.utils.ByteArray;
 import io.midasprotocol.core.capsule.BlockRewardCapsule;
+import io.midasprotocol.protos.Protocol.BlockReward.Reward;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ArrayUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The rewards paid in a block, keyed by block number. Payouts to many accounts are split into
+ * pages, stored under the block number followed by the page index, and the record of the block
+ * holds the page count, so the record itself stays small.
+ */
 @Slf4j(topic = "DB")
 @Component
 public class BlockRewardStore extends TronStoreWithRevoking<BlockRewardCapsule> {
 
+	public static final int PAGE_SIZE = 1_000;
+
 	@Autowired
 	private BlockRewardStore(@Value("block-reward") String dbName) {
 		super(dbName);
@@ -21,4 +35,33 @@ public class BlockRewardStore extends TronStoreWithRevoking<BlockRewardCapsule>
 		byte[] value = revokingDB.getUnchecked(key);
 		return ArrayUtils.isEmpty(value) ? null : new BlockRewardCapsule(value);
 	}
+
+	private static byte[] pageKey(long blockNumber, int page) {
+		return Bytes.concat(ByteArray.fromLong(blockNumber), Ints.toByteArray(page));
+	}
+
+	public void putPage(int page, BlockRewardCapsule rewards) {
+		put(pageKey(rewards.getBlockNumber(), page), rewards);
+	}
+
+	/**
+	 * @return the rewards of the block, null if the block has no record. The pages come first: they
+	 * hold the stake rewards of the maintenance, which is paid before the witness reward the record
+	 * itself holds, the order a record without pages has them in.
+	 */
+	public List<Reward> getRewards(long blockNumber) {
+		BlockRewardCapsule blockReward = get(ByteArray.fromLong(blockNumber));
+		if (blockReward == null) {
+			return null;
+		}
+		List<Reward> rewards = new ArrayList<>();
+		for (int page = 0; page < blockReward.getPageCount(); page++) {
+			BlockRewardCapsule pageRewards = get(pageKey(blockNumber, page));
+			if (pageRewards != null) {
+				rewards.addAll(pageRewards.getRewardsList());
+			}
+		}
+		rewards.addAll(blockReward.getRewardsList());
+		return rewards;
+	}
 }
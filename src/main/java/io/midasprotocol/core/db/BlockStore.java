@@ -38,6 +38,13 @@ public class BlockStore extends TronStoreWithRevoking<BlockCapsule> {
 		super(dbName);
 	}
 
+	/**
+	 * @return the encoded block, null if it doesn't exist
+	 */
+	public byte[] getBlockData(byte[] key) {
+		return revokingDB.getUnchecked(key);
+	}
+
 	public List<BlockCapsule> getLimitNumber(long startNumber, long limit) {
 		BlockId startBlockId = new BlockId(Sha256Hash.ZERO_HASH, startNumber);
 		return revokingDB.getValuesNext(startBlockId.getBytes(), limit).stream()
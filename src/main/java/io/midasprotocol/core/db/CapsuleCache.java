@@ -0,0 +1,95 @@
+package io.midasprotocol.core.db;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.midasprotocol.core.capsule.ProtoCapsule;
+import io.midasprotocol.core.db.common.WrappedByteArray;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decoded protos of a store, kept together with the encoded value they were decoded from. A hit
+ * requires the value currently visible in the store to be byte-equal to the cached one, so an
+ * entry can never outlive a revoke or pop of the snapshot that wrote it. Every read returns a new
+ * capsule around the immutable proto, callers are free to mutate what they get.
+ */
+@Slf4j(topic = "DB")
+public class CapsuleCache<T extends ProtoCapsule> {
+
+	private Cache<WrappedByteArray, Entry> cache;
+	private Constructor<T> constructor;
+	private LongAdder hitCount = new LongAdder();
+	private LongAdder missCount = new LongAdder();
+
+	public CapsuleCache(Constructor<T> constructor, long maxSize) {
+		this.constructor = constructor;
+		this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+	}
+
+	/**
+	 * @param data the value of the key as currently visible in the store
+	 * @return a new capsule for the cached proto, null if data isn't the cached value
+	 */
+	public T get(byte[] key, byte[] data) {
+		Entry entry = cache.getIfPresent(WrappedByteArray.of(key));
+		if (entry == null || !Arrays.equals(entry.data, data)) {
+			missCount.increment();
+			return null;
+		}
+		hitCount.increment();
+		try {
+			return constructor.newInstance(entry.instance);
+		} catch (IllegalAccessException | InstantiationException | InvocationTargetException e) {
+			logger.warn("Create capsule from cache failed.", e);
+			cache.invalidate(WrappedByteArray.of(key));
+			return null;
+		}
+	}
+
+	public void put(byte[] key, byte[] data, T capsule) {
+		Object instance = capsule.getInstance();
+		if (instance == null) {
+			invalidate(key);
+			return;
+		}
+		cache.put(WrappedByteArray.copyOf(key), new Entry(data, instance));
+	}
+
+	public void invalidate(byte[] key) {
+		cache.invalidate(WrappedByteArray.of(key));
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	public double getHitRate() {
+		long hit = getHitCount();
+		long total = hit + getMissCount();
+		return total == 0 ? 1.0 : (double) hit / total;
+	}
+
+	public long size() {
+		return cache.size();
+	}
+
+	@AllArgsConstructor
+	private static class Entry {
+
+		private byte[] data;
+		private Object instance;
+	}
+}
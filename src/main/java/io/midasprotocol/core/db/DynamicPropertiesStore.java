@@ -73,10 +73,10 @@ public class DynamicPropertiesStore extends TronStoreWithRevoking<BytesCapsule>
 	private static final byte[] MULTI_SIGN_FEE = "MULTI_SIGN_FEE".getBytes();
 	private static final byte[] EXCHANGE_CREATE_FEE = "EXCHANGE_CREATE_FEE".getBytes();
 	private static final byte[] EXCHANGE_BALANCE_LIMIT = "EXCHANGE_BALANCE_LIMIT".getBytes();
-	private static final byte[] TOTAL_TRANSACTION_COST = "TOTAL_TRANSACTION_COST".getBytes();
-	private static final byte[] TOTAL_CREATE_ACCOUNT_COST = "TOTAL_CREATE_ACCOUNT_COST".getBytes();
+	static final byte[] TOTAL_TRANSACTION_COST = "TOTAL_TRANSACTION_COST".getBytes();
+	static final byte[] TOTAL_CREATE_ACCOUNT_COST = "TOTAL_CREATE_ACCOUNT_COST".getBytes();
 	private static final byte[] TOTAL_CREATE_WITNESS_COST = "TOTAL_CREATE_WITNESS_FEE".getBytes();
-	private static final byte[] TOTAL_STAKE = "TOTAL_STAKE".getBytes();
+	static final byte[] TOTAL_STAKE = "TOTAL_STAKE".getBytes();
 	private static final byte[] FORK_CONTROLLER = "FORK_CONTROLLER".getBytes();
 	private static final String FORK_PREFIX = "FORK_VERSION_";
 	//This value is only allowed to be 0, 1, -1
@@ -1467,14 +1467,14 @@ public class DynamicPropertiesStore extends TronStoreWithRevoking<BytesCapsule>
 		return value == null ? Boolean.FALSE : Boolean.valueOf(new String(value));
 	}
 
-	private static class DynamicResourceProperties {
+	static class DynamicResourceProperties {
 
 		private static final byte[] ONE_DAY_BANDWIDTH_LIMIT = "ONE_DAY_BANDWIDTH_LIMIT".getBytes();
 		//public free bandwidth
-		private static final byte[] PUBLIC_BANDWIDTH_USAGE = "PUBLIC_BANDWIDTH_USAGE".getBytes();
+		static final byte[] PUBLIC_BANDWIDTH_USAGE = "PUBLIC_BANDWIDTH_USAGE".getBytes();
 		//fixed
 		private static final byte[] PUBLIC_BANDWIDTH_LIMIT = "PUBLIC_BANDWIDTH_LIMIT".getBytes();
-		private static final byte[] PUBLIC_BANDWIDTH_TIME = "PUBLIC_BANDWIDTH_TIME".getBytes();
+		static final byte[] PUBLIC_BANDWIDTH_TIME = "PUBLIC_BANDWIDTH_TIME".getBytes();
 		private static final byte[] FREE_BANDWIDTH_LIMIT = "FREE_BANDWIDTH_LIMIT".getBytes();
 		private static final byte[] TOTAL_BANDWIDTH_WEIGHT = "TOTAL_BANDWIDTH_WEIGHT".getBytes();
 		//ONE_DAY_BANDWIDTH_LIMIT - PUBLIC_BANDWIDTH_LIMIT，current TOTAL_BANDWIDTH_LIMIT
@@ -42,6 +42,8 @@ import io.midasprotocol.protos.Protocol;
 import io.midasprotocol.protos.Protocol.AccountType;
 import io.midasprotocol.protos.Protocol.Transaction;
 import io.midasprotocol.protos.Protocol.Transaction.Contract;
+import io.midasprotocol.protos.Protocol.Transaction.Contract.ContractType;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -155,11 +157,29 @@ public class Manager {
 	@Setter
 	private StakeAccountController stakeAccountController;
 	private ExecutorService validateSignService;
+	private int validateSignThreadNum;
+	@Getter
+	private ParallelTransactionExecutor parallelTransactionExecutor;
+
+	@Getter
+	private AtomicLong validatedSignCount = new AtomicLong();
+	@Getter
+	private AtomicLong validateSignTime = new AtomicLong();
+	@Getter
+	private AtomicLong validateSignQueueWaitTime = new AtomicLong();
 	private boolean isRunRepushThread = true;
 	private boolean isRunTriggerCapsuleProcessThread = true;
 	private long latestSolidifiedBlockNumber;
 	private BlockingQueue<TransactionCapsule> pushTransactionQueue = new LinkedBlockingQueue<>();
 
+	// pending executions that generateBlock may replay instead of executing again
+	private Map<Sha256Hash, SpeculativeExecution> speculativeExecutions = new ConcurrentHashMap<>();
+	private long pendingOrder;
+	@Getter
+	private AtomicLong speculativeReusedCount = new AtomicLong();
+	@Getter
+	private AtomicLong producedTrxCount = new AtomicLong();
+
 	@Getter
 	private Cache<Sha256Hash, Boolean> transactionIdCache = CacheBuilder
 		.newBuilder().maximumSize(100_000).recordStats().build();
@@ -167,9 +187,11 @@ public class Manager {
 	@Getter
 	private ForkController forkController = ForkController.instance();
 
-	private Set<String> ownerAddressSet = new HashSet<>();
+	private Set<ByteArrayWrapper> ownerAddressSet = ConcurrentHashMap.newKeySet();
+	@Getter
+	private VerifiedSignatureCache verifiedSignatureCache = new VerifiedSignatureCache();
 	// transactions cache
-	private List<TransactionCapsule> pendingTransactions;
+	private TransactionPool pendingTransactions;
 	// transactions popped
 	private List<TransactionCapsule> popedTransactions =
 		Collections.synchronizedList(Lists.newArrayList());
@@ -276,7 +298,7 @@ public class Manager {
 		getExchangeStore().put(exchangeCapsule.createDbKey(), exchangeCapsule);
 	}
 
-	public List<TransactionCapsule> getPendingTransactions() {
+	public TransactionPool getPendingTransactions() {
 		return this.pendingTransactions;
 	}
 
@@ -348,7 +370,7 @@ public class Manager {
 		this.setWitnessController(WitnessController.createInstance(this));
 		this.setProposalController(ProposalController.createInstance(this));
 		this.setStakeAccountController(StakeAccountController.createInstance(this));
-		this.pendingTransactions = Collections.synchronizedList(Lists.newArrayList());
+		this.pendingTransactions = new TransactionPool();
 		this.repushTransactions = new LinkedBlockingQueue<>();
 		this.triggerCapsuleQueue = new LinkedBlockingQueue<>();
 
@@ -376,8 +398,12 @@ public class Manager {
 
 		initCacheTxs();
 		revokingStore.enable();
-		validateSignService = Executors
-			.newFixedThreadPool(Args.getInstance().getValidateSignThreadNum());
+		validateSignThreadNum = Math.max(1, Args.getInstance().getValidateSignThreadNum());
+		validateSignService = Executors.newFixedThreadPool(validateSignThreadNum);
+		if (Args.getInstance().isParallelBlockExecution() && revokingStore instanceof SnapshotManager) {
+			parallelTransactionExecutor = new ParallelTransactionExecutor(this,
+				(SnapshotManager) revokingStore, validateSignThreadNum);
+		}
 		Thread repushThread = new Thread(repushLoop);
 		repushThread.start();
 
@@ -541,12 +567,21 @@ public class Manager {
 		long start = System.currentTimeMillis();
 		long headNum = dynamicPropertiesStore.getLatestBlockHeaderNumber();
 		long recentBlockCount = recentBlockStore.size();
+		long startNum = headNum - recentBlockCount + 1;
+		long restoredNum = transactionCache.restore();
+		if (restoredNum > headNum) {
+			logger.warn("txs cache snapshot is ahead of the head block {}, drop it.", headNum);
+			transactionCache.reset();
+		} else {
+			// only the blocks after the snapshot have to be read
+			startNum = Math.max(startNum, restoredNum + 1);
+		}
 		ListeningExecutorService service = MoreExecutors
 			.listeningDecorator(Executors.newFixedThreadPool(50));
 		List<ListenableFuture<?>> futures = new ArrayList<>();
 		AtomicLong blockCount = new AtomicLong(0);
 		AtomicLong emptyBlockCount = new AtomicLong(0);
-		LongStream.rangeClosed(headNum - recentBlockCount + 1, headNum).forEach(
+		LongStream.rangeClosed(startNum, headNum).forEach(
 			blockNum -> futures.add(service.submit(() -> {
 				try {
 					blockCount.incrementAndGet();
@@ -572,8 +607,10 @@ public class Manager {
 		} catch (ExecutionException e) {
 			logger.info(e.getMessage());
 		}
-		logger.info("end to init txs cache. trxids:{}, block count:{}, empty block count:{}, cost:{}",
+		logger.info("end to init txs cache. trxids:{}, restored block:{}, block count:{}, "
+				+ "empty block count:{}, cost:{}",
 			transactionCache.size(),
+			restoredNum,
 			blockCount.get(),
 			emptyBlockCount.get(),
 			System.currentTimeMillis() - start
@@ -704,10 +741,13 @@ public class Manager {
 			synchronized (this) {
 				if (!session.valid()) {
 					session.setValue(revokingStore.buildSession());
+					speculativeExecutions.clear();
+					pendingOrder = 0;
 				}
 
 				try (ISession tmpSession = revokingStore.buildSession()) {
 					processTransaction(trx, null);
+					captureSpeculativeExecution(trx);
 					pendingTransactions.add(trx);
 					tmpSession.merge();
 				}
@@ -718,6 +758,52 @@ public class Manager {
 		return true;
 	}
 
+	/**
+	 * Keeps the writes of a transaction just applied to the pending state, so that a block produced
+	 * on the same head can replay them. Only transactions that don't run the VM qualify: the VM sees
+	 * the block being produced, everything else only depends on the head state. Past the limit
+	 * nothing is kept, the transactions from there on are executed again when producing.
+	 */
+	private void captureSpeculativeExecution(TransactionCapsule trx) {
+		long order = pendingOrder++;
+		if (!Args.getInstance().isSpeculativeBlockProduction()
+			|| !(revokingStore instanceof SnapshotManager)
+			|| speculativeExecutions.size() >= Args.getInstance().getMaxSpeculativeExecutions()) {
+			return;
+		}
+		int type = trx.getInstance().getRawData().getContract(0).getType().getNumber();
+		if (type == ContractType.TriggerSmartContract_VALUE
+			|| type == ContractType.CreateSmartContract_VALUE) {
+			return;
+		}
+		speculativeExecutions.put(trx.getTransactionId(), new SpeculativeExecution(getHeadBlockId(),
+			order, ((SnapshotManager) revokingStore).captureWriteSet()));
+	}
+
+	/**
+	 * Applies a pending execution to the block session and redoes the writes that depend on the
+	 * block: the transaction result and its info.
+	 */
+	private void replayTransaction(TransactionCapsule trxCap, SpeculativeExecution execution,
+		BlockCapsule blockCap) {
+		((SnapshotManager) revokingStore).replay(execution.writeSet);
+		TransactionTrace trace = trxCap.getTrxTrace();
+		if (getDynamicPropertiesStore().supportVM()) {
+			trxCap.setResult(trace.getRuntime());
+		}
+		transactionStore.put(trxCap.getTransactionId().getBytes(), trxCap);
+		transactionHistoryStore.put(trxCap.getTransactionId().getBytes(),
+			TransactionInfoCapsule.buildInstance(trxCap, blockCap, trace));
+	}
+
+	/**
+	 * @return the share of produced block transactions whose pending execution was reused
+	 */
+	public double getSpeculativeReuseRatio() {
+		long produced = producedTrxCount.get();
+		return produced == 0 ? 0 : (double) speculativeReusedCount.get() / produced;
+	}
+
 	public void consumeMultiSignFee(TransactionCapsule trx, TransactionTrace trace)
 		throws AccountResourceInsufficientException {
 		if (trx.getInstance().getSignatureCount() > 1) {
@@ -993,13 +1079,18 @@ public class Manager {
 		//clear ownerAddressSet
 		synchronized (pushTransactionQueue) {
 			if (CollectionUtils.isNotEmpty(ownerAddressSet)) {
-				Set<String> result = new HashSet<>();
+				Set<ByteArrayWrapper> result = new HashSet<>();
 				for (TransactionCapsule transactionCapsule : repushTransactions) {
 					filterOwnerAddress(transactionCapsule, result);
 				}
 				for (TransactionCapsule transactionCapsule : pushTransactionQueue) {
 					filterOwnerAddress(transactionCapsule, result);
 				}
+				for (ByteArrayWrapper owner : ownerAddressSet) {
+					if (pendingTransactions.containsOwner(owner.getData())) {
+						result.add(owner);
+					}
+				}
 				ownerAddressSet.clear();
 				ownerAddressSet.addAll(result);
 			}
@@ -1109,6 +1200,19 @@ public class Manager {
 		return block;
 	}
 
+	/**
+	 * Get the encoded block without decoding it from the block store.
+	 *
+	 * @return null if the block doesn't exist
+	 */
+	public byte[] getBlockDataById(final Sha256Hash hash) {
+		BlockCapsule block = this.khaosDb.getBlock(hash);
+		if (block != null) {
+			return block.getData();
+		}
+		return blockStore.getBlockData(hash.getBytes());
+	}
+
 	/**
 	 * judge has blocks.
 	 */
@@ -1192,7 +1296,9 @@ public class Manager {
 		//
 		Contract contract = trxCap.getInstance().getRawData().getContract(0);
 		if (isMultSignTransaction(trxCap.getInstance())) {
-			ownerAddressSet.add(ByteArray.toHexString(TransactionCapsule.getOwner(contract)));
+			byte[] owner = TransactionCapsule.getOwner(contract);
+			ownerAddressSet.add(new ByteArrayWrapper(owner));
+			verifiedSignatureCache.invalidate(owner);
 		}
 
 		return true;
@@ -1242,6 +1348,12 @@ public class Manager {
 		}
 
 		long postponedTrxCount = 0;
+		// pending executions are replayed as long as the block takes the pending transactions in
+		// the order they were applied, the first one skipped or executed again ends the reuse
+		boolean reuse = session.valid() && !speculativeExecutions.isEmpty();
+		BlockId headId = getHeadBlockId();
+		long nextOrder = 0;
+		long reusedCount = 0;
 
 		final BlockCapsule blockCapsule =
 			new BlockCapsule(number + 1, preHash, when, witnessCapsule.getAddress());
@@ -1255,7 +1367,12 @@ public class Manager {
 			return null;
 		}
 
-		Set<String> accountSet = new HashSet<>();
+		List<TransactionCapsule> expired = pendingTransactions.removeExpired(timestamp);
+		if (!expired.isEmpty()) {
+			logger.info("{} pending transactions expired", expired.size());
+		}
+
+		Set<ByteArrayWrapper> accountSet = new HashSet<>();
 		Iterator<TransactionCapsule> iterator = pendingTransactions.iterator();
 		while (iterator.hasNext() || repushTransactions.size() > 0) {
 			boolean fromPending = false;
@@ -1275,16 +1392,17 @@ public class Manager {
 				break;
 			}
 			// check the block size
-			if ((blockCapsule.getInstance().getSerializedSize() + trx.getSerializedSize() + 3)
+			if ((blockCapsule.getSerializedSize() + trx.getSerializedSize() + 3)
 				> ChainConstant.BLOCK_SIZE) {
 				postponedTrxCount++;
+				reuse = false;
 				continue;
 			}
 			//
 			Contract contract = trx.getInstance().getRawData().getContract(0);
-			byte[] owner = TransactionCapsule.getOwner(contract);
-			String ownerAddress = ByteArray.toHexString(owner);
+			ByteArrayWrapper ownerAddress = ownerKey(TransactionCapsule.getOwner(contract));
 			if (accountSet.contains(ownerAddress)) {
+				reuse = false;
 				continue;
 			} else {
 				if (isMultSignTransaction(trx.getInstance())) {
@@ -1293,10 +1411,20 @@ public class Manager {
 			}
 			if (ownerAddressSet.contains(ownerAddress)) {
 				trx.setVerified(false);
+				reuse = false;
 			}
+			SpeculativeExecution execution = reuse && fromPending
+				? speculativeExecutions.get(trx.getTransactionId()) : null;
+			reuse = execution != null && execution.order == nextOrder && execution.head.equals(headId);
 			// apply transaction
 			try (ISession tmpSession = revokingStore.buildSession()) {
-				processTransaction(trx, blockCapsule);
+				if (reuse) {
+					replayTransaction(trx, execution, blockCapsule);
+					nextOrder++;
+					reusedCount++;
+				} else {
+					processTransaction(trx, blockCapsule);
+				}
 				tmpSession.merge();
 				// push into block
 				blockCapsule.addTransaction(trx);
@@ -1339,6 +1467,9 @@ public class Manager {
 		}
 
 		session.reset();
+		speculativeExecutions.clear();
+		producedTrxCount.addAndGet(blockCapsule.getTransactions().size());
+		speculativeReusedCount.addAndGet(reusedCount);
 
 		if (postponedTrxCount > 0) {
 			logger.info("{} transactions over the block size limit", postponedTrxCount);
@@ -1346,7 +1477,8 @@ public class Manager {
 
 		logger.info(
 			"postponedTrxCount[" + postponedTrxCount + "],TrxLeft[" + pendingTransactions.size()
-				+ "],repushTrxCount[" + repushTransactions.size() + "]");
+				+ "],repushTrxCount[" + repushTransactions.size() + "],reusedTrxCount[" + reusedCount
+				+ "/" + blockCapsule.getTransactions().size() + "]");
 		blockCapsule.setMerkleRoot();
 		blockCapsule.sign(privateKey);
 
@@ -1379,15 +1511,19 @@ public class Manager {
 		return null;
 	}
 
-	private void filterOwnerAddress(TransactionCapsule transactionCapsule, Set<String> result) {
+	private void filterOwnerAddress(TransactionCapsule transactionCapsule,
+		Set<ByteArrayWrapper> result) {
 		Contract contract = transactionCapsule.getInstance().getRawData().getContract(0);
-		byte[] owner = TransactionCapsule.getOwner(contract);
-		String ownerAddress = ByteArray.toHexString(owner);
+		ByteArrayWrapper ownerAddress = ownerKey(TransactionCapsule.getOwner(contract));
 		if (ownerAddressSet.contains(ownerAddress)) {
 			result.add(ownerAddress);
 		}
 	}
 
+	private static ByteArrayWrapper ownerKey(byte[] owner) {
+		return new ByteArrayWrapper(owner == null ? new byte[0] : owner);
+	}
+
 	private boolean isMultSignTransaction(Transaction transaction) {
 		Contract contract = transaction.getRawData().getContract(0);
 		switch (contract.getType()) {
@@ -1446,7 +1582,12 @@ public class Manager {
 			if (block.generatedByMyself) {
 				transactionCapsule.setVerified(true);
 			}
-			processTransaction(transactionCapsule, block);
+			if (parallelTransactionExecutor == null) {
+				processTransaction(transactionCapsule, block);
+			}
+		}
+		if (parallelTransactionExecutor != null) {
+			parallelTransactionExecutor.execute(block);
 		}
 
 		boolean needMaint = needMaintenance(block.getTimeStamp());
@@ -1668,6 +1809,9 @@ public class Manager {
 
 	public void closeAllStore() {
 		logger.info("******** begin to close db ********");
+		if (revokingStore instanceof SnapshotManager) {
+			((SnapshotManager) revokingStore).stopCheckpointService();
+		}
 		closeOneStore(accountStore);
 		closeOneStore(blockStore);
 		closeOneStore(blockIndexStore);
@@ -1694,6 +1838,10 @@ public class Manager {
 		closeOneStore(stakeAccountStore);
 		closeOneStore(bannedWitnessStore);
 		closeOneStore(blockRewardStore);
+		if (transactionCache != null) {
+			// saves the txs cache snapshot, see initCacheTxs
+			closeOneStore(transactionCache);
+		}
 		logger.info("******** end to close db ********");
 	}
 
@@ -1720,31 +1868,82 @@ public class Manager {
 		return false;
 	}
 
+	/**
+	 * Validate the signatures of a block in one chunk per validating thread, signer addresses are
+	 * recovered from the raw signature bytes and shared with the mempool through
+	 * {@link TransactionCapsule#recoverAddress(byte[], byte[])}.
+	 */
 	public void preValidateTransactionSign(BlockCapsule block)
 		throws InterruptedException, ValidateSignatureException {
-		logger.info("PreValidate Transaction Sign, size:" + block.getTransactions().size()
-			+ ",block num:" + block.getNum());
-		int transSize = block.getTransactions().size();
+		List<TransactionCapsule> transactions = block.getTransactions();
+		int transSize = transactions.size();
 		if (transSize <= 0) {
 			return;
 		}
-		CountDownLatch countDownLatch = new CountDownLatch(transSize);
-		List<Future<Boolean>> futures = new ArrayList<>(transSize);
+		int chunkNum = Math.min(transSize, validateSignThreadNum);
+		int chunkSize = (transSize + chunkNum - 1) / chunkNum;
+		List<Future<Long>> futures = new ArrayList<>(chunkNum);
 
-		for (TransactionCapsule transaction : block.getTransactions()) {
-			Future<Boolean> future = validateSignService
-				.submit(new ValidateSignTask(transaction, countDownLatch, this));
-			futures.add(future);
+		long start = System.nanoTime();
+		for (int from = 0; from < transSize; from += chunkSize) {
+			List<TransactionCapsule> chunk =
+				transactions.subList(from, Math.min(from + chunkSize, transSize));
+			futures.add(validateSignService.submit(new ValidateSignTask(chunk, start, this)));
 		}
-		countDownLatch.await();
 
-		for (Future<Boolean> future : futures) {
+		long maxQueueWait = 0;
+		ValidateSignatureException exception = null;
+		for (Future<Long> future : futures) {
 			try {
-				future.get();
+				maxQueueWait = Math.max(maxQueueWait, future.get());
 			} catch (ExecutionException e) {
-				throw new ValidateSignatureException(e.getCause().getMessage());
+				if (exception == null) {
+					exception = new ValidateSignatureException(e.getCause().getMessage());
+				}
 			}
 		}
+		long cost = System.nanoTime() - start;
+		validatedSignCount.addAndGet(transSize);
+		validateSignTime.addAndGet(cost);
+		validateSignQueueWaitTime.addAndGet(maxQueueWait);
+		logger.info("PreValidate Transaction Sign, size:{}, block num:{}, cost:{}ms, sigs/s:{}, "
+				+ "max queue wait:{}ms", transSize, block.getNum(),
+			TimeUnit.NANOSECONDS.toMillis(cost), transSize * 1_000_000_000L / Math.max(cost, 1),
+			TimeUnit.NANOSECONDS.toMillis(maxQueueWait));
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	/**
+	 * Stateless checks of a block received during sync, run without the manager lock before the
+	 * block is pushed: merkle root, witness signature recovery and the transaction signatures under
+	 * the current permissions. The results are only cached, pushBlock still does every check.
+	 */
+	public void precheckBlock(BlockCapsule block) {
+		try {
+			block.calcMerkleRoot();
+			block.recoverWitnessAddress();
+			for (TransactionCapsule trx : block.getTransactions()) {
+				trx.preVerifySignature(this);
+			}
+		} catch (Exception e) {
+			// pushBlock will run into the same problem and report it
+			logger.debug("Precheck block {} failed, {}", block.getBlockId().getString(), e.getMessage());
+		}
+	}
+
+	/**
+	 * The checks of a transaction that don't need an execution session: size, expiration, TaPoS
+	 * reference and dedup against the transaction cache. Lets the network drop junk before it
+	 * queues for {@link #pushTransaction(TransactionCapsule)}, which still runs them all.
+	 */
+	public void precheckTransaction(TransactionCapsule trx)
+		throws TooBigTransactionException, TransactionExpirationException, TaposException,
+		DupTransactionException {
+		validateCommon(trx);
+		validateTapos(trx);
+		validateDup(trx);
 	}
 
 	public void rePush(TransactionCapsule tx) {
@@ -1870,29 +2069,37 @@ public class Manager {
 		}
 	}
 
-	private static class ValidateSignTask implements Callable<Boolean> {
+	/**
+	 * Validates a chunk of transactions and returns how long (in nanos) it waited in the queue.
+	 */
+	private static class ValidateSignTask implements Callable<Long> {
 
-		private TransactionCapsule trx;
-		private CountDownLatch countDownLatch;
+		private List<TransactionCapsule> trxs;
+		private long submitTime;
 		private Manager manager;
 
-		ValidateSignTask(TransactionCapsule trx, CountDownLatch countDownLatch,
-						 Manager manager) {
-			this.trx = trx;
-			this.countDownLatch = countDownLatch;
+		ValidateSignTask(List<TransactionCapsule> trxs, long submitTime, Manager manager) {
+			this.trxs = trxs;
+			this.submitTime = submitTime;
 			this.manager = manager;
 		}
 
 		@Override
-		public Boolean call() throws ValidateSignatureException {
-			try {
+		public Long call() throws ValidateSignatureException {
+			long queueWait = System.nanoTime() - submitTime;
+			for (TransactionCapsule trx : trxs) {
 				trx.validateSignature(manager);
-			} catch (ValidateSignatureException e) {
-				throw e;
-			} finally {
-				countDownLatch.countDown();
 			}
-			return true;
+			return queueWait;
 		}
 	}
+
+	@AllArgsConstructor
+	private static class SpeculativeExecution {
+
+		private BlockId head;
+		// position in the pending state
+		private long order;
+		private SnapshotManager.WriteSet writeSet;
+	}
 }
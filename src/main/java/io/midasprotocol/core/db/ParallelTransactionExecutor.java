@@ -0,0 +1,261 @@
+package io.midasprotocol.core.db;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.midasprotocol.common.utils.ByteArray;
+import io.midasprotocol.core.capsule.AccountCapsule;
+import io.midasprotocol.core.capsule.BlockCapsule;
+import io.midasprotocol.core.capsule.BytesCapsule;
+import io.midasprotocol.core.capsule.TransactionCapsule;
+import io.midasprotocol.core.db.DynamicPropertiesStore.DynamicResourceProperties;
+import io.midasprotocol.core.db2.common.Key;
+import io.midasprotocol.core.db2.core.ISession;
+import io.midasprotocol.core.db2.core.SnapshotManager;
+import io.midasprotocol.core.db2.core.SnapshotManager.Branch;
+import io.midasprotocol.core.db2.core.SnapshotManager.Detached;
+import io.midasprotocol.core.db2.core.SnapshotManager.WriteSet;
+import io.midasprotocol.core.exception.*;
+import io.midasprotocol.protos.Protocol.Account;
+import io.midasprotocol.protos.Protocol.Transaction;
+import io.midasprotocol.protos.Protocol.Transaction.Contract.ContractType;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes the transactions of a block optimistically in parallel. Every transaction of a plain
+ * contract type runs in its own branch over the state at the start of the block, recording the
+ * keys it reads. The results are then merged in block order: a branch that read none of the keys
+ * written by the transactions before it saw exactly the state serial execution would have given
+ * it, so its writes are applied as they are. Any other transaction, and every branch that did a
+ * ranged read, is executed again on the merged state, the same way processBlock does it. The state
+ * and the receipts are the ones of serial execution.
+ *
+ * <p>Nearly every transaction adds to a few shared values: the public free bandwidth, the balance
+ * of the blackhole and the fee totals. These are no conflict, what a branch added is added again
+ * on the merged state when it is applied.
+ */
+@Slf4j(topic = "DB")
+public class ParallelTransactionExecutor {
+
+	/**
+	 * contract types that don't run the vm, don't post triggers and don't change the multi sign
+	 * state of the manager.
+	 */
+	private static final Set<ContractType> PARALLEL_TYPES = EnumSet.of(
+		ContractType.TransferContract,
+		ContractType.TransferAssetContract,
+		ContractType.VoteWitnessContract,
+		ContractType.FreezeBalanceContract,
+		ContractType.UnfreezeBalanceContract,
+		ContractType.StakeContract,
+		ContractType.UnstakeContract);
+
+	/**
+	 * totals that transactions add to and never take a decision on.
+	 */
+	private static final List<byte[]> TOTALS = Arrays.asList(
+		DynamicPropertiesStore.TOTAL_TRANSACTION_COST,
+		DynamicPropertiesStore.TOTAL_CREATE_ACCOUNT_COST,
+		DynamicPropertiesStore.TOTAL_STAKE);
+
+	private final Manager manager;
+	private final SnapshotManager snapshotManager;
+	private final BandwidthProcessor bandwidthProcessor;
+	private final ExecutorService executeService;
+
+	@Getter
+	private AtomicLong parallelCount = new AtomicLong();
+	@Getter
+	private AtomicLong reexecutedCount = new AtomicLong();
+
+	public ParallelTransactionExecutor(Manager manager, SnapshotManager snapshotManager,
+		int threadNum) {
+		this.manager = manager;
+		this.snapshotManager = snapshotManager;
+		this.bandwidthProcessor = new BandwidthProcessor(manager);
+		this.executeService = Executors.newFixedThreadPool(threadNum,
+			new ThreadFactoryBuilder().setNameFormat("parallel-execute-%d").setDaemon(true).build());
+	}
+
+	public void execute(BlockCapsule block)
+		throws ValidateSignatureException, ContractValidateException, ContractExeException,
+		AccountResourceInsufficientException, TransactionExpirationException,
+		TooBigTransactionException, TooBigTransactionResultException, DupTransactionException,
+		TaposException, ReceiptCheckErrException, VMIllegalException {
+		List<TransactionCapsule> transactions = block.getTransactions();
+		if (snapshotManager.isDisabled()) {
+			for (TransactionCapsule trx : transactions) {
+				manager.processTransaction(trx, block);
+			}
+			return;
+		}
+
+		int size = transactions.size();
+		List<Future<Branch>> futures = new ArrayList<>(Collections.nCopies(size, null));
+		Transaction[] instances = new Transaction[size];
+		boolean[] verified = new boolean[size];
+		for (int i = 0; i < size; i++) {
+			TransactionCapsule trx = transactions.get(i);
+			if (isParallel(trx)) {
+				instances[i] = trx.getInstance();
+				verified[i] = trx.isVerified();
+				futures.set(i, executeService.submit(() -> executeInBranch(trx, block)));
+			}
+		}
+
+		byte[] blackhole = manager.getAccountStore().getBlackhole().createDbKey();
+		List<Set<Key>> written = new ArrayList<>();
+		long parallel = 0;
+		long reexecuted = 0;
+		try {
+			for (int i = 0; i < size; i++) {
+				TransactionCapsule trx = transactions.get(i);
+				Branch branch = futures.get(i) == null ? null : getQuietly(futures.get(i));
+				if (branch != null && merge(trx, branch, written, blackhole)) {
+					++parallel;
+					continue;
+				}
+
+				if (futures.get(i) != null) {
+					trx.restore(instances[i], verified[i]);
+					++reexecuted;
+				}
+				try (ISession tmpSession = snapshotManager.buildSession()) {
+					manager.processTransaction(trx, block);
+					WriteSet writeSet = snapshotManager.captureWriteSet();
+					tmpSession.merge();
+					writeSet.collectKeys(written);
+				}
+			}
+		} finally {
+			// the branches read through the heads while merging moves them on, which is safe: any key
+			// written after a branch opened ends up in written and counts as a conflict. They are
+			// waited for so that none outlives the block, on an error the caller revokes the session
+			// they read through while they still set the traces of the block's transactions
+			futures.stream().filter(Objects::nonNull).forEach(this::getQuietly);
+			parallelCount.addAndGet(parallel);
+			reexecutedCount.addAndGet(reexecuted);
+		}
+		logger.debug("block {} executed, trx:{}, parallel:{}, reexecuted:{}",
+			block.getNum(), size, parallel, reexecuted);
+	}
+
+	/**
+	 * Applies a branch that read none of the keys written before it in the block, adding what it
+	 * added to the shared values to their merged state.
+	 *
+	 * @return false if the transaction has to be executed again instead
+	 */
+	private boolean merge(TransactionCapsule trx, Branch branch, List<Set<Key>> written,
+		byte[] blackhole) {
+		DynamicPropertiesStore properties = manager.getDynamicPropertiesStore();
+		AccountStore accountStore = manager.getAccountStore();
+
+		long[] added = new long[TOTALS.size()];
+		for (int i = 0; i < TOTALS.size(); i++) {
+			Detached total = branch.detach(properties.getDbName(), TOTALS.get(i));
+			if (total.getWritten() != null) {
+				if (total.getRead() == null) {
+					return false;
+				}
+				added[i] = ByteArray.toLong(total.getWritten()) - ByteArray.toLong(total.getRead());
+			}
+		}
+
+		// the blackhole as owner takes decisions on its own account, a conflict like any other
+		long burnt = 0;
+		byte[] owner = TransactionCapsule.getOwner(trx.getInstance().getRawData().getContract(0));
+		if (!Arrays.equals(owner, blackhole)) {
+			Detached account = branch.detach(accountStore.getDbName(), blackhole);
+			if (account.getWritten() != null) {
+				if (account.getRead() == null) {
+					return false;
+				}
+				Account before = new AccountCapsule(account.getRead()).getInstance();
+				Account after = new AccountCapsule(account.getWritten()).getInstance();
+				burnt = after.getBalance() - before.getBalance();
+				if (burnt < 0 || !after.toBuilder().setBalance(before.getBalance()).build()
+					.equals(before)) {
+					return false;
+				}
+			}
+		}
+
+		Detached publicUsage = branch.detach(properties.getDbName(),
+			DynamicResourceProperties.PUBLIC_BANDWIDTH_USAGE);
+		Detached publicTime = branch.detach(properties.getDbName(),
+			DynamicResourceProperties.PUBLIC_BANDWIDTH_TIME);
+		if (publicUsage.getWritten() == null && publicUsage.getRead() != null) {
+			// found the public free bandwidth used up, maybe only on a stale usage
+			return false;
+		}
+
+		if (branch.readsAny(written)) {
+			return false;
+		}
+
+		if (publicUsage.getWritten() != null) {
+			if (publicTime.getWritten() == null) {
+				return false;
+			}
+			long bytes = trx.getTrxTrace().getReceipt().getBandwidthUsage();
+			long now = ByteArray.toLong(publicTime.getWritten());
+			if (!bandwidthProcessor.usePublicFreeNet(bytes, now)) {
+				return false;
+			}
+		}
+
+		snapshotManager.apply(branch);
+		for (int i = 0; i < TOTALS.size(); i++) {
+			if (added[i] != 0) {
+				long total = ByteArray.toLong(properties.getUnchecked(TOTALS.get(i)).getData());
+				properties.put(TOTALS.get(i), new BytesCapsule(ByteArray.fromLong(total + added[i])));
+			}
+		}
+		if (burnt != 0) {
+			AccountCapsule account = accountStore.getUnchecked(blackhole);
+			account.setBalance(Math.addExact(account.getBalance(), burnt));
+			accountStore.put(blackhole, account);
+		}
+		branch.collectWrites(written);
+		return true;
+	}
+
+	private static boolean isParallel(TransactionCapsule trx) {
+		List<Transaction.Contract> contracts = trx.getInstance().getRawData().getContractList();
+		return contracts.size() == 1 && PARALLEL_TYPES.contains(contracts.get(0).getType());
+	}
+
+	/**
+	 * @return the closed branch, null if processing failed
+	 */
+	private Branch executeInBranch(TransactionCapsule trx, BlockCapsule block) {
+		try (Branch branch = snapshotManager.openBranch()) {
+			manager.processTransaction(trx, block);
+			return branch;
+		} catch (Exception e) {
+			// executed again in order, which gives the error of serial execution
+			logger.debug("parallel execution of {} failed: {}", trx.getTransactionId(),
+				e.getMessage());
+			return null;
+		}
+	}
+
+	private Branch getQuietly(Future<Branch> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			logger.warn(e.getMessage(), e);
+			return null;
+		}
+	}
+}
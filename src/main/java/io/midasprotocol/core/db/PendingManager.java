@@ -18,8 +18,7 @@ public class PendingManager implements AutoCloseable {
 	public PendingManager(Manager db) {
 
 		this.dbManager = db;
-		tmpTransactions.addAll(db.getPendingTransactions());
-		db.getPendingTransactions().clear();
+		tmpTransactions.addAll(db.getPendingTransactions().drain());
 		db.getSession().reset();
 	}
 
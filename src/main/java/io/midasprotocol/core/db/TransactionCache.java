@@ -2,6 +2,8 @@ package io.midasprotocol.core.db;
 
 import io.midasprotocol.core.capsule.BytesCapsule;
 import io.midasprotocol.core.db2.common.TxCacheDB;
+import io.midasprotocol.core.db2.core.RevokingDBWithCachingNewValue;
+import io.midasprotocol.core.db2.core.SnapshotRoot;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -13,4 +15,19 @@ public class TransactionCache extends TronStoreWithRevoking<BytesCapsule> {
 	public TransactionCache(@Value("trans-cache") String dbName) {
 		super(dbName, TxCacheDB.class);
 	}
+
+	/**
+	 * Restore the transaction ids saved when the node was last closed.
+	 *
+	 * @return the latest block number of the restored ids, -1 if there was nothing to restore
+	 */
+	public long restore() {
+		return getTxCacheDB().restore();
+	}
+
+	private TxCacheDB getTxCacheDB() {
+		SnapshotRoot root = (SnapshotRoot) ((RevokingDBWithCachingNewValue) revokingDB).getHead()
+			.getRoot();
+		return (TxCacheDB) root.getDb();
+	}
 }
@@ -0,0 +1,210 @@
+package io.midasprotocol.core.db;
+
+import io.midasprotocol.common.utils.Sha256Hash;
+import io.midasprotocol.core.capsule.TransactionCapsule;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The pending transactions, in the order they were applied to the pending state, indexed by
+ * transaction id, owner address and expiration. Iteration is weakly consistent and doesn't copy,
+ * so producing a block never blocks the threads adding to the pool.
+ */
+public class TransactionPool implements Iterable<TransactionCapsule> {
+
+	private static final Comparator<Entry> EXPIRATION_ORDER =
+		Comparator.comparingLong((Entry entry) -> entry.expiration).thenComparingLong(entry -> entry.seq);
+
+	private final AtomicLong sequence = new AtomicLong();
+	private final ConcurrentSkipListMap<Long, Entry> ordered = new ConcurrentSkipListMap<>();
+	private final Map<Sha256Hash, Entry> byId = new ConcurrentHashMap<>();
+	private final Map<ByteArrayWrapper, Set<Entry>> byOwner = new ConcurrentHashMap<>();
+	private final ConcurrentSkipListSet<Entry> byExpiration = new ConcurrentSkipListSet<>(EXPIRATION_ORDER);
+
+	/**
+	 * @return false if the transaction is already in the pool
+	 */
+	public boolean add(TransactionCapsule trx) {
+		Entry entry = new Entry(sequence.incrementAndGet(), trx);
+		// a concurrent remove of the same id waits until every index has the entry
+		synchronized (entry) {
+			if (byId.putIfAbsent(entry.id, entry) != null) {
+				return false;
+			}
+			ordered.put(entry.seq, entry);
+			byExpiration.add(entry);
+			byOwner.computeIfAbsent(entry.owner, k -> ConcurrentHashMap.newKeySet()).add(entry);
+		}
+		return true;
+	}
+
+	public boolean remove(TransactionCapsule trx) {
+		return remove(trx.getTransactionId());
+	}
+
+	public boolean remove(Sha256Hash id) {
+		Entry entry = byId.remove(id);
+		if (entry == null) {
+			return false;
+		}
+		unlink(entry);
+		return true;
+	}
+
+	private boolean remove(Entry entry) {
+		if (!byId.remove(entry.id, entry)) {
+			return false;
+		}
+		unlink(entry);
+		return true;
+	}
+
+	private void unlink(Entry entry) {
+		synchronized (entry) {
+			ordered.remove(entry.seq);
+			byExpiration.remove(entry);
+			byOwner.computeIfPresent(entry.owner, (k, entries) -> {
+				entries.remove(entry);
+				return entries.isEmpty() ? null : entries;
+			});
+		}
+	}
+
+	public boolean contains(Sha256Hash id) {
+		return byId.containsKey(id);
+	}
+
+	public boolean containsOwner(byte[] owner) {
+		return byOwner.containsKey(new ByteArrayWrapper(owner));
+	}
+
+	/**
+	 * @return the owner's pending transactions in pool order
+	 */
+	public List<TransactionCapsule> getByOwner(byte[] owner) {
+		Set<Entry> entries = byOwner.get(new ByteArrayWrapper(owner));
+		List<TransactionCapsule> result = new ArrayList<>();
+		if (entries != null) {
+			entries.stream().sorted(Comparator.comparingLong(entry -> entry.seq))
+				.forEach(entry -> result.add(entry.trx));
+		}
+		return result;
+	}
+
+	/**
+	 * Removes the transactions expiring at or before {@code time}.
+	 *
+	 * @return the removed transactions
+	 */
+	public List<TransactionCapsule> removeExpired(long time) {
+		List<TransactionCapsule> expired = new ArrayList<>();
+		Entry first;
+		while ((first = firstToExpire()) != null && first.expiration <= time) {
+			if (remove(first)) {
+				expired.add(first.trx);
+			}
+		}
+		return expired;
+	}
+
+	private Entry firstToExpire() {
+		try {
+			return byExpiration.first();
+		} catch (NoSuchElementException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Removes every transaction.
+	 *
+	 * @return the removed transactions in pool order
+	 */
+	public List<TransactionCapsule> drain() {
+		List<TransactionCapsule> result = new ArrayList<>();
+		for (Entry entry : ordered.values()) {
+			if (remove(entry)) {
+				result.add(entry.trx);
+			}
+		}
+		return result;
+	}
+
+	public List<TransactionCapsule> snapshot() {
+		List<TransactionCapsule> result = new ArrayList<>(ordered.size());
+		ordered.values().forEach(entry -> result.add(entry.trx));
+		return result;
+	}
+
+	public void clear() {
+		drain();
+	}
+
+	public int size() {
+		return byId.size();
+	}
+
+	public boolean isEmpty() {
+		return byId.isEmpty();
+	}
+
+	/**
+	 * Iterates in pool order, {@link Iterator#remove()} drops the transaction from the pool.
+	 */
+	@Override
+	public Iterator<TransactionCapsule> iterator() {
+		Iterator<Entry> entries = ordered.values().iterator();
+		return new Iterator<TransactionCapsule>() {
+
+			private Entry current;
+
+			@Override
+			public boolean hasNext() {
+				return entries.hasNext();
+			}
+
+			@Override
+			public TransactionCapsule next() {
+				current = entries.next();
+				return current.trx;
+			}
+
+			@Override
+			public void remove() {
+				if (current == null) {
+					throw new IllegalStateException();
+				}
+				TransactionPool.this.remove(current);
+				current = null;
+			}
+		};
+	}
+
+	private static class Entry {
+
+		private final long seq;
+		private final TransactionCapsule trx;
+		private final Sha256Hash id;
+		private final ByteArrayWrapper owner;
+		private final long expiration;
+
+		Entry(long seq, TransactionCapsule trx) {
+			this.seq = seq;
+			this.trx = trx;
+			this.id = trx.getTransactionId();
+			byte[] address = TransactionCapsule.getOwner(trx.getInstance().getRawData().getContract(0));
+			this.owner = new ByteArrayWrapper(address == null ? new byte[0] : address);
+			this.expiration = trx.getExpiration();
+		}
+	}
+}
@@ -23,7 +23,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import javax.annotation.PostConstruct;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -40,6 +42,9 @@ public abstract class TronStoreWithRevoking<T extends ProtoCapsule> implements I
 	private RevokingDatabase revokingDatabase;
 	@Getter
 	private String dbName;
+	private volatile Constructor<T> constructor;
+	@Getter
+	private CapsuleCache<T> capsuleCache;
 
 	protected TronStoreWithRevoking(String dbName) {
 		this.dbName = dbName;
@@ -79,23 +84,65 @@ public abstract class TronStoreWithRevoking<T extends ProtoCapsule> implements I
 		revokingDatabase.add(revokingDB);
 	}
 
+	/**
+	 * Keep decoded capsules of this store for hot keys, only for capsules that can be built from
+	 * their proto.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void enableCapsuleCache(long maxSize) {
+		Class<?> protoClass = TypeToken.of(token.getRawType())
+			.resolveType(ProtoCapsule.class.getTypeParameters()[0]).getRawType();
+		try {
+			Constructor<T> protoConstructor =
+				(Constructor<T>) token.getRawType().getConstructor(protoClass);
+			capsuleCache = new CapsuleCache<>(protoConstructor, maxSize);
+		} catch (NoSuchMethodException e) {
+			logger.warn("{} has no constructor of {}, capsule cache disabled.",
+				token.getRawType().getSimpleName(), protoClass.getSimpleName());
+		}
+	}
+
 	@Override
 	public void put(byte[] key, T item) {
 		if (Objects.isNull(key) || Objects.isNull(item)) {
 			return;
 		}
 
-		revokingDB.put(key, item.getData());
+		byte[] value = item.getData();
+		revokingDB.put(key, value);
+		if (capsuleCache != null) {
+			capsuleCache.put(key, value, item);
+		}
+	}
+
+	/**
+	 * Puts the items in order, taking the store lock once.
+	 */
+	public void putAll(List<Map.Entry<byte[], T>> items) {
+		List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>(items.size());
+		for (Map.Entry<byte[], T> item : items) {
+			entries.add(Maps.immutableEntry(item.getKey(), item.getValue().getData()));
+		}
+		revokingDB.putAll(entries);
+		if (capsuleCache != null) {
+			for (int i = 0; i < items.size(); i++) {
+				capsuleCache.put(entries.get(i).getKey(), entries.get(i).getValue(),
+					items.get(i).getValue());
+			}
+		}
 	}
 
 	@Override
 	public void delete(byte[] key) {
 		revokingDB.delete(key);
+		if (capsuleCache != null) {
+			capsuleCache.invalidate(key);
+		}
 	}
 
 	@Override
 	public T get(byte[] key) throws ItemNotFoundException, BadItemException {
-		return of(revokingDB.get(key));
+		return of(key, revokingDB.get(key));
 	}
 
 	@Override
@@ -103,18 +150,34 @@ public abstract class TronStoreWithRevoking<T extends ProtoCapsule> implements I
 		byte[] value = revokingDB.getUnchecked(key);
 
 		try {
-			return of(value);
+			return of(key, value);
 		} catch (BadItemException e) {
 			return null;
 		}
 	}
 
+	/**
+	 * Decode a value read from this store, going through the capsule cache when enabled.
+	 */
+	protected T of(byte[] key, byte[] value) throws BadItemException {
+		if (capsuleCache == null || value == null) {
+			return of(value);
+		}
+		T t = capsuleCache.get(key, value);
+		if (t == null) {
+			t = of(value);
+			capsuleCache.put(key, value, t);
+		}
+		return t;
+	}
+
+	@SuppressWarnings("unchecked")
 	public T of(byte[] value) throws BadItemException {
 		try {
-			Constructor constructor = token.getRawType().getConstructor(byte[].class);
-			@SuppressWarnings("unchecked")
-			T t = (T) constructor.newInstance((Object) value);
-			return t;
+			if (constructor == null) {
+				constructor = (Constructor<T>) token.getRawType().getConstructor(byte[].class);
+			}
+			return constructor.newInstance((Object) value);
 		} catch (NoSuchMethodException | IllegalAccessException | InstantiationException | InvocationTargetException e) {
 			throw new BadItemException(e.getMessage());
 		}
@@ -138,6 +201,9 @@ public abstract class TronStoreWithRevoking<T extends ProtoCapsule> implements I
 	@Override
 	public void reset() {
 		revokingDB.reset();
+		if (capsuleCache != null) {
+			capsuleCache.invalidateAll();
+		}
 	}
 
 	@Override
@@ -0,0 +1,131 @@
+package io.midasprotocol.core.db;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.primitives.Ints;
+import com.google.protobuf.ByteString;
+import io.midasprotocol.common.utils.Sha256Hash;
+import io.midasprotocol.core.capsule.TransactionCapsule;
+import io.midasprotocol.core.db.common.WrappedByteArray;
+import io.midasprotocol.protos.Protocol.Permission;
+import io.midasprotocol.protos.Protocol.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transactions whose signatures already passed validation, keyed by transaction id and the hash
+ * of the signature list. An entry is only reused while the owner still has the permission the
+ * signatures were checked against, and entries of an owner are dropped when its permissions are
+ * updated. The keys of every owner are indexed, so dropping them doesn't scan the cache.
+ */
+public class VerifiedSignatureCache {
+
+	private static final int MAX_SIZE = 100_000;
+
+	private Map<WrappedByteArray, Set<WrappedByteArray>> keysByOwner = new ConcurrentHashMap<>();
+
+	private Cache<WrappedByteArray, VerifiedSignature> cache = CacheBuilder.newBuilder()
+		.maximumSize(MAX_SIZE).recordStats().removalListener(this::onRemoval).build();
+
+	public boolean isVerified(TransactionCapsule trx, Permission permission) {
+		if (permission == null) {
+			return false;
+		}
+		VerifiedSignature verified = cache.getIfPresent(getKey(trx));
+		return verified != null && verified.getPermission().equals(permission);
+	}
+
+	public void put(TransactionCapsule trx, Permission permission, List<ByteString> approveList) {
+		byte[] owner = TransactionCapsule.getOwner(trx.getInstance().getRawData().getContract(0));
+		if (owner == null) {
+			return;
+		}
+		WrappedByteArray key = getKey(trx);
+		// indexed first, an entry evicted right after the put is then removed from the index too,
+		// the sets only change inside compute so they don't race with the removal
+		keysByOwner.compute(WrappedByteArray.of(owner), (k, keys) -> {
+			Set<WrappedByteArray> ownerKeys = keys == null ? new HashSet<>() : keys;
+			ownerKeys.add(key);
+			return ownerKeys;
+		});
+		cache.put(key, new VerifiedSignature(owner, permission, approveList));
+	}
+
+	/**
+	 * @return the addresses that signed the transaction, null if it was not verified yet
+	 */
+	public List<ByteString> getApproveList(TransactionCapsule trx) {
+		VerifiedSignature verified = cache.getIfPresent(getKey(trx));
+		return verified == null ? null : verified.getApproveList();
+	}
+
+	/**
+	 * Drop every verified transaction of the owner, called when its permissions change.
+	 */
+	public void invalidate(byte[] owner) {
+		Set<WrappedByteArray> keys = keysByOwner.remove(WrappedByteArray.of(owner));
+		if (keys != null) {
+			cache.invalidateAll(keys);
+		}
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+		keysByOwner.clear();
+	}
+
+	public long size() {
+		return cache.size();
+	}
+
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	private void onRemoval(RemovalNotification<WrappedByteArray, VerifiedSignature> notification) {
+		// a replaced entry keeps its key, the transaction id and so the owner are the same
+		if (notification.getCause() == RemovalCause.REPLACED) {
+			return;
+		}
+		WrappedByteArray key = notification.getKey();
+		keysByOwner.computeIfPresent(WrappedByteArray.of(notification.getValue().getOwner()),
+			(owner, keys) -> {
+				keys.remove(key);
+				return keys.isEmpty() ? null : keys;
+			});
+	}
+
+	private WrappedByteArray getKey(TransactionCapsule trx) {
+		MessageDigest digest = Sha256Hash.newDigest();
+		Transaction transaction = trx.getInstance();
+		for (ByteString sig : transaction.getSignatureList()) {
+			digest.update(Ints.toByteArray(sig.size()));
+			digest.update(sig.asReadOnlyByteBuffer());
+		}
+		byte[] id = trx.getTransactionId().getBytes();
+		byte[] sigHash = digest.digest();
+		byte[] key = Arrays.copyOf(id, id.length + sigHash.length);
+		System.arraycopy(sigHash, 0, key, id.length, sigHash.length);
+		return WrappedByteArray.of(key);
+	}
+
+	@Getter
+	@AllArgsConstructor
+	private static class VerifiedSignature {
+
+		private byte[] owner;
+		private Permission permission;
+		private List<ByteString> approveList;
+	}
+}
@@ -6,6 +6,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 @Component
 public class VoteChangeStore extends TronStoreWithRevoking<VoteChangeCapsule> {
 
@@ -19,4 +23,20 @@ public class VoteChangeStore extends TronStoreWithRevoking<VoteChangeCapsule> {
 		byte[] value = revokingDB.getUnchecked(key);
 		return ArrayUtils.isEmpty(value) ? null : new VoteChangeCapsule(value);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Removes every vote change, deleting all keys in one batch.
+	 *
+	 * @return the encoded vote changes
+	 */
+	public List<byte[]> drain() {
+		List<byte[]> keys = new ArrayList<>();
+		List<byte[]> values = new ArrayList<>();
+		for (Map.Entry<byte[], byte[]> entry : revokingDB) {
+			keys.add(entry.getKey());
+			values.add(entry.getValue());
+		}
+		revokingDB.deleteAll(keys);
+		return values;
+	}
+}
@@ -2,6 +2,7 @@ package io.midasprotocol.core.db;
 
 import com.google.common.collect.Streams;
 import io.midasprotocol.core.capsule.WitnessCapsule;
+import io.midasprotocol.core.exception.BadItemException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ArrayUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,9 +17,12 @@ import java.util.stream.Collectors;
 @Component
 public class WitnessStore extends TronStoreWithRevoking<WitnessCapsule> {
 
+	private static final long CAPSULE_CACHE_SIZE = 1_000;
+
 	@Autowired
 	protected WitnessStore(@Value("witness") String dbName) {
 		super(dbName);
+		enableCapsuleCache(CAPSULE_CACHE_SIZE);
 	}
 
 	/**
@@ -33,6 +37,13 @@ public class WitnessStore extends TronStoreWithRevoking<WitnessCapsule> {
 	@Override
 	public WitnessCapsule get(byte[] key) {
 		byte[] value = revokingDB.getUnchecked(key);
-		return ArrayUtils.isEmpty(value) ? null : new WitnessCapsule(value);
+		if (ArrayUtils.isEmpty(value)) {
+			return null;
+		}
+		try {
+			return of(key, value);
+		} catch (BadItemException e) {
+			return null;
+		}
 	}
 }
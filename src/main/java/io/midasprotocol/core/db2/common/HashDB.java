@@ -1,12 +1,13 @@
 package io.midasprotocol.core.db2.common;
 
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class HashDB implements DB<Key, Value> {
 
-	private Map<Key, Value> db = new HashMap<>();
+	// concurrent so that snapshot layers can be read while the block thread writes them
+	private Map<Key, Value> db = new ConcurrentHashMap<>();
 
 	@Override
 	public Value get(Key key) {
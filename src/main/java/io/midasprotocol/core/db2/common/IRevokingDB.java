@@ -2,6 +2,8 @@ package io.midasprotocol.core.db2.common;
 
 import io.midasprotocol.core.exception.ItemNotFoundException;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -11,6 +13,14 @@ public interface IRevokingDB extends Iterable<Map.Entry<byte[], byte[]>> {
 
 	void delete(byte[] key);
 
+	default void putAll(List<Map.Entry<byte[], byte[]>> entries) {
+		entries.forEach(entry -> put(entry.getKey(), entry.getValue()));
+	}
+
+	default void deleteAll(Collection<byte[]> keys) {
+		keys.forEach(this::delete);
+	}
+
 	boolean has(byte[] key);
 
 	byte[] get(byte[] key) throws ItemNotFoundException;
@@ -0,0 +1,70 @@
+package io.midasprotocol.core.db2.common;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over the keys of one snapshot layer. The key is hashed once per lookup by
+ * {@link #hash(byte[])}, so probing a layer only costs a few bit tests. There are no false
+ * negatives: a filter that runs out of capacity reports it and has to be rebuilt by the owner.
+ */
+public final class KeyBloomFilter {
+
+	private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+	private static final int HASH_NUM = 4;
+	private static final int BITS_PER_KEY = 10;
+	private static final int MIN_BITS = 1 << 10;
+
+	private final AtomicLongArray bits;
+	private final int bitSize;
+	private final long capacity;
+	private long count;
+
+	public KeyBloomFilter(long expectedKeys) {
+		long bitsNeeded = Math.max(1, expectedKeys * BITS_PER_KEY);
+		long size = Math.max(MIN_BITS, Long.highestOneBit(bitsNeeded) << 1);
+		this.bitSize = (int) Math.min(size, 1 << 30);
+		this.bits = new AtomicLongArray(bitSize >>> 6);
+		this.capacity = bitSize / BITS_PER_KEY;
+	}
+
+	public static long hash(byte[] key) {
+		return HASH_FUNCTION.hashBytes(key).asLong();
+	}
+
+	/**
+	 * @return false if the filter is over capacity, the hash was still added
+	 */
+	public boolean put(long hash) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= HASH_NUM; i++) {
+			int index = index(h1 + i * h2);
+			long mask = 1L << index;
+			long word = bits.get(index >>> 6);
+			if ((word & mask) == 0) {
+				bits.set(index >>> 6, word | mask);
+			}
+		}
+		return ++count <= capacity;
+	}
+
+	public boolean mightContain(long hash) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= HASH_NUM; i++) {
+			int index = index(h1 + i * h2);
+			if ((bits.get(index >>> 6) & (1L << index)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int index(int combined) {
+		// bitSize is a power of two
+		return combined & (bitSize - 1);
+	}
+}
@@ -1,96 +1,393 @@
 package io.midasprotocol.core.db2.common;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
 import com.google.common.primitives.Longs;
+import io.midasprotocol.core.config.args.Args;
 import io.midasprotocol.core.db.common.WrappedByteArray;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
 
+/**
+ * Transaction ids of the recent blocks, used to reject duplicated transactions.
+ *
+ * <p>The ids live in an open addressing table of fixed-length keys backed by primitive arrays, so
+ * nothing is left to the garbage collector. Every block number owns a bucket of a ring with
+ * {@link #BLOCK_COUNT} slots, which lists the table slots written for that block. Reusing a bucket
+ * for a newer block expires the ids of the old one, so expiry costs O(1) per id.
+ *
+ * <p>The table is written to a snapshot file when the db is closed and can be restored at startup
+ * instead of reading the recent blocks again.
+ */
 @Slf4j(topic = "DB")
 public class TxCacheDB implements DB<byte[], byte[]>, Flusher {
 
 	// > 65_536(= 2^16) blocks, that is the number of the reference block
-	private final int BLOCK_COUNT = 70_000;
+	private static final int BLOCK_COUNT = 70_000;
+	private static final int KEY_LENGTH = 32;
+	private static final int INITIAL_CAPACITY = 1 << 16;
+	private static final long EMPTY = -1;
+	private static final long DELETED = -2;
 
-	private Map<Key, Long> db = new WeakHashMap<>();
-	private Multimap<Long, Key> blockNumMap = ArrayListMultimap.create();
+	private static final String SNAPSHOT_FILE = "txids.snapshot";
+	private static final int SNAPSHOT_MAGIC = 0x54584944;
+	private static final int SNAPSHOT_VERSION = 1;
+
+	private Path snapshotFile;
+
+	// synchronized, the revoking db does not serialize readers
+	private byte[] keys;
+	private long[] blockNums;
+	private int capacity;
+	private int size;
+	// live entries and tombstones
+	private int used;
+
+	private long[] bucketBlockNums = new long[BLOCK_COUNT];
+	private int[][] bucketSlots = new int[BLOCK_COUNT][];
+	private int[] bucketSizes = new int[BLOCK_COUNT];
+	private long latestBlockNum = EMPTY;
+
+	public TxCacheDB() {
+		init(INITIAL_CAPACITY);
+	}
+
+	public TxCacheDB(String parentName, String name) {
+		this();
+		this.snapshotFile = Paths.get(parentName, Args.getInstance().getStorage().getDbDirectory(),
+			name, SNAPSHOT_FILE);
+	}
+
+	private void init(int capacity) {
+		this.capacity = capacity;
+		this.keys = new byte[capacity * KEY_LENGTH];
+		this.blockNums = new long[capacity];
+		Arrays.fill(blockNums, EMPTY);
+		Arrays.fill(bucketBlockNums, EMPTY);
+		Arrays.fill(bucketSizes, 0);
+		size = 0;
+		used = 0;
+		latestBlockNum = EMPTY;
+	}
 
 	@Override
-	public byte[] get(byte[] key) {
-		Long v = db.get(Key.of(key));
-		return v == null ? null : Longs.toByteArray(v);
+	public synchronized byte[] get(byte[] key) {
+		int slot = find(key);
+		return slot < 0 ? null : Longs.toByteArray(blockNums[slot]);
 	}
 
 	@Override
-	public void put(byte[] key, byte[] value) {
+	public synchronized void put(byte[] key, byte[] value) {
 		if (key == null || value == null) {
 			return;
 		}
+		if (key.length != KEY_LENGTH) {
+			throw new IllegalArgumentException("key length must be " + KEY_LENGTH);
+		}
+
+		put(key, 0, Longs.fromByteArray(value));
+	}
+
+	private void put(byte[] key, int offset, long blockNum) {
+		int bucket = (int) (blockNum % BLOCK_COUNT);
+		if (bucketBlockNums[bucket] > blockNum) {
+			// older than the whole ring
+			return;
+		}
+		if (bucketBlockNums[bucket] < blockNum) {
+			expire(bucket);
+			bucketBlockNums[bucket] = blockNum;
+		}
+		latestBlockNum = Math.max(latestBlockNum, blockNum);
+
+		if (used + 1 > capacity - (capacity >>> 2)) {
+			rehash();
+		}
+
+		int mask = capacity - 1;
+		int slot = hash(key, offset) & mask;
+		int free = -1;
+		while (blockNums[slot] != EMPTY) {
+			if (blockNums[slot] == DELETED) {
+				if (free < 0) {
+					free = slot;
+				}
+			} else if (equals(slot, key, offset)) {
+				if (blockNums[slot] != blockNum) {
+					// the old bucket skips the slot once the block number differs
+					blockNums[slot] = blockNum;
+					append(bucket, slot);
+				}
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if (free < 0) {
+			free = slot;
+			used++;
+		}
+		System.arraycopy(key, offset, keys, free * KEY_LENGTH, KEY_LENGTH);
+		blockNums[free] = blockNum;
+		size++;
+		append(bucket, free);
+	}
+
+	private void expire(int bucket) {
+		long blockNum = bucketBlockNums[bucket];
+		int[] slots = bucketSlots[bucket];
+		for (int i = 0; i < bucketSizes[bucket]; i++) {
+			if (blockNums[slots[i]] == blockNum) {
+				blockNums[slots[i]] = DELETED;
+				size--;
+			}
+		}
+		bucketSizes[bucket] = 0;
+		if (blockNum != EMPTY) {
+			logger.debug("******removeEldest block number:{}, size:{}", blockNum, size);
+		}
+	}
+
+	private void append(int bucket, int slot) {
+		int[] slots = bucketSlots[bucket];
+		int n = bucketSizes[bucket];
+		if (slots == null) {
+			slots = bucketSlots[bucket] = new int[4];
+		} else if (n == slots.length) {
+			slots = bucketSlots[bucket] = Arrays.copyOf(slots, n << 1);
+		}
+		slots[n] = slot;
+		bucketSizes[bucket] = n + 1;
+	}
+
+	/**
+	 * Drops the tombstones and grows the table if it is more than half full. Slots move, so the
+	 * buckets are rebuilt from the live entries.
+	 */
+	private void rehash() {
+		byte[] oldKeys = keys;
+		long[] oldBlockNums = blockNums;
+		int oldCapacity = capacity;
+		long[] oldBucketBlockNums = bucketBlockNums.clone();
+		long oldLatest = latestBlockNum;
+
+		int newCapacity = size + 1 > (oldCapacity >>> 1) ? oldCapacity << 1 : oldCapacity;
+		init(newCapacity);
+		System.arraycopy(oldBucketBlockNums, 0, bucketBlockNums, 0, BLOCK_COUNT);
+		latestBlockNum = oldLatest;
+
+		int mask = capacity - 1;
+		for (int i = 0; i < oldCapacity; i++) {
+			long blockNum = oldBlockNums[i];
+			if (blockNum < 0) {
+				continue;
+			}
+			int slot = hash(oldKeys, i * KEY_LENGTH) & mask;
+			while (blockNums[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			System.arraycopy(oldKeys, i * KEY_LENGTH, keys, slot * KEY_LENGTH, KEY_LENGTH);
+			blockNums[slot] = blockNum;
+			size++;
+			used++;
+			append((int) (blockNum % BLOCK_COUNT), slot);
+		}
+	}
 
-		Key k = Key.copyOf(key);
-		Long v = Longs.fromByteArray(value);
-		blockNumMap.put(v, k);
-		db.put(k, v);
-		removeEldest();
+	private int find(byte[] key) {
+		if (key == null || key.length != KEY_LENGTH) {
+			return -1;
+		}
+		int mask = capacity - 1;
+		int slot = hash(key, 0) & mask;
+		while (blockNums[slot] != EMPTY) {
+			if (blockNums[slot] != DELETED && equals(slot, key, 0)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
 	}
 
-	private void removeEldest() {
-		Set<Long> keys = blockNumMap.keySet();
-		if (keys.size() > BLOCK_COUNT) {
-			keys.stream()
-				.min(Long::compareTo)
-				.ifPresent(k -> {
-					blockNumMap.removeAll(k);
-					logger.debug("******removeEldest block number:{}, block count:{}", k, keys.size());
-				});
+	private boolean equals(int slot, byte[] key, int offset) {
+		int base = slot * KEY_LENGTH;
+		for (int i = 0; i < KEY_LENGTH; i++) {
+			if (keys[base + i] != key[offset + i]) {
+				return false;
+			}
 		}
+		return true;
+	}
+
+	private static int hash(byte[] key, int offset) {
+		// transaction ids are sha256 digests, the leading bytes are uniformly distributed
+		long h = Longs.fromBytes(key[offset], key[offset + 1], key[offset + 2], key[offset + 3],
+			key[offset + 4], key[offset + 5], key[offset + 6], key[offset + 7]);
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return (int) h;
 	}
 
 	@Override
-	public long size() {
-		return db.size();
+	public synchronized long size() {
+		return size;
 	}
 
 	@Override
-	public boolean isEmpty() {
-		return db.isEmpty();
+	public synchronized boolean isEmpty() {
+		return size == 0;
+	}
+
+	public synchronized long getLatestBlockNum() {
+		return latestBlockNum;
 	}
 
 	@Override
-	public void remove(byte[] key) {
-		if (key != null) {
-			db.remove(Key.of(key));
+	public synchronized void remove(byte[] key) {
+		int slot = find(key);
+		if (slot >= 0) {
+			blockNums[slot] = DELETED;
+			size--;
 		}
 	}
 
 	@Override
-	public Iterator<Map.Entry<byte[], byte[]>> iterator() {
-		return Iterators.transform(db.entrySet().iterator(),
-			e -> Maps.immutableEntry(e.getKey().getBytes(), Longs.toByteArray(e.getValue())));
+	public synchronized Iterator<Map.Entry<byte[], byte[]>> iterator() {
+		List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>(size);
+		for (int i = 0; i < capacity; i++) {
+			if (blockNums[i] >= 0) {
+				entries.add(Maps.immutableEntry(
+					Arrays.copyOfRange(keys, i * KEY_LENGTH, (i + 1) * KEY_LENGTH),
+					Longs.toByteArray(blockNums[i])));
+			}
+		}
+		return entries.iterator();
 	}
 
 	@Override
-	public void flush(Map<WrappedByteArray, WrappedByteArray> batch) {
+	public synchronized void flush(Map<WrappedByteArray, WrappedByteArray> batch) {
 		batch.forEach((k, v) -> this.put(k.getBytes(), v.getBytes()));
 	}
 
+	/**
+	 * Writes the ids to the snapshot file, replacing the previous one atomically.
+	 */
+	public synchronized void save() throws IOException {
+		if (snapshotFile == null) {
+			return;
+		}
+		Files.createDirectories(snapshotFile.getParent());
+		Path tmp = snapshotFile.resolveSibling(SNAPSHOT_FILE + ".tmp");
+		CRC32 crc = new CRC32();
+		try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+			new BufferedOutputStream(Files.newOutputStream(tmp)), crc))) {
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(SNAPSHOT_VERSION);
+			out.writeLong(latestBlockNum);
+			out.writeInt(size);
+			for (int i = 0; i < capacity; i++) {
+				if (blockNums[i] >= 0) {
+					out.write(keys, i * KEY_LENGTH, KEY_LENGTH);
+					out.writeLong(blockNums[i]);
+				}
+			}
+			// the checksum itself is not part of the checksum
+			out.writeLong(crc.getValue());
+		}
+		Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING,
+			StandardCopyOption.ATOMIC_MOVE);
+		logger.info("save txs cache snapshot, trxids:{}, latest block:{}", size, latestBlockNum);
+	}
+
+	/**
+	 * Adds the ids of the snapshot file to the cache and deletes the file, a corrupted file is
+	 * ignored.
+	 *
+	 * @return the latest block number of the snapshot, -1 if nothing was restored
+	 */
+	public synchronized long restore() {
+		if (snapshotFile == null || !Files.exists(snapshotFile)) {
+			return EMPTY;
+		}
+		long restored = EMPTY;
+		CRC32 crc = new CRC32();
+		try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+			new BufferedInputStream(Files.newInputStream(snapshotFile)), crc))) {
+			if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+				throw new IOException("unknown snapshot format");
+			}
+			long snapshotLatest = in.readLong();
+			int count = in.readInt();
+			if (count < 0 || count > Integer.MAX_VALUE / (KEY_LENGTH + Long.BYTES)) {
+				throw new IOException("bad snapshot size " + count);
+			}
+			byte[] entries = new byte[count * (KEY_LENGTH + Long.BYTES)];
+			in.readFully(entries);
+			long checksum = crc.getValue();
+			if (in.readLong() != checksum) {
+				throw new IOException("snapshot checksum mismatch");
+			}
+			for (int i = 0; i < count; i++) {
+				int offset = i * (KEY_LENGTH + Long.BYTES);
+				put(entries, offset, Longs.fromByteArray(
+					Arrays.copyOfRange(entries, offset + KEY_LENGTH, offset + KEY_LENGTH + Long.BYTES)));
+			}
+			restored = snapshotLatest;
+			logger.info("restore txs cache snapshot, trxids:{}, latest block:{}", count, restored);
+		} catch (IOException e) {
+			logger.warn("restore txs cache snapshot failed, " + e.getMessage());
+		}
+		deleteSnapshot();
+		return restored;
+	}
+
+	private void deleteSnapshot() {
+		if (snapshotFile == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(snapshotFile);
+		} catch (IOException e) {
+			logger.warn("delete txs cache snapshot failed, " + e.getMessage());
+		}
+	}
+
 	@Override
-	public void close() {
-		reset();
-		db = null;
-		blockNumMap = null;
+	public synchronized void close() {
+		if (size > 0) {
+			try {
+				save();
+			} catch (IOException e) {
+				logger.warn("save txs cache snapshot failed, " + e.getMessage());
+			}
+		}
+		clear();
 	}
 
 	@Override
-	public void reset() {
-		db.clear();
-		blockNumMap.clear();
+	public synchronized void reset() {
+		clear();
+		deleteSnapshot();
+	}
+
+	private void clear() {
+		init(INITIAL_CAPACITY);
+		Arrays.fill(bucketSlots, null);
 	}
 }
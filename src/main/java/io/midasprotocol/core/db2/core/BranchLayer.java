@@ -0,0 +1,117 @@
+package io.midasprotocol.core.db2.core;
+
+import io.midasprotocol.core.db2.common.Key;
+import io.midasprotocol.core.db2.common.Value;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes of one thread over the head of one db, kept out of the snapshot chain, together with
+ * every key the thread looked up through it and the value it got. Only the owning thread touches
+ * it.
+ */
+final class BranchLayer {
+
+	private final SnapshotImpl layer;
+	// the value of every key as first read, later reads get the same
+	private final Map<Key, byte[]> reads = new HashMap<>();
+	private final Set<Key> detached = new HashSet<>();
+	private boolean rangeRead;
+
+	BranchLayer(Snapshot head) {
+		layer = new SnapshotImpl(head, false);
+	}
+
+	byte[] get(byte[] key) {
+		Key k = Key.of(key);
+		Value own = layer.getDb().get(k);
+		if (own != null) {
+			// reading back its own write doesn't depend on the transactions before it
+			return own.getBytes();
+		}
+		if (reads.containsKey(k)) {
+			return copy(reads.get(k));
+		}
+		byte[] value = layer.get(key);
+		reads.put(Key.copyOf(key), copy(value));
+		return value;
+	}
+
+	void put(byte[] key, byte[] value) {
+		layer.put(key, value);
+	}
+
+	void remove(byte[] key) {
+		layer.remove(key);
+	}
+
+	/**
+	 * Iterations and range lookups are not tracked key by key, any of them makes the layer
+	 * conflict with everything.
+	 */
+	void markRangeRead() {
+		rangeRead = true;
+	}
+
+	/**
+	 * Takes the key out of {@link #readsAny(Set)} and {@link #getWrites()}.
+	 */
+	void detach(Key key) {
+		detached.add(key);
+	}
+
+	/**
+	 * @return the value first read for the key, null if it wasn't read or wasn't found
+	 */
+	byte[] getRead(Key key) {
+		return copy(reads.get(key));
+	}
+
+	/**
+	 * @return the value written for the key, null if it wasn't written or was deleted
+	 */
+	byte[] getWritten(Key key) {
+		Value value = layer.getDb().get(key);
+		return value == null ? null : value.getBytes();
+	}
+
+	boolean readsAny(Set<Key> keys) {
+		if (rangeRead) {
+			return true;
+		}
+		Set<Key> small = reads.size() < keys.size() ? reads.keySet() : keys;
+		Set<Key> large = small == keys ? reads.keySet() : keys;
+		for (Key key : small) {
+			if (large.contains(key) && !detached.contains(key)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	List<Map.Entry<Key, Value>> getWrites() {
+		List<Map.Entry<Key, Value>> writes = new ArrayList<>();
+		layer.getDb().forEach(entry -> {
+			if (!detached.contains(entry.getKey())) {
+				writes.add(entry);
+			}
+		});
+		return writes;
+	}
+
+	/**
+	 * Adds every key written, detached or not.
+	 */
+	void collectWrites(Set<Key> keys) {
+		layer.getDb().forEach(entry -> keys.add(entry.getKey()));
+	}
+
+	private static byte[] copy(byte[] value) {
+		return value == null ? null : value.clone();
+	}
+}
@@ -12,11 +12,18 @@ import lombok.Getter;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * Reads are lock free: the head is published through a volatile field and every snapshot layer
+ * is backed by a concurrent map, so api readers never wait for block processing. Writers still
+ * serialize on this instance, except a thread with an open branch, which reads and writes its
+ * own layer.
+ */
 public class RevokingDBWithCachingNewValue implements IRevokingDB {
 
 	//true:fullnode, false:soliditynode
 	private ThreadLocal<Boolean> mode = new ThreadLocal<>();
-	private Snapshot head;
+	private volatile Snapshot head;
+	private final ThreadLocal<BranchLayer> branch = new ThreadLocal<>();
 	@Getter
 	private String dbName;
 	private Class<? extends DB> clz;
@@ -41,7 +48,7 @@ public class RevokingDBWithCachingNewValue implements IRevokingDB {
 		}
 	}
 
-	public synchronized Snapshot getHead() {
+	public Snapshot getHead() {
 		return head();
 	}
 
@@ -49,6 +56,21 @@ public class RevokingDBWithCachingNewValue implements IRevokingDB {
 		this.head = head;
 	}
 
+	void setBranch(BranchLayer layer) {
+		if (layer == null) {
+			branch.remove();
+		} else {
+			branch.set(layer);
+		}
+	}
+
+	private void markRangeRead() {
+		BranchLayer layer = branch.get();
+		if (layer != null) {
+			layer.markRangeRead();
+		}
+	}
+
 	/**
 	 * close the database.
 	 */
@@ -65,17 +87,63 @@ public class RevokingDBWithCachingNewValue implements IRevokingDB {
 	}
 
 	@Override
-	public synchronized void put(byte[] key, byte[] value) {
-		head().put(key, value);
+	public void put(byte[] key, byte[] value) {
+		BranchLayer layer = branch.get();
+		if (layer != null) {
+			layer.put(key, value);
+			return;
+		}
+		synchronized (this) {
+			head().put(key, value);
+		}
 	}
 
 	@Override
-	public synchronized void delete(byte[] key) {
-		head().remove(key);
+	public void delete(byte[] key) {
+		BranchLayer layer = branch.get();
+		if (layer != null) {
+			layer.remove(key);
+			return;
+		}
+		synchronized (this) {
+			head().remove(key);
+		}
+	}
+
+	/**
+	 * Writes the entries in order under one acquisition of the store lock.
+	 */
+	@Override
+	public void putAll(List<Map.Entry<byte[], byte[]>> entries) {
+		BranchLayer layer = branch.get();
+		if (layer != null) {
+			entries.forEach(entry -> layer.put(entry.getKey(), entry.getValue()));
+			return;
+		}
+		synchronized (this) {
+			Snapshot snapshot = head();
+			entries.forEach(entry -> snapshot.put(entry.getKey(), entry.getValue()));
+		}
+	}
+
+	/**
+	 * Deletes the keys under one acquisition of the store lock.
+	 */
+	@Override
+	public void deleteAll(Collection<byte[]> keys) {
+		BranchLayer layer = branch.get();
+		if (layer != null) {
+			keys.forEach(layer::remove);
+			return;
+		}
+		synchronized (this) {
+			Snapshot snapshot = head();
+			keys.forEach(snapshot::remove);
+		}
 	}
 
 	@Override
-	public synchronized byte[] get(byte[] key) throws ItemNotFoundException {
+	public byte[] get(byte[] key) throws ItemNotFoundException {
 		byte[] value = getUnchecked(key);
 		if (value == null) {
 			throw new ItemNotFoundException();
@@ -85,28 +153,32 @@ public class RevokingDBWithCachingNewValue implements IRevokingDB {
 	}
 
 	@Override
-	public synchronized byte[] getUnchecked(byte[] key) {
-		return head().get(key);
+	public byte[] getUnchecked(byte[] key) {
+		BranchLayer layer = branch.get();
+		return layer != null ? layer.get(key) : head().get(key);
 	}
 
 	@Override
-	public synchronized boolean has(byte[] key) {
+	public boolean has(byte[] key) {
 		return getUnchecked(key) != null;
 	}
 
 	@Override
-	public synchronized Iterator<Map.Entry<byte[], byte[]>> iterator() {
+	public Iterator<Map.Entry<byte[], byte[]>> iterator() {
+		// ranged reads of a branch see the head only, the branch can't be merged afterwards
+		markRangeRead();
 		return head().iterator();
 	}
 
 	//for blockstore
 	@Override
 	public Set<byte[]> getlatestValues(long limit) {
+		markRangeRead();
 		return getlatestValues(head(), limit);
 	}
 
 	//for blockstore
-	private synchronized Set<byte[]> getlatestValues(Snapshot head, long limit) {
+	private Set<byte[]> getlatestValues(Snapshot head, long limit) {
 		if (limit <= 0) {
 			return Collections.emptySet();
 		}
@@ -173,6 +245,7 @@ public class RevokingDBWithCachingNewValue implements IRevokingDB {
 
 	@Override
 	public Set<byte[]> getValuesNext(byte[] key, long limit) {
+		markRangeRead();
 		return getValuesNext(head(), key, limit);
 	}
 }
@@ -7,26 +7,74 @@ import com.google.common.collect.Streams;
 import io.midasprotocol.core.db.common.WrappedByteArray;
 import io.midasprotocol.core.db2.common.HashDB;
 import io.midasprotocol.core.db2.common.Key;
+import io.midasprotocol.core.db2.common.KeyBloomFilter;
 import io.midasprotocol.core.db2.common.Value;
 import lombok.Getter;
 
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 public class SnapshotImpl extends AbstractSnapshot<Key, Value> {
 
+	/**
+	 * lookups by the number of layers visited: 0, 1, 2-3, 4-7, ..., 256 and more.
+	 */
+	private static final LongAdder[] LOOKUP_DEPTH = new LongAdder[10];
+
+	static {
+		for (int i = 0; i < LOOKUP_DEPTH.length; i++) {
+			LOOKUP_DEPTH[i] = new LongAdder();
+		}
+	}
+
 	@Getter
 	protected Snapshot root;
 
+	// every key ever written to this layer, lets lookups skip layers that can't hold the key
+	private volatile KeyBloomFilter filter = new KeyBloomFilter(0);
+
 	SnapshotImpl(Snapshot snapshot) {
+		this(snapshot, true);
+	}
+
+	/**
+	 * @param link false for a layer that reads through the snapshot but is not its next
+	 */
+	SnapshotImpl(Snapshot snapshot, boolean link) {
 		root = snapshot.getRoot();
 		previous = snapshot;
-		snapshot.setNext(this);
+		if (link) {
+			snapshot.setNext(this);
+		}
 		synchronized (this) {
 			db = new HashDB();
 		}
 
 	}
 
+	public static long[] getLookupDepthHistogram() {
+		long[] histogram = new long[LOOKUP_DEPTH.length];
+		for (int i = 0; i < histogram.length; i++) {
+			histogram[i] = LOOKUP_DEPTH[i].sum();
+		}
+		return histogram;
+	}
+
+	private static void recordLookupDepth(int depth) {
+		int bucket = 32 - Integer.numberOfLeadingZeros(depth);
+		LOOKUP_DEPTH[Math.min(bucket, LOOKUP_DEPTH.length - 1)].increment();
+	}
+
+	private void track(Key key) {
+		long hash = KeyBloomFilter.hash(key.getBytes());
+		if (!filter.put(hash)) {
+			KeyBloomFilter rebuilt = new KeyBloomFilter(db.size() * 2 + 1);
+			Streams.stream(db).forEach(e -> rebuilt.put(KeyBloomFilter.hash(e.getKey().getBytes())));
+			rebuilt.put(hash);
+			filter = rebuilt;
+		}
+	}
+
 	@Override
 	public byte[] get(byte[] key) {
 		return get(this, key);
@@ -37,26 +85,39 @@ public class SnapshotImpl extends AbstractSnapshot<Key, Value> {
 		Preconditions.checkNotNull(key, "key in db is not null.");
 		Preconditions.checkNotNull(value, "value in db is not null.");
 
-		db.put(Key.copyOf(key), Value.copyOf(Value.Operator.PUT, value));
+		Key k = Key.copyOf(key);
+		track(k);
+		db.put(k, Value.copyOf(Value.Operator.PUT, value));
 	}
 
 	@Override
 	public void remove(byte[] key) {
 		Preconditions.checkNotNull(key, "key in db is not null.");
-		db.put(Key.of(key), Value.of(Value.Operator.DELETE, null));
+		Key k = Key.of(key);
+		track(k);
+		db.put(k, Value.of(Value.Operator.DELETE, null));
 	}
 
 	private byte[] get(Snapshot head, byte[] key) {
 		Snapshot snapshot = head;
+		Key k = Key.of(key);
+		long hash = KeyBloomFilter.hash(key);
+		int depth = 0;
 		Value value;
 		while (Snapshot.isImpl(snapshot)) {
-			if ((value = ((SnapshotImpl) snapshot).db.get(Key.of(key))) != null) {
-				return value.getBytes();
+			SnapshotImpl impl = (SnapshotImpl) snapshot;
+			if (impl.filter.mightContain(hash)) {
+				++depth;
+				if ((value = impl.db.get(k)) != null) {
+					recordLookupDepth(depth);
+					return value.getBytes();
+				}
 			}
 
 			snapshot = snapshot.getPrevious();
 		}
 
+		recordLookupDepth(depth);
 		return snapshot == null ? null : snapshot.get(key);
 	}
 
@@ -75,7 +136,10 @@ public class SnapshotImpl extends AbstractSnapshot<Key, Value> {
 	@Override
 	public void merge(Snapshot from) {
 		SnapshotImpl fromImpl = (SnapshotImpl) from;
-		Streams.stream(fromImpl.db).forEach(e -> db.put(e.getKey(), e.getValue()));
+		Streams.stream(fromImpl.db).forEach(e -> {
+			track(e.getKey());
+			db.put(e.getKey(), e.getValue());
+		});
 	}
 
 	// we have a 4x4 matrix of all possibilities when merging previous snapshot and current snapshot :
@@ -102,6 +166,7 @@ public class SnapshotImpl extends AbstractSnapshot<Key, Value> {
 				Value v = e.getValue();
 				Value value = db.get(k);
 				if (value == null) {
+					track(k);
 					db.put(k, v);
 				} else if (value.getOperator() == Value.Operator.DELETE) {
 					db.put(k, Value.copyOf(Value.Operator.MODIFY, v.getBytes()));
@@ -117,6 +182,7 @@ public class SnapshotImpl extends AbstractSnapshot<Key, Value> {
 				Value v = e.getValue();
 				Value value = db.get(k);
 				if (value == null || value.getOperator() == Value.Operator.MODIFY) {
+					track(k);
 					db.put(k, v);
 				} else if (value.getOperator() == Value.Operator.CREATE) {
 					db.put(k, Value.copyOf(Value.Operator.CREATE, v.getBytes()));
@@ -131,6 +197,7 @@ public class SnapshotImpl extends AbstractSnapshot<Key, Value> {
 			.forEach(k -> {
 				Value value = db.get(k);
 				if (value == null || value.getOperator() == Value.Operator.MODIFY) {
+					track(k);
 					db.put(k, Value.of(Value.Operator.DELETE, null));
 				} else if (value.getOperator() == Value.Operator.CREATE) {
 					db.remove(k);
@@ -8,12 +8,12 @@ import io.midasprotocol.common.storage.WriteOptionsWrapper;
 import io.midasprotocol.core.config.args.Args;
 import io.midasprotocol.core.db.CheckTmpStore;
 import io.midasprotocol.core.db.RevokingDatabase;
-import io.midasprotocol.core.db.common.WrappedByteArray;
 import io.midasprotocol.core.db2.common.DB;
 import io.midasprotocol.core.db2.common.IRevokingDB;
 import io.midasprotocol.core.db2.common.Key;
 import io.midasprotocol.core.db2.common.Value;
 import io.midasprotocol.core.exception.RevokingStoreIllegalStateException;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -59,6 +59,15 @@ public class SnapshotManager implements RevokingDatabase {
 	@Setter
 	private volatile int maxFlushCount = DEFAULT_MIN_FLUSH_COUNT;
 
+	private ListeningExecutorService checkpointService = MoreExecutors.listeningDecorator(
+		Executors.newSingleThreadExecutor(
+			new ThreadFactoryBuilder().setNameFormat("checkpoint").setDaemon(true).build()
+		));
+	private volatile ListenableFuture<?> pendingFlush = Futures.immediateFuture(null);
+
+	@Getter
+	private volatile FlushCost lastFlushCost;
+
 	public static String simpleDecode(byte[] bytes) {
 		byte[] lengthBytes = Arrays.copyOf(bytes, 4);
 		int length = Ints.fromByteArray(lengthBytes);
@@ -81,6 +90,8 @@ public class SnapshotManager implements RevokingDatabase {
 		}
 
 		if (size > maxSize.get()) {
+			// the refresh of the previous flush resets the solidity
+			waitForFlush();
 			flushCount = flushCount + (size - maxSize.get());
 			updateSolidity(size - maxSize.get());
 			size = maxSize.get();
@@ -113,6 +124,10 @@ public class SnapshotManager implements RevokingDatabase {
 	}
 
 	private void retreat() {
+		if (size == 1) {
+			// the previous of the last snapshot may still be relinked by the refresh
+			waitForFlush();
+		}
 		dbs.forEach(db -> db.setHead(db.getHead().retreat()));
 		--size;
 	}
@@ -220,10 +235,26 @@ public class SnapshotManager implements RevokingDatabase {
 			System.out.println(e.getMessage() + e);
 			Thread.currentThread().interrupt();
 		}
+		waitForFlush();
 		checkTmpStore.getDbSource().closeDB();
 		System.err.println("******** end to pop revokingDb ********");
 	}
 
+	/**
+	 * Stops the checkpoint thread once the pending flush is written, the stores may be closed after.
+	 */
+	public void stopCheckpointService() {
+		waitForFlush();
+		checkpointService.shutdown();
+		try {
+			if (!checkpointService.awaitTermination(1, TimeUnit.MINUTES)) {
+				logger.warn("checkpoint service did not terminate");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
 	public void updateSolidity(int hops) {
 		for (int i = 0; i < hops; i++) {
 			for (RevokingDBWithCachingNewValue db : dbs) {
@@ -236,14 +267,12 @@ public class SnapshotManager implements RevokingDatabase {
 		return flushCount >= maxFlushCount;
 	}
 
-	private void refresh() {
-		List<ListenableFuture<?>> futures = new ArrayList<>(dbs.size());
-		for (RevokingDBWithCachingNewValue db : dbs) {
-			futures.add(flushServices.get(db.getDbName()).submit(() -> refreshOne(db)));
-		}
-		Future<?> future = Futures.allAsList(futures);
+	/**
+	 * Wait for the checkpoint and refresh of the previous flush, they run behind the next blocks.
+	 */
+	public void waitForFlush() {
 		try {
-			future.get();
+			pendingFlush.get();
 		} catch (InterruptedException e) {
 			Thread.currentThread().interrupt();
 		} catch (ExecutionException e) {
@@ -251,23 +280,28 @@ public class SnapshotManager implements RevokingDatabase {
 		}
 	}
 
-	private void refreshOne(RevokingDBWithCachingNewValue db) {
-		if (Snapshot.isRoot(db.getHead())) {
-			return;
+	private void refresh(List<FlushTarget> targets) {
+		List<ListenableFuture<?>> futures = new ArrayList<>(targets.size());
+		for (FlushTarget target : targets) {
+			futures.add(flushServices.get(target.db.getDbName()).submit(() -> refreshOne(target)));
 		}
-
-		List<Snapshot> snapshots = new ArrayList<>();
-
-		SnapshotRoot root = (SnapshotRoot) db.getHead().getRoot();
-		Snapshot next = root;
-		for (int i = 0; i < flushCount; ++i) {
-			next = next.getNext();
-			snapshots.add(next);
+		Future<?> future = Futures.allAsList(futures);
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			logger.error(e.getMessage(), e);
 		}
+	}
 
-		root.merge(snapshots);
+	private void refreshOne(FlushTarget target) {
+		RevokingDBWithCachingNewValue db = target.db;
+		SnapshotRoot root = target.root;
+		root.merge(target.snapshots);
 
 		root.resetSolidity();
+		Snapshot next = target.snapshots.get(target.snapshots.size() - 1);
 		if (db.getHead() == next) {
 			db.setHead(root);
 		} else {
@@ -283,58 +317,144 @@ public class SnapshotManager implements RevokingDatabase {
 
 		if (shouldBeRefreshed()) {
 			long start = System.currentTimeMillis();
-			deleteCheckPoint();
-			createCheckPoint();
-			long checkPointEnd = System.currentTimeMillis();
-			refresh();
+			waitForFlush();
+			long waitCost = System.currentTimeMillis() - start;
+
+			// the flushed snapshots are below the solidity and won't change any more
+			List<FlushTarget> targets = new ArrayList<>(dbs.size());
+			for (RevokingDBWithCachingNewValue db : dbs) {
+				Snapshot head = db.getHead();
+				if (Snapshot.isRoot(head) || flushCount == 0) {
+					continue;
+				}
+
+				List<Snapshot> snapshots = new ArrayList<>(flushCount);
+				Snapshot next = head.getRoot();
+				for (int i = 0; i < flushCount; ++i) {
+					next = next.getNext();
+					snapshots.add(next);
+				}
+				targets.add(new FlushTarget(db, (SnapshotRoot) head.getRoot(), snapshots));
+			}
 			flushCount = 0;
-			logger.info("flush cost:{}, create checkpoint cost:{}, refresh cost:{}",
-				System.currentTimeMillis() - start,
-				checkPointEnd - start,
-				System.currentTimeMillis() - checkPointEnd
-			);
+
+			pendingFlush = checkpointService.submit(() -> flush(targets, waitCost));
+			if (size == 0) {
+				// the head is a flushed snapshot, the refresh moves it
+				waitForFlush();
+			}
 		}
 	}
 
-	private void createCheckPoint() {
-		Map<WrappedByteArray, WrappedByteArray> batch = new HashMap<>();
-		for (RevokingDBWithCachingNewValue db : dbs) {
-			Snapshot head = db.getHead();
-			if (Snapshot.isRoot(head)) {
-				return;
-			}
+	private void flush(List<FlushTarget> targets, long waitCost) {
+		long start = System.currentTimeMillis();
+		deleteCheckPoint();
+		long deleteEnd = System.currentTimeMillis();
+		long entryCount = createCheckPoint(targets);
+		long checkPointEnd = System.currentTimeMillis();
+		refresh(targets);
+		long end = System.currentTimeMillis();
+
+		lastFlushCost = new FlushCost(waitCost, deleteEnd - start, checkPointEnd - deleteEnd,
+			end - checkPointEnd, entryCount);
+		logger.info("flush cost:{}, wait previous flush cost:{}, delete checkpoint cost:{}, "
+				+ "create checkpoint cost:{}, checkpoint entries:{}, refresh cost:{}",
+			end - start,
+			waitCost,
+			deleteEnd - start,
+			checkPointEnd - deleteEnd,
+			entryCount,
+			end - checkPointEnd
+		);
+		logger.info("snapshot lookup depth histogram(0, 1, 2-3, 4-7, ...):{}",
+			Arrays.toString(SnapshotImpl.getLookupDepthHistogram()));
+	}
 
-			String dbName = db.getDbName();
-			Snapshot next = head.getRoot();
-			for (int i = 0; i < flushCount; ++i) {
-				next = next.getNext();
-				SnapshotImpl snapshot = (SnapshotImpl) next;
-				DB<Key, Value> keyValueDB = snapshot.getDb();
+	private long createCheckPoint(List<FlushTarget> targets) {
+		// one write batch, applied in insertion order, so a key of a later snapshot wins
+		Map<byte[], byte[]> batch = new LinkedHashMap<>();
+		for (FlushTarget target : targets) {
+			byte[] prefix = simpleEncode(target.db.getDbName());
+			for (Snapshot snapshot : target.snapshots) {
+				DB<Key, Value> keyValueDB = ((SnapshotImpl) snapshot).getDb();
 				for (Map.Entry<Key, Value> e : keyValueDB) {
-					Key k = e.getKey();
-					Value v = e.getValue();
-					batch.put(WrappedByteArray.of(Bytes.concat(simpleEncode(dbName), k.getBytes())),
-						WrappedByteArray.of(v.encode()));
+					batch.put(Bytes.concat(prefix, e.getKey().getBytes()), e.getValue().encode());
 				}
 			}
 		}
 
-		checkTmpStore.getDbSource().updateByBatch(batch.entrySet().stream()
-				.map(e -> Maps.immutableEntry(e.getKey().getBytes(), e.getValue().getBytes()))
-				.collect(HashMap::new, (m, k) -> m.put(k.getKey(), k.getValue()), HashMap::putAll),
+		checkTmpStore.getDbSource().updateByBatch(batch,
 			WriteOptionsWrapper.getInstance().sync(Args.getInstance().getStorage().isDbSync()));
+		return batch.size();
 	}
 
 	private void deleteCheckPoint() {
-		Map<byte[], byte[]> hmap = new HashMap<byte[], byte[]>();
-		if (!checkTmpStore.getDbSource().allKeys().isEmpty()) {
-			for (Map.Entry<byte[], byte[]> e : checkTmpStore.getDbSource()) {
-				hmap.put(e.getKey(), null);
+		// drop the whole store instead of deleting the previous checkpoint key by key
+		checkTmpStore.getDbSource().resetDb();
+	}
+
+	/**
+	 * Collects the writes of the newest session layer of every db. Must be called before the
+	 * session is merged; the result can be replayed with {@link #replay(WriteSet)} into a session
+	 * whose state equals the one the writes were made on.
+	 */
+	public WriteSet captureWriteSet() {
+		List<List<Map.Entry<Key, Value>>> writes = new ArrayList<>(dbs.size());
+		for (RevokingDBWithCachingNewValue db : dbs) {
+			Snapshot head = db.getHead();
+			if (!Snapshot.isImpl(head)) {
+				throw new IllegalStateException("no session to capture on " + db.getDbName());
+			}
+			List<Map.Entry<Key, Value>> entries = new ArrayList<>();
+			((SnapshotImpl) head).getDb().forEach(entries::add);
+			writes.add(entries);
+		}
+		return new WriteSet(writes);
+	}
+
+	public void replay(WriteSet writeSet) {
+		for (int i = 0; i < dbs.size(); i++) {
+			write(dbs.get(i), writeSet.writes.get(i));
+		}
+	}
+
+	private static void write(RevokingDBWithCachingNewValue db, List<Map.Entry<Key, Value>> entries) {
+		for (Map.Entry<Key, Value> entry : entries) {
+			if (entry.getValue().getOperator() == Value.Operator.DELETE) {
+				db.delete(entry.getKey().getBytes());
+			} else {
+				db.put(entry.getKey().getBytes(), entry.getValue().getBytes());
 			}
 		}
+	}
 
-		checkTmpStore.getDbSource().updateByBatch(hmap, WriteOptionsWrapper.getInstance()
-			.sync(Args.getInstance().getStorage().isDbSync()));
+	/**
+	 * Opens a branch over the current head of every db for the calling thread: until it is closed
+	 * the thread reads through and writes to the branch only, other threads don't see its writes.
+	 * The branch reads through to the live heads, so it may see writes made to them after it was
+	 * opened; the caller has to treat reads of such keys as conflicts.
+	 */
+	public Branch openBranch() {
+		List<BranchLayer> layers = new ArrayList<>(dbs.size());
+		for (RevokingDBWithCachingNewValue db : dbs) {
+			BranchLayer layer = new BranchLayer(db.getHead());
+			db.setBranch(layer);
+			layers.add(layer);
+		}
+		return new Branch(dbs, layers);
+	}
+
+	/**
+	 * Writes the writes of a closed branch to the heads.
+	 */
+	public void apply(Branch branch) {
+		for (int i = 0; i < dbs.size(); i++) {
+			write(dbs.get(i), branch.layers.get(i).getWrites());
+		}
+	}
+
+	public synchronized boolean isDisabled() {
+		return disabled;
 	}
 
 	// ensure run this method first after process start.
@@ -385,6 +505,134 @@ public class SnapshotManager implements RevokingDatabase {
 		return r;
 	}
 
+	/**
+	 * The per db layers of a thread opened by {@link #openBranch()}, closing it detaches the thread
+	 * from them.
+	 */
+	public static class Branch implements AutoCloseable {
+
+		private final List<RevokingDBWithCachingNewValue> dbs;
+		private final List<BranchLayer> layers;
+
+		private Branch(List<RevokingDBWithCachingNewValue> dbs, List<BranchLayer> layers) {
+			this.dbs = dbs;
+			this.layers = layers;
+		}
+
+		/**
+		 * @param written keys per db, in the order of the dbs
+		 * @return true if the branch read any of the keys, or did a ranged read
+		 */
+		public boolean readsAny(List<Set<Key>> written) {
+			for (int i = 0; i < layers.size(); i++) {
+				if (layers.get(i).readsAny(i < written.size() ? written.get(i) : Collections.emptySet())) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Adds the keys written by the branch to {@code written}, growing it to one set per db.
+		 * Detached keys count as written.
+		 */
+		public void collectWrites(List<Set<Key>> written) {
+			for (int i = 0; i < layers.size(); i++) {
+				if (written.size() <= i) {
+					written.add(new HashSet<>());
+				}
+				layers.get(i).collectWrites(written.get(i));
+			}
+		}
+
+		/**
+		 * Takes a key out of {@link #readsAny(List)} and {@link SnapshotManager#apply(Branch)}, for a
+		 * value the caller derives on the merged state itself, like a total every transaction adds
+		 * to.
+		 *
+		 * @return what the branch read and wrote of the key
+		 */
+		public Detached detach(String dbName, byte[] key) {
+			for (int i = 0; i < dbs.size(); i++) {
+				if (dbs.get(i).getDbName().equals(dbName)) {
+					BranchLayer layer = layers.get(i);
+					Key k = Key.copyOf(key);
+					layer.detach(k);
+					return new Detached(layer.getRead(k), layer.getWritten(k));
+				}
+			}
+			throw new IllegalArgumentException("no db " + dbName);
+		}
+
+		@Override
+		public void close() {
+			dbs.forEach(db -> db.setBranch(null));
+		}
+	}
+
+	/**
+	 * A key taken out of a branch: the value the branch read first and the one it wrote, null if it
+	 * didn't read or write it.
+	 */
+	@Getter
+	@AllArgsConstructor
+	public static class Detached {
+
+		private byte[] read;
+		private byte[] written;
+	}
+
+	@AllArgsConstructor
+	private static class FlushTarget {
+
+		private RevokingDBWithCachingNewValue db;
+		private SnapshotRoot root;
+		private List<Snapshot> snapshots;
+	}
+
+	/**
+	 * Latency breakdown of a flush in milliseconds.
+	 */
+	@Getter
+	@AllArgsConstructor
+	public static class FlushCost {
+
+		private long waitPreviousCost;
+		private long deleteCheckPointCost;
+		private long createCheckPointCost;
+		private long refreshCost;
+		private long checkPointEntries;
+	}
+
+	/**
+	 * The keys written by one session layer, per db in registration order.
+	 */
+	public static class WriteSet {
+
+		private final List<List<Map.Entry<Key, Value>>> writes;
+
+		private WriteSet(List<List<Map.Entry<Key, Value>>> writes) {
+			this.writes = writes;
+		}
+
+		public int size() {
+			return writes.stream().mapToInt(List::size).sum();
+		}
+
+		/**
+		 * Adds the written keys to {@code written}, growing it to one set per db.
+		 */
+		public void collectKeys(List<Set<Key>> written) {
+			for (int i = 0; i < writes.size(); i++) {
+				if (written.size() <= i) {
+					written.add(new HashSet<>());
+				}
+				Set<Key> keys = written.get(i);
+				writes.get(i).forEach(entry -> keys.add(entry.getKey()));
+			}
+		}
+	}
+
 	@Slf4j(topic = "DB")
 	@Getter // only for unit test
 	public static class Session implements ISession {
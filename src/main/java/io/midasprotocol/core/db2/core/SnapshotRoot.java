@@ -21,16 +21,12 @@ public class SnapshotRoot extends AbstractSnapshot<byte[], byte[]> {
 
 	public SnapshotRoot(String parentName, String name, Class<? extends DB> clz) {
 		try {
-			if (clz == LevelDB.class || clz == RocksDB.class) {
+			if (clz == LevelDB.class || clz == RocksDB.class || clz == TxCacheDB.class) {
 				Constructor constructor = clz.getConstructor(String.class, String.class);
 				@SuppressWarnings("unchecked")
 				DB<byte[], byte[]> db = (DB<byte[], byte[]>) constructor
 					.newInstance((Object) parentName, (Object) name);
 				this.db = db;
-			} else if (clz == TxCacheDB.class) {
-				@SuppressWarnings("unchecked")
-				DB<byte[], byte[]> db = (DB<byte[], byte[]>) clz.newInstance();
-				this.db = db;
 			} else {
 				throw new IllegalArgumentException();
 			}
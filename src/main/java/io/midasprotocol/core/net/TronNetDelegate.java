@@ -1,5 +1,8 @@
 package io.midasprotocol.core.net;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import io.midasprotocol.common.overlay.message.Message;
 import io.midasprotocol.common.overlay.server.SyncPool;
 import io.midasprotocol.common.utils.Sha256Hash;
@@ -45,6 +48,13 @@ public class TronNetDelegate {
 
 	private int blockIdCacheSize = 100;
 
+	// encoded blocks recently served, peers syncing from us tend to fetch the same ranges
+	private Cache<BlockId, BlockMessage> servedBlockCache = CacheBuilder.newBuilder()
+		.maximumWeight(64L * 1024 * 1024)
+		.weigher((BlockId id, BlockMessage msg) -> msg.getData().length)
+		.recordStats()
+		.build();
+
 	private Queue<BlockId> freshBlockId = new ConcurrentLinkedQueue<BlockId>() {
 		@Override
 		public boolean offer(BlockId blockId) {
@@ -55,6 +65,10 @@ public class TronNetDelegate {
 		}
 	};
 
+	public CacheStats getServedBlockCacheStats() {
+		return servedBlockCache.stats();
+	}
+
 	public Collection<PeerConnection> getActivePeer() {
 		return syncPool.getActivePeers();
 	}
@@ -132,7 +146,17 @@ public class TronNetDelegate {
 		try {
 			switch (type) {
 				case BLOCK:
-					return new BlockMessage(dbManager.getBlockById(hash));
+					BlockId blockId = new BlockId(hash);
+					BlockMessage blockMessage = servedBlockCache.getIfPresent(blockId);
+					if (blockMessage == null) {
+						byte[] data = dbManager.getBlockDataById(hash);
+						if (data == null) {
+							throw new StoreException();
+						}
+						blockMessage = new BlockMessage(blockId, data);
+						servedBlockCache.put(blockId, blockMessage);
+					}
+					return blockMessage;
 				case TRX:
 					TransactionCapsule tx = dbManager.getTransactionStore().get(hash.getBytes());
 					if (tx != null) {
@@ -148,6 +172,10 @@ public class TronNetDelegate {
 		}
 	}
 
+	public void precheckBlock(BlockCapsule block) {
+		dbManager.precheckBlock(block);
+	}
+
 	public void processBlock(BlockCapsule block) throws P2pException {
 		synchronized (blockLock) {
 			try {
@@ -197,6 +225,17 @@ public class TronNetDelegate {
 		}
 	}
 
+	public void precheckTransaction(TransactionCapsule trx) throws P2pException {
+		try {
+			dbManager.precheckTransaction(trx);
+		} catch (TooBigTransactionException
+			| TransactionExpirationException
+			| TaposException
+			| DupTransactionException e) {
+			throw new P2pException(TypeEnum.TRX_EXE_FAILED, e);
+		}
+	}
+
 	public boolean validBlock(BlockCapsule block) throws P2pException {
 		try {
 			if (!block.validateSignature(dbManager)) {
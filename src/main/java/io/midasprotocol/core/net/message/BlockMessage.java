@@ -10,7 +10,8 @@ import io.midasprotocol.core.exception.P2pException;
 
 public class BlockMessage extends TronMessage {
 
-	private BlockCapsule block;
+	private volatile BlockCapsule block;
+	private BlockId blockId;
 
 	public BlockMessage(byte[] data) throws BadItemException, P2pException {
 		super(data);
@@ -26,13 +27,35 @@ public class BlockMessage extends TronMessage {
 		data = block.getData();
 		this.type = MessageTypes.BLOCK.asByte();
 		this.block = block;
+		this.blockId = block.getBlockId();
+	}
+
+	/**
+	 * A block read from the store to be sent as it is, the capsule is only decoded if someone asks
+	 * for it.
+	 */
+	public BlockMessage(BlockId blockId, byte[] data) {
+		super(data);
+		this.type = MessageTypes.BLOCK.asByte();
+		this.blockId = blockId;
 	}
 
 	public BlockId getBlockId() {
-		return getBlockCapsule().getBlockId();
+		return blockId != null ? blockId : getBlockCapsule().getBlockId();
 	}
 
 	public BlockCapsule getBlockCapsule() {
+		if (block == null) {
+			synchronized (this) {
+				if (block == null) {
+					try {
+						block = new BlockCapsule(data);
+					} catch (BadItemException e) {
+						throw new IllegalStateException("bad block " + blockId.getString(), e);
+					}
+				}
+			}
+		}
 		return block;
 	}
 
@@ -43,7 +66,7 @@ public class BlockMessage extends TronMessage {
 
 	@Override
 	public Sha256Hash getMessageId() {
-		return getBlockCapsule().getBlockId();
+		return getBlockId();
 	}
 
 	@Override
@@ -58,7 +81,13 @@ public class BlockMessage extends TronMessage {
 
 	@Override
 	public String toString() {
-		return new StringBuilder().append(super.toString()).append(block.getBlockId().getString())
-			.append(", trx size: ").append(block.getTransactions().size()).append("\n").toString();
+		StringBuilder sb = new StringBuilder().append(super.toString())
+			.append(getBlockId().getString());
+		if (block != null) {
+			sb.append(", trx size: ").append(block.getTransactions().size());
+		} else {
+			sb.append(", size: ").append(data.length);
+		}
+		return sb.append("\n").toString();
 	}
 }
@@ -65,7 +65,7 @@ public class FetchInvDataMsgHandler implements TronMsgHandler {
 			}
 
 			if (type.equals(InventoryType.BLOCK)) {
-				BlockId blockId = ((BlockMessage) message).getBlockCapsule().getBlockId();
+				BlockId blockId = ((BlockMessage) message).getBlockId();
 				if (peer.getBlockBothHave().getNum() < blockId.getNum()) {
 					peer.setBlockBothHave(blockId);
 				}
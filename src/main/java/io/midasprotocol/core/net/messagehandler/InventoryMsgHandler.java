@@ -46,7 +46,7 @@ public class InventoryMsgHandler implements TronMsgHandler {
 		for (Sha256Hash id : inventoryMessage.getHashList()) {
 			Item item = new Item(id, type);
 			peer.getAdvInvReceive().put(item, System.currentTimeMillis());
-			advService.addInv(item);
+			advService.addInv(item, peer);
 		}
 	}
 
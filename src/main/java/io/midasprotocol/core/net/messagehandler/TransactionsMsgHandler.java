@@ -1,79 +1,146 @@
 package io.midasprotocol.core.net.messagehandler;
 
 import io.midasprotocol.core.config.args.Args;
+import io.midasprotocol.core.exception.DupTransactionException;
 import io.midasprotocol.core.exception.P2pException;
 import io.midasprotocol.core.exception.P2pException.TypeEnum;
+import io.midasprotocol.core.exception.TaposException;
+import io.midasprotocol.core.exception.TooBigTransactionException;
+import io.midasprotocol.core.exception.TransactionExpirationException;
 import io.midasprotocol.core.net.TronNetDelegate;
 import io.midasprotocol.core.net.message.TransactionMessage;
 import io.midasprotocol.core.net.message.TransactionsMessage;
 import io.midasprotocol.core.net.message.TronMessage;
 import io.midasprotocol.core.net.peer.Item;
 import io.midasprotocol.core.net.peer.PeerConnection;
+import io.midasprotocol.core.net.peer.PeerTrxQueue;
+import io.midasprotocol.core.net.peer.PeerTrxQueue.DropReason;
+import io.midasprotocol.core.net.peer.PeerTrxQueue.Entry;
 import io.midasprotocol.core.net.service.AdvService;
 import io.midasprotocol.protos.Protocol.Inventory.InventoryType;
 import io.midasprotocol.protos.Protocol.ReasonCode;
 import io.midasprotocol.protos.Protocol.Transaction;
 import io.midasprotocol.protos.Protocol.Transaction.Contract.ContractType;
-import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 @Slf4j(topic = "net")
 @Component
 public class TransactionsMsgHandler implements TronMsgHandler {
 
 	private static int MAX_TRX_SIZE = 50_000;
-	private static int MAX_SMART_CONTRACT_SUBMIT_SIZE = 100;
+	private static int TRX_DRAIN_WEIGHT = 8;
+	private static int SMART_CONTRACT_DRAIN_WEIGHT = 1;
 	@Autowired
 	private TronNetDelegate tronNetDelegate;
 	@Autowired
 	private AdvService advService;
 
-	//  private static int TIME_OUT = 10 * 60 * 1000;
-	private BlockingQueue<TrxEvent> smartContractQueue = new LinkedBlockingQueue(MAX_TRX_SIZE);
+	// peers with queued transactions, drained round robin
+	private BlockingQueue<PeerConnection> readyPeers = new LinkedBlockingQueue<>();
 
-	private BlockingQueue<Runnable> queue = new LinkedBlockingQueue();
+	private AtomicInteger queueSize = new AtomicInteger();
+
+	private AtomicLongArray drops = new AtomicLongArray(DropReason.values().length);
 
 	private int threadNum = Args.getInstance().getValidateSignThreadNum();
 	private ExecutorService trxHandlePool = new ThreadPoolExecutor(threadNum, threadNum, 0L,
-		TimeUnit.MILLISECONDS, queue);
+		TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+
+	// bounds the transactions handed to the pool, the rest wait in the peer queues
+	private Semaphore handleSlots = new Semaphore(threadNum * 2);
 
-	private ScheduledExecutorService smartContractExecutor = Executors
-		.newSingleThreadScheduledExecutor();
+	private ExecutorService drainExecutor = Executors.newSingleThreadExecutor(
+		r -> new Thread(r, "trx-admission"));
 
 	public void init() {
-		handleSmartContract();
+		drainExecutor.submit(this::drain);
 	}
 
 	public void close() {
-		smartContractExecutor.shutdown();
+		drainExecutor.shutdownNow();
+		trxHandlePool.shutdown();
 	}
 
 	public boolean isBusy() {
-		return queue.size() + smartContractQueue.size() > MAX_TRX_SIZE;
+		return queueSize.get() > MAX_TRX_SIZE;
+	}
+
+	public int getQueueSize() {
+		return queueSize.get();
+	}
+
+	public long getDropCount(DropReason reason) {
+		return drops.get(reason.ordinal());
 	}
 
 	@Override
 	public void processMessage(PeerConnection peer, TronMessage msg) throws P2pException {
 		TransactionsMessage transactionsMessage = (TransactionsMessage) msg;
 		check(peer, transactionsMessage);
+		PeerTrxQueue trxQueue = peer.getTrxQueue();
 		for (Transaction trx : transactionsMessage.getTransactions().getTransactionsList()) {
+			TransactionMessage trxMsg = new TransactionMessage(trx);
+			DropReason reason = precheck(trxMsg);
+			if (reason != null) {
+				drop(peer, reason);
+				continue;
+			}
 			int type = trx.getRawData().getContract(0).getType().getNumber();
-			if (type == ContractType.TriggerSmartContract_VALUE
-				|| type == ContractType.CreateSmartContract_VALUE) {
-				if (!smartContractQueue.offer(new TrxEvent(peer, new TransactionMessage(trx)))) {
-					logger.warn("Add smart contract failed, queueSize {}:{}", smartContractQueue.size(),
-						queue.size());
-				}
+			boolean contract = type == ContractType.TriggerSmartContract_VALUE
+				|| type == ContractType.CreateSmartContract_VALUE;
+			if (trxQueue.offer(trxMsg, contract)) {
+				queueSize.incrementAndGet();
 			} else {
-				trxHandlePool.submit(() -> handleTransaction(peer, new TransactionMessage(trx)));
+				drops.incrementAndGet(DropReason.QUEUE_FULL.ordinal());
+				logger.warn("Drop trx {} from {}, queueSize {}:{}", trxMsg.getMessageId(),
+					peer.getInetAddress(), trxQueue.size(), queueSize.get());
+			}
+		}
+		if (trxQueue.schedule()) {
+			readyPeers.offer(peer);
+		}
+	}
+
+	/**
+	 * The checks that need no execution session, so junk is dropped before it waits in a queue.
+	 *
+	 * @return the reason to drop the transaction, or null to queue it
+	 */
+	private DropReason precheck(TransactionMessage trx) {
+		if (advService.getMessage(new Item(trx.getMessageId(), InventoryType.TRX)) != null) {
+			return DropReason.DUP;
+		}
+		try {
+			tronNetDelegate.precheckTransaction(trx.getTransactionCapsule());
+			return null;
+		} catch (P2pException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof TooBigTransactionException) {
+				return DropReason.TOO_BIG;
+			} else if (cause instanceof TransactionExpirationException) {
+				return DropReason.EXPIRED;
+			} else if (cause instanceof TaposException) {
+				return DropReason.TAPOS;
+			} else if (cause instanceof DupTransactionException) {
+				return DropReason.DUP;
 			}
+			return DropReason.OTHER;
 		}
 	}
 
+	private void drop(PeerConnection peer, DropReason reason) {
+		peer.getTrxQueue().drop(reason);
+		drops.incrementAndGet(reason.ordinal());
+	}
+
 	private void check(PeerConnection peer, TransactionsMessage msg) throws P2pException {
 		for (Transaction trx : msg.getTransactions().getTransactionsList()) {
 			Item item = new Item(new TransactionMessage(trx).getMessageId(), InventoryType.TRX);
@@ -85,17 +152,46 @@ public class TransactionsMsgHandler implements TronMsgHandler {
 		}
 	}
 
-	private void handleSmartContract() {
-		smartContractExecutor.scheduleWithFixedDelay(() -> {
+	/**
+	 * Takes a few transactions of each kind from every ready peer in turn, so a peer flooding
+	 * smart contract calls neither starves the transfers nor the other peers.
+	 */
+	private void drain() {
+		List<Entry> batch = new ArrayList<>();
+		while (!Thread.currentThread().isInterrupted()) {
 			try {
-				while (queue.size() < MAX_SMART_CONTRACT_SUBMIT_SIZE) {
-					TrxEvent event = smartContractQueue.take();
-					trxHandlePool.submit(() -> handleTransaction(event.getPeer(), event.getMsg()));
+				PeerConnection peer = readyPeers.take();
+				PeerTrxQueue trxQueue = peer.getTrxQueue();
+				if (peer.isDisconnect()) {
+					int size = trxQueue.clear();
+					queueSize.addAndGet(-size);
+					drops.addAndGet(DropReason.DISCONNECTED.ordinal(), size);
+					continue;
+				}
+
+				batch.clear();
+				trxQueue.poll(TRX_DRAIN_WEIGHT, SMART_CONTRACT_DRAIN_WEIGHT, batch);
+				queueSize.addAndGet(-batch.size());
+				for (Entry entry : batch) {
+					handleSlots.acquire();
+					trxQueue.admitted(System.currentTimeMillis() - entry.getTime());
+					trxHandlePool.submit(() -> {
+						try {
+							handleTransaction(peer, entry.getMsg());
+						} finally {
+							handleSlots.release();
+						}
+					});
 				}
+				if (trxQueue.reschedule()) {
+					readyPeers.offer(peer);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
 			} catch (Exception e) {
-				logger.error("Handle smart contract exception.", e);
+				logger.error("Handle trx exception.", e);
 			}
-		}, 1000, 20, TimeUnit.MILLISECONDS);
+		}
 	}
 
 	private void handleTransaction(PeerConnection peer, TransactionMessage trx) {
@@ -123,20 +219,4 @@ public class TransactionsMsgHandler implements TronMsgHandler {
 				e);
 		}
 	}
-
-	class TrxEvent {
-
-		@Getter
-		private PeerConnection peer;
-		@Getter
-		private TransactionMessage msg;
-		@Getter
-		private long time;
-
-		public TrxEvent(PeerConnection peer, TransactionMessage msg) {
-			this.peer = peer;
-			this.msg = msg;
-			this.time = System.currentTimeMillis();
-		}
-	}
-}
\ No newline at end of file
+}
@@ -7,6 +7,7 @@ import io.midasprotocol.common.overlay.message.Message;
 import io.midasprotocol.common.overlay.server.Channel;
 import io.midasprotocol.common.utils.Sha256Hash;
 import io.midasprotocol.core.capsule.BlockCapsule.BlockId;
+import io.midasprotocol.core.config.Parameter.NetConstants;
 import io.midasprotocol.core.config.Parameter.NodeConstant;
 import io.midasprotocol.core.net.TronNetDelegate;
 import io.midasprotocol.core.net.service.AdvService;
@@ -65,6 +66,9 @@ public class PeerConnection extends Channel {
 	@Getter
 	private Map<Item, Long> advInvRequest = new ConcurrentHashMap<>();
 
+	@Getter
+	private PeerTrxQueue trxQueue = new PeerTrxQueue(NetConstants.MAX_TRX_QUEUE_PER_PEER);
+
 	@Getter
 	private BlockId blockBothHave = new BlockId();
 	@Getter
@@ -171,7 +175,10 @@ public class PeerConnection extends Channel {
 				+ "syncBlockRequestedSize:%d\n"
 				+ "remainNum:%d\n"
 				+ "syncChainRequested:%d\n"
-				+ "blockInProcess:%d\n",
+				+ "blockInProcess:%d\n"
+				+ "sendQueueSize:%d\n"
+				+ "sendFlushLatency:%dms, max:%dms\n"
+				+ "trxQueue:[%s]\n",
 			this.getNode().getHost() + ":" + this.getNode().getPort(),
 			this.getNode().getHexIdShort(),
 			(int) this.getPeerStats().getAvgLatency(),
@@ -184,7 +191,11 @@ public class PeerConnection extends Channel {
 			syncBlockRequested.size(),
 			remainNum,
 			syncChainRequested == null ? 0 : (now - syncChainRequested.getValue()) / 1000,
-			syncBlockInProcess.size())
+			syncBlockInProcess.size(),
+			msgQueue.getQueueSize(),
+			msgQueue.getLastFlushLatency(),
+			msgQueue.getMaxFlushLatency(),
+			trxQueue)
 			+ nodeStatistics.toString() + "\n";
 	}
 
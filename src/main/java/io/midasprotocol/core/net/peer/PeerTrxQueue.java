@@ -0,0 +1,149 @@
+package io.midasprotocol.core.net.peer;
+
+import io.midasprotocol.core.net.message.TransactionMessage;
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Transactions received from one peer that passed the prefilters and wait for pushTransaction,
+ * with the peer's admission statistics. Smart contract and other transactions queue separately
+ * so they can be drained with different weights.
+ */
+public class PeerTrxQueue {
+
+	public enum DropReason {
+		QUEUE_FULL,
+		TOO_BIG,
+		EXPIRED,
+		TAPOS,
+		DUP,
+		DISCONNECTED,
+		// a precheck failure of no listed kind
+		OTHER
+	}
+
+	private final int capacity;
+	private final Deque<Entry> trxs = new ArrayDeque<>();
+	private final Deque<Entry> contracts = new ArrayDeque<>();
+	private boolean scheduled;
+
+	private final AtomicLongArray drops = new AtomicLongArray(DropReason.values().length);
+	@Getter
+	private volatile long admittedCount;
+	@Getter
+	private volatile long lastLatency;
+	@Getter
+	private volatile long maxLatency;
+	private long totalLatency;
+
+	public PeerTrxQueue(int capacity) {
+		this.capacity = capacity;
+	}
+
+	public synchronized boolean offer(TransactionMessage msg, boolean contract) {
+		if (size() >= capacity) {
+			drop(DropReason.QUEUE_FULL);
+			return false;
+		}
+		(contract ? contracts : trxs).offer(new Entry(msg, System.currentTimeMillis()));
+		return true;
+	}
+
+	/**
+	 * Takes up to {@code trxWeight} transactions and {@code contractWeight} smart contract
+	 * transactions, in arrival order within each kind.
+	 */
+	public synchronized void poll(int trxWeight, int contractWeight, List<Entry> out) {
+		for (int i = 0; i < trxWeight && !trxs.isEmpty(); i++) {
+			out.add(trxs.poll());
+		}
+		for (int i = 0; i < contractWeight && !contracts.isEmpty(); i++) {
+			out.add(contracts.poll());
+		}
+	}
+
+	/**
+	 * @return true if the caller has to put the peer on the ready list, that is the queue is not
+	 * empty and nobody else has scheduled it
+	 */
+	public synchronized boolean schedule() {
+		if (scheduled || size() == 0) {
+			return false;
+		}
+		scheduled = true;
+		return true;
+	}
+
+	/**
+	 * Called by the drain after it polled a scheduled peer.
+	 *
+	 * @return true if the peer stays on the ready list
+	 */
+	public synchronized boolean reschedule() {
+		scheduled = size() > 0;
+		return scheduled;
+	}
+
+	/**
+	 * @return the number of transactions dropped
+	 */
+	public synchronized int clear() {
+		int size = size();
+		trxs.clear();
+		contracts.clear();
+		scheduled = false;
+		drops.addAndGet(DropReason.DISCONNECTED.ordinal(), size);
+		return size;
+	}
+
+	public synchronized int size() {
+		return trxs.size() + contracts.size();
+	}
+
+	public void drop(DropReason reason) {
+		drops.incrementAndGet(reason.ordinal());
+	}
+
+	public long getDropCount(DropReason reason) {
+		return drops.get(reason.ordinal());
+	}
+
+	public synchronized void admitted(long latency) {
+		admittedCount++;
+		totalLatency += latency;
+		lastLatency = latency;
+		maxLatency = Math.max(maxLatency, latency);
+	}
+
+	public synchronized long getAvgLatency() {
+		return admittedCount == 0 ? 0 : totalLatency / admittedCount;
+	}
+
+	@Override
+	public String toString() {
+		long[] counts = new long[drops.length()];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = drops.get(i);
+		}
+		return String.format("size:%d, admitted:%d, latency:%dms, avg:%dms, max:%dms, drops:%s",
+			size(), admittedCount, lastLatency, getAvgLatency(), maxLatency, Arrays.toString(counts));
+	}
+
+	public static class Entry {
+
+		@Getter
+		private final TransactionMessage msg;
+		@Getter
+		private final long time;
+
+		Entry(TransactionMessage msg, long time) {
+			this.msg = msg;
+			this.time = time;
+		}
+	}
+}
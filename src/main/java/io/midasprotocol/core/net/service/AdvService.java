@@ -21,16 +21,18 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import static io.midasprotocol.core.config.Parameter.ChainConstant.BLOCK_PRODUCED_INTERVAL;
 import static io.midasprotocol.core.config.Parameter.NetConstants.MAX_TRX_FETCH_PER_PEER;
@@ -43,7 +45,7 @@ public class AdvService {
 	@Autowired
 	private TronNetDelegate tronNetDelegate;
 
-	private ConcurrentHashMap<Item, Long> invToFetch = new ConcurrentHashMap<>();
+	private ConcurrentHashMap<Item, FetchEntry> invToFetch = new ConcurrentHashMap<>();
 
 	private ConcurrentHashMap<Item, Long> invToSpread = new ConcurrentHashMap<>();
 
@@ -90,11 +92,19 @@ public class AdvService {
 		fetchExecutor.shutdown();
 	}
 
-	synchronized public boolean addInv(Item item) {
-		if (invToFetchCache.getIfPresent(item) != null) {
-			return false;
-		}
+	public boolean addInv(Item item) {
+		return addInv(item, null);
+	}
 
+	/**
+	 * Records that {@code peer} announced {@code item} and queues the item if it is new. Safe to
+	 * call from any thread; a peer announcing an item that is already queued only joins its
+	 * candidate peers, in the same atomic step that finds the item queued.
+	 *
+	 * @param peer the announcing peer, or null if unknown
+	 * @return true if the item was queued for fetching by this call
+	 */
+	public boolean addInv(Item item, PeerConnection peer) {
 		if (item.getType().equals(InventoryType.TRX)) {
 			if (trxCache.getIfPresent(item) != null) {
 				return false;
@@ -105,9 +115,22 @@ public class AdvService {
 			}
 		}
 
-		invToFetchCache.put(item, System.currentTimeMillis());
-		invToFetch.put(item, System.currentTimeMillis());
-		return true;
+		boolean[] queued = new boolean[1];
+		invToFetch.compute(item, (key, entry) -> {
+			if (entry != null) {
+				entry.addPeer(peer);
+				return entry;
+			}
+			// fetched or being fetched already
+			if (invToFetchCache.getIfPresent(item) != null) {
+				return null;
+			}
+			long now = System.currentTimeMillis();
+			invToFetchCache.put(item, now);
+			queued[0] = true;
+			return new FetchEntry(now, peer);
+		});
+		return queued[0];
 	}
 
 	public Message getMessage(Item item) {
@@ -152,10 +175,26 @@ public class AdvService {
 
 	public void onDisconnect(PeerConnection peer) {
 		if (!peer.getAdvInvRequest().isEmpty()) {
+			long now = System.currentTimeMillis();
 			peer.getAdvInvRequest().keySet().forEach(item -> {
-				if (tronNetDelegate.getActivePeer().stream()
-					.anyMatch(p -> !p.equals(peer) && p.getAdvInvReceive().getIfPresent(item) != null)) {
-					invToFetch.put(item, System.currentTimeMillis());
+				FetchEntry entry = null;
+				for (PeerConnection p : tronNetDelegate.getActivePeer()) {
+					if (p != peer && p.getAdvInvReceive().getIfPresent(item) != null) {
+						if (entry == null) {
+							entry = new FetchEntry(now, p);
+						} else {
+							entry.addPeer(p);
+						}
+					}
+				}
+				if (entry != null) {
+					// joins the peers that announced it again in the meantime
+					invToFetch.merge(item, entry, (current, requeued) -> {
+						for (PeerConnection p : requeued.peers) {
+							current.addPeer(p);
+						}
+						return current;
+					});
 				} else {
 					invToFetchCache.invalidate(item);
 				}
@@ -164,34 +203,39 @@ public class AdvService {
 	}
 
 	private void consumerInvToFetch() {
-		Collection<PeerConnection> peers = tronNetDelegate.getActivePeer().stream()
-			.filter(peer -> peer.isIdle())
-			.collect(Collectors.toList());
-
-		if (invToFetch.isEmpty() || peers.isEmpty()) {
+		if (invToFetch.isEmpty()) {
 			return;
 		}
 
 		InvSender invSender = new InvSender();
+		for (PeerConnection peer : tronNetDelegate.getActivePeer()) {
+			if (peer.isIdle()) {
+				invSender.addPeer(peer);
+			}
+		}
+		if (invSender.isEmpty()) {
+			return;
+		}
+
 		long now = System.currentTimeMillis();
-		invToFetch.forEach((item, time) -> {
-			if (time < now - MSG_CACHE_DURATION_IN_BLOCKS * BLOCK_PRODUCED_INTERVAL) {
+		long timeout = now - MSG_CACHE_DURATION_IN_BLOCKS * BLOCK_PRODUCED_INTERVAL;
+		for (Entry<Item, FetchEntry> e : invToFetch.entrySet()) {
+			Item item = e.getKey();
+			FetchEntry entry = e.getValue();
+			if (entry.time < timeout) {
 				logger.info("This obj is too late to fetch, type: {} hash: {}.", item.getType(),
 					item.getHash());
 				invToFetch.remove(item);
 				invToFetchCache.invalidate(item);
-				return;
+				continue;
 			}
-			peers.stream()
-				.filter(peer -> peer.getAdvInvReceive().getIfPresent(item) != null
-					&& invSender.getSize(peer) < MAX_TRX_FETCH_PER_PEER)
-				.sorted(Comparator.comparingInt(peer -> invSender.getSize(peer)))
-				.findFirst().ifPresent(peer -> {
-				invSender.add(item, peer);
-				peer.getAdvInvRequest().put(item, now);
+			PeerInv target = invSender.leastLoaded(item, entry.peers);
+			if (target != null) {
+				target.add(item);
+				target.peer.getAdvInvRequest().put(item, now);
 				invToFetch.remove(item);
-			});
-		});
+			}
+		}
 
 		invSender.sendFetch();
 	}
@@ -208,73 +252,154 @@ public class AdvService {
 			invToSpread.clear();
 		}
 
-		tronNetDelegate.getActivePeer().stream()
-			.filter(peer -> !peer.isNeedSyncFromPeer() && !peer.isNeedSyncFromUs())
-			.forEach(peer -> spread.entrySet().stream()
-				.filter(entry -> peer.getAdvInvReceive().getIfPresent(entry.getKey()) == null
-					&& peer.getAdvInvSpread().getIfPresent(entry.getKey()) == null)
-				.forEach(entry -> {
-					peer.getAdvInvSpread().put(entry.getKey(), Time.getCurrentMillis());
-					invSender.add(entry.getKey(), peer);
-				}));
+		for (PeerConnection peer : tronNetDelegate.getActivePeer()) {
+			if (peer.isNeedSyncFromPeer() || peer.isNeedSyncFromUs()) {
+				continue;
+			}
+			Cache<Item, Long> received = peer.getAdvInvReceive();
+			Map<Item, Long> spreadMap = peer.getAdvInvSpread().asMap();
+			PeerInv peerInv = null;
+			for (Item item : spread.keySet()) {
+				if (received.getIfPresent(item) == null
+					&& spreadMap.putIfAbsent(item, Time.getCurrentMillis()) == null) {
+					if (peerInv == null) {
+						peerInv = invSender.addPeer(peer);
+					}
+					peerInv.add(item);
+				}
+			}
+		}
 
 		invSender.sendInv();
 	}
 
-	class InvSender {
+	/**
+	 * An item waiting to be fetched and the peers that announced it. The peers are kept in a
+	 * copy-on-write array, appended with a CAS; most items only ever see a handful of peers.
+	 */
+	private static class FetchEntry {
+
+		private static final PeerConnection[] NO_PEERS = new PeerConnection[0];
+		private static final AtomicReferenceFieldUpdater<FetchEntry, PeerConnection[]> PEERS =
+			AtomicReferenceFieldUpdater.newUpdater(FetchEntry.class, PeerConnection[].class, "peers");
+
+		private final long time;
+		private volatile PeerConnection[] peers;
+
+		FetchEntry(long time, PeerConnection peer) {
+			this.time = time;
+			this.peers = peer == null ? NO_PEERS : new PeerConnection[]{peer};
+		}
 
-		private HashMap<PeerConnection, HashMap<InventoryType, LinkedList<Sha256Hash>>> send = new HashMap<>();
+		void addPeer(PeerConnection peer) {
+			if (peer == null) {
+				return;
+			}
+			while (true) {
+				PeerConnection[] current = peers;
+				for (PeerConnection p : current) {
+					if (p == peer) {
+						return;
+					}
+				}
+				PeerConnection[] next = Arrays.copyOf(current, current.length + 1);
+				next[current.length] = peer;
+				if (PEERS.compareAndSet(this, current, next)) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Items batched for one peer in a round, at most {@code MAX_TRX_FETCH_PER_PEER} for fetches.
+	 */
+	private static class PeerInv {
+
+		private final PeerConnection peer;
+		private final LinkedList<Sha256Hash> blocks = new LinkedList<>();
+		private final LinkedList<Sha256Hash> trxs = new LinkedList<>();
+		private int size;
 
-		public void clear() {
-			this.send.clear();
+		PeerInv(PeerConnection peer) {
+			this.peer = peer;
 		}
 
-		public void add(Entry<Sha256Hash, InventoryType> id, PeerConnection peer) {
-			if (send.containsKey(peer) && !send.get(peer).containsKey(id.getValue())) {
-				send.get(peer).put(id.getValue(), new LinkedList<>());
-			} else if (!send.containsKey(peer)) {
-				send.put(peer, new HashMap<>());
-				send.get(peer).put(id.getValue(), new LinkedList<>());
+		void add(Item item) {
+			if (item.getType().equals(InventoryType.BLOCK)) {
+				blocks.offer(item.getHash());
+			} else {
+				trxs.offer(item.getHash());
 			}
-			send.get(peer).get(id.getValue()).offer(id.getKey());
+			size++;
+		}
+	}
+
+	class InvSender {
+
+		private final Map<PeerConnection, PeerInv> send = new IdentityHashMap<>();
+
+		boolean isEmpty() {
+			return send.isEmpty();
 		}
 
-		public void add(Item id, PeerConnection peer) {
-			if (send.containsKey(peer) && !send.get(peer).containsKey(id.getType())) {
-				send.get(peer).put(id.getType(), new LinkedList<>());
-			} else if (!send.containsKey(peer)) {
-				send.put(peer, new HashMap<>());
-				send.get(peer).put(id.getType(), new LinkedList<>());
+		PeerInv addPeer(PeerConnection peer) {
+			return send.computeIfAbsent(peer, PeerInv::new);
+		}
+
+		/**
+		 * Picks the round's least loaded peer among {@code candidates}, falling back to every peer
+		 * that still has the item in its received cache when no announcer is known.
+		 */
+		PeerInv leastLoaded(Item item, PeerConnection[] candidates) {
+			PeerInv best = null;
+			if (candidates.length > 0) {
+				for (PeerConnection peer : candidates) {
+					best = lessLoaded(best, send.get(peer));
+				}
+			} else {
+				for (PeerInv peerInv : send.values()) {
+					if (peerInv.peer.getAdvInvReceive().getIfPresent(item) != null) {
+						best = lessLoaded(best, peerInv);
+					}
+				}
 			}
-			send.get(peer).get(id.getType()).offer(id.getHash());
+			return best;
 		}
 
-		public int getSize(PeerConnection peer) {
-			if (send.containsKey(peer)) {
-				return send.get(peer).values().stream().mapToInt(LinkedList::size).sum();
+		private PeerInv lessLoaded(PeerInv best, PeerInv peerInv) {
+			if (peerInv == null || peerInv.size >= MAX_TRX_FETCH_PER_PEER) {
+				return best;
 			}
-			return 0;
+			return best == null || peerInv.size < best.size ? peerInv : best;
 		}
 
 		public void sendInv() {
-			send.forEach((peer, ids) -> ids.forEach((key, value) -> {
-				if (key.equals(InventoryType.TRX) && peer.isFastForwardPeer()) {
-					return;
+			send.forEach((peer, peerInv) -> {
+				if (!peerInv.blocks.isEmpty()) {
+					sortBlocks(peerInv.blocks);
+					peer.sendMessage(new InventoryMessage(peerInv.blocks, InventoryType.BLOCK));
 				}
-				if (key.equals(InventoryType.BLOCK)) {
-					value.sort(Comparator.comparingLong(value1 -> new BlockId(value1).getNum()));
+				if (!peerInv.trxs.isEmpty() && !peer.isFastForwardPeer()) {
+					peer.sendMessage(new InventoryMessage(peerInv.trxs, InventoryType.TRX));
 				}
-				peer.sendMessage(new InventoryMessage(value, key));
-			}));
+			});
 		}
 
 		void sendFetch() {
-			send.forEach((peer, ids) -> ids.forEach((key, value) -> {
-				if (key.equals(InventoryType.BLOCK)) {
-					value.sort(Comparator.comparingLong(value1 -> new BlockId(value1).getNum()));
+			send.forEach((peer, peerInv) -> {
+				if (!peerInv.blocks.isEmpty()) {
+					sortBlocks(peerInv.blocks);
+					peer.sendMessage(new FetchInvDataMessage(peerInv.blocks, InventoryType.BLOCK));
+				}
+				if (!peerInv.trxs.isEmpty()) {
+					peer.sendMessage(new FetchInvDataMessage(peerInv.trxs, InventoryType.TRX));
 				}
-				peer.sendMessage(new FetchInvDataMessage(value, key));
-			}));
+			});
+		}
+
+		private void sortBlocks(LinkedList<Sha256Hash> blocks) {
+			blocks.sort(Comparator.comparingLong(value -> new BlockId(value).getNum()));
 		}
 	}
 
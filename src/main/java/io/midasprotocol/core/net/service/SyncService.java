@@ -2,10 +2,12 @@ package io.midasprotocol.core.net.service;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.midasprotocol.common.overlay.server.Channel.TronState;
 import io.midasprotocol.core.capsule.BlockCapsule;
 import io.midasprotocol.core.capsule.BlockCapsule.BlockId;
 import io.midasprotocol.core.config.Parameter.NodeConstant;
+import io.midasprotocol.core.config.args.Args;
 import io.midasprotocol.core.exception.P2pException;
 import io.midasprotocol.core.exception.P2pException.TypeEnum;
 import io.midasprotocol.core.net.TronNetDelegate;
@@ -23,7 +25,11 @@ import org.springframework.stereotype.Component;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -36,7 +42,10 @@ public class SyncService {
 	@Autowired
 	private TronNetDelegate tronNetDelegate;
 
-	private Map<BlockMessage, PeerConnection> blockWaitToProcess = new ConcurrentHashMap<>();
+	// ordered by block number, the blocks to process next come first
+	private Map<BlockMessage, PeerConnection> blockWaitToProcess = new ConcurrentSkipListMap<>(
+		Comparator.comparingLong((BlockMessage msg) -> msg.getBlockId().getNum())
+			.thenComparing(BlockMessage::getBlockId));
 
 	private Map<BlockMessage, PeerConnection> blockJustReceived = new ConcurrentHashMap<>();
 
@@ -49,6 +58,14 @@ public class SyncService {
 	private ScheduledExecutorService blockHandleExecutor = Executors
 		.newSingleThreadScheduledExecutor();
 
+	private ExecutorService precheckExecutor = Executors.newFixedThreadPool(
+		Math.max(1, Args.getInstance().getValidateSignThreadNum()),
+		new ThreadFactoryBuilder().setNameFormat("sync-precheck-%d").build());
+
+	private Map<BlockId, Future<?>> precheckSubmitted = new ConcurrentHashMap<>();
+
+	private int precheckWindow = Args.getInstance().getSyncPrecheckWindow();
+
 	private volatile boolean handleFlag = false;
 
 	@Setter
@@ -81,6 +98,7 @@ public class SyncService {
 	public void close() {
 		fetchExecutor.shutdown();
 		blockHandleExecutor.shutdown();
+		precheckExecutor.shutdown();
 	}
 
 	public void startSync(PeerConnection peer) {
@@ -108,6 +126,11 @@ public class SyncService {
 	}
 
 	public void processBlock(PeerConnection peer, BlockMessage blockMessage) {
+		// submitted before the block can be handled, so that handling always finds the precheck
+		if (blockMessage.getBlockId().getNum()
+			<= tronNetDelegate.getHeadBlockId().getNum() + precheckWindow) {
+			precheck(blockMessage);
+		}
 		synchronized (blockJustReceived) {
 			blockJustReceived.put(blockMessage, peer);
 		}
@@ -213,6 +236,47 @@ public class SyncService {
 		});
 	}
 
+	/**
+	 * Run the stateless checks of a block on the precheck pool, ahead of its turn in pushBlock.
+	 */
+	private void precheck(BlockMessage msg) {
+		precheckSubmitted.computeIfAbsent(msg.getBlockId(), blockId ->
+			precheckExecutor.submit(() -> tronNetDelegate.precheckBlock(msg.getBlockCapsule())));
+	}
+
+	/**
+	 * Hands a block over to pushBlock: a precheck that hasn't started is cancelled, pushBlock does
+	 * the checks itself, a running one is waited for so that its results get used.
+	 */
+	private void finishPrecheck(BlockId blockId) {
+		Future<?> future = precheckSubmitted.remove(blockId);
+		if (future == null || future.cancel(false)) {
+			return;
+		}
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			logger.warn("Precheck block {} failed.", blockId.getString(), e);
+		}
+	}
+
+	private void cancelPrecheck(BlockId blockId) {
+		Future<?> future = precheckSubmitted.remove(blockId);
+		if (future != null) {
+			future.cancel(false);
+		}
+	}
+
+	/**
+	 * @return whether any peer still has the block to fetch
+	 */
+	private boolean isToFetch(BlockId blockId) {
+		return tronNetDelegate.getActivePeer().stream()
+			.anyMatch(peer -> peer.getSyncBlockToFetch().contains(blockId));
+	}
+
 	private synchronized void handleSyncBlock() {
 
 		synchronized (blockJustReceived) {
@@ -220,32 +284,49 @@ public class SyncService {
 			blockJustReceived.clear();
 		}
 
-		final boolean[] isProcessed = {true};
-
-		while (isProcessed[0]) {
-
-			isProcessed[0] = false;
+		long precheckEnd = tronNetDelegate.getHeadBlockId().getNum() + precheckWindow;
+		for (BlockMessage msg : blockWaitToProcess.keySet()) {
+			if (msg.getBlockId().getNum() > precheckEnd) {
+				break;
+			}
+			precheck(msg);
+		}
 
-			blockWaitToProcess.forEach((msg, peerConnection) -> {
-				if (peerConnection.isDisconnect()) {
-					blockWaitToProcess.remove(msg);
-					invalid(msg.getBlockId());
-					return;
+		// in block order, processing a block makes the next one the head of the peers' fetch queues
+		Iterator<Map.Entry<BlockMessage, PeerConnection>> iterator =
+			blockWaitToProcess.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<BlockMessage, PeerConnection> entry = iterator.next();
+			BlockMessage msg = entry.getKey();
+			if (entry.getValue().isDisconnect()) {
+				iterator.remove();
+				cancelPrecheck(msg.getBlockId());
+				invalid(msg.getBlockId());
+				continue;
+			}
+			boolean isFound = false;
+			for (PeerConnection peer : tronNetDelegate.getActivePeer()) {
+				if (msg.getBlockId().equals(peer.getSyncBlockToFetch().peek())) {
+					peer.getSyncBlockToFetch().pop();
+					peer.getSyncBlockInProcess().add(msg.getBlockId());
+					isFound = true;
 				}
-				final boolean[] isFound = {false};
-				tronNetDelegate.getActivePeer().stream()
-					.filter(peer -> msg.getBlockId().equals(peer.getSyncBlockToFetch().peek()))
-					.forEach(peer -> {
-						peer.getSyncBlockToFetch().pop();
-						peer.getSyncBlockInProcess().add(msg.getBlockId());
-						isFound[0] = true;
-					});
-				if (isFound[0]) {
-					blockWaitToProcess.remove(msg);
-					isProcessed[0] = true;
-					processSyncBlock(msg.getBlockCapsule());
+			}
+			if (!isFound) {
+				if (isToFetch(msg.getBlockId())) {
+					// waits for the blocks before it on its peer, a fork block of one peer must not
+					// stall the blocks other peers have at the head of their queues
+					continue;
 				}
-			});
+				// no peer syncs it anymore, it must not hold back the blocks after it
+				iterator.remove();
+				cancelPrecheck(msg.getBlockId());
+				invalid(msg.getBlockId());
+				continue;
+			}
+			iterator.remove();
+			finishPrecheck(msg.getBlockId());
+			processSyncBlock(msg.getBlockCapsule());
 		}
 	}
 
@@ -0,0 +1,142 @@
+package io.midasprotocol.core.witness;
+
+import com.google.protobuf.ByteString;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Vote count deltas by witness address, kept in an open addressing table of primitive slots so
+ * counting the vote changes of an epoch doesn't box a Long per change. A tally is filled by one
+ * thread, the tallies of several threads are combined with {@link #addAll(VoteTally)}.
+ */
+public class VoteTally {
+
+	static final int ADDRESS_LENGTH = 21;
+
+	private byte[] keys;
+	private long[] counts;
+	private boolean[] used;
+	private int mask;
+	private int size;
+	// addresses of another length, which the actuators don't accept
+	private final Map<ByteString, Long> others = new HashMap<>();
+	private final byte[] scratch = new byte[ADDRESS_LENGTH];
+
+	public VoteTally() {
+		this(16);
+	}
+
+	public VoteTally(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(8, expectedSize) * 2 - 1) << 1;
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		keys = new byte[capacity * ADDRESS_LENGTH];
+		counts = new long[capacity];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+	}
+
+	public void add(ByteString address, long delta) {
+		if (address.size() != ADDRESS_LENGTH) {
+			others.merge(address, delta, Long::sum);
+			return;
+		}
+		address.copyTo(scratch, 0);
+		add(scratch, 0, delta);
+	}
+
+	private void add(byte[] key, int offset, long delta) {
+		int slot = find(key, offset);
+		if (!used[slot]) {
+			if ((size + 1) * 2 > used.length) {
+				grow();
+				slot = find(key, offset);
+			}
+			used[slot] = true;
+			System.arraycopy(key, offset, keys, slot * ADDRESS_LENGTH, ADDRESS_LENGTH);
+			size++;
+		}
+		counts[slot] += delta;
+	}
+
+	private int find(byte[] key, int offset) {
+		int slot = hash(key, offset) & mask;
+		while (used[slot] && !matches(slot, key, offset)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private boolean matches(int slot, byte[] key, int offset) {
+		int base = slot * ADDRESS_LENGTH;
+		for (int i = 0; i < ADDRESS_LENGTH; i++) {
+			if (keys[base + i] != key[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash(byte[] key, int offset) {
+		int h = 1;
+		for (int i = 0; i < ADDRESS_LENGTH; i++) {
+			h = 31 * h + key[offset + i];
+		}
+		return h ^ (h >>> 16);
+	}
+
+	private void grow() {
+		byte[] oldKeys = keys;
+		long[] oldCounts = counts;
+		boolean[] oldUsed = used;
+		allocate(oldUsed.length * 2);
+		size = 0;
+		for (int slot = 0; slot < oldUsed.length; slot++) {
+			if (oldUsed[slot]) {
+				add(oldKeys, slot * ADDRESS_LENGTH, oldCounts[slot]);
+			}
+		}
+	}
+
+	public void addAll(VoteTally other) {
+		for (int slot = 0; slot < other.used.length; slot++) {
+			if (other.used[slot]) {
+				add(other.keys, slot * ADDRESS_LENGTH, other.counts[slot]);
+			}
+		}
+		other.others.forEach((address, delta) -> others.merge(address, delta, Long::sum));
+	}
+
+	/**
+	 * @return the delta of the address, 0 if it got no votes
+	 */
+	public long get(ByteString address) {
+		if (address.size() != ADDRESS_LENGTH) {
+			return others.getOrDefault(address, 0L);
+		}
+		byte[] key = address.toByteArray();
+		int slot = find(key, 0);
+		return used[slot] ? counts[slot] : 0;
+	}
+
+	/**
+	 * @return the number of addresses that got votes
+	 */
+	public int size() {
+		return size + others.size();
+	}
+
+	public void forEach(ObjLongConsumer<ByteString> action) {
+		for (int slot = 0; slot < used.length; slot++) {
+			if (used[slot]) {
+				action.accept(ByteString.copyFrom(keys, slot * ADDRESS_LENGTH, ADDRESS_LENGTH),
+					counts[slot]);
+			}
+		}
+		others.forEach(action::accept);
+	}
+}
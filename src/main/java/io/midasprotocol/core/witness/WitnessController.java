@@ -1,6 +1,5 @@
 package io.midasprotocol.core.witness;
 
-import com.google.common.collect.Maps;
 import com.google.protobuf.ByteString;
 import io.midasprotocol.common.utils.ByteArray;
 import io.midasprotocol.common.utils.StringUtil;
@@ -12,6 +11,7 @@ import io.midasprotocol.core.config.args.Args;
 import io.midasprotocol.core.db.*;
 import io.midasprotocol.core.exception.HeaderNotFound;
 import io.midasprotocol.protos.Protocol;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -19,8 +19,8 @@ import org.apache.commons.collections4.CollectionUtils;
 import org.joda.time.DateTime;
 
 import java.util.*;
-import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
 
 @Slf4j(topic = "witness")
 public class WitnessController {
@@ -29,6 +29,9 @@ public class WitnessController {
 	@Getter
 	private Manager manager;
 
+	// vote changes counted by one thread at least
+	private static final int TALLY_CHUNK_SIZE = 10_000;
+
 	private AtomicBoolean generatingBlock = new AtomicBoolean(false);
 
 	public static WitnessController createInstance(Manager manager) {
@@ -248,51 +251,44 @@ public class WitnessController {
 //    }
 	}
 
-	private Map<ByteString, Long> countVote(VoteChangeStore voteChangeStore) {
-		final Map<ByteString, Long> countWitness = Maps.newHashMap();
-		Iterator<Map.Entry<byte[], VoteChangeCapsule>> dbIterator = voteChangeStore.iterator();
-
-		long sizeCount = 0;
-		while (dbIterator.hasNext()) {
-			Entry<byte[], VoteChangeCapsule> next = dbIterator.next();
-			VoteChangeCapsule voteChange = next.getValue();
-
-//      logger.info("there is account ,account address is {}",
-//          account.createReadableString());
+	/**
+	 * Tallies the vote changes of the epoch and deletes them. Parsing and counting run in chunks on
+	 * several threads, each into its own tally.
+	 */
+	private VoteTally countVote(VoteChangeStore voteChangeStore) {
+		List<byte[]> voteChanges = voteChangeStore.drain();
+		int chunkNum = Math.max(1, Math.min(voteChanges.size() / TALLY_CHUNK_SIZE,
+			Runtime.getRuntime().availableProcessors()));
+		VoteTally[] tallies = new VoteTally[chunkNum];
+		IntStream chunks = IntStream.range(0, chunkNum);
+		if (chunkNum > 1) {
+			chunks = chunks.parallel();
+		}
+		chunks.forEach(chunk -> tallies[chunk] = countVote(voteChanges,
+			voteChanges.size() * chunk / chunkNum, voteChanges.size() * (chunk + 1) / chunkNum));
 
-			// TODO add vote reward
-			// long reward = Math.round(sum.get() * this.manager.getDynamicPropertiesStore()
-			//    .getVoteRewardRate());
-			//account.setBalance(account.getBalance() + reward);
-			//accountStore.put(account.createDbKey(), account);
+		VoteTally countWitness = tallies[0];
+		for (int i = 1; i < chunkNum; i++) {
+			countWitness.addAll(tallies[i]);
+		}
+		logger.info("there is {} new votes in this epoch", voteChanges.size());
+		return countWitness;
+	}
 
+	private static VoteTally countVote(List<byte[]> voteChanges, int from, int to) {
+		VoteTally tally = new VoteTally();
+		for (int i = from; i < to; i++) {
+			VoteChangeCapsule voteChange = new VoteChangeCapsule(voteChanges.get(i));
 			//TODO validate witness //active_witness
 			if (voteChange.hasOldVote()) {
-				ByteString oldVoteAddress = voteChange.getOldVote().getVoteAddress();
-				long oldVoteCount = voteChange.getOldVote().getVoteCount();
-				if (countWitness.containsKey(oldVoteAddress)) {
-					countWitness.put(oldVoteAddress, countWitness.get(oldVoteAddress) - oldVoteCount);
-				} else {
-					countWitness.put(oldVoteAddress, -oldVoteCount);
-				}
+				tally.add(voteChange.getOldVote().getVoteAddress(), -voteChange.getOldVote().getVoteCount());
 			}
 			//TODO validate witness //active_witness
 			if (voteChange.hasNewVote()) {
-				ByteString newVoteAddress = voteChange.getNewVote().getVoteAddress();
-				long newVoteCount = voteChange.getNewVote().getVoteCount();
-				if (countWitness.containsKey(newVoteAddress)) {
-					countWitness.put(newVoteAddress, countWitness.get(newVoteAddress) + newVoteCount);
-				} else {
-					countWitness.put(newVoteAddress, newVoteCount);
-				}
+				tally.add(voteChange.getNewVote().getVoteAddress(), voteChange.getNewVote().getVoteCount());
 			}
-
-			sizeCount++;
-			voteChangeStore.delete(next.getKey());
 		}
-		logger.info("there is {} new votes in this epoch", sizeCount);
-
-		return countWitness;
+		return tally;
 	}
 
 	/**
@@ -304,7 +300,7 @@ public class WitnessController {
 		AccountStore accountStore = manager.getAccountStore();
 		BannedWitnessStore bannedWitnessStore = manager.getBannedWitnessStore();
 
-		Map<ByteString, Long> countWitness = countVote(voteChangeStore);
+		VoteTally countWitness = countVote(voteChangeStore);
 
 		//Only possible during the initialization phase
 //		if (countWitness.isEmpty()) {
@@ -314,8 +310,13 @@ public class WitnessController {
 
 		List<ByteString> currentWits = getActiveWitnesses();
 
+		// every witness is read once, the capsules below are the ones written back to the store
+		Map<ByteString, WitnessCapsule> witnesses = new LinkedHashMap<>();
+		witnessStore.iterator().forEachRemaining(
+			entry -> witnesses.put(ByteString.copyFrom(entry.getKey()), entry.getValue()));
+
 		List<ByteString> newWitnessAddressList = new ArrayList<>();
-		witnessStore.getAllWitnesses().forEach(witnessCapsule -> {
+		witnesses.values().forEach(witnessCapsule -> {
 			boolean ok = witnessCapsule.getStatus() == Protocol.Witness.Status.ACTIVE
 				|| witnessCapsule.getStatus() == Protocol.Witness.Status.SUPERNODE;
 			if (witnessCapsule.getStatus() == Protocol.Witness.Status.SLASHED) {
@@ -333,15 +334,13 @@ public class WitnessController {
 		});
 
 		countWitness.forEach((address, voteCount) -> {
-			final WitnessCapsule witnessCapsule = witnessStore.get(StringUtil.createDbKey(address));
+			final WitnessCapsule witnessCapsule = witnesses.get(address);
 			if (null == witnessCapsule) {
 				logger.warn("witnessCapsule is null. address is {}", StringUtil.createReadableString(address));
 				return;
 			}
 
-			AccountCapsule witnessAccountCapsule = accountStore
-				.get(StringUtil.createDbKey(address));
-			if (witnessAccountCapsule == null) {
+			if (!accountStore.has(StringUtil.createDbKey(address))) {
 				logger.warn("witnessAccount " + StringUtil.createReadableString(address) + " does not exist");
 			} else {
 				witnessCapsule.setVoteCount(witnessCapsule.getVoteCount() + voteCount);
@@ -353,7 +352,7 @@ public class WitnessController {
 		List<ByteString> newActiveWitnessAddressList = new ArrayList<>();
 
 		for (ByteString witnessAddress : newWitnessAddressList) {
-			WitnessCapsule witnessCapsule = witnessStore.get(witnessAddress.toByteArray());
+			WitnessCapsule witnessCapsule = witnesses.get(witnessAddress);
 			long epochBlock = witnessCapsule.getEpochMissed() + witnessCapsule.getEpochProduced();
 			if (epochBlock > 0) {
 				double pc = 1d * witnessCapsule.getEpochMissed() / epochBlock;
@@ -389,7 +388,7 @@ public class WitnessController {
 			}
 		}
 
-		sortWitness(newActiveWitnessAddressList);
+		sortWitness(newActiveWitnessAddressList, witnesses);
 		if (newActiveWitnessAddressList.size() > ChainConstant.MAX_ACTIVE_WITNESS_NUM) {
 			setActiveWitnesses(newActiveWitnessAddressList.subList(0, ChainConstant.MAX_ACTIVE_WITNESS_NUM));
 		} else {
@@ -399,7 +398,7 @@ public class WitnessController {
 		List<ByteString> newWits = getActiveWitnesses();
 		if (witnessSetChanged(currentWits, newWits)) {
 			currentWits.forEach(address -> {
-				WitnessCapsule witnessCapsule = getWitnessByAddress(address);
+				WitnessCapsule witnessCapsule = witnesses.get(address);
 				witnessCapsule.setIsJobs(false);
 				if (witnessCapsule.getStatus() == Protocol.Witness.Status.SUPERNODE)
 					witnessCapsule.setStatus(Protocol.Witness.Status.ACTIVE);
@@ -413,7 +412,7 @@ public class WitnessController {
 			});
 
 			newWits.forEach(address -> {
-				WitnessCapsule witnessCapsule = getWitnessByAddress(address);
+				WitnessCapsule witnessCapsule = witnesses.get(address);
 				witnessCapsule.setIsJobs(true);
 				if (witnessCapsule.getStatus() == Protocol.Witness.Status.ACTIVE)
 					witnessCapsule.setStatus(Protocol.Witness.Status.SUPERNODE);
@@ -458,9 +457,26 @@ public class WitnessController {
 
 
 	private void sortWitness(List<ByteString> list) {
-		list.sort(Comparator.comparingLong((ByteString b) -> getWitnessByAddress(b).getVoteCount())
-			.reversed()
-			.thenComparing(Comparator.comparingInt(ByteString::hashCode).reversed()));
+		Map<ByteString, WitnessCapsule> witnesses = new HashMap<>();
+		list.forEach(address -> witnesses.put(address, getWitnessByAddress(address)));
+		sortWitness(list, witnesses);
+	}
+
+	/**
+	 * Sorts by vote count, then by address hash code, both descending. The keys are read once into
+	 * an array instead of in every comparison.
+	 */
+	private static void sortWitness(List<ByteString> list, Map<ByteString, WitnessCapsule> witnesses) {
+		WitnessSortKey[] keys = new WitnessSortKey[list.size()];
+		for (int i = 0; i < keys.length; i++) {
+			ByteString address = list.get(i);
+			keys[i] = new WitnessSortKey(witnesses.get(address).getVoteCount(), address.hashCode(),
+				address);
+		}
+		Arrays.sort(keys, WitnessSortKey.ORDER);
+		for (int i = 0; i < keys.length; i++) {
+			list.set(i, keys[i].address);
+		}
 	}
 
 	public boolean isGeneratingBlock() {
@@ -470,4 +486,17 @@ public class WitnessController {
 	public void setGeneratingBlock(boolean generatingBlock) {
 		this.generatingBlock.set(generatingBlock);
 	}
+
+	@AllArgsConstructor
+	private static class WitnessSortKey {
+
+		private static final Comparator<WitnessSortKey> ORDER = (a, b) -> {
+			int result = Long.compare(b.voteCount, a.voteCount);
+			return result != 0 ? result : Integer.compare(b.hashCode, a.hashCode);
+		};
+
+		private final long voteCount;
+		private final int hashCode;
+		private final ByteString address;
+	}
 }
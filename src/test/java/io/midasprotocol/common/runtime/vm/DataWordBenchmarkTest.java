@@ -0,0 +1,139 @@
+package io.midasprotocol.common.runtime.vm;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiFunction;
+
+/**
+ * Per opcode cost of the arithmetic of {@link DataWord} against the BigInteger implementation it
+ * replaced, on full width random operands.
+ */
+@Slf4j
+@Ignore
+public class DataWordBenchmarkTest {
+
+	private static final int OPERANDS = 1024;
+	private static final int WARMUP_ROUNDS = 200;
+	private static final int ROUNDS = 1000;
+
+	private final byte[][] a = new byte[OPERANDS][];
+	private final byte[][] b = new byte[OPERANDS][];
+	private final byte[][] c = new byte[OPERANDS][];
+	private final byte[][] small = new byte[OPERANDS][];
+	// keeps the results alive
+	private long sink;
+
+	public DataWordBenchmarkTest() {
+		Random random = new Random(1);
+		for (int i = 0; i < OPERANDS; i++) {
+			a[i] = new byte[32];
+			b[i] = new byte[32];
+			c[i] = new byte[32];
+			random.nextBytes(a[i]);
+			random.nextBytes(b[i]);
+			random.nextBytes(c[i]);
+			// divisors of half width, the usual case of token math
+			Arrays.fill(b[i], 0, 16, (byte) 0);
+			small[i] = new DataWord(random.nextInt(256)).getData();
+		}
+	}
+
+	private interface Op {
+
+		byte[] apply(int i);
+	}
+
+	private double nanosPerOp(Op op) {
+		for (int round = 0; round < WARMUP_ROUNDS; round++) {
+			for (int i = 0; i < OPERANDS; i++) {
+				sink += op.apply(i)[31];
+			}
+		}
+		long start = System.nanoTime();
+		for (int round = 0; round < ROUNDS; round++) {
+			for (int i = 0; i < OPERANDS; i++) {
+				sink += op.apply(i)[31];
+			}
+		}
+		return (System.nanoTime() - start) / (double) ((long) ROUNDS * OPERANDS);
+	}
+
+	private static DataWord word(byte[] data) {
+		return new DataWord(data.clone());
+	}
+
+	/**
+	 * The operands the reference gets, built like the ones of the DataWord so both pay the same.
+	 */
+	private static byte[] copy(byte[] data) {
+		return word(data).getData();
+	}
+
+	private static byte[] binary(byte[] x, byte[] y, BiFunction<DataWord, DataWord, DataWord> op) {
+		return op.apply(word(x), word(y)).getData();
+	}
+
+	@Test
+	public void benchmarkOpcodes() {
+		Map<String, Op[]> ops = new LinkedHashMap<>();
+		ops.put("ADD", new Op[]{
+			i -> binary(a[i], b[i], (x, y) -> { x.add(y); return x; }),
+			i -> DataWordReference.add(copy(a[i]), copy(b[i]))});
+		ops.put("SUB", new Op[]{
+			i -> binary(a[i], b[i], (x, y) -> { x.sub(y); return x; }),
+			i -> DataWordReference.sub(copy(a[i]), copy(b[i]))});
+		ops.put("MUL", new Op[]{
+			i -> binary(a[i], b[i], (x, y) -> { x.mul(y); return x; }),
+			i -> DataWordReference.mul(copy(a[i]), copy(b[i]))});
+		ops.put("DIV", new Op[]{
+			i -> binary(a[i], b[i], (x, y) -> { x.div(y); return x; }),
+			i -> DataWordReference.div(copy(a[i]), copy(b[i]))});
+		ops.put("SDIV", new Op[]{
+			i -> binary(a[i], b[i], (x, y) -> { x.sDiv(y); return x; }),
+			i -> DataWordReference.sDiv(copy(a[i]), copy(b[i]))});
+		ops.put("MOD", new Op[]{
+			i -> binary(a[i], b[i], (x, y) -> { x.mod(y); return x; }),
+			i -> DataWordReference.mod(copy(a[i]), copy(b[i]))});
+		ops.put("SMOD", new Op[]{
+			i -> binary(a[i], b[i], (x, y) -> { x.sMod(y); return x; }),
+			i -> DataWordReference.sMod(copy(a[i]), copy(b[i]))});
+		ops.put("EXP", new Op[]{
+			i -> binary(a[i], small[i], (x, y) -> { x.exp(y); return x; }),
+			i -> DataWordReference.exp(copy(a[i]), copy(small[i]))});
+		ops.put("ADDMOD", new Op[]{
+			i -> { DataWord x = word(a[i]); x.addmod(word(c[i]), word(b[i])); return x.getData(); },
+			i -> DataWordReference.addmod(copy(a[i]), copy(c[i]), copy(b[i]))});
+		ops.put("MULMOD", new Op[]{
+			i -> { DataWord x = word(a[i]); x.mulmod(word(c[i]), word(b[i])); return x.getData(); },
+			i -> DataWordReference.mulmod(copy(a[i]), copy(c[i]), copy(b[i]))});
+		ops.put("NOT", new Op[]{
+			i -> { DataWord x = word(a[i]); x.bnot(); return x.getData(); },
+			i -> DataWordReference.not(copy(a[i]))});
+		ops.put("SLT", new Op[]{
+			i -> new DataWord(word(a[i]).sCompareTo(word(b[i]))).getData(),
+			i -> new DataWord(DataWordReference.sCompare(copy(a[i]), copy(b[i]))).getData()});
+		ops.put("SHL", new Op[]{
+			i -> binary(a[i], small[i], DataWord::shiftLeft),
+			i -> DataWordReference.shiftLeft(copy(a[i]), copy(small[i]))});
+		ops.put("SHR", new Op[]{
+			i -> binary(a[i], small[i], DataWord::shiftRight),
+			i -> DataWordReference.shiftRight(copy(a[i]), copy(small[i]))});
+		ops.put("SAR", new Op[]{
+			i -> binary(a[i], small[i], DataWord::shiftRightSigned),
+			i -> DataWordReference.shiftRightSigned(copy(a[i]), copy(small[i]))});
+
+		for (Map.Entry<String, Op[]> entry : ops.entrySet()) {
+			double limbs = nanosPerOp(entry.getValue()[0]);
+			double bigInteger = nanosPerOp(entry.getValue()[1]);
+			logger.info(String.format("%-7s limbs: %8.1f ns/op, BigInteger: %8.1f ns/op, %.2fx",
+				entry.getKey(), limbs, bigInteger, bigInteger / limbs));
+		}
+		logger.info("sink {}", sink);
+	}
+}
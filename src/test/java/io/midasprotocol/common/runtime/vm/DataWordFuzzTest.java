@@ -0,0 +1,252 @@
+package io.midasprotocol.common.runtime.vm;
+
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BinaryOperator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the opcodes of {@link DataWord} on random and edge case operands and compares every result
+ * with {@link DataWordReference}.
+ */
+public class DataWordFuzzTest {
+
+	private static final int ROUNDS = 20_000;
+
+	private final Random random = new Random(20181017L);
+	private final List<byte[]> edges = new ArrayList<>();
+
+	public DataWordFuzzTest() {
+		edges.add(new byte[32]);
+		edges.add(Hex.decode("01"));
+		edges.add(Hex.decode("02"));
+		edges.add(Hex.decode("ff"));
+		edges.add(Hex.decode("0100"));
+		edges.add(Hex.decode("ffffffff"));
+		edges.add(Hex.decode("0100000000"));
+		edges.add(Hex.decode("ffffffffffffffff"));
+		edges.add(Hex.decode("010000000000000000"));
+		edges.add(Hex.decode("7fffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffff"));
+		edges.add(Hex.decode("8000000000000000000000000000000000000000000000000000000000000000"));
+		edges.add(Hex.decode("8000000000000000000000000000000000000000000000000000000000000001"));
+		edges.add(Hex.decode("ffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffff"));
+		edges.add(Hex.decode("fffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffe"));
+		edges.add(Hex.decode("ffffffffffffffffffffffffffffffff00000000000000000000000000000000"));
+		edges.add(Hex.decode("0000000000000000000000000000000100000000000000000000000000000000"));
+		edges.add(Hex.decode("00000000ffffffff00000000ffffffff00000000ffffffff00000000ffffffff"));
+	}
+
+	/**
+	 * @return 32 bytes, an edge value, a random one with random length or one built from runs of 0x00
+	 *     and 0xff bytes, which is where carries and the divisor normalization go wrong
+	 */
+	private byte[] operand() {
+		byte[] word = new byte[32];
+		switch (random.nextInt(4)) {
+			case 0: {
+				byte[] edge = edges.get(random.nextInt(edges.size()));
+				System.arraycopy(edge, 0, word, 32 - edge.length, edge.length);
+				break;
+			}
+			case 1: {
+				int length = 1 + random.nextInt(32);
+				byte[] bytes = new byte[length];
+				random.nextBytes(bytes);
+				System.arraycopy(bytes, 0, word, 32 - length, length);
+				break;
+			}
+			case 2:
+				for (int i = 0; i < 32; i++) {
+					word[i] = random.nextBoolean() ? 0 : (byte) 0xff;
+				}
+				if (random.nextBoolean()) {
+					word[31 - random.nextInt(32)] = (byte) random.nextInt();
+				}
+				break;
+			default:
+				random.nextBytes(word);
+				break;
+		}
+		return word;
+	}
+
+	/**
+	 * @return a shift amount, mostly below 256
+	 */
+	private byte[] shift() {
+		if (random.nextInt(8) == 0) {
+			return operand();
+		}
+		return new DataWord(random.nextInt(300)).getData();
+	}
+
+	private static DataWord word(byte[] data) {
+		return new DataWord(data.clone());
+	}
+
+	private void binary(String name, BinaryOperator<byte[]> expected,
+		BinaryOperator<byte[]> actual) {
+		for (int i = 0; i < ROUNDS; i++) {
+			byte[] a = operand();
+			byte[] b = operand();
+			check(name, expected.apply(a, b), actual.apply(a, b), a, b);
+		}
+	}
+
+	private static void check(String name, byte[] expected, byte[] actual, byte[]... operands) {
+		StringBuilder message = new StringBuilder(name);
+		for (byte[] operand : operands) {
+			message.append(' ').append(Hex.toHexString(operand));
+		}
+		assertArrayEquals(message.toString(), expected, actual);
+	}
+
+	@Test
+	public void testAdd() {
+		binary("add", DataWordReference::add, (a, b) -> {
+			DataWord word = word(a);
+			word.add(word(b));
+			return word.getData();
+		});
+	}
+
+	@Test
+	public void testSub() {
+		binary("sub", DataWordReference::sub, (a, b) -> {
+			DataWord word = word(a);
+			word.sub(word(b));
+			return word.getData();
+		});
+	}
+
+	@Test
+	public void testMul() {
+		binary("mul", DataWordReference::mul, (a, b) -> {
+			DataWord word = word(a);
+			word.mul(word(b));
+			return word.getData();
+		});
+	}
+
+	@Test
+	public void testDiv() {
+		binary("div", DataWordReference::div, (a, b) -> {
+			DataWord word = word(a);
+			word.div(word(b));
+			return word.getData();
+		});
+	}
+
+	@Test
+	public void testSDiv() {
+		binary("sdiv", DataWordReference::sDiv, (a, b) -> {
+			DataWord word = word(a);
+			word.sDiv(word(b));
+			return word.getData();
+		});
+	}
+
+	@Test
+	public void testMod() {
+		binary("mod", DataWordReference::mod, (a, b) -> {
+			DataWord word = word(a);
+			word.mod(word(b));
+			return word.getData();
+		});
+	}
+
+	@Test
+	public void testSMod() {
+		binary("smod", DataWordReference::sMod, (a, b) -> {
+			DataWord word = word(a);
+			word.sMod(word(b));
+			return word.getData();
+		});
+	}
+
+	@Test
+	public void testExp() {
+		binary("exp", DataWordReference::exp, (a, b) -> {
+			DataWord word = word(a);
+			word.exp(word(b));
+			return word.getData();
+		});
+	}
+
+	@Test
+	public void testAddMod() {
+		for (int i = 0; i < ROUNDS; i++) {
+			byte[] a = operand();
+			byte[] b = operand();
+			byte[] m = operand();
+			DataWord word = word(a);
+			word.addmod(word(b), word(m));
+			check("addmod", DataWordReference.addmod(a, b, m), word.getData(), a, b, m);
+		}
+	}
+
+	@Test
+	public void testMulMod() {
+		for (int i = 0; i < ROUNDS; i++) {
+			byte[] a = operand();
+			byte[] b = operand();
+			byte[] m = operand();
+			DataWord word = word(a);
+			word.mulmod(word(b), word(m));
+			check("mulmod", DataWordReference.mulmod(a, b, m), word.getData(), a, b, m);
+		}
+	}
+
+	@Test
+	public void testNot() {
+		for (int i = 0; i < ROUNDS; i++) {
+			byte[] a = operand();
+			DataWord word = word(a);
+			word.bnot();
+			check("not", DataWordReference.not(a), word.getData(), a);
+		}
+	}
+
+	@Test
+	public void testCompare() {
+		for (int i = 0; i < ROUNDS; i++) {
+			byte[] a = operand();
+			byte[] b = random.nextInt(8) == 0 ? a.clone() : operand();
+			String message = Hex.toHexString(a) + " " + Hex.toHexString(b);
+			assertEquals("compare " + message, DataWordReference.compare(a, b),
+				word(a).compareTo(word(b)));
+			assertEquals("sCompare " + message, DataWordReference.sCompare(a, b),
+				word(a).sCompareTo(word(b)));
+		}
+	}
+
+	@Test
+	public void testShifts() {
+		for (int i = 0; i < ROUNDS; i++) {
+			byte[] a = operand();
+			byte[] n = shift();
+			check("shl", DataWordReference.shiftLeft(a, n), word(a).shiftLeft(word(n)).getData(), a, n);
+			check("shr", DataWordReference.shiftRight(a, n), word(a).shiftRight(word(n)).getData(), a,
+				n);
+			check("sar", DataWordReference.shiftRightSigned(a, n),
+				word(a).shiftRightSigned(word(n)).getData(), a, n);
+		}
+	}
+
+	@Test
+	public void testSignExtend() {
+		for (int i = 0; i < ROUNDS; i++) {
+			byte[] a = operand();
+			byte k = (byte) random.nextInt(32);
+			DataWord word = word(a);
+			word.signExtend(k);
+			check("signextend " + k, DataWordReference.signExtend(a, k), word.getData(), a);
+		}
+	}
+}
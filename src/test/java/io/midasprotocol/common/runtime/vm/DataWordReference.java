@@ -0,0 +1,133 @@
+package io.midasprotocol.common.runtime.vm;
+
+import io.midasprotocol.common.utils.ByteUtil;
+
+import java.math.BigInteger;
+
+import static io.midasprotocol.common.runtime.vm.DataWord.MAX_POW;
+import static io.midasprotocol.common.runtime.vm.DataWord.MAX_VALUE;
+import static io.midasprotocol.common.runtime.vm.DataWord._2_256;
+
+/**
+ * The BigInteger implementation DataWord used before its arithmetic moved to {@link UInt256}, kept
+ * as the reference the limb based opcodes must match bit for bit.
+ */
+final class DataWordReference {
+
+	private DataWordReference() {
+	}
+
+	private static BigInteger value(byte[] data) {
+		return new BigInteger(1, data);
+	}
+
+	private static BigInteger sValue(byte[] data) {
+		return new BigInteger(data);
+	}
+
+	private static byte[] word(BigInteger value) {
+		return ByteUtil.copyToArray(value.and(MAX_VALUE));
+	}
+
+	static byte[] add(byte[] a, byte[] b) {
+		return word(value(a).add(value(b)));
+	}
+
+	static byte[] sub(byte[] a, byte[] b) {
+		return word(value(a).subtract(value(b)));
+	}
+
+	static byte[] mul(byte[] a, byte[] b) {
+		return word(value(a).multiply(value(b)));
+	}
+
+	static byte[] div(byte[] a, byte[] b) {
+		if (value(b).signum() == 0) {
+			return new byte[32];
+		}
+		return word(value(a).divide(value(b)));
+	}
+
+	static byte[] sDiv(byte[] a, byte[] b) {
+		if (value(b).signum() == 0) {
+			return new byte[32];
+		}
+		return word(sValue(a).divide(sValue(b)));
+	}
+
+	static byte[] mod(byte[] a, byte[] b) {
+		if (value(b).signum() == 0) {
+			return new byte[32];
+		}
+		return word(value(a).mod(value(b)));
+	}
+
+	static byte[] sMod(byte[] a, byte[] b) {
+		if (value(b).signum() == 0) {
+			return new byte[32];
+		}
+		BigInteger result = sValue(a).abs().mod(sValue(b).abs());
+		result = (sValue(a).signum() == -1) ? result.negate() : result;
+		return word(result);
+	}
+
+	static byte[] exp(byte[] a, byte[] b) {
+		return ByteUtil.copyToArray(value(a).modPow(value(b), _2_256));
+	}
+
+	static byte[] addmod(byte[] a, byte[] b, byte[] m) {
+		if (value(m).signum() == 0) {
+			return new byte[32];
+		}
+		return word(value(a).add(value(b)).mod(value(m)));
+	}
+
+	static byte[] mulmod(byte[] a, byte[] b, byte[] m) {
+		if (value(m).signum() == 0) {
+			return new byte[32];
+		}
+		return word(value(a).multiply(value(b)).mod(value(m)));
+	}
+
+	static byte[] not(byte[] a) {
+		return word(MAX_VALUE.subtract(value(a)));
+	}
+
+	static int compare(byte[] a, byte[] b) {
+		return value(a).compareTo(value(b));
+	}
+
+	static int sCompare(byte[] a, byte[] b) {
+		return sValue(a).compareTo(sValue(b));
+	}
+
+	static byte[] shiftLeft(byte[] a, byte[] n) {
+		if (value(n).compareTo(BigInteger.valueOf(MAX_POW)) >= 0) {
+			return new byte[32];
+		}
+		return word(value(a).shiftLeft(value(n).intValue()));
+	}
+
+	static byte[] shiftRight(byte[] a, byte[] n) {
+		if (value(n).compareTo(BigInteger.valueOf(MAX_POW)) >= 0) {
+			return new byte[32];
+		}
+		return word(value(a).shiftRight(value(n).intValue()));
+	}
+
+	static byte[] shiftRightSigned(byte[] a, byte[] n) {
+		if (value(n).compareTo(BigInteger.valueOf(MAX_POW)) >= 0) {
+			return sValue(a).signum() < 0 ? word(BigInteger.ONE.negate()) : new byte[32];
+		}
+		return word(sValue(a).shiftRight(value(n).intValue()));
+	}
+
+	static byte[] signExtend(byte[] a, int k) {
+		byte[] result = a.clone();
+		byte mask = sValue(a).testBit((k * 8) + 7) ? (byte) 0xff : 0;
+		for (int i = 31; i > k; i--) {
+			result[31 - i] = mask;
+		}
+		return result;
+	}
+}
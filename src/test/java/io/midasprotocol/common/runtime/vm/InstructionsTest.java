@@ -0,0 +1,69 @@
+package io.midasprotocol.common.runtime.vm;
+
+import io.midasprotocol.common.runtime.config.VMConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+import java.util.Arrays;
+
+public class InstructionsTest {
+
+	@After
+	public void destroy() {
+		VMConfig.initAllowVmConstantinople(0);
+	}
+
+	@Test
+	public void testDecode() {
+		// PUSH2 0x1b5b JUMPDEST ADD SSTORE PUSH3 0x01 (cut off)
+		Instructions instructions = Instructions.decode(Hex.decode("611b5b5b01556201"));
+		Assert.assertEquals(OpCode.PUSH2, instructions.getOp(0));
+		Assert.assertArrayEquals(new DataWord(0x1b5b).getData(), instructions.getImmediate(0));
+		// push data is never executed and gets no immediate
+		Assert.assertNull(instructions.getImmediate(2));
+		Assert.assertEquals(OpCode.JUMPDEST, instructions.getOp(3));
+		Assert.assertEquals(OpCode.ADD.getTier().asInt(), instructions.getEnergy(4));
+		Assert.assertEquals(Instructions.DYNAMIC_ENERGY, instructions.getEnergy(5));
+		// zero padded past the end like Program.sweep
+		Assert.assertArrayEquals(new DataWord(0x010000).getData(), instructions.getImmediate(6));
+		Assert.assertNull(Instructions.decode(Hex.decode("fe")).getOp(0));
+	}
+
+	@Test
+	public void testEmptyCode() {
+		Instructions instructions = Instructions.decode(new byte[0]);
+		Assert.assertEquals(1, instructions.size());
+		Assert.assertEquals(OpCode.STOP, instructions.getOp(0));
+	}
+
+	@Test
+	public void testForkFlags() {
+		byte[] code = new byte[]{OpCode.SHL.val()};
+		VMConfig.initAllowVmConstantinople(0);
+		Instructions instructions = Instructions.decode(code);
+		Assert.assertNull(instructions.getOp(0));
+		Assert.assertTrue(instructions.isCurrent());
+
+		VMConfig.initAllowVmConstantinople(1);
+		Assert.assertFalse(instructions.isCurrent());
+		Assert.assertEquals(OpCode.SHL, Instructions.decode(code).getOp(0));
+	}
+
+	@Test
+	public void testWeight() {
+		byte[] jumpDests = new byte[64];
+		Arrays.fill(jumpDests, OpCode.JUMPDEST.val());
+		byte[] pushes = new byte[64];
+		for (int i = 0; i < pushes.length; i += 2) {
+			pushes[i] = OpCode.PUSH1.val();
+		}
+		int plain = Instructions.decode(jumpDests).getWeight();
+		int withPushes = Instructions.decode(pushes).getWeight();
+		// every position holds the opcode and immediate references and the energy
+		Assert.assertTrue(plain >= jumpDests.length * (4 + Integer.BYTES + 4));
+		// every reachable PUSH holds a full word
+		Assert.assertTrue(withPushes - plain >= 32 * DataWord.DATAWORD_UNIT_SIZE);
+	}
+}
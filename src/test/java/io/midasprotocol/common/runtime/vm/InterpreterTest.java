@@ -16,10 +16,17 @@
 package io.midasprotocol.common.runtime.vm;
 
 import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import io.midasprotocol.common.runtime.config.VMConfig;
 import io.midasprotocol.common.runtime.vm.program.InternalTransaction;
 import io.midasprotocol.common.runtime.vm.program.InternalTransaction.TrxType;
 import io.midasprotocol.common.runtime.vm.program.Program;
@@ -28,14 +35,26 @@ import io.midasprotocol.core.config.args.Args;
 import io.midasprotocol.core.exception.ContractValidateException;
 import io.midasprotocol.protos.Protocol.Transaction;
 
+import java.util.Arrays;
+import java.util.Collection;
+
 import static org.junit.Assert.assertTrue;
 
 @Slf4j
+@RunWith(Parameterized.class)
 public class InterpreterTest {
 
+	@Parameter
+	public boolean preDecoded;
+
 	private ProgramInvokeMockImpl invoke;
 	private Program program;
 
+	@Parameters(name = "preDecoded={0}")
+	public static Collection<Object[]> interpreters() {
+		return Arrays.asList(new Object[][]{{false}, {true}});
+	}
+
 	@BeforeClass
 	public static void init() {
 		Args.getInstance().setDebug(true);
@@ -46,6 +65,16 @@ public class InterpreterTest {
 		Args.clearParam();
 	}
 
+	@Before
+	public void setInterpreter() {
+		VMConfig.getInstance().setVmPreDecoded(preDecoded);
+	}
+
+	@After
+	public void resetInterpreter() {
+		VMConfig.getInstance().setVmPreDecoded(false);
+	}
+
 	@Test
 	public void testVMException() throws ContractValidateException {
 		VM vm = new VM();
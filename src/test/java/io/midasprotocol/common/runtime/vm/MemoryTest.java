@@ -21,8 +21,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.junit.Test;
 import org.spongycastle.util.encoders.Hex;
 import org.testng.Assert;
+import io.midasprotocol.common.crypto.Hash;
 import io.midasprotocol.common.runtime.vm.program.Memory;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import static java.lang.Math.ceil;
@@ -562,5 +564,46 @@ public class MemoryTest {
 		assertTrue(zero == 10);
 	}
 
+	@Test
+	public void memoryGrowth() {
+		Memory memoryBuffer = new Memory();
+		for (int i = 0; i < 100; i++) {
+			memoryBuffer.writeWord(i * 1000, new DataWord(i + 1));
+		}
+
+		assertTrue(memoryBuffer.size() == 99_040);
+		assertTrue(memoryBuffer.internalSize() == 97 * 1024);
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals(memoryBuffer.readWord(i * 1000), new DataWord(i + 1));
+		}
+		Assert.assertEquals(memoryBuffer.getChunks().size(), 97);
+	}
+
+	@Test
+	public void memorySlice() {
+		Memory memoryBuffer = new Memory();
+		memoryBuffer.write(0, Hex.decode("0102030405"), 5, false);
 
-}
\ No newline at end of file
+		ByteBuffer slice = memoryBuffer.slice(1, 40);
+		assertTrue(memoryBuffer.size() == 64);
+		assertTrue(slice.isReadOnly());
+		Assert.assertEquals(slice.remaining(), 40);
+		Assert.assertEquals(slice.get(0), (byte) 2);
+		Assert.assertEquals(slice.get(3), (byte) 5);
+		Assert.assertEquals(slice.get(4), (byte) 0);
+
+		assertTrue(memoryBuffer.slice(100, 0).remaining() == 0);
+		assertTrue(memoryBuffer.size() == 64);
+	}
+
+	@Test
+	public void memorySha3() {
+		Memory memoryBuffer = new Memory();
+		memoryBuffer.writeWord(32, new DataWord(7));
+
+		assertArrayEquals(Hash.sha3(memoryBuffer.read(30, 40)), memoryBuffer.sha3(30, 40));
+		assertTrue(memoryBuffer.size() == 96);
+		assertArrayEquals(Hash.sha3(new byte[0]), memoryBuffer.sha3(200, 0));
+		assertTrue(memoryBuffer.size() == 96);
+	}
+}
@@ -0,0 +1,47 @@
+package io.midasprotocol.common.runtime.vm;
+
+import io.midasprotocol.common.runtime.vm.program.ProgramPrecompile;
+import io.midasprotocol.common.runtime.vm.program.ProgramPrecompileCache;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+public class ProgramPrecompileCacheTest {
+
+	private static final byte[] ADDRESS = Hex.decode("41bbd4b9367799eaa3197fecb144eb71de1e049abc");
+
+	// PUSH1 0x04 JUMP JUMPDEST PUSH1 0x5b JUMPDEST STOP, the 0x5b at 5 is push data
+	private static final byte[] CODE = Hex.decode("6004565b605b5b00");
+
+	@Test
+	public void testJumpDest() {
+		ProgramPrecompile precompile = ProgramPrecompile.compile(CODE);
+		Assert.assertTrue(precompile.hasJumpDest(3));
+		Assert.assertTrue(precompile.hasJumpDest(6));
+		Assert.assertFalse(precompile.hasJumpDest(5));
+		Assert.assertFalse(precompile.hasJumpDest(-1));
+		Assert.assertFalse(precompile.hasJumpDest(1 << 30));
+	}
+
+	@Test
+	public void testGet() {
+		ProgramPrecompileCache cache = new ProgramPrecompileCache(1024 * 1024);
+		ProgramPrecompile precompile = cache.get(ADDRESS, CODE);
+		Assert.assertSame(precompile, cache.get(ADDRESS, CODE.clone()));
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+		Assert.assertTrue(cache.getWeight() > CODE.length);
+
+		// other code at the address, e.g. after a revoke, is a miss
+		byte[] other = Hex.decode("5b00");
+		Assert.assertTrue(cache.get(ADDRESS, other).hasJumpDest(0));
+		Assert.assertFalse(cache.get(ADDRESS, other).hasJumpDest(3));
+		Assert.assertEquals(2, cache.getMissCount());
+		Assert.assertEquals(1, cache.size());
+
+		cache.invalidate(ADDRESS);
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(0, cache.getWeight());
+		Assert.assertNotSame(precompile, cache.get(ADDRESS, CODE));
+	}
+}
@@ -0,0 +1,87 @@
+package io.midasprotocol.common.runtime.vm;
+
+import io.midasprotocol.common.runtime.vm.program.Stack;
+import io.midasprotocol.common.runtime.vm.program.listener.ProgramListenerAdaptor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.EmptyStackException;
+import java.util.List;
+
+public class StackTest {
+
+	@Test
+	public void testPushPop() {
+		Stack stack = new Stack();
+		Assert.assertTrue(stack.isEmpty());
+		for (int i = 0; i < Stack.MAX_SIZE; i++) {
+			stack.push(new DataWord(i));
+		}
+		Assert.assertEquals(Stack.MAX_SIZE, stack.size());
+		Assert.assertEquals(new DataWord(Stack.MAX_SIZE - 1), stack.peek());
+		Assert.assertEquals(new DataWord(3), stack.get(3));
+		for (int i = Stack.MAX_SIZE - 1; i >= 0; i--) {
+			Assert.assertEquals(new DataWord(i), stack.pop());
+		}
+		Assert.assertTrue(stack.isEmpty());
+	}
+
+	@Test(expected = EmptyStackException.class)
+	public void testPopEmpty() {
+		new Stack().pop();
+	}
+
+	@Test(expected = ArrayIndexOutOfBoundsException.class)
+	public void testGetAbovePeek() {
+		Stack stack = new Stack();
+		stack.push(new DataWord(1));
+		stack.pop();
+		stack.get(0);
+	}
+
+	@Test
+	public void testSwap() {
+		Stack stack = new Stack();
+		stack.push(new DataWord(1));
+		stack.push(new DataWord(2));
+		stack.push(new DataWord(3));
+		stack.swap(stack.size() - 1, 0);
+		Assert.assertEquals(new DataWord(1), stack.peek());
+		Assert.assertEquals(new DataWord(3), stack.get(0));
+		// out of range swaps are ignored
+		stack.swap(0, 3);
+		Assert.assertEquals(new DataWord(3), stack.get(0));
+	}
+
+	@Test
+	public void testListener() {
+		List<String> events = new ArrayList<>();
+		Stack stack = new Stack();
+		stack.setProgramListener(new ProgramListenerAdaptor() {
+			@Override
+			public void onStackPop() {
+				events.add("pop");
+			}
+
+			@Override
+			public void onStackPush(DataWord value) {
+				events.add("push " + value.intValue());
+			}
+
+			@Override
+			public void onStackSwap(int from, int to) {
+				events.add("swap " + from + " " + to);
+			}
+		});
+		stack.push(new DataWord(1));
+		stack.push(new DataWord(2));
+		stack.swap(1, 0);
+		stack.pop();
+		Assert.assertEquals(4, events.size());
+		Assert.assertEquals("push 1", events.get(0));
+		Assert.assertEquals("push 2", events.get(1));
+		Assert.assertEquals("swap 1 0", events.get(2));
+		Assert.assertEquals("pop", events.get(3));
+	}
+}
@@ -0,0 +1,91 @@
+package io.midasprotocol.common.runtime.vm;
+
+import io.midasprotocol.common.runtime.TVMTestResult;
+import io.midasprotocol.common.runtime.TVMTestUtils;
+import io.midasprotocol.core.exception.ContractExeException;
+import io.midasprotocol.core.exception.ContractValidateException;
+import io.midasprotocol.core.exception.ReceiptCheckErrException;
+import io.midasprotocol.core.exception.VMIllegalException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+/**
+ * Time of a token transfer through the whole runtime, the call most contract executions are. Runs
+ * on both interpreters, which must use the same energy.
+ */
+@Slf4j
+@Ignore
+public class TokenTransferBenchmarkTest extends VMTestBase {
+
+	private static final int WARMUP_TRANSFERS = 2_000;
+	private static final int TRANSFERS = 20_000;
+
+	private static final String ABI = "[{\"constant\":false,\"inputs\":[{\"name\":\"to\",\"type\":\"address\"},{\"name\":\"value\",\"type\":\"uint256\"}],\"name\":\"transfer\",\"outputs\":[{\"name\":\"\",\"type\":\"bool\"}],\"payable\":false,\"stateMutability\":\"nonpayable\",\"type\":\"function\"},{\"constant\":true,\"inputs\":[{\"name\":\"owner\",\"type\":\"address\"}],\"name\":\"balanceOf\",\"outputs\":[{\"name\":\"\",\"type\":\"uint256\"}],\"payable\":false,\"stateMutability\":\"view\",\"type\":\"function\"}]";
+
+	// transfer(address,uint256) and balanceOf(address) of an erc20 token, balances in a mapping at
+	// slot 0, the deployer gets 2^128. Assembled by hand, dispatching the way solc 0.4 does:
+	//
+	//   PUSH1 0 CALLDATALOAD PUSH29 0x01<<224 SWAP1 DIV
+	//   DUP1 PUSH4 0xa9059cbb EQ PUSH2 transfer JUMPI
+	//   DUP1 PUSH4 0x70a08231 EQ PUSH2 balanceOf JUMPI
+	//   PUSH1 0 DUP1 REVERT
+	// transfer:
+	//   JUMPDEST POP
+	//   CALLER PUSH1 0 MSTORE PUSH1 0 PUSH1 0x20 MSTORE PUSH1 0x40 PUSH1 0 SHA3   // from slot
+	//   DUP1 SLOAD PUSH1 0x24 CALLDATALOAD                                       // balance, value
+	//   DUP1 DUP3 LT PUSH2 fail JUMPI
+	//   DUP1 DUP3 SUB DUP4 SSTORE
+	//   PUSH1 4 CALLDATALOAD PUSH20 0xff..ff AND PUSH1 0 MSTORE PUSH1 0x40 PUSH1 0 SHA3  // to slot
+	//   DUP1 SLOAD DUP3 ADD SWAP1 SSTORE
+	//   POP POP POP PUSH1 1 PUSH1 0 MSTORE PUSH1 0x20 PUSH1 0 RETURN
+	// balanceOf:
+	//   JUMPDEST POP
+	//   PUSH1 4 CALLDATALOAD PUSH1 0 MSTORE PUSH1 0 PUSH1 0x20 MSTORE PUSH1 0x40 PUSH1 0 SHA3 SLOAD
+	//   PUSH1 0 MSTORE PUSH1 0x20 PUSH1 0 RETURN
+	// fail:
+	//   JUMPDEST PUSH1 0 DUP1 REVERT
+	private static final String CODE = "7001000000000000000000000000000000003360005260006020526040600020556100b28061002e6000396000f36000357c010000000000000000000000000000000000000000000000000000000090048063a9059cbb1461003d57806370a082311461009257600080fd5b50336000526000602052604060002080546024358082106100ad57808203835560043573ffffffffffffffffffffffffffffffffffffffff166000526040600020805482019055505050600160005260206000f35b50600435600052600060205260406000205460005260206000f35b600080fd";
+
+	private static final String RECEIVER = "000000000000000000000041bbd4b9367799eaa3197fecb144eb71de1e049abc";
+
+	private static final String AMOUNT = String.format("%064x", 1);
+
+	@Test
+	public void benchmarkTransfer()
+		throws ContractExeException, ReceiptCheckErrException, ContractValidateException,
+		VMIllegalException {
+		long feeLimit = 1_000_000_000L;
+		byte[] owner = Hex.decode(OWNER_ADDRESS);
+		TVMTestResult result = TVMTestUtils.deployContractAndReturnTVMTestResult("token", owner, ABI,
+			CODE, 0, feeLimit, 100, null, manager, null);
+		Assert.assertNull(result.getRuntime().getRuntimeError());
+		byte[] token = result.getContractAddress();
+
+		transfer(owner, token, WARMUP_TRANSFERS, feeLimit);
+		long start = System.nanoTime();
+		long energy = transfer(owner, token, TRANSFERS, feeLimit);
+		long cost = System.nanoTime() - start;
+		logger.info("preDecoded {}: {} transfers, {} us/transfer, {} energy/transfer", preDecoded,
+			TRANSFERS, cost / 1000 / TRANSFERS, energy / TRANSFERS);
+	}
+
+	/**
+	 * @return the energy used
+	 */
+	private long transfer(byte[] owner, byte[] token, int count, long feeLimit)
+		throws ContractExeException, ReceiptCheckErrException, ContractValidateException,
+		VMIllegalException {
+		long energy = 0;
+		for (int i = 0; i < count; i++) {
+			byte[] data = TVMTestUtils.parseAbi("transfer(address,uint256)", RECEIVER + AMOUNT);
+			TVMTestResult result = TVMTestUtils.triggerContractAndReturnTVMTestResult(owner, token,
+				data, 0, feeLimit, manager, null);
+			Assert.assertNull(result.getRuntime().getRuntimeError());
+			energy += result.getReceipt().getEnergyUsageTotal();
+		}
+		return energy;
+	}
+}
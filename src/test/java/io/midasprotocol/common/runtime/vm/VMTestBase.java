@@ -4,10 +4,15 @@ import io.midasprotocol.core.Wallet;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
 import org.spongycastle.util.encoders.Hex;
 import io.midasprotocol.common.application.ApplicationFactory;
 import io.midasprotocol.common.application.ApplicationContext;
 import io.midasprotocol.common.runtime.Runtime;
+import io.midasprotocol.common.runtime.config.VMConfig;
 import io.midasprotocol.common.storage.Deposit;
 import io.midasprotocol.common.storage.DepositImpl;
 import io.midasprotocol.common.utils.FileUtil;
@@ -18,10 +23,19 @@ import io.midasprotocol.core.db.Manager;
 import io.midasprotocol.protos.Protocol.AccountType;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
 
+/**
+ * Runs every test of a subclass on both interpreters of the VM.
+ */
 @Slf4j
+@RunWith(Parameterized.class)
 public class VMTestBase {
 
+	@Parameter
+	public boolean preDecoded;
+
 	protected Manager manager;
 	protected ApplicationContext context;
 	protected String dbPath;
@@ -29,10 +43,16 @@ public class VMTestBase {
 	protected String OWNER_ADDRESS;
 	protected Runtime runtime;
 
+	@Parameters(name = "preDecoded={0}")
+	public static Collection<Object[]> interpreters() {
+		return Arrays.asList(new Object[][]{{false}, {true}});
+	}
+
 	@Before
 	public void init() {
 		dbPath = "output_" + this.getClass().getName();
 		Args.setParam(new String[]{"--output-directory", dbPath, "--debug"}, Constant.TEST_CONF);
+		VMConfig.getInstance().setVmPreDecoded(preDecoded);
 
 		context = new ApplicationContext(DefaultConfig.class);
 		OWNER_ADDRESS = Wallet.getAddressPreFixString() + "abd4b9367799eaa3197fecb144eb71de1e049abc";
@@ -46,6 +66,7 @@ public class VMTestBase {
 
 	@After
 	public void destroy() {
+		VMConfig.getInstance().setVmPreDecoded(false);
 		Args.clearParam();
 		ApplicationFactory.create(context).shutdown();
 		ApplicationFactory.create(context).shutdownServices();
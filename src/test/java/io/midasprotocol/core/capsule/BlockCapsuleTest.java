@@ -116,6 +116,24 @@ public class BlockCapsuleTest {
 			Sha256Hash.wrap(blockCapsule0.getParentHashStr()));
 	}
 
+	@Test
+	public void testSerializedSize() {
+		BlockCapsule blockCapsule = new BlockCapsule(2, Sha256Hash.ZERO_HASH, 1234,
+			ByteString.copyFrom("1234567".getBytes()));
+		for (long i = 1; i <= 10; i++) {
+			TransferContract transferContract = TransferContract.newBuilder()
+				.setAmount(i)
+				.setOwnerAddress(ByteString.copyFrom("0x0000000000000000000".getBytes()))
+				.build();
+			blockCapsule
+				.addTransaction(new TransactionCapsule(transferContract, ContractType.TransferContract));
+		}
+		long size = blockCapsule.getSerializedSize();
+		Assert.assertEquals(10, blockCapsule.getInstance().getTransactionsCount());
+		Assert.assertEquals(blockCapsule.getInstance().getSerializedSize(), size);
+		Assert.assertEquals(10, blockCapsule.getTransactions().size());
+	}
+
 	@Test
 	public void testGetTimeStamp() {
 		Assert.assertEquals(1234L, blockCapsule0.getTimeStamp());
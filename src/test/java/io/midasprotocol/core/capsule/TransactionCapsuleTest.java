@@ -4,8 +4,10 @@ import com.google.protobuf.ByteString;
 import io.midasprotocol.core.Wallet;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.AfterClass;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Test;
 import io.midasprotocol.common.application.Application;
 import io.midasprotocol.common.application.ApplicationFactory;
 import io.midasprotocol.common.application.ApplicationContext;
@@ -14,8 +16,12 @@ import io.midasprotocol.common.utils.StringUtil;
 import io.midasprotocol.core.Constant;
 import io.midasprotocol.core.config.DefaultConfig;
 import io.midasprotocol.core.config.args.Args;
+import io.midasprotocol.common.utils.ByteArray;
+import io.midasprotocol.common.utils.Sha256Hash;
 import io.midasprotocol.core.db.Manager;
+import io.midasprotocol.protos.Contract.TransferContract;
 import io.midasprotocol.protos.Protocol.AccountType;
+import io.midasprotocol.protos.Protocol.Transaction.Contract.ContractType;
 
 import java.io.File;
 
@@ -96,6 +102,32 @@ public class TransactionCapsuleTest {
 		dbManager.getAccountStore().put(ownerCapsule.createDbKey(), ownerCapsule);
 	}
 
+	@Test
+	public void cachedHashInvalidation() {
+		TransferContract contract = TransferContract.newBuilder()
+			.setOwnerAddress(ByteString.copyFrom(ByteArray.fromHexString(OWNER_ADDRESS)))
+			.setToAddress(ByteString.copyFrom(ByteArray.fromHexString(TO_ADDRESS)))
+			.setAmount(1L)
+			.build();
+		TransactionCapsule trx = new TransactionCapsule(contract, ContractType.TransferContract);
+		trx.setExpiration(1000L);
+
+		Sha256Hash id = trx.getTransactionId();
+		Sha256Hash merkleHash = trx.getMerkleHash();
+		Assert.assertSame(id, trx.getTransactionId());
+		Assert.assertSame(merkleHash, trx.getMerkleHash());
+
+		trx.sign(ByteArray.fromHexString(OWNER_KEY));
+		Assert.assertEquals(id, trx.getTransactionId());
+		Assert.assertNotEquals(merkleHash, trx.getMerkleHash());
+		Assert.assertEquals(Sha256Hash.of(trx.getInstance().toByteArray()), trx.getMerkleHash());
+
+		trx.setExpiration(2000L);
+		Assert.assertNotEquals(id, trx.getTransactionId());
+		Assert.assertEquals(Sha256Hash.of(trx.getInstance().getRawData().toByteArray()),
+			trx.getTransactionId());
+	}
+
 //  @Test
 //  public void getDefaultPermission() {
 //    String[] names = {"active", "owner", "other"};
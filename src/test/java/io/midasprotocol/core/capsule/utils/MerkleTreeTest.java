@@ -170,4 +170,36 @@ public class MerkleTreeTest {
 			pareTree(root, hashList, maxRank, 0, 0);
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * The flat root calculation must agree with the root of the full tree, including levels large
+	 * enough to be hashed in parallel.
+	 */
+	@Test
+	public void testCalcRoot() {
+		for (int hashNum : new int[]{1, 2, 3, 7, 128, 1025, 5000}) {
+			List<Sha256Hash> hashList = getHash(hashNum);
+			MerkleTree tree = MerkleTree.getInstance().createTree(hashList);
+			Assert.assertEquals(tree.getRoot().getHash(), MerkleTree.calcRoot(hashList));
+		}
+		try {
+			MerkleTree.calcRoot(new byte[0][]);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertEquals("hashes is empty", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testHashLeaf() {
+		for (int len : new int[]{0, 1, 64, 1000}) {
+			byte[] data = new byte[len];
+			for (int i = 0; i < len; i++) {
+				data[i] = (byte) i;
+			}
+			// twice, the per thread digest must be reset after each leaf
+			Assert.assertArrayEquals(Sha256Hash.hash(data), MerkleTree.hashLeaf(data));
+			Assert.assertArrayEquals(Sha256Hash.hash(data), MerkleTree.hashLeaf(data));
+		}
+	}
+}
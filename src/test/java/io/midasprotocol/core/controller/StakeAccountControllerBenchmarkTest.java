@@ -0,0 +1,85 @@
+package io.midasprotocol.core.controller;
+
+import com.google.protobuf.ByteString;
+import io.midasprotocol.common.application.ApplicationContext;
+import io.midasprotocol.common.utils.FileUtil;
+import io.midasprotocol.core.Constant;
+import io.midasprotocol.core.Wallet;
+import io.midasprotocol.core.capsule.AccountCapsule;
+import io.midasprotocol.core.capsule.StakeAccountCapsule;
+import io.midasprotocol.core.config.DefaultConfig;
+import io.midasprotocol.core.config.args.Args;
+import io.midasprotocol.core.db.Manager;
+import io.midasprotocol.core.util.ConversionUtil;
+import io.midasprotocol.protos.Protocol.AccountType;
+import io.midasprotocol.protos.Protocol.BlockReward.Reward;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates stake sets of growing size and times the staking reward payout of a maintenance.
+ */
+@Slf4j
+@Ignore
+public class StakeAccountControllerBenchmarkTest {
+
+	private static final String dbPath = "output_stake_payout_benchmark";
+	private static final int[] STAKER_COUNTS = {1_000, 10_000, 100_000};
+
+	private static Manager dbManager;
+	private static ApplicationContext context;
+
+	static {
+		Args.setParam(new String[]{"--output-directory", dbPath}, Constant.TEST_CONF);
+		context = new ApplicationContext(DefaultConfig.class);
+	}
+
+	@BeforeClass
+	public static void init() {
+		dbManager = context.getBean(Manager.class);
+	}
+
+	@AfterClass
+	public static void destroy() {
+		Args.clearParam();
+		context.destroy();
+		FileUtil.deleteDir(new File(dbPath));
+	}
+
+	@Test
+	public void benchmark() {
+		Random random = new Random(1);
+		int created = 0;
+		for (int stakerCount : STAKER_COUNTS) {
+			for (; created < stakerCount; created++) {
+				byte[] bytes = new byte[21];
+				random.nextBytes(bytes);
+				bytes[0] = Wallet.getAddressPreFixByte();
+				ByteString address = ByteString.copyFrom(bytes);
+				dbManager.getAccountStore().put(bytes, new AccountCapsule(ByteString.EMPTY, address,
+					AccountType.Normal, 0));
+				StakeAccountCapsule stakeAccount = new StakeAccountCapsule(address);
+				stakeAccount.setStake(ConversionUtil.McashToMatoshi(5_000 + random.nextInt(100_000)));
+				dbManager.getStakeAccountStore().put(bytes, stakeAccount);
+			}
+
+			long start = System.nanoTime();
+			dbManager.getStakeAccountController().updateStakeAccount();
+			long cost = (System.nanoTime() - start) / 1_000_000;
+
+			List<Reward> rewards = dbManager.getBlockRewardStore()
+				.getRewards(dbManager.getHeadBlockNum() + 1);
+			Assert.assertEquals(stakerCount, rewards.size());
+			logger.info("stakers:{}, payout cost:{}ms", stakerCount, cost);
+			dbManager.getBlockRewardStore().reset();
+		}
+	}
+}
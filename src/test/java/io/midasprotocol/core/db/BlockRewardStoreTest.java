@@ -0,0 +1,177 @@
+package io.midasprotocol.core.db;
+
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Ints;
+import com.google.protobuf.ByteString;
+import io.midasprotocol.common.application.ApplicationContext;
+import io.midasprotocol.common.utils.ByteArray;
+import io.midasprotocol.common.utils.FileUtil;
+import io.midasprotocol.core.Constant;
+import io.midasprotocol.core.Wallet;
+import io.midasprotocol.core.capsule.AccountCapsule;
+import io.midasprotocol.core.capsule.BlockRewardCapsule;
+import io.midasprotocol.core.capsule.StakeAccountCapsule;
+import io.midasprotocol.core.config.DefaultConfig;
+import io.midasprotocol.core.config.args.Args;
+import io.midasprotocol.core.util.ConversionUtil;
+import io.midasprotocol.protos.Protocol.AccountType;
+import io.midasprotocol.protos.Protocol.BlockReward;
+import io.midasprotocol.protos.Protocol.BlockReward.Reward;
+import io.midasprotocol.protos.Protocol.BlockReward.RewardType;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Slf4j
+public class BlockRewardStoreTest {
+
+	private static final String dbPath = "output-blockRewardStore-test";
+	private static ApplicationContext context;
+
+	static {
+		Args.setParam(new String[]{"-d", dbPath}, Constant.TEST_CONF);
+		context = new ApplicationContext(DefaultConfig.class);
+	}
+
+	private Manager dbManager;
+	private BlockRewardStore blockRewardStore;
+
+	@AfterClass
+	public static void destroy() {
+		Args.clearParam();
+		context.destroy();
+		FileUtil.deleteDir(new File(dbPath));
+	}
+
+	@Before
+	public void initDb() {
+		dbManager = context.getBean(Manager.class);
+		blockRewardStore = context.getBean(BlockRewardStore.class);
+	}
+
+	@After
+	public void resetDb() {
+		blockRewardStore.reset();
+		dbManager.getStakeAccountStore().reset();
+	}
+
+	@Test
+	public void payExactlyOnePage() {
+		List<Reward> rewards = payStakers(BlockRewardStore.PAGE_SIZE);
+		Assert.assertEquals(1, record().getPageCount());
+		Assert.assertEquals(BlockRewardStore.PAGE_SIZE, rewards.size());
+		Assert.assertEquals(BlockRewardStore.PAGE_SIZE, page(0).getRewardsList().size());
+		Assert.assertNull(page(1));
+	}
+
+	@Test
+	public void payOneMoreThanPage() {
+		List<Reward> rewards = payStakers(BlockRewardStore.PAGE_SIZE + 1);
+		Assert.assertEquals(2, record().getPageCount());
+		Assert.assertEquals(BlockRewardStore.PAGE_SIZE + 1, rewards.size());
+		Assert.assertEquals(BlockRewardStore.PAGE_SIZE, page(0).getRewardsList().size());
+		Assert.assertEquals(1, page(1).getRewardsList().size());
+		Assert.assertEquals(page(1).getRewardsList().get(0), rewards.get(BlockRewardStore.PAGE_SIZE));
+	}
+
+	@Test
+	public void payNoStakers() {
+		List<Reward> rewards = payStakers(0);
+		Assert.assertEquals(0, record().getPageCount());
+		Assert.assertTrue(rewards.isEmpty());
+		Assert.assertNull(page(0));
+	}
+
+	@Test
+	public void noRecord() {
+		Assert.assertNull(blockRewardStore.getRewards(blockNumber()));
+	}
+
+	@Test
+	public void joinPagesBeforeRecord() {
+		long blockNumber = blockNumber();
+		for (int page = 0; page < 2; page++) {
+			BlockRewardCapsule pageRewards = new BlockRewardCapsule(blockNumber);
+			pageRewards.addReward(address(2 * page), 1, RewardType.STAKE);
+			pageRewards.addReward(address(2 * page + 1), 2, RewardType.STAKE);
+			blockRewardStore.putPage(page, pageRewards);
+		}
+		BlockRewardCapsule record = new BlockRewardCapsule(blockNumber);
+		record.setPageCount(2);
+		record.addReward(address(100), 3, RewardType.INFRASTRUCTURE);
+		blockRewardStore.put(record.createDbKey(), record);
+
+		List<Reward> rewards = blockRewardStore.getRewards(blockNumber);
+		List<ByteString> addresses = new ArrayList<>();
+		rewards.forEach(reward -> addresses.add(reward.getAddress()));
+		Assert.assertEquals(
+			Arrays.asList(address(0), address(1), address(2), address(3), address(100)),
+			addresses);
+		Assert.assertEquals(RewardType.INFRASTRUCTURE, rewards.get(4).getType());
+	}
+
+	@Test
+	public void readLegacyRecord() {
+		long blockNumber = blockNumber();
+		// written before page_count existed, every reward in the record itself
+		BlockReward legacy = BlockReward.newBuilder()
+			.setBlockNumber(blockNumber)
+			.addRewards(Reward.newBuilder().setAddress(address(0)).setAmount(1)
+				.setType(RewardType.STAKE))
+			.addRewards(Reward.newBuilder().setAddress(address(1)).setAmount(2)
+				.setType(RewardType.STAKE))
+			.addRewards(Reward.newBuilder().setAddress(address(2)).setAmount(3)
+				.setType(RewardType.INFRASTRUCTURE))
+			.build();
+		blockRewardStore.put(ByteArray.fromLong(blockNumber), new BlockRewardCapsule(legacy.toByteArray()));
+
+		Assert.assertEquals(0, record().getPageCount());
+		Assert.assertEquals(legacy.getRewardsList(), blockRewardStore.getRewards(blockNumber));
+	}
+
+	private long blockNumber() {
+		return dbManager.getHeadBlockNum() + 1;
+	}
+
+	private BlockRewardCapsule record() {
+		return blockRewardStore.get(ByteArray.fromLong(blockNumber()));
+	}
+
+	private BlockRewardCapsule page(int page) {
+		return blockRewardStore.get(Bytes.concat(ByteArray.fromLong(blockNumber()),
+			Ints.toByteArray(page)));
+	}
+
+	private static ByteString address(int i) {
+		byte[] bytes = new byte[21];
+		bytes[0] = Wallet.getAddressPreFixByte();
+		System.arraycopy(Ints.toByteArray(i), 0, bytes, 17, 4);
+		return ByteString.copyFrom(bytes);
+	}
+
+	/**
+	 * Pays a maintenance to {@code count} stakers.
+	 *
+	 * @return the rewards of the block
+	 */
+	private List<Reward> payStakers(int count) {
+		for (int i = 0; i < count; i++) {
+			ByteString address = address(i);
+			dbManager.getAccountStore().put(address.toByteArray(),
+				new AccountCapsule(ByteString.EMPTY, address, AccountType.Normal, 0));
+			StakeAccountCapsule stakeAccount = new StakeAccountCapsule(address);
+			stakeAccount.setStake(ConversionUtil.McashToMatoshi(5_000 + i));
+			dbManager.getStakeAccountStore().put(address.toByteArray(), stakeAccount);
+		}
+		dbManager.getStakeAccountController().updateStakeAccount();
+		return blockRewardStore.getRewards(blockNumber());
+	}
+}
@@ -0,0 +1,42 @@
+package io.midasprotocol.core.db;
+
+import com.google.protobuf.ByteString;
+import io.midasprotocol.core.capsule.AccountCapsule;
+import io.midasprotocol.protos.Protocol.Account;
+import io.midasprotocol.protos.Protocol.AccountType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CapsuleCacheTest {
+
+	private static byte[] KEY = "account".getBytes();
+
+	@Test
+	public void testGet() throws NoSuchMethodException {
+		CapsuleCache<AccountCapsule> cache =
+			new CapsuleCache<>(AccountCapsule.class.getConstructor(Account.class), 10);
+		AccountCapsule account = new AccountCapsule(ByteString.copyFromUtf8("owner"),
+			ByteString.copyFrom(KEY), AccountType.Normal, 100L);
+		byte[] data = account.getData();
+
+		Assert.assertNull(cache.get(KEY, data));
+		cache.put(KEY, data, account);
+
+		AccountCapsule cached = cache.get(KEY, account.getData());
+		Assert.assertNotNull(cached);
+		Assert.assertNotSame(account, cached);
+		Assert.assertEquals(100L, cached.getBalance());
+
+		// mutating a returned capsule does not touch the cache
+		cached.setBalance(200L);
+		Assert.assertEquals(100L, cache.get(KEY, data).getBalance());
+
+		// a different value in the store, e.g. after a revoke, is a miss
+		Assert.assertNull(cache.get(KEY, cached.getData()));
+
+		cache.invalidate(KEY);
+		Assert.assertNull(cache.get(KEY, data));
+		Assert.assertEquals(2, cache.getHitCount());
+		Assert.assertEquals(3, cache.getMissCount());
+	}
+}
@@ -0,0 +1,219 @@
+package io.midasprotocol.core.db;
+
+import com.google.protobuf.ByteString;
+import io.midasprotocol.common.application.Application;
+import io.midasprotocol.common.application.ApplicationContext;
+import io.midasprotocol.common.application.ApplicationFactory;
+import io.midasprotocol.common.crypto.ECKey;
+import io.midasprotocol.common.utils.FileUtil;
+import io.midasprotocol.common.utils.Sha256Hash;
+import io.midasprotocol.core.Constant;
+import io.midasprotocol.core.capsule.AccountCapsule;
+import io.midasprotocol.core.capsule.BlockCapsule;
+import io.midasprotocol.core.capsule.TransactionCapsule;
+import io.midasprotocol.core.capsule.WitnessCapsule;
+import io.midasprotocol.core.config.DefaultConfig;
+import io.midasprotocol.core.config.args.Args;
+import io.midasprotocol.core.db2.core.RevokingDBWithCachingNewValue;
+import io.midasprotocol.core.db2.core.SnapshotManager;
+import io.midasprotocol.protos.Contract.TransferContract;
+import io.midasprotocol.protos.Protocol.Account;
+import io.midasprotocol.protos.Protocol.AccountType;
+import io.midasprotocol.protos.Protocol.Block;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Pushes the same blocks into two empty nodes, one executing the transactions of a block serially
+ * and one in parallel, and compares the contents of every store afterwards.
+ *
+ * <p>To replay a recorded chain segment, record it with
+ * {@link io.midasprotocol.core.net.services.SyncReplayBenchmarkTest}, then run
+ * {@link #replayBothWays()} with the same genesis: -Dreplay.conf=config.conf
+ * -Dreplay.blocks=blocks.bin
+ */
+@Slf4j
+public class ParallelExecutionDeterminismTest {
+
+	private static String dbPath = "output_parallel_execution_determinism";
+
+	private static final int SENDERS = 32;
+
+	@Test
+	public void generatedBlockBothWays() throws Exception {
+		Block[] block = new Block[1];
+		Map<String, BigInteger> serial = run(false, Constant.TEST_CONF, dbManager -> {
+			addAccounts(dbManager);
+			block[0] = generateTransfers(dbManager, false).getInstance();
+			dbManager.pushBlock(new BlockCapsule(block[0]));
+		});
+		Map<String, BigInteger> parallel = run(true, Constant.TEST_CONF, dbManager -> {
+			addAccounts(dbManager);
+			dbManager.pushBlock(new BlockCapsule(block[0]));
+			Assert.assertTrue(dbManager.getParallelTransactionExecutor().getParallelCount().get() > 0);
+		});
+		assertSameStores(serial, parallel);
+	}
+
+	@Test
+	public void chainedBlockBothWays() throws Exception {
+		Block[] block = new Block[1];
+		Map<String, BigInteger> serial = run(false, Constant.TEST_CONF, dbManager -> {
+			addAccounts(dbManager);
+			block[0] = generateTransfers(dbManager, true).getInstance();
+			dbManager.pushBlock(new BlockCapsule(block[0]));
+		});
+		Map<String, BigInteger> parallel = run(true, Constant.TEST_CONF, dbManager -> {
+			addAccounts(dbManager);
+			dbManager.pushBlock(new BlockCapsule(block[0]));
+			// every transfer after the first reads its sender, which the one before merged
+			ParallelTransactionExecutor executor = dbManager.getParallelTransactionExecutor();
+			Assert.assertTrue(executor.getReexecutedCount().get() >= SENDERS - 1);
+		});
+		assertSameStores(serial, parallel);
+	}
+
+	@Test
+	@Ignore
+	public void replayBothWays() throws Exception {
+		String conf = System.getProperty("replay.conf", Constant.TEST_CONF);
+		Map<String, BigInteger> serial = run(false, conf, this::replay);
+		Map<String, BigInteger> parallel = run(true, conf, this::replay);
+		assertSameStores(serial, parallel);
+	}
+
+	private void assertSameStores(Map<String, BigInteger> serial, Map<String, BigInteger> parallel) {
+		for (String name : serial.keySet()) {
+			Assert.assertEquals("store " + name + " differs", serial.get(name), parallel.get(name));
+		}
+		Assert.assertEquals(serial.keySet(), parallel.keySet());
+	}
+
+	private static ECKey key(String name) {
+		return ECKey.fromPrivate(Sha256Hash.hash(name.getBytes()));
+	}
+
+	/**
+	 * The only witness, the senders and the half of the receivers that exists, the same on every
+	 * node.
+	 */
+	private void addAccounts(Manager dbManager) {
+		ByteString witness = ByteString.copyFrom(key("witness").getAddress());
+		dbManager.getWitnesses().clear();
+		dbManager.getWitnessStore().put(witness.toByteArray(), new WitnessCapsule(witness));
+		dbManager.getWitnessController().addWitness(witness);
+		dbManager.getAccountStore().put(witness.toByteArray(),
+			new AccountCapsule(Account.newBuilder().setAddress(witness).build()));
+
+		for (int i = 0; i < SENDERS; i++) {
+			byte[] sender = key("sender" + i).getAddress();
+			dbManager.getAccountStore().put(sender, new AccountCapsule(ByteString.EMPTY,
+				ByteString.copyFrom(sender), AccountType.Normal, 1_000_000_000_000L));
+			if (i % 2 == 0) {
+				byte[] receiver = key("receiver" + i).getAddress();
+				dbManager.getAccountStore().put(receiver,
+					new AccountCapsule(ByteString.copyFrom(receiver), AccountType.Normal));
+			}
+		}
+	}
+
+	/**
+	 * A block of transfers from distinct senders, half of them creating the receiver: they pay
+	 * fees to the blackhole or use the public free bandwidth, and conflict in nothing else. Chained,
+	 * every sender pays the next one instead, so that each transfer reads what the one before wrote.
+	 */
+	private BlockCapsule generateTransfers(Manager dbManager, boolean chained) {
+		long time = dbManager.getHeadBlockTimeStamp() + 3000;
+		ECKey witness = key("witness");
+		BlockCapsule block = new BlockCapsule(dbManager.getHeadBlockNum() + 1,
+			dbManager.getHeadBlockId(), time, ByteString.copyFrom(witness.getAddress()));
+		for (int i = 0; i < SENDERS; i++) {
+			ECKey sender = key("sender" + i);
+			TransferContract contract = TransferContract.newBuilder()
+				.setOwnerAddress(ByteString.copyFrom(sender.getAddress()))
+				.setToAddress(ByteString.copyFrom(key(chained ? "sender" + (i + 1) % SENDERS
+					: "receiver" + i).getAddress()))
+				.setAmount(1_000_000L + i)
+				.build();
+			TransactionCapsule trx = new TransactionCapsule(contract, dbManager.getAccountStore());
+			trx.setReference(dbManager.getHeadBlockNum(), dbManager.getHeadBlockId().getBytes());
+			trx.setExpiration(time + 60_000);
+			trx.sign(sender.getPrivKeyBytes());
+			block.addTransaction(trx);
+		}
+		block.setMerkleRoot();
+		block.sign(witness.getPrivKeyBytes());
+		return block;
+	}
+
+	private void replay(Manager dbManager) throws Exception {
+		try (InputStream in = new FileInputStream(System.getProperty("replay.blocks"))) {
+			Block block;
+			while ((block = Block.parseDelimitedFrom(in)) != null) {
+				dbManager.pushBlock(new BlockCapsule(block));
+			}
+		}
+	}
+
+	private interface Blocks {
+
+		void push(Manager dbManager) throws Exception;
+	}
+
+	/**
+	 * @return an order independent digest of the contents of every store
+	 */
+	private Map<String, BigInteger> run(boolean parallel, String conf, Blocks blocks)
+		throws Exception {
+		String db = dbPath + (parallel ? "_parallel" : "_serial");
+		Args.setParam(new String[]{"-d", db}, conf);
+		Args.getInstance().setParallelBlockExecution(parallel);
+		ApplicationContext context = new ApplicationContext(DefaultConfig.class);
+		Application appT = ApplicationFactory.create(context);
+		try {
+			Manager dbManager = context.getBean(Manager.class);
+			long start = System.nanoTime();
+			blocks.push(dbManager);
+			long cost = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+			ParallelTransactionExecutor executor = dbManager.getParallelTransactionExecutor();
+			logger.info("parallel:{}, cost:{}ms, executed in parallel:{}, reexecuted:{}",
+				parallel, cost,
+				executor == null ? 0 : executor.getParallelCount().get(),
+				executor == null ? 0 : executor.getReexecutedCount().get());
+
+			Map<String, BigInteger> digests = new TreeMap<>();
+			SnapshotManager snapshotManager = (SnapshotManager) dbManager.getRevokingStore();
+			for (RevokingDBWithCachingNewValue store : snapshotManager.getDbs()) {
+				BigInteger digest = BigInteger.ZERO;
+				Iterator<Map.Entry<byte[], byte[]>> iterator = store.iterator();
+				while (iterator.hasNext()) {
+					Map.Entry<byte[], byte[]> entry = iterator.next();
+					byte[] keyHash = Sha256Hash.hash(entry.getKey());
+					byte[] valueHash = Sha256Hash.hash(entry.getValue());
+					byte[] both = new byte[keyHash.length + valueHash.length];
+					System.arraycopy(keyHash, 0, both, 0, keyHash.length);
+					System.arraycopy(valueHash, 0, both, keyHash.length, valueHash.length);
+					digest = digest.add(new BigInteger(1, Sha256Hash.hash(both)));
+				}
+				digests.put(store.getDbName(), digest);
+			}
+			return digests;
+		} finally {
+			Args.clearParam();
+			appT.shutdownServices();
+			appT.shutdown();
+			context.destroy();
+			FileUtil.deleteDir(new File(db));
+		}
+	}
+}
@@ -0,0 +1,336 @@
+package io.midasprotocol.core.db;
+
+import com.google.common.collect.Lists;
+import com.google.protobuf.ByteString;
+import io.midasprotocol.common.application.Application;
+import io.midasprotocol.common.application.ApplicationContext;
+import io.midasprotocol.common.application.ApplicationFactory;
+import io.midasprotocol.common.crypto.ECKey;
+import io.midasprotocol.common.utils.FileUtil;
+import io.midasprotocol.common.utils.Sha256Hash;
+import io.midasprotocol.core.Constant;
+import io.midasprotocol.core.capsule.AccountCapsule;
+import io.midasprotocol.core.capsule.BlockCapsule;
+import io.midasprotocol.core.capsule.TransactionCapsule;
+import io.midasprotocol.core.capsule.TransactionInfoCapsule;
+import io.midasprotocol.core.capsule.WitnessCapsule;
+import io.midasprotocol.core.config.DefaultConfig;
+import io.midasprotocol.core.config.Parameter.ChainConstant;
+import io.midasprotocol.core.config.Parameter.NodeConstant;
+import io.midasprotocol.core.config.args.Args;
+import io.midasprotocol.core.db2.core.RevokingDBWithCachingNewValue;
+import io.midasprotocol.core.db2.core.SnapshotManager;
+import io.midasprotocol.protos.Contract.AccountPermissionUpdateContract;
+import io.midasprotocol.protos.Contract.TransferContract;
+import io.midasprotocol.protos.Protocol.Account;
+import io.midasprotocol.protos.Protocol.AccountType;
+import io.midasprotocol.protos.Protocol.Transaction.Contract.ContractType;
+import io.midasprotocol.protos.Protocol.TransactionInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Produces a block from the same pending transactions on two empty nodes, one executing every
+ * transaction again and one replaying the pending executions, and compares the blocks, the
+ * receipts, the balances and the contents of every store afterwards.
+ */
+@Slf4j
+public class SpeculativeBlockProductionTest {
+
+	private static String dbPath = "output_speculative_block_production";
+
+	private static final int SENDERS = 8;
+
+	private static final long INTERVAL = ChainConstant.BLOCK_PRODUCED_INTERVAL;
+
+	// a recent slot, the same on both nodes so that they produce the same blocks
+	private final long start = (System.currentTimeMillis() / INTERVAL - 20) * INTERVAL;
+
+	private int maxSpeculativeExecutions = NodeConstant.MAX_SPECULATIVE_EXECUTIONS;
+
+	@Test
+	public void producedBlockBothWays() throws Exception {
+		Scenario scenario = dbManager -> {
+			List<TransactionCapsule> pushed = new ArrayList<>();
+			// every sender both receives and sends, the later transfers read the earlier ones' writes
+			for (int i = 0; i < SENDERS; i++) {
+				pushed.add(push(dbManager, transfer(dbManager, i, (i + 1) % SENDERS, 60_000)));
+			}
+			for (int i = 0; i < SENDERS; i++) {
+				pushed.add(push(dbManager, transfer(dbManager, i, (i + 2) % SENDERS, 60_000)));
+			}
+			return pushed;
+		};
+		Result reexecuted = run(false, scenario);
+		Result speculative = run(true, scenario);
+		assertSameBlock(reexecuted, speculative);
+		Assert.assertEquals(2 * SENDERS, speculative.transactions.size());
+		Assert.assertEquals(0, reexecuted.reused);
+		Assert.assertEquals(2 * SENDERS, speculative.reused);
+	}
+
+	@Test
+	public void pendingOrderChanged() throws Exception {
+		Scenario scenario = dbManager -> {
+			List<TransactionCapsule> pushed = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				pushed.add(push(dbManager, transfer(dbManager, i, i + 1, 60_000)));
+			}
+			// the pending executions after it ran on its writes
+			dbManager.getPendingTransactions().remove(pushed.get(1));
+			return pushed;
+		};
+		Result reexecuted = run(false, scenario);
+		Result speculative = run(true, scenario);
+		assertSameBlock(reexecuted, speculative);
+		Assert.assertEquals(ids(speculative.pushed, 0, 2, 3), speculative.transactions);
+		Assert.assertEquals(1, speculative.reused);
+	}
+
+	@Test
+	public void permissionUpdateEndsReuse() throws Exception {
+		Scenario scenario = dbManager -> {
+			dbManager.getDynamicPropertiesStore().saveAllowMultiSign(1);
+			List<TransactionCapsule> pushed = new ArrayList<>();
+			pushed.add(push(dbManager, transfer(dbManager, 0, 1, 60_000)));
+			pushed.add(push(dbManager, transfer(dbManager, 1, 2, 60_000)));
+			pushed.add(push(dbManager, permissionUpdate(dbManager, 2)));
+			// skipped, its owner's permission changes in the block
+			pushed.add(push(dbManager, transfer(dbManager, 2, 3, 60_000)));
+			pushed.add(push(dbManager, transfer(dbManager, 4, 5, 60_000)));
+			return pushed;
+		};
+		Result reexecuted = run(false, scenario);
+		Result speculative = run(true, scenario);
+		assertSameBlock(reexecuted, speculative);
+		Assert.assertEquals(ids(speculative.pushed, 0, 1, 2, 4), speculative.transactions);
+		Assert.assertEquals(2, speculative.reused);
+	}
+
+	@Test
+	public void headChangedAndExpired() throws Exception {
+		Scenario scenario = dbManager -> {
+			List<TransactionCapsule> pushed = new ArrayList<>();
+			pushed.add(push(dbManager, transfer(dbManager, 0, 1, INTERVAL)));
+			pushed.add(push(dbManager, transfer(dbManager, 1, 2, 60_000)));
+			pushed.add(push(dbManager, transfer(dbManager, 2, 3, 60_000)));
+			// expires the first one and sends the pending transactions to be pushed again
+			pushEmptyBlock(dbManager);
+			return pushed;
+		};
+		Result reexecuted = run(false, scenario);
+		Result speculative = run(true, scenario);
+		assertSameBlock(reexecuted, speculative);
+		Assert.assertEquals(ids(speculative.pushed, 1, 2), speculative.transactions);
+		Assert.assertNull(speculative.receipts.get(speculative.pushed.get(0)));
+		Assert.assertEquals(0, speculative.reused);
+	}
+
+	@Test
+	public void speculativeExecutionLimit() throws Exception {
+		maxSpeculativeExecutions = 2;
+		Scenario scenario = dbManager -> {
+			List<TransactionCapsule> pushed = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				pushed.add(push(dbManager, transfer(dbManager, i, i + 1, 60_000)));
+			}
+			return pushed;
+		};
+		Result reexecuted = run(false, scenario);
+		Result speculative = run(true, scenario);
+		assertSameBlock(reexecuted, speculative);
+		Assert.assertEquals(4, speculative.transactions.size());
+		Assert.assertEquals(2, speculative.reused);
+	}
+
+	private void assertSameBlock(Result reexecuted, Result speculative) {
+		Assert.assertEquals(reexecuted.blockId, speculative.blockId);
+		Assert.assertEquals(reexecuted.transactions, speculative.transactions);
+		Assert.assertEquals(reexecuted.receipts, speculative.receipts);
+		Assert.assertEquals(reexecuted.balances, speculative.balances);
+		for (String name : reexecuted.digests.keySet()) {
+			Assert.assertEquals("store " + name + " differs", reexecuted.digests.get(name),
+				speculative.digests.get(name));
+		}
+		Assert.assertEquals(reexecuted.digests.keySet(), speculative.digests.keySet());
+	}
+
+	private static List<Sha256Hash> ids(List<Sha256Hash> pushed, int... indexes) {
+		List<Sha256Hash> result = new ArrayList<>();
+		for (int index : indexes) {
+			result.add(pushed.get(index));
+		}
+		return result;
+	}
+
+	private static ECKey key(String name) {
+		return ECKey.fromPrivate(Sha256Hash.hash(name.getBytes()));
+	}
+
+	/**
+	 * The only witness and the senders, the same on every node.
+	 */
+	private void addAccounts(Manager dbManager) {
+		ByteString witness = ByteString.copyFrom(key("witness").getAddress());
+		dbManager.getWitnessStore().put(witness.toByteArray(), new WitnessCapsule(witness));
+		dbManager.getWitnessController().setActiveWitnesses(Lists.newArrayList(witness));
+		dbManager.getAccountStore().put(witness.toByteArray(),
+			new AccountCapsule(Account.newBuilder().setAddress(witness).build()));
+
+		for (int i = 0; i < SENDERS; i++) {
+			byte[] sender = key("sender" + i).getAddress();
+			dbManager.getAccountStore().put(sender, new AccountCapsule(ByteString.EMPTY,
+				ByteString.copyFrom(sender), AccountType.Normal, 1_000_000_000_000L));
+		}
+	}
+
+	private void pushEmptyBlock(Manager dbManager) throws Exception {
+		ECKey witness = key("witness");
+		long time = dbManager.getHeadBlockNum() == 0 ? start
+			: dbManager.getHeadBlockTimeStamp() + INTERVAL;
+		BlockCapsule block = new BlockCapsule(dbManager.getHeadBlockNum() + 1,
+			dbManager.getHeadBlockId(), time, ByteString.copyFrom(witness.getAddress()));
+		block.setMerkleRoot();
+		block.sign(witness.getPrivKeyBytes());
+		dbManager.pushBlock(block);
+	}
+
+	private static TransactionCapsule transfer(Manager dbManager, int from, int to,
+		long expiration) {
+		ECKey sender = key("sender" + from);
+		TransferContract contract = TransferContract.newBuilder()
+			.setOwnerAddress(ByteString.copyFrom(sender.getAddress()))
+			.setToAddress(ByteString.copyFrom(key("sender" + to).getAddress()))
+			.setAmount(1_000_000L + from)
+			.build();
+		return sign(dbManager, new TransactionCapsule(contract, ContractType.TransferContract),
+			sender, expiration);
+	}
+
+	private static TransactionCapsule permissionUpdate(Manager dbManager, int owner) {
+		ECKey sender = key("sender" + owner);
+		ByteString address = ByteString.copyFrom(sender.getAddress());
+		AccountPermissionUpdateContract contract = AccountPermissionUpdateContract.newBuilder()
+			.setOwnerAddress(address)
+			.setOwner(AccountCapsule.createDefaultOwnerPermission(address))
+			.addActives(AccountCapsule.createDefaultActivePermission(address, dbManager))
+			.build();
+		return sign(dbManager,
+			new TransactionCapsule(contract, ContractType.AccountPermissionUpdateContract), sender,
+			60_000);
+	}
+
+	private static TransactionCapsule sign(Manager dbManager, TransactionCapsule trx, ECKey key,
+		long expiration) {
+		trx.setReference(dbManager.getHeadBlockNum(), dbManager.getHeadBlockId().getBytes());
+		trx.setExpiration(dbManager.getHeadBlockTimeStamp() + expiration);
+		trx.sign(key.getPrivKeyBytes());
+		return trx;
+	}
+
+	private static TransactionCapsule push(Manager dbManager, TransactionCapsule trx)
+		throws Exception {
+		Assert.assertTrue(dbManager.pushTransaction(trx));
+		return trx;
+	}
+
+	private interface Scenario {
+
+		/**
+		 * @return the transactions pushed, in order
+		 */
+		List<TransactionCapsule> push(Manager dbManager) throws Exception;
+	}
+
+	private static class Result {
+
+		private List<Sha256Hash> pushed = new ArrayList<>();
+		private Sha256Hash blockId;
+		private List<Sha256Hash> transactions = new ArrayList<>();
+		private long reused;
+		private Map<Sha256Hash, TransactionInfo> receipts = new TreeMap<>();
+		private Map<String, Long> balances = new TreeMap<>();
+		private Map<String, BigInteger> digests = new TreeMap<>();
+	}
+
+	private Result run(boolean speculative, Scenario scenario) throws Exception {
+		String db = dbPath + (speculative ? "_speculative" : "_reexecuted");
+		Args.setParam(new String[]{"-d", db}, Constant.TEST_CONF);
+		Args.getInstance().setSpeculativeBlockProduction(speculative);
+		Args.getInstance().setMaxSpeculativeExecutions(maxSpeculativeExecutions);
+		// the blocks are produced for past slots, producing must not run out of time
+		Args.getInstance().setBlockProducedTimeOut(Integer.MAX_VALUE);
+		ApplicationContext context = new ApplicationContext(DefaultConfig.class);
+		Application appT = ApplicationFactory.create(context);
+		try {
+			Manager dbManager = context.getBean(Manager.class);
+			// leaves the transactions of a switched head to generateBlock
+			dbManager.stopRepushThread();
+			TimeUnit.MILLISECONDS.sleep(200);
+			addAccounts(dbManager);
+			pushEmptyBlock(dbManager);
+			dbManager.getDynamicPropertiesStore().saveNextMaintenanceTime(Long.MAX_VALUE);
+
+			Result result = new Result();
+			for (TransactionCapsule trx : scenario.push(dbManager)) {
+				result.pushed.add(trx.getTransactionId());
+			}
+			ECKey witness = key("witness");
+			BlockCapsule block = dbManager.generateBlock(
+				dbManager.getWitnessStore().get(witness.getAddress()),
+				dbManager.getHeadBlockTimeStamp() + INTERVAL, witness.getPrivKeyBytes(), false, false);
+			Assert.assertNotNull(block);
+
+			result.blockId = block.getBlockId();
+			for (TransactionCapsule trx : block.getTransactions()) {
+				result.transactions.add(trx.getTransactionId());
+			}
+			result.reused = dbManager.getSpeculativeReusedCount().get();
+			for (Sha256Hash id : result.pushed) {
+				TransactionInfoCapsule info = dbManager.getTransactionHistoryStore().get(id.getBytes());
+				if (info != null) {
+					result.receipts.put(id, info.getInstance());
+				}
+			}
+			result.balances.put("witness",
+				dbManager.getAccountStore().get(witness.getAddress()).getBalance());
+			for (int i = 0; i < SENDERS; i++) {
+				result.balances.put("sender" + i,
+					dbManager.getAccountStore().get(key("sender" + i).getAddress()).getBalance());
+			}
+
+			SnapshotManager snapshotManager = (SnapshotManager) dbManager.getRevokingStore();
+			for (RevokingDBWithCachingNewValue store : snapshotManager.getDbs()) {
+				BigInteger digest = BigInteger.ZERO;
+				Iterator<Map.Entry<byte[], byte[]>> iterator = store.iterator();
+				while (iterator.hasNext()) {
+					Map.Entry<byte[], byte[]> entry = iterator.next();
+					byte[] keyHash = Sha256Hash.hash(entry.getKey());
+					byte[] valueHash = Sha256Hash.hash(entry.getValue());
+					byte[] both = new byte[keyHash.length + valueHash.length];
+					System.arraycopy(keyHash, 0, both, 0, keyHash.length);
+					System.arraycopy(valueHash, 0, both, keyHash.length, valueHash.length);
+					digest = digest.add(new BigInteger(1, Sha256Hash.hash(both)));
+				}
+				result.digests.put(store.getDbName(), digest);
+			}
+			return result;
+		} finally {
+			Args.clearParam();
+			appT.shutdownServices();
+			appT.shutdown();
+			context.destroy();
+			FileUtil.deleteDir(new File(db));
+		}
+	}
+}
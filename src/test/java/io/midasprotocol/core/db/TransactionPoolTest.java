@@ -0,0 +1,73 @@
+package io.midasprotocol.core.db;
+
+import com.google.protobuf.ByteString;
+import io.midasprotocol.core.capsule.TransactionCapsule;
+import io.midasprotocol.protos.Contract.TransferContract;
+import io.midasprotocol.protos.Protocol.Transaction.Contract.ContractType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.List;
+
+public class TransactionPoolTest {
+
+	private static TransactionCapsule trx(byte owner, long amount, long expiration) {
+		TransferContract contract = TransferContract.newBuilder()
+			.setOwnerAddress(ByteString.copyFrom(new byte[]{owner}))
+			.setToAddress(ByteString.copyFrom(new byte[]{2}))
+			.setAmount(amount)
+			.build();
+		TransactionCapsule trx = new TransactionCapsule(contract, ContractType.TransferContract);
+		trx.setExpiration(expiration);
+		return trx;
+	}
+
+	@Test
+	public void testOrderAndIndexes() {
+		TransactionPool pool = new TransactionPool();
+		TransactionCapsule a = trx((byte) 1, 1, 3000);
+		TransactionCapsule b = trx((byte) 1, 2, 1000);
+		TransactionCapsule c = trx((byte) 3, 3, 2000);
+		Assert.assertTrue(pool.add(a));
+		Assert.assertTrue(pool.add(b));
+		Assert.assertTrue(pool.add(c));
+		Assert.assertFalse(pool.add(a));
+		Assert.assertEquals(3, pool.size());
+
+		Assert.assertEquals(a.getTransactionId(), pool.snapshot().get(0).getTransactionId());
+		Assert.assertEquals(2, pool.getByOwner(new byte[]{1}).size());
+		Assert.assertTrue(pool.containsOwner(new byte[]{3}));
+
+		// removed in the middle while iterating
+		Iterator<TransactionCapsule> iterator = pool.iterator();
+		iterator.next();
+		iterator.next();
+		iterator.remove();
+		Assert.assertFalse(pool.contains(b.getTransactionId()));
+		Assert.assertEquals(1, pool.getByOwner(new byte[]{1}).size());
+		Assert.assertEquals(c.getTransactionId(), iterator.next().getTransactionId());
+
+		pool.remove(c);
+		Assert.assertFalse(pool.containsOwner(new byte[]{3}));
+		Assert.assertEquals(1, pool.size());
+	}
+
+	@Test
+	public void testExpireAndDrain() {
+		TransactionPool pool = new TransactionPool();
+		for (int i = 0; i < 10; i++) {
+			pool.add(trx((byte) i, i, 1000 + (9 - i) * 100));
+		}
+		List<TransactionCapsule> expired = pool.removeExpired(1300);
+		Assert.assertEquals(4, expired.size());
+		Assert.assertEquals(1000, expired.get(0).getExpiration());
+		Assert.assertEquals(6, pool.size());
+
+		List<TransactionCapsule> drained = pool.drain();
+		Assert.assertEquals(6, drained.size());
+		Assert.assertEquals(1900, drained.get(0).getExpiration());
+		Assert.assertTrue(pool.isEmpty());
+		Assert.assertFalse(pool.containsOwner(new byte[]{0}));
+	}
+}
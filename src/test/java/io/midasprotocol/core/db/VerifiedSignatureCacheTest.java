@@ -0,0 +1,108 @@
+package io.midasprotocol.core.db;
+
+import com.google.protobuf.ByteString;
+import io.midasprotocol.common.crypto.ECKey;
+import io.midasprotocol.common.utils.ByteArray;
+import io.midasprotocol.common.utils.FileUtil;
+import io.midasprotocol.core.Constant;
+import io.midasprotocol.core.capsule.AccountCapsule;
+import io.midasprotocol.core.capsule.TransactionCapsule;
+import io.midasprotocol.core.config.args.Args;
+import io.midasprotocol.protos.Contract.TransferContract;
+import io.midasprotocol.protos.Protocol.Permission;
+import io.midasprotocol.protos.Protocol.Transaction.Contract.ContractType;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+
+public class VerifiedSignatureCacheTest {
+
+	private static String dbPath = "output_verified_signature_cache_test";
+	private static String OWNER_KEY = "bfa67cb3dc6609b3a0c98e717d66f38ed1a159b5b3421678dfab85961c40de2f";
+	private static String OTHER_KEY = "cba92a516ea09f620a16ff7ee95ce0df1d56550a8babe9964981a7144c8a784a";
+
+	@BeforeClass
+	public static void init() {
+		Args.setParam(new String[]{"-d", dbPath}, Constant.TEST_CONF);
+	}
+
+	@AfterClass
+	public static void removeDb() {
+		Args.clearParam();
+		FileUtil.deleteDir(new File(dbPath));
+	}
+
+	@Test
+	public void testVerifiedSignature() {
+		byte[] owner = ECKey.fromPrivate(ByteArray.fromHexString(OWNER_KEY)).getAddress();
+		TransferContract contract = TransferContract.newBuilder()
+			.setOwnerAddress(ByteString.copyFrom(owner))
+			.setAmount(1L)
+			.build();
+		TransactionCapsule trx = new TransactionCapsule(contract, ContractType.TransferContract);
+		trx.sign(ByteArray.fromHexString(OWNER_KEY));
+		Permission permission = AccountCapsule.getDefaultPermission(ByteString.copyFrom(owner));
+
+		VerifiedSignatureCache cache = new VerifiedSignatureCache();
+		Assert.assertFalse(cache.isVerified(trx, permission));
+
+		cache.put(trx, permission, Collections.singletonList(ByteString.copyFrom(owner)));
+		Assert.assertTrue(cache.isVerified(new TransactionCapsule(trx.getInstance()), permission));
+		Assert.assertFalse(cache.isVerified(trx, permission.toBuilder().setThreshold(2).build()));
+		Assert.assertFalse(cache.isVerified(trx, null));
+
+		// same transaction with a different signature list is not verified
+		TransactionCapsule resigned = new TransactionCapsule(trx.getInstance());
+		resigned.sign(ByteArray.fromHexString(OWNER_KEY));
+		Assert.assertFalse(cache.isVerified(resigned, permission));
+
+		cache.invalidate(owner);
+		Assert.assertFalse(cache.isVerified(trx, permission));
+		Assert.assertNull(cache.getApproveList(trx));
+	}
+
+	@Test
+	public void testInvalidateOneOwner() {
+		TransactionCapsule trx = transfer(OWNER_KEY);
+		TransactionCapsule other = transfer(OTHER_KEY);
+		Permission permission = AccountCapsule.getDefaultPermission(
+			ByteString.copyFrom(owner(OWNER_KEY)));
+		Permission otherPermission = AccountCapsule.getDefaultPermission(
+			ByteString.copyFrom(owner(OTHER_KEY)));
+
+		VerifiedSignatureCache cache = new VerifiedSignatureCache();
+		cache.put(trx, permission, Collections.emptyList());
+		cache.put(other, otherPermission, Collections.emptyList());
+		// putting the same transaction again keeps it indexed
+		cache.put(trx, permission, Collections.emptyList());
+
+		cache.invalidate(owner(OTHER_KEY));
+		Assert.assertTrue(cache.isVerified(trx, permission));
+		Assert.assertFalse(cache.isVerified(other, otherPermission));
+
+		cache.invalidate(owner(OWNER_KEY));
+		Assert.assertFalse(cache.isVerified(trx, permission));
+		Assert.assertEquals(0, cache.size());
+
+		// an owner without entries is a no-op
+		cache.invalidate(owner(OWNER_KEY));
+	}
+
+	private static byte[] owner(String key) {
+		return ECKey.fromPrivate(ByteArray.fromHexString(key)).getAddress();
+	}
+
+	private static TransactionCapsule transfer(String key) {
+		TransferContract contract = TransferContract.newBuilder()
+			.setOwnerAddress(ByteString.copyFrom(owner(key)))
+			.setAmount(1L)
+			.build();
+		TransactionCapsule trx = new TransactionCapsule(contract, ContractType.TransferContract);
+		trx.sign(ByteArray.fromHexString(key));
+		return trx;
+	}
+}
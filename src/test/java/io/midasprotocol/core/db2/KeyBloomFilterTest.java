@@ -0,0 +1,38 @@
+package io.midasprotocol.core.db2;
+
+import com.google.common.primitives.Longs;
+import io.midasprotocol.core.db2.common.KeyBloomFilter;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyBloomFilterTest {
+
+	@Test
+	public void testNoFalseNegative() {
+		KeyBloomFilter filter = new KeyBloomFilter(1000);
+		for (long i = 0; i < 1000; i++) {
+			Assert.assertTrue(filter.put(KeyBloomFilter.hash(Longs.toByteArray(i))));
+		}
+		for (long i = 0; i < 1000; i++) {
+			Assert.assertTrue(filter.mightContain(KeyBloomFilter.hash(Longs.toByteArray(i))));
+		}
+
+		int falsePositive = 0;
+		for (long i = 1000; i < 11000; i++) {
+			if (filter.mightContain(KeyBloomFilter.hash(Longs.toByteArray(i)))) {
+				falsePositive++;
+			}
+		}
+		Assert.assertTrue(falsePositive < 500);
+	}
+
+	@Test
+	public void testCapacity() {
+		KeyBloomFilter filter = new KeyBloomFilter(0);
+		boolean full = false;
+		for (long i = 0; i < 10_000 && !full; i++) {
+			full = !filter.put(KeyBloomFilter.hash(Longs.toByteArray(i)));
+		}
+		Assert.assertTrue(full);
+	}
+}
@@ -21,7 +21,12 @@ import io.midasprotocol.core.db2.core.SnapshotManager;
 import io.midasprotocol.core.exception.RevokingStoreIllegalStateException;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -227,6 +232,64 @@ public class RevokingDbWithCacheNewValueTest {
 	}
 
 
+	@Test
+	public synchronized void testConcurrentRead() throws InterruptedException {
+		revokingDatabase = new TestSnapshotManager();
+		revokingDatabase.enable();
+		tronDatabase = new TestRevokingTronStore("testSnapshotManager-testConcurrentRead");
+		revokingDatabase.add(tronDatabase.getRevokingDB());
+		while (revokingDatabase.size() != 0) {
+			revokingDatabase.pop();
+		}
+
+		ProtoCapsuleTest committed = new ProtoCapsuleTest("concurrentRead".getBytes());
+		try (ISession tmpSession = revokingDatabase.buildSession()) {
+			tronDatabase.put(committed.getData(), committed);
+			tmpSession.commit();
+		}
+
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicInteger errors = new AtomicInteger();
+		AtomicLong reads = new AtomicLong();
+		List<Thread> readers = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			Thread reader = new Thread(() -> {
+				while (running.get()) {
+					try {
+						if (!committed.equals(tronDatabase.getUnchecked(committed.getData()))) {
+							errors.incrementAndGet();
+						}
+						reads.incrementAndGet();
+					} catch (Exception e) {
+						errors.incrementAndGet();
+					}
+				}
+			});
+			reader.start();
+			readers.add(reader);
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 200; i++) {
+			try (ISession tmpSession = revokingDatabase.buildSession()) {
+				for (int j = 0; j < 50; j++) {
+					ProtoCapsuleTest capsule = new ProtoCapsuleTest(("concurrentRead" + i + "-" + j)
+						.getBytes());
+					tronDatabase.put(capsule.getData(), capsule);
+				}
+				tmpSession.commit();
+			}
+		}
+		long writeCost = System.nanoTime() - start;
+		running.set(false);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+
+		logger.info("write cost:{}ms, concurrent reads:{}", writeCost / 1_000_000, reads.get());
+		Assert.assertEquals(0, errors.get());
+	}
+
 	public static class TestRevokingTronStore extends TronStoreWithRevoking<ProtoCapsuleTest> {
 
 		protected TestRevokingTronStore(String dbName) {
@@ -16,12 +16,18 @@ import io.midasprotocol.core.db.CheckTmpStore;
 import io.midasprotocol.core.db2.RevokingDbWithCacheNewValueTest.TestRevokingTronStore;
 import io.midasprotocol.core.db2.RevokingDbWithCacheNewValueTest.TestSnapshotManager;
 import io.midasprotocol.core.db2.SnapshotRootTest.ProtoCapsuleTest;
+import io.midasprotocol.core.db2.common.Key;
 import io.midasprotocol.core.db2.core.ISession;
 import io.midasprotocol.core.db2.core.SnapshotManager;
 import io.midasprotocol.core.exception.BadItemException;
 import io.midasprotocol.core.exception.ItemNotFoundException;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 public class SnapshotManagerTest {
@@ -47,6 +53,7 @@ public class SnapshotManagerTest {
 
 	@After
 	public void removeDb() {
+		revokingDatabase.waitForFlush();
 		Args.clearParam();
 		appT.shutdownServices();
 		appT.shutdown();
@@ -77,6 +84,8 @@ public class SnapshotManagerTest {
 		}
 
 		revokingDatabase.flush();
+		revokingDatabase.waitForFlush();
+		Assert.assertNotNull(revokingDatabase.getLastFlushCost());
 		Assert.assertEquals(new ProtoCapsuleTest("refresh10".getBytes()),
 			tronDatabase.get(protoCapsule.getData()));
 	}
@@ -100,4 +109,76 @@ public class SnapshotManagerTest {
 		Assert.assertNull(tronDatabase.get(protoCapsule.getData()));
 
 	}
+
+	@Test
+	public synchronized void testReplayWriteSet() {
+		while (revokingDatabase.size() != 0) {
+			revokingDatabase.pop();
+		}
+
+		ProtoCapsuleTest kept = new ProtoCapsuleTest("replay-kept".getBytes());
+		ProtoCapsuleTest removed = new ProtoCapsuleTest("replay-removed".getBytes());
+		tronDatabase.put(removed.getData(), removed);
+
+		SnapshotManager.WriteSet writeSet;
+		try (ISession ignored = revokingDatabase.buildSession()) {
+			tronDatabase.put(kept.getData(), kept);
+			tronDatabase.delete(removed.getData());
+			writeSet = revokingDatabase.captureWriteSet();
+		}
+		Assert.assertEquals(2, writeSet.size());
+		Assert.assertNull(tronDatabase.get(kept.getData()));
+		Assert.assertNotNull(tronDatabase.get(removed.getData()));
+
+		try (ISession tmpSession = revokingDatabase.buildSession()) {
+			revokingDatabase.replay(writeSet);
+			tmpSession.commit();
+		}
+		Assert.assertEquals(kept, tronDatabase.get(kept.getData()));
+		Assert.assertNull(tronDatabase.get(removed.getData()));
+	}
+
+	@Test
+	public synchronized void testBranch() throws Exception {
+		while (revokingDatabase.size() != 0) {
+			revokingDatabase.pop();
+		}
+
+		ProtoCapsuleTest read = new ProtoCapsuleTest("branch-read".getBytes());
+		ProtoCapsuleTest written = new ProtoCapsuleTest("branch-written".getBytes());
+		tronDatabase.put(read.getData(), read);
+
+		try (ISession tmpSession = revokingDatabase.buildSession()) {
+			SnapshotManager.Branch branch;
+			try (SnapshotManager.Branch opened = revokingDatabase.openBranch()) {
+				branch = opened;
+				Assert.assertEquals(read, tronDatabase.get(read.getData()));
+				tronDatabase.put(written.getData(), written);
+				Assert.assertEquals(written, tronDatabase.get(written.getData()));
+				// other threads don't see the writes of the branch
+				Assert.assertNull(CompletableFuture
+					.supplyAsync(() -> tronDatabase.get(written.getData())).get());
+			}
+			Assert.assertNull(tronDatabase.get(written.getData()));
+
+			List<Set<Key>> keys = new ArrayList<>();
+			keys.add(Collections.singleton(Key.of(written.getData())));
+			Assert.assertFalse(branch.readsAny(keys));
+			keys.set(0, Collections.singleton(Key.of(read.getData())));
+			Assert.assertTrue(branch.readsAny(keys));
+
+			revokingDatabase.apply(branch);
+			Assert.assertEquals(written, tronDatabase.get(written.getData()));
+
+			List<Set<Key>> collected = new ArrayList<>();
+			branch.collectWrites(collected);
+			Assert.assertEquals(Collections.singleton(Key.of(written.getData())), collected.get(0));
+			tmpSession.commit();
+		}
+
+		try (SnapshotManager.Branch branch = revokingDatabase.openBranch()) {
+			tronDatabase.iterator();
+			Assert.assertTrue(branch.readsAny(Collections.emptyList()));
+		}
+	}
 }
@@ -0,0 +1,85 @@
+package io.midasprotocol.core.db2;
+
+import com.google.common.primitives.Longs;
+import io.midasprotocol.common.utils.FileUtil;
+import io.midasprotocol.common.utils.Sha256Hash;
+import io.midasprotocol.core.Constant;
+import io.midasprotocol.core.config.args.Args;
+import io.midasprotocol.core.db2.common.TxCacheDB;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+
+public class TxCacheDBTest {
+
+	private static String dbPath = "output_tx_cache_db_test";
+
+	@BeforeClass
+	public static void init() {
+		Args.setParam(new String[]{"-d", dbPath}, Constant.TEST_CONF);
+	}
+
+	@AfterClass
+	public static void removeDb() {
+		Args.clearParam();
+		FileUtil.deleteDir(new File(dbPath));
+	}
+
+	private static byte[] txId(long i) {
+		return Sha256Hash.hash(Longs.toByteArray(i));
+	}
+
+	@Test
+	public void testExpire() {
+		TxCacheDB db = new TxCacheDB();
+		// enough ids to grow the table a few times
+		for (long i = 0; i < 200_000; i++) {
+			db.put(txId(i), Longs.toByteArray(i / 10));
+		}
+		Assert.assertEquals(200_000, db.size());
+		Assert.assertEquals(0L, Longs.fromByteArray(db.get(txId(0))));
+		Assert.assertEquals(19_999L, Longs.fromByteArray(db.get(txId(199_999))));
+
+		// block 70_000 reuses the bucket of block 0
+		db.put(txId(-1), Longs.toByteArray(70_000));
+		Assert.assertNull(db.get(txId(0)));
+		Assert.assertNull(db.get(txId(9)));
+		Assert.assertNotNull(db.get(txId(10)));
+		Assert.assertEquals(200_000 - 10 + 1, db.size());
+
+		// older than the ring
+		db.put(txId(-2), Longs.toByteArray(0));
+		Assert.assertNull(db.get(txId(-2)));
+
+		// an id moved to a newer block survives the expiry of the old one
+		db.put(txId(15), Longs.toByteArray(70_005));
+		db.put(txId(-3), Longs.toByteArray(70_001));
+		Assert.assertNull(db.get(txId(14)));
+		Assert.assertEquals(70_005L, Longs.fromByteArray(db.get(txId(15))));
+
+		db.remove(txId(15));
+		Assert.assertNull(db.get(txId(15)));
+		Assert.assertEquals(70_005L, db.getLatestBlockNum());
+	}
+
+	@Test
+	public void testSnapshot() throws Exception {
+		TxCacheDB db = new TxCacheDB(dbPath, "trans-cache");
+		for (long i = 0; i < 1_000; i++) {
+			db.put(txId(i), Longs.toByteArray(100 + i / 10));
+		}
+		db.close();
+		Assert.assertTrue(db.isEmpty());
+
+		TxCacheDB restored = new TxCacheDB(dbPath, "trans-cache");
+		Assert.assertEquals(199L, restored.restore());
+		Assert.assertEquals(1_000, restored.size());
+		Assert.assertEquals(150L, Longs.fromByteArray(restored.get(txId(500))));
+
+		// the snapshot is consumed by the restore
+		Assert.assertEquals(-1L, new TxCacheDB(dbPath, "trans-cache").restore());
+	}
+}
@@ -0,0 +1,41 @@
+package io.midasprotocol.core.net.message;
+
+import com.google.protobuf.ByteString;
+import io.midasprotocol.common.utils.ByteArray;
+import io.midasprotocol.common.utils.Sha256Hash;
+import io.midasprotocol.core.capsule.BlockCapsule;
+import io.midasprotocol.core.capsule.BlockCapsule.BlockId;
+import io.netty.buffer.ByteBuf;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockMessageTest {
+
+	@Test
+	public void testRawBlockMessage() {
+		BlockCapsule block = new BlockCapsule(1,
+			Sha256Hash.wrap(ByteArray
+				.fromHexString("9938a342238077182498b464ac0292229938a342238077182498b464ac029222")),
+			1234,
+			ByteString.copyFrom("1234567".getBytes()));
+		BlockMessage expected = new BlockMessage(block);
+		BlockId blockId = block.getBlockId();
+
+		BlockMessage message = new BlockMessage(new BlockId(blockId), block.getData());
+		Assert.assertEquals(blockId, message.getBlockId());
+		Assert.assertEquals(blockId, message.getMessageId());
+
+		ByteBuf sendData = message.getSendData();
+		byte[] bytes = new byte[sendData.readableBytes()];
+		sendData.readBytes(bytes);
+		ByteBuf expectedData = expected.getSendData();
+		byte[] expectedBytes = new byte[expectedData.readableBytes()];
+		expectedData.readBytes(expectedBytes);
+		Assert.assertArrayEquals(expectedBytes, bytes);
+		Assert.assertEquals(MessageTypes.BLOCK.asByte(), bytes[0]);
+
+		// decoded only on demand
+		Assert.assertEquals(1234, message.getBlockCapsule().getTimeStamp());
+		Assert.assertEquals(blockId, message.getBlockCapsule().getBlockId());
+	}
+}
@@ -0,0 +1,61 @@
+package io.midasprotocol.core.net.peer;
+
+import io.midasprotocol.core.net.message.TransactionMessage;
+import io.midasprotocol.core.net.peer.PeerTrxQueue.DropReason;
+import io.midasprotocol.core.net.peer.PeerTrxQueue.Entry;
+import io.midasprotocol.protos.Protocol.Transaction;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PeerTrxQueueTest {
+
+	private TransactionMessage trx() {
+		return new TransactionMessage(Transaction.getDefaultInstance());
+	}
+
+	@Test
+	public void testWeightedPoll() {
+		PeerTrxQueue queue = new PeerTrxQueue(100);
+		for (int i = 0; i < 10; i++) {
+			Assert.assertTrue(queue.offer(trx(), false));
+			Assert.assertTrue(queue.offer(trx(), true));
+		}
+		Assert.assertTrue(queue.schedule());
+		Assert.assertFalse(queue.schedule());
+
+		List<Entry> batch = new ArrayList<>();
+		queue.poll(8, 1, batch);
+		Assert.assertEquals(9, batch.size());
+		Assert.assertEquals(11, queue.size());
+		Assert.assertTrue(queue.reschedule());
+
+		batch.clear();
+		queue.poll(8, 1, batch);
+		queue.poll(8, 1, batch);
+		Assert.assertEquals(4, batch.size());
+		Assert.assertEquals(7, queue.size());
+	}
+
+	@Test
+	public void testBoundAndDrops() {
+		PeerTrxQueue queue = new PeerTrxQueue(2);
+		Assert.assertTrue(queue.offer(trx(), false));
+		Assert.assertTrue(queue.offer(trx(), true));
+		Assert.assertFalse(queue.offer(trx(), false));
+		Assert.assertEquals(1, queue.getDropCount(DropReason.QUEUE_FULL));
+
+		Assert.assertTrue(queue.schedule());
+		Assert.assertEquals(2, queue.clear());
+		Assert.assertEquals(2, queue.getDropCount(DropReason.DISCONNECTED));
+		Assert.assertFalse(queue.reschedule());
+
+		queue.admitted(10);
+		queue.admitted(30);
+		Assert.assertEquals(2, queue.getAdmittedCount());
+		Assert.assertEquals(20, queue.getAvgLatency());
+		Assert.assertEquals(30, queue.getMaxLatency());
+	}
+}
@@ -0,0 +1,107 @@
+package io.midasprotocol.core.net.services;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.primitives.Longs;
+import io.midasprotocol.common.utils.Sha256Hash;
+import io.midasprotocol.core.net.TronNetDelegate;
+import io.midasprotocol.core.net.peer.Item;
+import io.midasprotocol.core.net.peer.PeerConnection;
+import io.midasprotocol.core.net.service.AdvService;
+import io.midasprotocol.protos.Protocol.Inventory.InventoryType;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Announces synthetic items from synthetic peers into {@link AdvService} and times the
+ * concurrent addInv path and the fetch scheduling rounds.
+ */
+@Slf4j
+@Ignore
+public class AdvServiceBenchmarkTest {
+
+	private static final int PEER_COUNT = 30;
+	private static final int ITEM_COUNT = 50_000;
+	private static final int ANNOUNCERS_PER_ITEM = 8;
+	private static final int THREAD_COUNT = 8;
+
+	@Test
+	public void benchmark() throws Exception {
+		List<PeerConnection> peers = new ArrayList<>();
+		List<Map<Item, Long>> requests = new ArrayList<>();
+		for (int i = 0; i < PEER_COUNT; i++) {
+			Cache<Item, Long> received = CacheBuilder.newBuilder().maximumSize(ITEM_COUNT * 2).build();
+			Map<Item, Long> requested = new ConcurrentHashMap<>();
+			PeerConnection peer = Mockito.mock(PeerConnection.class);
+			Mockito.when(peer.getAdvInvReceive()).thenReturn(received);
+			Mockito.when(peer.getAdvInvRequest()).thenReturn(requested);
+			Mockito.when(peer.isIdle()).thenAnswer(invocation -> requested.isEmpty());
+			peers.add(peer);
+			requests.add(requested);
+		}
+		TronNetDelegate delegate = Mockito.mock(TronNetDelegate.class);
+		Mockito.when(delegate.getActivePeer()).thenReturn(peers);
+
+		AdvService service = new AdvService();
+		Field field = AdvService.class.getDeclaredField("tronNetDelegate");
+		field.setAccessible(true);
+		field.set(service, delegate);
+		Method consumer = AdvService.class.getDeclaredMethod("consumerInvToFetch");
+		consumer.setAccessible(true);
+
+		Item[] items = new Item[ITEM_COUNT];
+		for (int i = 0; i < ITEM_COUNT; i++) {
+			items[i] = new Item(Sha256Hash.of(Longs.toByteArray(i)), InventoryType.TRX);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		long start = System.nanoTime();
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < THREAD_COUNT; t++) {
+			int thread = t;
+			futures.add(executor.submit(() -> {
+				for (int i = thread; i < ITEM_COUNT * ANNOUNCERS_PER_ITEM; i += THREAD_COUNT) {
+					Item item = items[i / ANNOUNCERS_PER_ITEM];
+					PeerConnection peer = peers.get((i * 7 + i / ANNOUNCERS_PER_ITEM) % PEER_COUNT);
+					peer.getAdvInvReceive().put(item, System.currentTimeMillis());
+					service.addInv(item, peer);
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		long addCost = System.nanoTime() - start;
+		executor.shutdown();
+
+		int rounds = 0;
+		long fetched = 0;
+		start = System.nanoTime();
+		while (fetched < ITEM_COUNT && rounds < ITEM_COUNT) {
+			consumer.invoke(service);
+			rounds++;
+			for (Map<Item, Long> requested : requests) {
+				fetched += requested.size();
+				requested.clear();
+			}
+		}
+		long fetchCost = System.nanoTime() - start;
+
+		logger.info("addInv: {} announcements, {} ns/op; fetch: {} items in {} rounds, {} ms/round",
+			ITEM_COUNT * ANNOUNCERS_PER_ITEM, addCost / (ITEM_COUNT * ANNOUNCERS_PER_ITEM),
+			fetched, rounds, TimeUnit.NANOSECONDS.toMillis(fetchCost) / (double) rounds);
+	}
+}
@@ -1,14 +1,33 @@
 package io.midasprotocol.core.net.services;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.primitives.Longs;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.Mockito;
 import io.midasprotocol.common.utils.Sha256Hash;
 import io.midasprotocol.core.capsule.BlockCapsule;
+import io.midasprotocol.core.net.TronNetDelegate;
 import io.midasprotocol.core.net.message.BlockMessage;
 import io.midasprotocol.core.net.peer.Item;
+import io.midasprotocol.core.net.peer.PeerConnection;
 import io.midasprotocol.core.net.service.AdvService;
 import io.midasprotocol.protos.Protocol.Inventory.InventoryType;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public class AdvServiceTest {
 
 	private AdvService service = new AdvService();
@@ -32,4 +51,126 @@ public class AdvServiceTest {
 		Item item = new Item(blockCapsule.getBlockId(), InventoryType.BLOCK);
 		Assert.assertNotNull(service.getMessage(item));
 	}
+
+	@Test
+	public void testConcurrentAddInv() throws Exception {
+		int peerCount = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(peerCount);
+		try {
+			for (int round = 0; round < 100; round++) {
+				PeerConnection[] peers = new PeerConnection[peerCount];
+				AtomicBoolean[] idle = new AtomicBoolean[peerCount];
+				for (int i = 0; i < peerCount; i++) {
+					idle[i] = new AtomicBoolean();
+					peers[i] = mockPeer(idle[i]);
+				}
+				AdvService advService = newService(new ArrayList<>(Arrays.asList(peers)));
+				Item item = trxItem(round);
+
+				CyclicBarrier barrier = new CyclicBarrier(peerCount);
+				List<Future<Boolean>> futures = new ArrayList<>();
+				for (PeerConnection peer : peers) {
+					futures.add(executor.submit(() -> {
+						peer.getAdvInvReceive().put(item, System.currentTimeMillis());
+						barrier.await();
+						return advService.addInv(item, peer);
+					}));
+				}
+				int queued = 0;
+				for (Future<Boolean> future : futures) {
+					if (future.get()) {
+						queued++;
+					}
+				}
+				Assert.assertEquals(1, queued);
+
+				// every announcer joined the one entry, whichever of them is idle gets the fetch
+				PeerConnection fetcher = peers[round % peerCount];
+				idle[round % peerCount].set(true);
+				consume(advService);
+				Assert.assertTrue(fetcher.getAdvInvRequest().containsKey(item));
+				Assert.assertFalse(advService.addInv(item, fetcher));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testRefetchAfterDisconnect() throws Exception {
+		AtomicBoolean idleA = new AtomicBoolean(true);
+		AtomicBoolean idleB = new AtomicBoolean(false);
+		PeerConnection peerA = mockPeer(idleA);
+		PeerConnection peerB = mockPeer(idleB);
+		List<PeerConnection> activePeers = new ArrayList<>(Arrays.asList(peerA, peerB));
+		AdvService advService = newService(activePeers);
+
+		Item item = trxItem(1);
+		peerA.getAdvInvReceive().put(item, System.currentTimeMillis());
+		peerB.getAdvInvReceive().put(item, System.currentTimeMillis());
+		Assert.assertTrue(advService.addInv(item, peerA));
+		Assert.assertFalse(advService.addInv(item, peerB));
+
+		consume(advService);
+		Assert.assertTrue(peerA.getAdvInvRequest().containsKey(item));
+		Assert.assertFalse(peerB.getAdvInvRequest().containsKey(item));
+		// in flight, announcing it again does not queue it twice
+		Assert.assertFalse(advService.addInv(item, peerB));
+
+		activePeers.remove(peerA);
+		idleB.set(true);
+		advService.onDisconnect(peerA);
+		consume(advService);
+		Assert.assertTrue(peerB.getAdvInvRequest().containsKey(item));
+	}
+
+	@Test
+	public void testFetchFromLeastLoadedPeer() throws Exception {
+		PeerConnection peerA = mockPeer(new AtomicBoolean(true));
+		PeerConnection peerB = mockPeer(new AtomicBoolean(true));
+		AdvService advService = newService(new ArrayList<>(Arrays.asList(peerA, peerB)));
+
+		int itemCount = 10;
+		for (int i = 0; i < itemCount; i++) {
+			Item item = trxItem(i);
+			Assert.assertTrue(advService.addInv(item, peerA));
+			Assert.assertFalse(advService.addInv(item, peerB));
+		}
+
+		consume(advService);
+		Assert.assertEquals(itemCount / 2, peerA.getAdvInvRequest().size());
+		Assert.assertEquals(itemCount / 2, peerB.getAdvInvRequest().size());
+		Assert.assertTrue(Collections.disjoint(peerA.getAdvInvRequest().keySet(),
+			peerB.getAdvInvRequest().keySet()));
+	}
+
+	private static Item trxItem(long i) {
+		return new Item(Sha256Hash.of(Longs.toByteArray(i)), InventoryType.TRX);
+	}
+
+	private static PeerConnection mockPeer(AtomicBoolean idle) {
+		Cache<Item, Long> received = CacheBuilder.newBuilder().maximumSize(100).build();
+		ConcurrentHashMap<Item, Long> requested = new ConcurrentHashMap<>();
+		PeerConnection peer = Mockito.mock(PeerConnection.class);
+		Mockito.when(peer.getAdvInvReceive()).thenReturn(received);
+		Mockito.when(peer.getAdvInvRequest()).thenReturn(requested);
+		Mockito.when(peer.isIdle()).thenAnswer(invocation -> idle.get());
+		return peer;
+	}
+
+	private static AdvService newService(List<PeerConnection> activePeers) throws Exception {
+		TronNetDelegate delegate = Mockito.mock(TronNetDelegate.class);
+		Mockito.when(delegate.getActivePeer()).thenReturn(activePeers);
+		AdvService advService = new AdvService();
+		Field field = AdvService.class.getDeclaredField("tronNetDelegate");
+		field.setAccessible(true);
+		field.set(advService, delegate);
+		return advService;
+	}
+
+	private static void consume(AdvService advService) throws Exception {
+		Method consumer = AdvService.class.getDeclaredMethod("consumerInvToFetch");
+		consumer.setAccessible(true);
+		consumer.invoke(advService);
+	}
 }
@@ -0,0 +1,136 @@
+package io.midasprotocol.core.net.services;
+
+import io.midasprotocol.common.application.Application;
+import io.midasprotocol.common.application.ApplicationContext;
+import io.midasprotocol.common.application.ApplicationFactory;
+import io.midasprotocol.common.utils.FileUtil;
+import io.midasprotocol.core.Constant;
+import io.midasprotocol.core.capsule.BlockCapsule;
+import io.midasprotocol.core.config.DefaultConfig;
+import io.midasprotocol.core.config.args.Args;
+import io.midasprotocol.core.db.Manager;
+import io.midasprotocol.protos.Protocol.Block;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Replays a recorded chain segment into an empty node, with and without the sync precheck.
+ *
+ * <p>Record the segment from a synced database:
+ * -Dreplay.db=output-directory -Dreplay.conf=config.conf -Dreplay.blocks=blocks.bin
+ * -Dreplay.start=1 -Dreplay.count=10000, running {@link #record()}.
+ *
+ * <p>Replay it with the same genesis: -Dreplay.conf=config.conf -Dreplay.blocks=blocks.bin
+ * -Dreplay.precheck=true, running {@link #replay()}.
+ */
+@Slf4j
+@Ignore
+public class SyncReplayBenchmarkTest {
+
+	private static String dbPath = "output_sync_replay_benchmark";
+
+	private ApplicationContext context;
+	private Application appT;
+	private Manager dbManager;
+
+	@Before
+	public void init() {
+		String db = System.getProperty("replay.db", dbPath);
+		Args.setParam(new String[]{"-d", db},
+			System.getProperty("replay.conf", Constant.TEST_CONF));
+		context = new ApplicationContext(DefaultConfig.class);
+		appT = ApplicationFactory.create(context);
+		dbManager = context.getBean(Manager.class);
+	}
+
+	@After
+	public void removeDb() {
+		Args.clearParam();
+		appT.shutdownServices();
+		appT.shutdown();
+		context.destroy();
+		FileUtil.deleteDir(new File(dbPath));
+	}
+
+	@Test
+	public void record() throws Exception {
+		long start = Long.getLong("replay.start", 1);
+		long count = Long.getLong("replay.count", 10_000);
+		try (OutputStream out = new FileOutputStream(System.getProperty("replay.blocks"))) {
+			for (long num = start; num < start + count; num++) {
+				dbManager.getBlockByNum(num).getInstance().writeDelimitedTo(out);
+			}
+		}
+	}
+
+	@Test
+	public void replay() throws Exception {
+		List<BlockCapsule> blocks = new ArrayList<>();
+		try (InputStream in = new FileInputStream(System.getProperty("replay.blocks"))) {
+			Block block;
+			while ((block = Block.parseDelimitedFrom(in)) != null) {
+				blocks.add(new BlockCapsule(block));
+			}
+		}
+
+		boolean precheck = Boolean.getBoolean("replay.precheck");
+		int window = Args.getInstance().getSyncPrecheckWindow();
+		ExecutorService precheckExecutor = Executors.newFixedThreadPool(
+			Math.max(1, Args.getInstance().getValidateSignThreadNum()));
+		List<Future<?>> prechecks = new ArrayList<>(Collections.nCopies(blocks.size(), null));
+		if (precheck) {
+			for (int i = 0; i < Math.min(window, blocks.size()); i++) {
+				BlockCapsule block = blocks.get(i);
+				prechecks.set(i, precheckExecutor.submit(() -> dbManager.precheckBlock(block)));
+			}
+		}
+
+		long txCount = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < blocks.size(); i++) {
+			if (precheck && i + window < blocks.size()) {
+				BlockCapsule ahead = blocks.get(i + window);
+				prechecks.set(i + window, precheckExecutor.submit(() -> dbManager.precheckBlock(ahead)));
+			}
+			finishPrecheck(prechecks.set(i, null));
+			dbManager.pushBlock(blocks.get(i));
+			txCount += blocks.get(i).getTransactions().size();
+		}
+		long cost = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+		precheckExecutor.shutdownNow();
+
+		logger.info("replay {} blocks, {} txs, precheck:{}, cost:{}ms, blocks/s:{}, txs/s:{}",
+			blocks.size(), txCount, precheck, cost, blocks.size() * 1000 / cost, txCount * 1000 / cost);
+	}
+
+	/**
+	 * Same hand-over as SyncService: a precheck that hasn't started is cancelled, a running one is
+	 * waited for.
+	 */
+	private static void finishPrecheck(Future<?> future) throws InterruptedException {
+		if (future == null || future.cancel(false)) {
+			return;
+		}
+		try {
+			future.get();
+		} catch (ExecutionException e) {
+			logger.warn("Precheck failed.", e);
+		}
+	}
+}
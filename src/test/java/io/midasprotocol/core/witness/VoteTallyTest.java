@@ -0,0 +1,57 @@
+package io.midasprotocol.core.witness;
+
+import com.google.protobuf.ByteString;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class VoteTallyTest {
+
+	private static ByteString address(Random random, int length) {
+		byte[] bytes = new byte[length];
+		random.nextBytes(bytes);
+		return ByteString.copyFrom(bytes);
+	}
+
+	@Test
+	public void testMatchesBoxedCount() {
+		Random random = new Random(1);
+		ByteString[] addresses = new ByteString[500];
+		for (int i = 0; i < addresses.length; i++) {
+			addresses[i] = address(random, VoteTally.ADDRESS_LENGTH);
+		}
+		addresses[0] = address(random, 5);
+
+		Map<ByteString, Long> expected = new HashMap<>();
+		VoteTally[] tallies = {new VoteTally(), new VoteTally(), new VoteTally()};
+		for (int i = 0; i < 20_000; i++) {
+			ByteString address = addresses[random.nextInt(addresses.length)];
+			long delta = random.nextInt(2_000_000) - 1_000_000;
+			expected.merge(address, delta, Long::sum);
+			tallies[i % tallies.length].add(address, delta);
+		}
+		tallies[0].addAll(tallies[1]);
+		tallies[0].addAll(tallies[2]);
+
+		Map<ByteString, Long> actual = new HashMap<>();
+		tallies[0].forEach(actual::put);
+		Assert.assertEquals(expected, actual);
+		Assert.assertEquals(expected.size(), tallies[0].size());
+		expected.forEach((address, count) ->
+			Assert.assertEquals((long) count, tallies[0].get(address)));
+		Assert.assertEquals(0, tallies[0].get(address(random, VoteTally.ADDRESS_LENGTH)));
+	}
+
+	@Test
+	public void testZeroSumIsKept() {
+		ByteString address = ByteString.copyFrom(new byte[VoteTally.ADDRESS_LENGTH]);
+		VoteTally tally = new VoteTally();
+		tally.add(address, 10);
+		tally.add(address, -10);
+		Assert.assertEquals(1, tally.size());
+		Assert.assertEquals(0, tally.get(address));
+	}
+}